@@ -3,9 +3,11 @@ package projeto.springboot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.core.Ordered;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -13,14 +15,20 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @SpringBootApplication
 @EntityScan(basePackages = "projeto.springboot.model")
-@ComponentScan(basePackages = {"projeto.*"})
+@ComponentScan(basePackages = "projeto.springboot")
 @EnableJpaRepositories(basePackages = "projeto.springboot.repository")
 @EnableTransactionManagement
 @EnableWebMvc
+@EnableScheduling
 public class ProjetospringbootApplication implements WebMvcConfigurer{
 
 	public static void main(String[] args) {
-		SpringApplication.run(ProjetospringbootApplication.class, args);
+		ConfigurableApplicationContext contexto = SpringApplication.run(ProjetospringbootApplication.class, args);
+		
+		// Execução de treino do perfil "cds" (pom.xml): sobe, carrega as classes da inicialização e encerra para gravar o arquivo CDS
+		if (Boolean.getBoolean("app.cds.treino")) {
+			System.exit(SpringApplication.exit(contexto));
+		}
 	}
 	
 	@Override
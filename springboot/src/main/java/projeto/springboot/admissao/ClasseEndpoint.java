@@ -0,0 +1,98 @@
+package projeto.springboot.admissao;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Grupos de endpoints com limite de concorrência próprio no ControleAdmissaoFilter. Um pico de relatórios ou de pesquisas
+ * esgota só as vagas do seu grupo; login e cadastro continuam atendendo.
+ *
+ * Os valores abaixo são os padrões de "app.admissao.limite.<chave>", "app.admissao.fila.<chave>" e
+ * "app.admissao.latencia-alvo-ms.<chave>".
+ * */
+public enum ClasseEndpoint {
+
+	/** PDF da pesquisa (GET .../pesquisarpessoa): Jasper, CPU e muitas linhas. */
+	RELATORIO("relatorio", 4, 4, 15000, true),
+	/** Download de currículo (large object). */
+	DOWNLOAD("download", 8, 8, 3000, true),
+	/** Pesquisa, listagem paginada, dashboard e CEP. */
+	PESQUISA("pesquisa", 16, 16, 1500, true),
+	/** Inclusão, edição e exclusão de pessoas e telefones. */
+	CADASTRO("cadastro", 32, 16, 1500, true),
+	/**
+	 * Página de login, autenticação e logout. Não é reduzida pela espera de conexão no pool: usa uma consulta curta por login e,
+	 * cortada junto com as outras, impediria os usuários de entrar justamente durante o pico.
+	 * */
+	AUTENTICACAO("autenticacao", 16, 16, 1000, false);
+
+	private final String chave;
+	private final int limitePadrao;
+	private final int filaPadrao;
+	private final long latenciaAlvoPadraoMs;
+	private final boolean reduzidaPeloPool;
+
+	ClasseEndpoint(String chave, int limitePadrao, int filaPadrao, long latenciaAlvoPadraoMs, boolean reduzidaPeloPool) {
+		this.chave = chave;
+		this.limitePadrao = limitePadrao;
+		this.filaPadrao = filaPadrao;
+		this.latenciaAlvoPadraoMs = latenciaAlvoPadraoMs;
+		this.reduzidaPeloPool = reduzidaPeloPool;
+	}
+
+	public String getChave() {
+		return chave;
+	}
+
+	public int getLimitePadrao() {
+		return limitePadrao;
+	}
+
+	public int getFilaPadrao() {
+		return filaPadrao;
+	}
+
+	public long getLatenciaAlvoPadraoMs() {
+		return latenciaAlvoPadraoMs;
+	}
+
+	/** Se o limite da classe cai quando há threads esperando conexão no pool (além do p99 acima do alvo). */
+	public boolean isReduzidaPeloPool() {
+		return reduzidaPeloPool;
+	}
+
+	/**
+	 * Grupo da requisição, ou null para o que não é limitado (página inicial, estáticos, actuator, erros e o fluxo de
+	 * /alteracoes, que fica aberto sem prender thread e tem limite próprio de conexões).
+	 * */
+	public static ClasseEndpoint de(HttpServletRequest request) {
+
+		String caminho = request.getRequestURI().substring(request.getContextPath().length());
+		boolean get = "GET".equals(request.getMethod());
+
+		if (caminho.equals("/login") || caminho.equals("/logout")) {
+			return AUTENTICACAO;
+		}
+
+		if (caminho.endsWith("/pesquisarpessoa")) {
+			return get ? RELATORIO : PESQUISA;
+		}
+
+		if (caminho.contains("/baixarcurriculo/")) {
+			return DOWNLOAD;
+		}
+
+		if (caminho.equals("/pessoaspag") || caminho.equals("/listapessoas") || caminho.startsWith("/cep/")
+				|| caminho.startsWith("/dashboard")) {
+			return PESQUISA;
+		}
+
+		if (caminho.equals("/cadastropessoa") || caminho.endsWith("/salvarpessoa") || caminho.startsWith("/editarpessoa/")
+				|| caminho.startsWith("/removerpessoa") || caminho.equals("/alterarpessoas") || caminho.startsWith("/restaurarpessoa/")
+				|| caminho.startsWith("/telefones/") || caminho.contains("/addfonepessoa/") || caminho.startsWith("/removertelefone/")) {
+			return CADASTRO;
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,178 @@
+package projeto.springboot.admissao;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Controle de admissão: limita quantas requisições de cada ClasseEndpoint executam ao mesmo tempo, para que um pico de
+ * relatórios ou pesquisas não ocupe todas as threads do Tomcat esperando conexão do banco.
+ *
+ * Sem vaga livre, a requisição espera na fila da classe por até "app.admissao.espera-ms"; com a fila cheia ou a espera esgotada,
+ * recebe 503 com Retry-After na hora, sem chegar ao Spring Security nem ao banco.
+ *
+ * No modo adaptativo ("app.admissao.adaptativo") o limite de cada classe é revisto a cada "app.admissao.ajuste-ms": cai 25% se
+ * o p99 da classe passou da latência alvo ou se há threads esperando conexão no pool (Hikari), e sobe uma vaga por ajuste
+ * quando tudo está normal, até o limite configurado. A espera no pool não reduz a autenticação (ClasseEndpoint.isReduzidaPeloPool),
+ * para o login continuar atendendo durante o pico.
+ * */
+public class ControleAdmissaoFilter extends OncePerRequestFilter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ControleAdmissaoFilter.class);
+
+	@Value("${app.admissao.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.admissao.espera-ms:100}")
+	private long esperaMs;
+
+	@Value("${app.admissao.retry-after-s:2}")
+	private int retryAfterS;
+
+	@Value("${app.admissao.adaptativo:true}")
+	private boolean adaptativo;
+
+	@Autowired
+	private Environment environment;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private final Map<ClasseEndpoint, LimiteConcorrencia> limites = new EnumMap<ClasseEndpoint, LimiteConcorrencia>(ClasseEndpoint.class);
+
+	@PostConstruct
+	public void configurar() {
+
+		for (ClasseEndpoint classe : ClasseEndpoint.values()) {
+
+			int limite = environment.getProperty("app.admissao.limite." + classe.getChave(), Integer.class, classe.getLimitePadrao());
+			int fila = environment.getProperty("app.admissao.fila." + classe.getChave(), Integer.class, classe.getFilaPadrao());
+			long latenciaAlvo = environment.getProperty("app.admissao.latencia-alvo-ms." + classe.getChave(), Long.class,
+					classe.getLatenciaAlvoPadraoMs());
+
+			LimiteConcorrencia limiteClasse = new LimiteConcorrencia(limite, Math.max(1, limite / 4), fila, latenciaAlvo);
+			limites.put(classe, limiteClasse);
+
+			if (meterRegistry != null) {
+				Gauge.builder("admissao.limite", limiteClasse, LimiteConcorrencia::getLimite).tag("classe", classe.getChave())
+						.description("Requisições simultâneas permitidas").register(meterRegistry);
+				Gauge.builder("admissao.execucao", limiteClasse, LimiteConcorrencia::getEmExecucao).tag("classe", classe.getChave())
+						.description("Requisições em execução").register(meterRegistry);
+				Gauge.builder("admissao.fila", limiteClasse, LimiteConcorrencia::getAguardando).tag("classe", classe.getChave())
+						.description("Requisições esperando vaga").register(meterRegistry);
+				FunctionCounter.builder("admissao.aceitas", limiteClasse, LimiteConcorrencia::getAceitas).tag("classe", classe.getChave())
+						.description("Requisições admitidas").register(meterRegistry);
+				FunctionCounter.builder("admissao.rejeitadas", limiteClasse, LimiteConcorrencia::getRejeitadas).tag("classe", classe.getChave())
+						.description("Requisições recusadas com 503").register(meterRegistry);
+			}
+		}
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		ClasseEndpoint classe = habilitado ? ClasseEndpoint.de(request) : null;
+
+		if (classe == null) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		LimiteConcorrencia limite = limites.get(classe);
+		boolean admitida;
+
+		try {
+			admitida = limite.entrar(esperaMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			admitida = false;
+		}
+
+		if (!admitida) {
+			response.setHeader("Retry-After", String.valueOf(retryAfterS));
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Servidor ocupado, tente novamente em instantes.");
+			return;
+		}
+
+		long inicio = System.currentTimeMillis();
+
+		try {
+			filterChain.doFilter(request, response);
+		} finally {
+			limite.sair(System.currentTimeMillis() - inicio);
+		}
+	}
+
+	@Scheduled(initialDelayString = "${app.admissao.ajuste-ms:5000}", fixedDelayString = "${app.admissao.ajuste-ms:5000}")
+	public void ajustar() {
+
+		if (!habilitado || !adaptativo) {
+			return;
+		}
+
+		int esperandoConexao = esperandoConexao();
+
+		for (Map.Entry<ClasseEndpoint, LimiteConcorrencia> entrada : limites.entrySet()) {
+
+			LimiteConcorrencia limite = entrada.getValue();
+			long p99 = limite.p99DesdeUltimaLeitura();
+			int anterior = limite.getLimite();
+
+			if (p99 > limite.getLatenciaAlvoMs() || (esperandoConexao > 0 && entrada.getKey().isReduzidaPeloPool())) {
+				limite.reduzir();
+			} else {
+				limite.aumentar();
+			}
+
+			if (limite.getLimite() != anterior) {
+				logger.info("Admissão " + entrada.getKey().getChave() + ": limite " + anterior + " -> " + limite.getLimite() + " (p99 "
+						+ p99 + " ms, " + esperandoConexao + " thread(s) esperando conexão)");
+			}
+		}
+	}
+
+	// O DataSource injetado pode ser o DataSourceMonitorado; unwrap chega ao HikariDataSource
+	private int esperandoConexao() {
+
+		try {
+			if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+				return 0;
+			}
+
+			HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+			return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+
+		} catch (SQLException e) {
+			return 0;
+		}
+	}
+
+}
@@ -0,0 +1,164 @@
+package projeto.springboot.admissao;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vagas de um ClasseEndpoint: no máximo "limite" requisições em execução e "fila" esperando uma vaga por até "espera" ms.
+ * O limite pode ser mudado em funcionamento (modo adaptativo) entre o mínimo e o máximo configurados.
+ *
+ * Guarda as durações em um anel de AMOSTRAS posições para o p99 usado no ajuste; a escrita concorrente no anel pode perder uma
+ * amostra ou outra, o que não importa para uma estimativa.
+ * */
+class LimiteConcorrencia {
+
+	private static final int AMOSTRAS = 1024;
+
+	private final Vagas vagas;
+	private final int limiteMaximo;
+	private final int limiteMinimo;
+	private final int fila;
+	private final long latenciaAlvoMs;
+
+	private volatile int limite;
+
+	private final AtomicInteger aguardando = new AtomicInteger();
+	private final AtomicInteger emExecucao = new AtomicInteger();
+	private final AtomicLong aceitas = new AtomicLong();
+	private final AtomicLong rejeitadas = new AtomicLong();
+
+	private final long[] duracoesMs = new long[AMOSTRAS];
+	private final AtomicInteger proximaAmostra = new AtomicInteger();
+	private int ultimaLeitura;
+
+	LimiteConcorrencia(int limiteMaximo, int limiteMinimo, int fila, long latenciaAlvoMs) {
+		this.limiteMaximo = limiteMaximo;
+		this.limiteMinimo = Math.max(1, Math.min(limiteMinimo, limiteMaximo));
+		this.fila = fila;
+		this.latenciaAlvoMs = latenciaAlvoMs;
+		this.limite = limiteMaximo;
+		this.vagas = new Vagas(limiteMaximo);
+	}
+
+	/** Ocupa uma vaga, esperando no máximo esperaMs; false se a fila estiver cheia ou a espera acabar. */
+	boolean entrar(long esperaMs) throws InterruptedException {
+
+		if (vagas.tryAcquire()) {
+			return aceita();
+		}
+
+		if (aguardando.incrementAndGet() > fila) {
+			aguardando.decrementAndGet();
+			rejeitadas.incrementAndGet();
+			return false;
+		}
+
+		try {
+			if (vagas.tryAcquire(esperaMs, TimeUnit.MILLISECONDS)) {
+				return aceita();
+			}
+		} finally {
+			aguardando.decrementAndGet();
+		}
+
+		rejeitadas.incrementAndGet();
+		return false;
+	}
+
+	private boolean aceita() {
+		emExecucao.incrementAndGet();
+		aceitas.incrementAndGet();
+		return true;
+	}
+
+	void sair(long duracaoMs) {
+		emExecucao.decrementAndGet();
+		duracoesMs[Math.floorMod(proximaAmostra.getAndIncrement(), AMOSTRAS)] = duracaoMs;
+		vagas.release();
+	}
+
+	/** p99 das durações registradas desde a chamada anterior (no máximo as últimas AMOSTRAS); -1 se não houve requisições. */
+	synchronized long p99DesdeUltimaLeitura() {
+
+		int atual = proximaAmostra.get();
+		int quantidade = Math.min(atual - ultimaLeitura, AMOSTRAS);
+		ultimaLeitura = atual;
+
+		if (quantidade <= 0) {
+			return -1;
+		}
+
+		long[] copia = new long[quantidade];
+
+		for (int i = 0; i < quantidade; i++) {
+			copia[i] = duracoesMs[Math.floorMod(atual - 1 - i, AMOSTRAS)];
+		}
+
+		Arrays.sort(copia);
+
+		return copia[(int) Math.ceil(quantidade * 0.99) - 1];
+	}
+
+	/** Reduz o limite em 25% (mínimo limiteMinimo); quem já está em execução termina normalmente. */
+	synchronized void reduzir() {
+
+		int novo = Math.max(limiteMinimo, (int) (limite * 0.75));
+
+		if (novo < limite) {
+			vagas.reduzir(limite - novo);
+			limite = novo;
+		}
+	}
+
+	/** Devolve uma vaga por vez até o limite configurado. */
+	synchronized void aumentar() {
+
+		if (limite < limiteMaximo) {
+			limite++;
+			vagas.release();
+		}
+	}
+
+	int getLimite() {
+		return limite;
+	}
+
+	long getLatenciaAlvoMs() {
+		return latenciaAlvoMs;
+	}
+
+	int getEmExecucao() {
+		return emExecucao.get();
+	}
+
+	int getAguardando() {
+		return aguardando.get();
+	}
+
+	long getAceitas() {
+		return aceitas.get();
+	}
+
+	long getRejeitadas() {
+		return rejeitadas.get();
+	}
+
+	// Semaphore.reducePermits é protegido: reduz as vagas sem esperar que as em uso sejam devolvidas
+	private static final class Vagas extends Semaphore {
+
+		private static final long serialVersionUID = 1L;
+
+		Vagas(int permissoes) {
+			super(permissoes);
+		}
+
+		void reduzir(int quantidade) {
+			reducePermits(quantidade);
+		}
+
+	}
+
+}
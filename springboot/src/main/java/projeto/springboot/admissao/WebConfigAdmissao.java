@@ -0,0 +1,29 @@
+package projeto.springboot.admissao;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Registra o ControleAdmissaoFilter logo depois do filtro de codificação: a requisição recusada não chega a abrir sessão
+ * (SessaoJdbcRepository) nem a passar pelo Spring Security.
+ * */
+@Configuration
+public class WebConfigAdmissao {
+
+	@Bean
+	public ControleAdmissaoFilter controleAdmissaoFilter() {
+		return new ControleAdmissaoFilter();
+	}
+
+	@Bean
+	public FilterRegistrationBean<ControleAdmissaoFilter> registroControleAdmissao(ControleAdmissaoFilter filtro) {
+
+		FilterRegistrationBean<ControleAdmissaoFilter> registro = new FilterRegistrationBean<ControleAdmissaoFilter>(filtro);
+		registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+
+		return registro;
+	}
+
+}
@@ -0,0 +1,371 @@
+package projeto.springboot.auditoria;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Telefone;
+
+/**
+ * Auditoria de pessoas e telefones: quem alterou qual campo, quando, com os valores antes e depois (tabela auditoria, uma linha
+ * por campo).
+ *
+ * Os campos alterados vêm dos EventoAlteracao (PublicadorEventosHibernate e operações em lote) depois do commit, então só o que
+ * foi efetivamente gravado é auditado. Quem alterou não espera o INSERT da auditoria: os registros entram em uma fila sem bloqueio
+ * (ConcurrentLinkedQueue) limitada a "app.auditoria.capacidade" e uma thread própria grava em lotes JDBC quando a fila chega a
+ * "app.auditoria.tamanho-lote" registros ou a cada "app.auditoria.intervalo-ms".
+ *
+ * Com a fila cheia quem enfileira acorda a thread de gravação e espera no máximo "app.auditoria.espera-maxima-ms"; se ainda não
+ * houver espaço o registro é descartado e contado na métrica auditoria.descartados (a alteração em si nunca falha por causa da
+ * auditoria). Ao desligar a aplicação a fila é esvaziada antes de o DataSource ser fechado.
+ *
+ * Arquivamento e restauração (EventoAlteracao.isArquivamento) gravam uma linha só, sem campo: a pessoa não foi alterada, só
+ * mudou de tabela.
+ *
+ * Cada registro é gravado no fragmento da pessoa ou do telefone auditado (MapaFragmentos.fragmentoDoId), junto com o dado.
+ * */
+@Service
+public class AuditoriaService {
+
+	private static final Logger logger = LoggerFactory.getLogger(AuditoriaService.class);
+
+	private static final String SQL_INSERCAO = "INSERT INTO auditoria (data_hora, usuario, entidade, entidade_id, operacao, campo, "
+			+ "valor_anterior, valor_novo) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	// Maior valor gravado por campo; o currículo já chega só com o tamanho (EventoAlteracao)
+	private static final int TAMANHO_MAXIMO_VALOR = 1000;
+
+	// Mantido pelo próprio Hibernate a cada alteração, não interessa à auditoria
+	private static final Set<String> CAMPOS_IGNORADOS = Collections.singleton("dataAtualizacao");
+
+	private static final String USUARIO_SISTEMA = "sistema";
+
+	private static final long INTERVALO_AVISO_DESCARTE_MS = 60000;
+
+	@Value("${app.auditoria.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.auditoria.capacidade:10000}")
+	private int capacidade;
+
+	@Value("${app.auditoria.tamanho-lote:200}")
+	private int tamanhoLote;
+
+	@Value("${app.auditoria.intervalo-ms:1000}")
+	private long intervaloMs;
+
+	@Value("${app.auditoria.espera-maxima-ms:20}")
+	private long esperaMaximaMs;
+
+	@Value("${app.auditoria.encerramento-ms:10000}")
+	private long encerramentoMs;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private final ConcurrentLinkedQueue<RegistroAuditoria> fila = new ConcurrentLinkedQueue<RegistroAuditoria>();
+
+	// ConcurrentLinkedQueue.size() percorre a fila inteira; o tamanho é controlado à parte e também serve de reserva de vaga
+	private final AtomicInteger tamanho = new AtomicInteger();
+
+	private final AtomicLong enfileirados = new AtomicLong();
+	private final AtomicLong gravados = new AtomicLong();
+	private final AtomicLong descartados = new AtomicLong();
+	private final AtomicLong falhas = new AtomicLong();
+	private final AtomicLong ultimoAvisoDescarte = new AtomicLong();
+
+	private volatile boolean encerrando;
+	private volatile Thread gravador;
+
+	@PostConstruct
+	public void iniciar() {
+
+		if (meterRegistry != null) {
+			Gauge.builder("auditoria.fila", tamanho, AtomicInteger::get)
+					.description("Registros de auditoria aguardando gravação").register(meterRegistry);
+			FunctionCounter.builder("auditoria.enfileirados", enfileirados, AtomicLong::get)
+					.description("Registros de auditoria aceitos na fila").register(meterRegistry);
+			FunctionCounter.builder("auditoria.gravados", gravados, AtomicLong::get)
+					.description("Registros de auditoria gravados no banco").register(meterRegistry);
+			FunctionCounter.builder("auditoria.descartados", descartados, AtomicLong::get)
+					.description("Registros de auditoria descartados com a fila cheia").register(meterRegistry);
+			FunctionCounter.builder("auditoria.falhas", falhas, AtomicLong::get)
+					.description("Registros de auditoria perdidos por erro na gravação").register(meterRegistry);
+		}
+
+		if (habilitado) {
+			Thread thread = new Thread(this::gravar, "auditoria-gravador");
+			thread.setDaemon(true);
+			gravador = thread;
+			thread.start();
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterar(EventoAlteracao evento) {
+
+		if (!habilitado || !(evento.isEntidade(Pessoa.class) || evento.isEntidade(Telefone.class))) {
+			return;
+		}
+
+		Timestamp agora = new Timestamp(System.currentTimeMillis());
+		String usuario = usuarioAtual();
+
+		if (evento.isArquivamento()) {
+			enfileirar(new RegistroAuditoria(agora, usuario, evento.getEntidade().getSimpleName(), evento.getId(),
+					evento.getOperacaoAuditada(), null, null, null));
+			return;
+		}
+
+		for (String campo : evento.getCamposAlterados()) {
+
+			if (CAMPOS_IGNORADOS.contains(campo)) {
+				continue;
+			}
+
+			enfileirar(new RegistroAuditoria(agora, usuario, evento.getEntidade().getSimpleName(), evento.getId(), evento.getOperacao(),
+					campo, texto(evento.getAnterior().get(campo)), texto(evento.getAtual().get(campo))));
+		}
+	}
+
+	/** Coloca o registro na fila; false se ele foi descartado por falta de espaço. */
+	boolean enfileirar(RegistroAuditoria registro) {
+
+		if (!reservarVaga()) {
+
+			descartados.incrementAndGet();
+			avisarDescarte();
+
+			return false;
+		}
+
+		fila.offer(registro);
+		enfileirados.incrementAndGet();
+
+		if (tamanho.get() >= tamanhoLote) {
+			LockSupport.unpark(gravador);
+		}
+
+		return true;
+	}
+
+	private boolean reservarVaga() {
+
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+
+		while (true) {
+
+			int atual = tamanho.get();
+
+			if (atual < capacidade) {
+
+				if (tamanho.compareAndSet(atual, atual + 1)) {
+					return true;
+				}
+
+				continue;
+			}
+
+			// Fila cheia: segura quem está alterando por um instante para a gravação alcançar, antes de descartar
+			if (System.nanoTime() >= limite) {
+				return false;
+			}
+
+			LockSupport.unpark(gravador);
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+		}
+	}
+
+	private void gravar() {
+
+		long intervalo = TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+		long ultimaGravacao = System.nanoTime();
+
+		while (true) {
+
+			boolean encerrar = encerrando;
+			int pendentes = tamanho.get();
+			long decorrido = System.nanoTime() - ultimaGravacao;
+
+			if (pendentes >= tamanhoLote || (pendentes > 0 && (decorrido >= intervalo || encerrar))) {
+				gravarLote();
+				ultimaGravacao = System.nanoTime();
+				continue;
+			}
+
+			if (encerrar) {
+				return;
+			}
+
+			LockSupport.parkNanos(this, pendentes > 0 ? intervalo - decorrido : intervalo);
+		}
+	}
+
+	private void gravarLote() {
+
+		List<RegistroAuditoria> lote = new ArrayList<RegistroAuditoria>(tamanhoLote);
+		RegistroAuditoria registro;
+
+		while (lote.size() < tamanhoLote && (registro = fila.poll()) != null) {
+			lote.add(registro);
+		}
+
+		tamanho.addAndGet(-lote.size());
+
+		if (lote.isEmpty()) {
+			return;
+		}
+
+		Map<Integer, List<RegistroAuditoria>> porFragmento = new LinkedHashMap<Integer, List<RegistroAuditoria>>();
+
+		for (RegistroAuditoria r : lote) {
+			int fragmento = r.getEntidadeId() != null ? MapaFragmentos.fragmentoDoId(r.getEntidadeId()) : 0;
+			porFragmento.computeIfAbsent(fragmento, f -> new ArrayList<RegistroAuditoria>()).add(r);
+		}
+
+		porFragmento.forEach((fragmento, registros) -> ContextoFragmento.em(fragmento, () -> {
+			gravarNoFragmento(registros);
+			return null;
+		}));
+	}
+
+	// No fragmento da thread corrente
+	private void gravarNoFragmento(List<RegistroAuditoria> lote) {
+
+		try {
+			jdbcTemplate.batchUpdate(SQL_INSERCAO, new BatchPreparedStatementSetter() {
+
+				@Override
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+
+					RegistroAuditoria r = lote.get(i);
+
+					ps.setTimestamp(1, r.getDataHora());
+					ps.setString(2, r.getUsuario());
+					ps.setString(3, r.getEntidade());
+
+					if (r.getEntidadeId() != null) {
+						ps.setLong(4, r.getEntidadeId());
+					} else {
+						ps.setNull(4, Types.BIGINT);
+					}
+
+					ps.setString(5, r.getOperacao().name());
+					ps.setString(6, r.getCampo());
+					ps.setString(7, r.getValorAnterior());
+					ps.setString(8, r.getValorNovo());
+				}
+
+				@Override
+				public int getBatchSize() {
+					return lote.size();
+				}
+			});
+
+			gravados.addAndGet(lote.size());
+
+		} catch (RuntimeException e) {
+			falhas.addAndGet(lote.size());
+			logger.error("Falha ao gravar " + lote.size() + " registro(s) de auditoria", e);
+		}
+	}
+
+	/** Esvazia a fila antes de o contexto fechar o DataSource (este bean depende dele, então é destruído antes). */
+	@PreDestroy
+	public void encerrar() {
+
+		Thread thread = gravador;
+		encerrando = true;
+
+		if (thread == null) {
+			return;
+		}
+
+		LockSupport.unpark(thread);
+
+		try {
+			thread.join(encerramentoMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (tamanho.get() > 0) {
+			logger.warn("Auditoria encerrada com " + tamanho.get() + " registro(s) não gravado(s)");
+		}
+	}
+
+	private void avisarDescarte() {
+
+		long agora = System.currentTimeMillis();
+		long ultimo = ultimoAvisoDescarte.get();
+
+		if (agora - ultimo >= INTERVALO_AVISO_DESCARTE_MS && ultimoAvisoDescarte.compareAndSet(ultimo, agora)) {
+			logger.warn("Fila de auditoria cheia (" + capacidade + "): " + descartados.get() + " registro(s) descartado(s) até agora");
+		}
+	}
+
+	private static String usuarioAtual() {
+
+		Authentication autenticacao = SecurityContextHolder.getContext().getAuthentication();
+
+		// Tarefas agendadas (arquivamento, reconciliação) não têm usuário
+		if (autenticacao == null || !autenticacao.isAuthenticated()) {
+			return USUARIO_SISTEMA;
+		}
+
+		return autenticacao.getName();
+	}
+
+	private static String texto(Object valor) {
+
+		if (valor == null) {
+			return null;
+		}
+
+		String texto = String.valueOf(valor);
+
+		return texto.length() > TAMANHO_MAXIMO_VALOR ? texto.substring(0, TAMANHO_MAXIMO_VALOR) : texto;
+	}
+
+	public int getPendentes() {
+		return tamanho.get();
+	}
+
+}
@@ -0,0 +1,63 @@
+package projeto.springboot.auditoria;
+
+import java.sql.Timestamp;
+
+import projeto.springboot.evento.Operacao;
+
+/** Uma linha da tabela auditoria: quem alterou qual campo de qual registro, quando, e os valores antes e depois. */
+public class RegistroAuditoria {
+
+	private final Timestamp dataHora;
+	private final String usuario;
+	private final String entidade;
+	private final Long entidadeId;
+	private final Operacao operacao;
+	private final String campo;
+	private final String valorAnterior;
+	private final String valorNovo;
+
+	public RegistroAuditoria(Timestamp dataHora, String usuario, String entidade, Long entidadeId, Operacao operacao, String campo,
+			String valorAnterior, String valorNovo) {
+		this.dataHora = dataHora;
+		this.usuario = usuario;
+		this.entidade = entidade;
+		this.entidadeId = entidadeId;
+		this.operacao = operacao;
+		this.campo = campo;
+		this.valorAnterior = valorAnterior;
+		this.valorNovo = valorNovo;
+	}
+
+	public Timestamp getDataHora() {
+		return dataHora;
+	}
+
+	public String getUsuario() {
+		return usuario;
+	}
+
+	public String getEntidade() {
+		return entidade;
+	}
+
+	public Long getEntidadeId() {
+		return entidadeId;
+	}
+
+	public Operacao getOperacao() {
+		return operacao;
+	}
+
+	public String getCampo() {
+		return campo;
+	}
+
+	public String getValorAnterior() {
+		return valorAnterior;
+	}
+
+	public String getValorNovo() {
+		return valorNovo;
+	}
+
+}
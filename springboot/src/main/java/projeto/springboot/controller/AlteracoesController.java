@@ -0,0 +1,42 @@
+package projeto.springboot.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import projeto.springboot.evento.TransmissaoAlteracoesService;
+
+@Controller
+public class AlteracoesController {
+
+	@Autowired
+	private TransmissaoAlteracoesService transmissaoAlteracoesService;
+
+	/**
+	 * Fluxo de server-sent events com as alterações de pessoas (sem "pessoa") ou de uma pessoa e seus telefones (com "pessoa"),
+	 * aberto pelo EventSource das telas de cadastro e de telefones. A conexão fica aberta sem prender thread do servidor.
+	 *
+	 * -> 503 com Retry-After se já houver app.alteracoes.maximo-conexoes conexões abertas.
+	 * */
+
+	@GetMapping(value = "/alteracoes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> alteracoes(@RequestParam(value = "pessoa", required = false) Long pessoa,
+			@RequestHeader(value = "Last-Event-ID", required = false) String ultimoId) {
+
+		SseEmitter emissor = transmissaoAlteracoesService.assinar(pessoa, ultimoId);
+
+		if (emissor == null) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "30").build();
+		}
+
+		return ResponseEntity.ok().header(HttpHeaders.CACHE_CONTROL, "no-cache").header("X-Accel-Buffering", "no").body(emissor);
+	}
+
+}
@@ -0,0 +1,48 @@
+package projeto.springboot.controller;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import projeto.springboot.model.Endereco;
+import projeto.springboot.service.CepService;
+
+@Controller
+public class CepController {
+
+	@Autowired
+	private CepService cepService;
+
+	/**
+	 * Substitui a chamada ao viacep.com.br feita pelo navegador no "blur" do campo CEP. Retorna o endereço em JSON com os mesmos nomes
+	 * de campos do formulário (rua, bairro, cidade, uf, ibge).
+	 *
+	 * -> 400 se o CEP não tiver 8 dígitos;
+	 * -> 404 se o CEP não existir na base local;
+	 * -> 503 se o índice de CEP não estiver carregado no servidor.
+	 * */
+
+	@GetMapping("/cep/{cep}")
+	@ResponseBody
+	public ResponseEntity<Endereco> buscar(@PathVariable("cep") String cep) {
+
+		if (CepService.normalizar(cep) == null) {
+			return ResponseEntity.badRequest().build();
+		}
+
+		if (!cepService.isDisponivel()) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		}
+
+		Optional<Endereco> endereco = cepService.buscar(cep);
+
+		return endereco.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+}
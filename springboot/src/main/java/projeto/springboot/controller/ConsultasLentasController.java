@@ -0,0 +1,32 @@
+package projeto.springboot.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.servlet.ModelAndView;
+
+import projeto.springboot.sql.AmostradorConsultasLentas;
+
+@Controller
+public class ConsultasLentasController {
+
+	@Autowired
+	private AmostradorConsultasLentas amostradorConsultasLentas;
+
+	/**
+	 * Consultas lentas guardadas em memória pelo AmostradorConsultasLentas, agrupadas pela forma do SQL. Os parâmetros aparecem
+	 * só redigidos (tipo e tamanho). Restrita ao perfil ADMIN (WebConfigSecurity).
+	 * */
+
+	@GetMapping("/admin/consultaslentas")
+	public ModelAndView consultasLentas() {
+
+		ModelAndView modelAndView = new ModelAndView("admin/consultaslentas");
+		modelAndView.addObject("formas", amostradorConsultasLentas.resumo());
+		modelAndView.addObject("limitems", amostradorConsultasLentas.getLimiteMs());
+		modelAndView.addObject("explainsdescartados", amostradorConsultasLentas.getExplainsDescartados());
+
+		return modelAndView;
+	}
+
+}
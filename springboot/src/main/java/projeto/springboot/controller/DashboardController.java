@@ -0,0 +1,52 @@
+package projeto.springboot.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.ModelAndView;
+
+import projeto.springboot.curriculo.ArmazenamentoCurriculoService;
+import projeto.springboot.service.EstatisticaPessoaService;
+
+@Controller
+public class DashboardController {
+
+	@Autowired
+	private EstatisticaPessoaService estatisticaPessoaService;
+
+	@Autowired
+	private ArmazenamentoCurriculoService armazenamentoCurriculoService;
+
+	/**
+	 * Página do dashboard. Os números vêm dos contadores mantidos em memória pelo EstatisticaPessoaService, então abrir a página não
+	 * dispara nenhuma consulta "group by" na tabela pessoa.
+	 * */
+
+	@GetMapping("/dashboard")
+	public ModelAndView dashboard() {
+
+		ModelAndView modelAndView = new ModelAndView("admin/dashboard");
+		modelAndView.addObject("estatisticas", estatisticaPessoaService.getResumo());
+
+		return modelAndView;
+	}
+
+	// Os mesmos números em JSON, para atualizar painéis sem recarregar a página.
+	@GetMapping("/dashboard/dados")
+	@ResponseBody
+	public Map<String, Object> dados() {
+		return estatisticaPessoaService.getResumo();
+	}
+
+	// Espaço ocupado pelos currículos por codec: quantidade, bytes originais, bytes armazenados e razão entre eles.
+	@GetMapping("/dashboard/curriculos")
+	@ResponseBody
+	public List<Map<String, Object>> curriculos() {
+		return armazenamentoCurriculoService.estatisticas();
+	}
+
+}
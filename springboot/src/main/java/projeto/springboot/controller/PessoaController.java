@@ -2,8 +2,10 @@ package projeto.springboot.controller;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.servlet.http.HttpServletRequest;
@@ -12,6 +14,8 @@ import javax.validation.Valid;
 
 import org.hibernate.query.criteria.internal.predicate.IsEmptyPredicate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -30,11 +34,22 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.ModelAndView;
 
+import projeto.springboot.curriculo.ArmazenamentoCurriculoService;
+import projeto.springboot.fragmentacao.FragmentosService;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Cargo;
 import projeto.springboot.model.Pessoa;
 import projeto.springboot.model.Telefone;
+import projeto.springboot.repository.FiltroPesquisaPessoa;
 import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.PessoaSpecification;
 import projeto.springboot.repository.ProfissaoRepository;
 import projeto.springboot.repository.TelefoneRepository;
+import projeto.springboot.service.ArquivamentoService;
+import projeto.springboot.service.CepService;
+import projeto.springboot.service.PessoaEdicaoService;
+import projeto.springboot.service.PessoaLoteService;
+import projeto.springboot.service.RelatorioCacheService;
 
 @Controller
 public class PessoaController {
@@ -45,12 +60,45 @@ public class PessoaController {
 	@Autowired
 	private TelefoneRepository telefoneRepository;
 	
+	@Lazy // beans de relatório são criados só no primeiro uso (InicializacaoTardiaPostProcessor)
 	@Autowired
 	private ReportUtil reportUtil;
 	
 	@Autowired
 	private ProfissaoRepository profissaoRepository;
 
+	@Autowired
+	private CepService cepService;
+	
+	@Autowired
+	private PessoaLoteService pessoaLoteService;
+	
+	@Lazy
+	@Autowired
+	private RelatorioCacheService relatorioCacheService;
+	
+	@Autowired
+	private ArquivamentoService arquivamentoService;
+	
+	@Autowired
+	private ArmazenamentoCurriculoService armazenamentoCurriculoService;
+	
+	@Autowired
+	private PessoaEdicaoService pessoaEdicaoService;
+	
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+	
+	@Autowired
+	private FragmentosService fragmentosService;
+	
+	// Edição grava só as colunas alteradas (false: merge da pessoa inteira, como no cadastro)
+	@Value("${app.pessoa.atualizacao-parcial:true}")
+	private boolean atualizacaoParcial;
+	
+	// Máximo de pessoas arquivadas listadas na pesquisa com "incluir arquivadas"
+	private static final int LIMITE_ARQUIVADAS = 50;
+
 	
 	/**  O código abaixo trata-se de uma requisição HTTP GET para a URL "/cadastropessoa" e retorna uma visualização (view) chamada 
 	 * "cadastro/cadastropessoa" usando o objeto ModelAndView.
@@ -77,7 +125,7 @@ public class PessoaController {
 		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
 		modelAndView.addObject("pessoaobj", new Pessoa());
 		
-		modelAndView.addObject("pessoas", pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
 		modelAndView.addObject("profissoes", profissaoRepository.findAll());
 		
 		return modelAndView;
@@ -163,11 +211,16 @@ public class PessoaController {
 		System.out.println("Gera o nome do arquivo upload:" + file.getOriginalFilename());
 		
 		pessoa.setTelefones(telefoneRepository.getTelefones(pessoa.getId()));
-		
+
+		// Valida o CEP contra a mesma base local usada na consulta "/cep/{cep}"
+		if(!cepService.isValido(pessoa.getCep())) {
+			bindingResult.rejectValue("cep", "cep.invalido", "CEP inválido ou não encontrado!");
+		}
+
 		if(bindingResult.hasErrors()) {
 			ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
 			
-			modelAndView.addObject("pessoas", pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome"))));
+			modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
 			modelAndView.addObject("pessoaobj",pessoa);
 			
 			List<String> msg = new ArrayList<String>();
@@ -181,24 +234,34 @@ public class PessoaController {
 			return modelAndView;
 		}
 		
+		// Edição: grava só as colunas alteradas, sem ler o currículo gravado (PessoaEdicaoService)
+		if(atualizacaoParcial && pessoa.getId() != null && pessoa.getId() > 0 
+				&& pessoaEdicaoService.atualizarAlterados(pessoa, file.getSize() > 0 ? file.getBytes() : null, file.getContentType(), file.getOriginalFilename())) {
+			
+			return telaAposSalvar();
+		}
+		
 		/* verifica se o tamanho do arquivo é maior que zero e, se for verdadeiro, atribui os bytes do arquivo à propriedade curriculo de um objeto pessoa.*/
 		if(file.getSize() > 0) {
-			pessoa.setCurriculo(file.getBytes());
+			armazenamentoCurriculoService.armazenar(pessoa, file.getBytes(), file.getOriginalFilename()); // comprimido quando compensa
 			pessoa.setTipoFileCurriculo(file.getContentType());
 			pessoa.setNomeFileCurriculo(file.getOriginalFilename());
 			
 		}else if(pessoa.getId() != null && pessoa.getId() > 0){ //Essa condição é para manter o curriculo persistido no banco caso o usuario seja editado - verifica se o objeto `pessoa` já possui um ID válido (ou seja, já existe no banco de dados). Essa condição indica que estamos editando uma pessoa existente em vez de criar uma nova.
 			Pessoa pessoaTemp = pessoaRepository.findById(pessoa.getId()).get();
-			pessoa.setCurriculo(pessoaTemp.getCurriculo());
-			pessoa.setTipoFileCurriculo(pessoaTemp.getTipoFileCurriculo());
-			pessoa.setNomeFileCurriculo(pessoaTemp.getNomeFileCurriculo());
+			ArmazenamentoCurriculoService.copiar(pessoaTemp, pessoa); // como está gravado, junto com o codec e os tamanhos
 		}
 		
 		pessoaRepository.save(pessoa);
 		
+		return telaAposSalvar();
+	}
+	
+	private ModelAndView telaAposSalvar() {
+		
 		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
 		
-		modelAndView.addObject("pessoas", pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
 		modelAndView.addObject("pessoaobj", new Pessoa());
 
 		return modelAndView;
@@ -234,7 +297,7 @@ public class PessoaController {
 
 		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
 
-		modelAndView.addObject("pessoas", pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
 		modelAndView.addObject("pessoaobj", new Pessoa());
 
 		return modelAndView;
@@ -312,16 +375,117 @@ public class PessoaController {
 	@GetMapping("/removerpessoa/{idpessoa}")
 	public ModelAndView excluir(@PathVariable("idpessoa") Long idpessoa) {
 
-		pessoaRepository.deleteById(idpessoa);
+		// DELETE direto de telefones e pessoa, sem carregar a entidade e o currículo
+		pessoaLoteService.excluir(Collections.singletonList(idpessoa));
 
 		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
-		modelAndView.addObject("pessoas", pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
 		modelAndView.addObject("pessoaobj", new Pessoa());
 
 		return modelAndView;
 	}
 	
 	
+	/**
+	 * Exclui de uma vez as pessoas marcadas na tabela (checkbox "ids"), com os mesmos DELETE em conjunto do método acima.
+	 * */
+
+	@PostMapping("/removerpessoas")
+	public ModelAndView excluirSelecionadas(@RequestParam(value = "ids", required = false) List<Long> ids) {
+
+		List<String> msg = new ArrayList<String>();
+
+		if (ids == null || ids.isEmpty()) {
+			msg.add("Nenhuma pessoa selecionada!");
+		} else {
+			int excluidas = 0;
+			
+			// Cada fragmento exclui as suas, na sua transação
+			for (Map.Entry<Integer, List<Long>> grupo : mapaFragmentos.porFragmento(ids).entrySet()) {
+				excluidas += fragmentosService.executar(grupo.getKey(), () -> pessoaLoteService.excluir(grupo.getValue()));
+			}
+			
+			msg.add(excluidas + " pessoa(s) excluída(s).");
+		}
+
+		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoaobj", new Pessoa());
+		modelAndView.addObject("msg", msg);
+
+		return modelAndView;
+	}
+	
+	
+	/**
+	 * Troca cargo e/ou profissão de várias pessoas com UPDATE em lote: as marcadas na tabela (escopo "selecionadas") ou todas as
+	 * encontradas pela pesquisa atual (escopo "pesquisa": nome, sexo e currículo, recusado sem nenhum critério). Campo vazio mantém
+	 * o valor de cada pessoa.
+	 * */
+
+	@PostMapping("/alterarpessoas")
+	public ModelAndView alterarSelecionadas(@RequestParam(value = "ids", required = false) List<Long> ids,
+			@RequestParam(value = "escopo", defaultValue = "selecionadas") String escopo,
+			@RequestParam(value = "cargo", required = false) Cargo cargo,
+			@RequestParam(value = "profissao", required = false) Long profissao,
+			@RequestParam(value = "nomepesquisa", required = false) String nomepesquisa,
+			@RequestParam(value = "sexopesquisa", required = false) String sexopesquisa,
+			@RequestParam(value = "curriculopesquisa", required = false) String curriculopesquisa) {
+
+		List<String> msg = new ArrayList<String>();
+		FiltroPesquisaPessoa filtro = filtroPesquisa(nomepesquisa, sexopesquisa, curriculopesquisa);
+
+		try {
+			if (cargo == null && profissao == null) {
+				msg.add("Informe o cargo e/ou a profissão!");
+			} else if ("pesquisa".equals(escopo) && filtro.isVazio()) {
+				// Sem pesquisa ativa "todas da pesquisa" seriam todas as pessoas do cadastro
+				msg.add("Faça uma pesquisa antes de alterar todas as pessoas da pesquisa!");
+			} else if ("pesquisa".equals(escopo)) {
+				PessoaLoteService.ResultadoLote resultado = new PessoaLoteService.ResultadoLote();
+				fragmentosService.executarTodos(f -> pessoaLoteService.alterarCargoProfissao(filtro, cargo, profissao))
+						.forEach(resultado::somar);
+				msg.add(resultado.getAlteradas() + " de " + resultado.getSelecionadas() + " pessoa(s) da pesquisa alterada(s).");
+			} else if (ids == null || ids.isEmpty()) {
+				msg.add("Nenhuma pessoa selecionada!");
+			} else {
+				PessoaLoteService.ResultadoLote resultado = new PessoaLoteService.ResultadoLote();
+				
+				for (Map.Entry<Integer, List<Long>> grupo : mapaFragmentos.porFragmento(ids).entrySet()) {
+					resultado.somar(fragmentosService.executar(grupo.getKey(),
+							() -> pessoaLoteService.alterarCargoProfissao(grupo.getValue(), cargo, profissao)));
+				}
+				msg.add(resultado.getAlteradas() + " de " + resultado.getSelecionadas() + " pessoa(s) selecionada(s) alterada(s).");
+			}
+		} catch (IllegalArgumentException e) { // profissão inexistente
+			msg.add(e.getMessage());
+		}
+
+		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoaobj", new Pessoa());
+		modelAndView.addObject("profissoes", profissaoRepository.findAll());
+		modelAndView.addObject("nomepesquisa", nomepesquisa);
+		modelAndView.addObject("sexopesquisa", sexopesquisa);
+		modelAndView.addObject("curriculopesquisa", curriculopesquisa);
+		modelAndView.addObject("msg", msg);
+
+		return modelAndView;
+	}
+
+	// Critérios da pesquisa da tela (nome, sexo e palavras do currículo), os mesmos em todas as ações que dependem dela
+	private static FiltroPesquisaPessoa filtroPesquisa(String nomepesquisa, String sexopesquisa, String curriculopesquisa) {
+
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(nomepesquisa, sexopesquisa);
+
+		if (curriculopesquisa != null && !curriculopesquisa.trim().isEmpty()) {
+			filtro.setCurriculo(curriculopesquisa);
+		}
+
+		return filtro;
+	}
+	
+	
 	/**
 	 * O método abaixo é responsável por lidar com a pesquisa de pessoas com base em critérios específicos, como o nome e o sexo, usando paginação. Vamos entender o que cada parte do script faz:
 	 * 1. `@PostMapping("doisasteristicos/pesquisarpessoa")`: Essa é a anotação que mapeia o método para lidar com requisições POST para o endpoint "/pesquisarpessoa".
@@ -362,12 +526,18 @@ public class PessoaController {
 	@PostMapping("**/pesquisarpessoa")
 	public ModelAndView pesquisar(@RequestParam("nomepesquisa") String nomepesquisa, 
 			@RequestParam("sexopesquisa") String sexopesquisa, 
+			@RequestParam(value = "incluirarquivadas", defaultValue = "false") boolean incluirarquivadas,
+			@RequestParam(value = "curriculopesquisa", required = false) String curriculopesquisa,
 			@PageableDefault(size = 5, sort= {"nome"}) Pageable pageable) {
 		
 		Page<Pessoa> pessoas = null;
 		
-		// Se estiver o sexo informado
-		if(sexopesquisa != null && !sexopesquisa.isEmpty() ) {
+		// Palavras do currículo: mesmo filtro de nome/sexo mais a subconsulta no índice de texto dos currículos
+		if(curriculopesquisa != null && !curriculopesquisa.trim().isEmpty()) {
+			FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(nomepesquisa, sexopesquisa);
+			filtro.setCurriculo(curriculopesquisa);
+			pessoas = pessoaRepository.pesquisar(filtro, pageable);
+		}else if(sexopesquisa != null && !sexopesquisa.isEmpty() ) { // Se estiver o sexo informado
 			pessoas = pessoaRepository.findPessoaBySexoPage(nomepesquisa, sexopesquisa, pageable);
 		}else {
 			pessoas = pessoaRepository.findPessoaByNamePage(nomepesquisa, pageable);
@@ -377,11 +547,45 @@ public class PessoaController {
 		modelAndView.addObject("pessoas", pessoas);
 		modelAndView.addObject("pessoaobj", new Pessoa());
 		modelAndView.addObject("nomepesquisa", nomepesquisa); // para manter em tela
+		modelAndView.addObject("sexopesquisa", sexopesquisa);
+		modelAndView.addObject("curriculopesquisa", curriculopesquisa);
+		
+		// As pessoas arquivadas (sem alteração há muito tempo) só entram quando pedido, em uma lista à parte
+		if (incluirarquivadas) {
+			modelAndView.addObject("arquivadas", arquivamentoService.pesquisarArquivadas(
+					FiltroPesquisaPessoa.porNomeSexo(nomepesquisa, sexopesquisa), LIMITE_ARQUIVADAS));
+			modelAndView.addObject("incluirarquivadas", true);
+		}
 		
 		return modelAndView;
 	}
 	
 	
+	/**
+	 * Traz de volta uma pessoa arquivada (com os telefones) para o cadastro; ela conta como alterada agora e só será arquivada
+	 * de novo depois de outro período sem alteração.
+	 * */
+
+	@PostMapping("/restaurarpessoa/{idpessoa}")
+	public ModelAndView restaurar(@PathVariable("idpessoa") Long idpessoa) {
+
+		List<String> msg = new ArrayList<String>();
+
+		if (arquivamentoService.restaurar(idpessoa)) {
+			msg.add("Pessoa " + idpessoa + " restaurada.");
+		} else {
+			msg.add("Pessoa " + idpessoa + " não está arquivada!");
+		}
+
+		ModelAndView modelAndView = new ModelAndView("cadastro/cadastropessoa");
+		modelAndView.addObject("pessoas", pessoaRepository.pesquisar(new FiltroPesquisaPessoa(), PageRequest.of(0, 5, Sort.by("nome"))));
+		modelAndView.addObject("pessoaobj", new Pessoa());
+		modelAndView.addObject("msg", msg);
+
+		return modelAndView;
+	}
+	
+	
 	/**
 	 * O código abaixo trata-se de uma requisição HTTP GET para a URL "/telefones/{idpessoa}", onde "{idpessoa}" é um 
 	 * parâmetro dinâmico que representa o ID da pessoa. O método retorna uma visualização (view) chamada "cadastro/telefones" 
@@ -606,41 +810,62 @@ public class PessoaController {
 			@RequestParam("sexopesquisa") String sexopesquisa, 
 			HttpServletRequest request, HttpServletResponse response) throws Exception{
 		
-		List<Pessoa> pessoas = new ArrayList<Pessoa>();
+		// A geração é lida antes da consulta: se os dados mudarem no meio, o PDF fica guardado com a geração antiga e não é reaproveitado
+		long geracao = relatorioCacheService.getGeracao();
+		RelatorioCacheService.Entrada emCache = relatorioCacheService.buscar("pessoa", nomepesquisa, sexopesquisa, geracao);
 		
-		if(sexopesquisa != null && !sexopesquisa.isEmpty() && nomepesquisa != null && !nomepesquisa.isEmpty()) { // busca por nome e sexo
-			pessoas = pessoaRepository.findPessoaByNameSexo(nomepesquisa, sexopesquisa);
-			
-		}else if(nomepesquisa != null && !nomepesquisa.isEmpty()){ // busca por nome
-			pessoas = pessoaRepository.findPessoaByName(nomepesquisa);
-			
-		}else if(sexopesquisa != null && !sexopesquisa.isEmpty()){ // busca por sexo
-			pessoas = pessoaRepository.findPessoaBySexo(sexopesquisa);
+		if (emCache != null) {
 			
-		}else { // busca todos
-			Iterable<Pessoa> iterator = pessoaRepository.findAll();
-			
-			for (Pessoa pessoa: iterator) {
-				pessoas.add(pessoa);
+			try {
+				// O navegador já tem esta mesma versão do relatório
+				if (emCache.getEtag().equals(request.getHeader("If-None-Match"))) {
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					response.setHeader("ETag", emCache.getEtag());
+					return;
+				}
+				
+				prepararRespostaRelatorio(response, emCache);
+				relatorioCacheService.transmitir(emCache, response.getOutputStream());
+				return;
+				
+			} finally {
+				// O arquivo só pode ser apagado do cache depois de enviado
+				relatorioCacheService.liberar(emCache);
 			}
 		}
 		
-		// Chamar o serviço que faz a geração do relatorio
-		byte[] pdf = reportUtil.geraRelatorio(pessoas, "pessoa", request.getServletContext());
+		// Mesmos critérios (e mesmos índices) da pesquisa em tela; sem filtros traz todos
+		List<Pessoa> pessoas = pessoaRepository.findAll(
+				PessoaSpecification.de(FiltroPesquisaPessoa.porNomeSexo(nomepesquisa, sexopesquisa)), Sort.by("nome"));
+		
+		// Chamar o serviço que faz a geração do relatorio (listas grandes são preenchidas em blocos paralelos)
+		byte[] pdf = reportUtil.geraRelatorioPessoas(pessoas, "pessoa", request.getServletContext());
+		
+		// Guarda para as próximas requisições com a mesma pesquisa enquanto os dados não mudarem
+		RelatorioCacheService.Entrada gerado = relatorioCacheService.armazenar("pessoa", nomepesquisa, sexopesquisa, geracao, pdf);
+		
+		prepararRespostaRelatorio(response, gerado);
+		
+		// Finaliza a resposta para o navegador
+		response.getOutputStream().write(pdf);
+	}
+	
+	private void prepararRespostaRelatorio(HttpServletResponse response, RelatorioCacheService.Entrada relatorio) {
 		
 		// Tamnaho da resposta
-		response.setContentLength(pdf.length);
+		response.setContentLengthLong(relatorio.getTamanho());
 		
 		//Definir na resposta o tipo de arquivo
 		response.setContentType("application/octet-stream");
 		
+		// Permite ao navegador revalidar com If-None-Match em vez de baixar de novo
+		response.setHeader("ETag", relatorio.getEtag());
+		response.setHeader("Cache-Control", "private, no-cache");
+		
 		// Definir o cabeçalho da resposta
 		String headerKey = "Content-Disposition";
 		String headerValue = String.format("attachment; filename=\"%s\"", "relatorio.pdf");
 		response.setHeader(headerKey, headerValue);
-		
-		// Finaliza a resposta para o navegador
-		response.getOutputStream().write(pdf);
 	}
 	
 	
@@ -653,22 +878,13 @@ public class PessoaController {
 	 * 2. `public void baixarCurriculo(@PathVariable("idpessoa") Long idpessoa, HttpServletResponse response) throws IOException`: Esse é o método que será executado quando a 
 	 *     requisição for feita para o endpoint. Ele recebe como parâmetro o ID da pessoa e o objeto `HttpServletResponse`, que será usado para enviar a resposta ao cliente.
 	 *     
-	 * 3. `Pessoa pessoa = pessoaRepository.findById(idpessoa).get();`: Aqui, é feita uma consulta ao banco de dados para obter o objeto `Pessoa` correspondente ao ID informado 
-	 *     na requisição.
-	 *     
-	 * 4. `if(pessoa.getCurriculo() != null) { ... }`: Verifica se a pessoa possui um currículo. Caso tenha, o currículo será enviado como resposta para o cliente.
-	 * 
-	 * 5. `response.setContentLength(pessoa.getCurriculo().length);`: Define o tamanho da resposta, especificando o tamanho do currículo em bytes.
-	 * 
-	 * 6. `response.setContentType(pessoa.getTipoFileCurriculo());`: Define o tipo do arquivo da resposta. Isso indica ao cliente como tratar o conteúdo que está sendo enviado. 
-	 *     O tipo do arquivo é obtido do atributo `tipoFileCurriculo` do objeto `Pessoa`, que foi armazenado anteriormente no banco de dados.
+	 * 3. `armazenamentoCurriculoService.transmitir(idpessoa, response)`: Lê o currículo direto do banco, sem carregar o objeto `Pessoa` inteiro, e já define na resposta o 
+	 *     tamanho original do arquivo, o tipo (`tipoFileCurriculo`) e o cabeçalho "Content-Disposition" com o nome do arquivo (`nomeFileCurriculo`).
 	 *     
-	 * 7. `String headerKey = "Content-Disposition"; String headerValue = String.format("attachment; filename=\"%s\"", pessoa.getNomeFileCurriculo()); 
-	 *     response.setHeader(headerKey, headerValue);`: Aqui, é definido o cabeçalho da resposta, especificando o nome do arquivo que será baixado pelo cliente. O nome do 
-	 *     arquivo é obtido do atributo `nomeFileCurriculo` do objeto `Pessoa`.
+	 * 4. O conteúdo é copiado em blocos para o `getOutputStream()` da resposta. Se o currículo estiver guardado comprimido (`codecCurriculo`), ele é descomprimido 
+	 *     durante o envio, sem montar o arquivo inteiro em memória.
 	 *     
-	 * 8. `response.getOutputStream().write(pessoa.getCurriculo());`: Finalmente, o currículo é enviado como resposta para o cliente, usando o método `getOutputStream()` do 
-	 *     objeto `HttpServletResponse`.
+	 * 5. Se a pessoa não tiver currículo nada é enviado.
 	 *     
 	 * Esse endpoint é útil para permitir que os usuários da aplicação possam baixar o currículo das pessoas cadastradas no sistema. Ao fazer uma requisição para esse endpoint 
 	 * com o ID da pessoa desejada, o usuário receberá o currículo correspondente como download em seu navegador.
@@ -677,25 +893,8 @@ public class PessoaController {
 	@GetMapping("**/baixarcurriculo/{idpessoa}")
 	public void baixarCurriculo(@PathVariable("idpessoa") Long idpessoa, HttpServletResponse response) throws IOException {
 		
-		// Consultar objeto pessoa no banco de dados
-		Pessoa pessoa = pessoaRepository.findById(idpessoa).get();
-		
-		if(pessoa.getCurriculo() != null) {
-			
-			// Setar o tamanho da resposta
-			response.setContentLength(pessoa.getCurriculo().length);
-			
-			// Tipo do arquivo para o download ou pode ser genérica usando "application/octet-stream"
-			response.setContentType(pessoa.getTipoFileCurriculo());
-			
-			// Define o cabeçalho da resposta - isso é padrão
-			String headerKey = "Content-Disposition";
-			String headerValue = String.format("attachment; filename=\"%s\"", pessoa.getNomeFileCurriculo());
-			response.setHeader(headerKey, headerValue);
-			
-			// Finaliza a resposta passando o arquivo 
-			response.getOutputStream().write(pessoa.getCurriculo());
-		}
+		// Envia em fluxo, descomprimindo se o currículo estiver guardado comprimido
+		armazenamentoCurriculoService.transmitir(idpessoa, response);
 	}
 	
 	
@@ -735,13 +934,18 @@ public class PessoaController {
 	 * */
 	
 	@GetMapping("/pessoaspag")
-	public ModelAndView carregaPessoaPorPaginacao(@PageableDefault(size = 5) Pageable pageable,
-			ModelAndView model, @RequestParam("nomepesquisa") String nomepesquisa) {
+	public ModelAndView carregaPessoaPorPaginacao(@PageableDefault(size = 5, sort = {"nome"}) Pageable pageable,
+			ModelAndView model, @RequestParam("nomepesquisa") String nomepesquisa,
+			@RequestParam(value = "sexopesquisa", required = false) String sexopesquisa,
+			@RequestParam(value = "curriculopesquisa", required = false) String curriculopesquisa) {
 		
-		Page<Pessoa> pagePessoa = pessoaRepository.findPessoaByNamePage(nomepesquisa, pageable);
+		// Os mesmos filtros da pesquisa: sem eles a troca de página voltaria a listar por nome apenas
+		Page<Pessoa> pagePessoa = pessoaRepository.pesquisar(filtroPesquisa(nomepesquisa, sexopesquisa, curriculopesquisa), pageable);
 		model.addObject("pessoas", pagePessoa);
 		model.addObject("pessoaobj", new Pessoa());
 		model.addObject("nomepesquisa", nomepesquisa);
+		model.addObject("sexopesquisa", sexopesquisa);
+		model.addObject("curriculopesquisa", curriculopesquisa);
 		model.setViewName("cadastro/cadastropessoa");
 		
 		return model;
@@ -1,38 +1,367 @@
 package projeto.springboot.controller;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.ServletContext;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import net.sf.jasperreports.engine.JRBand;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JRVirtualizable;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
 import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.export.JRPdfExporter;
+import net.sf.jasperreports.engine.fill.JRAbstractLRUVirtualizer;
+import net.sf.jasperreports.engine.fill.JRFileVirtualizer;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import projeto.springboot.model.Pessoa;
 
 @Component
 public class ReportUtil implements Serializable{
 
 	private static final long serialVersionUID = 1L;
-	
+
+	// Parâmetro do relatório que esconde o título nos blocos que não são o primeiro (ver pessoa.jrxml).
+	public static final String PARAMETRO_EXIBIR_TITULO = "EXIBIR_TITULO";
+
+	// A partir desta quantidade de pessoas o relatório é preenchido em blocos paralelos.
+	@Value("${app.relatorio.paralelo.minimo-registros:5000}")
+	private int minimoRegistrosParalelo;
+
+	// Quantidade aproximada de pessoas em cada bloco preenchido por uma thread (ajustada para fechar páginas inteiras).
+	@Value("${app.relatorio.paralelo.tamanho-bloco:2000}")
+	private int tamanhoBloco;
+
+	// Threads do pool de preenchimento; 0 usa a quantidade de processadores.
+	@Value("${app.relatorio.paralelo.threads:0}")
+	private int threads;
+
+	private transient volatile ForkJoinPool pool;
+
+	/**
+	 * Virtualizador: com ele o Jasper grava em disco as páginas já preenchidas que passam do limite em memória, em vez de manter o
+	 * JasperPrint inteiro no heap até a exportação. Tipos: "swap" (um único arquivo de troca reaproveitado em blocos), "arquivo" (um
+	 * arquivo por página) ou "nenhum". Só é usado quando a lista tem pelo menos "minimo-registros" itens.
+	 * */
+	@Value("${app.relatorio.virtualizador.tipo:swap}")
+	private String tipoVirtualizador = "nenhum";
+
+	@Value("${app.relatorio.virtualizador.minimo-registros:10000}")
+	private int minimoRegistrosVirtualizador;
+
+	// Quantidade máxima de páginas mantidas em memória por relatório (no modo paralelo, somando todos os blocos).
+	@Value("${app.relatorio.virtualizador.paginas-memoria:100}")
+	private int paginasMemoria;
+
+	@Value("${app.relatorio.virtualizador.diretorio:${java.io.tmpdir}}")
+	private String diretorioVirtualizador;
+
+	private final AtomicLong relatoriosVirtualizados = new AtomicLong();
+	private final AtomicLong paginasGravadas = new AtomicLong();
+	private final AtomicLong paginasLidas = new AtomicLong();
+
+	@Autowired(required = false)
+	private transient MeterRegistry meterRegistry;
+
+	@PostConstruct
+	public void registrarMetricas() {
+
+		if (meterRegistry == null) {
+			return;
+		}
+
+		FunctionCounter.builder("relatorio.virtualizador.relatorios", relatoriosVirtualizados, AtomicLong::get)
+				.description("Relatórios preenchidos com virtualizador").register(meterRegistry);
+		FunctionCounter.builder("relatorio.virtualizador.paginas.gravadas", paginasGravadas, AtomicLong::get)
+				.description("Páginas gravadas em disco pelo virtualizador").register(meterRegistry);
+		FunctionCounter.builder("relatorio.virtualizador.paginas.lidas", paginasLidas, AtomicLong::get)
+				.description("Páginas lidas de volta do disco pelo virtualizador").register(meterRegistry);
+	}
+
 	// Retorna nosso PDF em byte para o download no navegador.
 	public byte[] geraRelatorio(List listaDados, String relatorio, ServletContext servletContext) throws Exception{
-		
-		// Cria a lista de dados para o relatorio com nossa lista de objetos para imprimir.
-		JRBeanCollectionDataSource jrbcds = new JRBeanCollectionDataSource(listaDados); 
-		
+
 		// Carregar o caminho do arquivo jasper compilado.
 		String caminhoJasper = servletContext.getRealPath("relatorios") + File.separator + relatorio + ".jasper";
-		
-		// Carrega o arquivo jasper passando os dados.
-		JasperPrint impressoraJasper = JasperFillManager.fillReport(caminhoJasper, null, jrbcds);
-		
-		// Exporta para byte[] para fazer download do PDF.
-		return JasperExportManager.exportReportToPdf(impressoraJasper);
+
+		return geraRelatorio(listaDados, caminhoJasper);
+	}
+
+	byte[] geraRelatorio(List listaDados, String caminhoJasper) throws Exception{
+
+		// Cria a lista de dados para o relatorio com nossa lista de objetos para imprimir.
+		JRBeanCollectionDataSource jrbcds = new JRBeanCollectionDataSource(listaDados);
+
+		// Para listas grandes as páginas preenchidas vão para o disco em vez de ficarem todas no heap.
+		JRAbstractLRUVirtualizer virtualizador = criarVirtualizador(listaDados.size(), paginasMemoria);
+		Map<String, Object> parametros = new HashMap<String, Object>();
+
+		if (virtualizador != null) {
+			relatoriosVirtualizados.incrementAndGet();
+			parametros.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+		}
+
+		try {
+			// Carrega o arquivo jasper passando os dados.
+			JasperPrint impressoraJasper = JasperFillManager.fillReport(caminhoJasper, parametros, jrbcds);
+
+			if (virtualizador != null) {
+				virtualizador.setReadOnly(true);
+			}
+
+			// Exporta para byte[] para fazer download do PDF.
+			return JasperExportManager.exportReportToPdf(impressoraJasper);
+
+		} finally {
+			if (virtualizador != null) {
+				virtualizador.cleanup();
+			}
+		}
+	}
+
+	/**
+	 * Escolhe entre o preenchimento normal (uma thread) e o paralelo de acordo com "app.relatorio.paralelo.minimo-registros".
+	 * */
+	public byte[] geraRelatorioPessoas(List<Pessoa> pessoas, String relatorio, ServletContext servletContext) throws Exception{
+
+		if(pessoas.size() < minimoRegistrosParalelo) {
+			return geraRelatorio(pessoas, relatorio, servletContext);
+		}
+
+		return geraRelatorioParalelo(pessoas, servletContext.getRealPath("relatorios") + File.separator + relatorio + ".jasper");
+	}
+
+	/**
+	 * Relatório de pessoas preenchido em paralelo.
+	 *
+	 * O JasperFillManager.fillReport usa uma única thread, então para listas grandes o tempo de preenchimento domina a requisição. Aqui
+	 * as pessoas são divididas, na ordem em que vieram (a da pesquisa), em blocos consecutivos de cerca de
+	 * "app.relatorio.paralelo.tamanho-bloco"; cada bloco vira um JasperPrint preenchido em uma thread do ForkJoinPool. O mesmo
+	 * JasperReport compilado é compartilhado por todos os blocos.
+	 *
+	 * Cada bloco tem exatamente as linhas de um número inteiro de páginas (ver linhasPorPagina), para que nenhum termine numa página
+	 * pela metade no meio do documento. O virtualizador, quando usado, é um só para o relatório, compartilhado pelos blocos, e o limite
+	 * de páginas em memória vale para o relatório inteiro.
+	 *
+	 * No fim, os JasperPrint são exportados em lote (SimpleExporterInput com a lista na ordem dos blocos) para um único PDF, com as
+	 * páginas numeradas em sequência no documento. O título só é impresso no primeiro bloco (parâmetro EXIBIR_TITULO).
+	 * */
+	byte[] geraRelatorioParalelo(List<Pessoa> pessoas, String caminhoJasper) throws Exception{
+
+		JasperReport relatorioCompilado = (JasperReport) JRLoader.loadObjectFromFile(caminhoJasper);
+		JRAbstractLRUVirtualizer virtualizador = criarVirtualizador(pessoas.size(), paginasMemoria);
+
+		if (virtualizador != null) {
+			relatoriosVirtualizados.incrementAndGet();
+		}
+
+		try {
+			List<JasperPrint> impressoes = preencherBlocos(pessoas, relatorioCompilado, virtualizador);
+
+			if (virtualizador != null) {
+				virtualizador.setReadOnly(true);
+			}
+
+			// Exporta todos os blocos como um único PDF.
+			ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+			JRPdfExporter exportador = new JRPdfExporter();
+			exportador.setExporterInput(SimpleExporterInput.getInstance(impressoes));
+			exportador.setExporterOutput(new SimpleOutputStreamExporterOutput(pdf));
+			exportador.exportReport();
+
+			return pdf.toByteArray();
+
+		} finally {
+			if (virtualizador != null) {
+				virtualizador.cleanup();
+			}
+		}
+	}
+
+	// Um JasperPrint por bloco, na ordem dos blocos; só o primeiro com o título
+	List<JasperPrint> preencherBlocos(List<Pessoa> pessoas, JasperReport relatorioCompilado, JRAbstractLRUVirtualizer virtualizador)
+			throws Exception{
+
+		List<ForkJoinTask<JasperPrint>> tarefas = new ArrayList<ForkJoinTask<JasperPrint>>();
+
+		int linhasPagina = linhasPorPagina(relatorioCompilado, false);
+		int paginasBloco = Math.max(1, tamanhoBloco / Math.max(1, linhasPagina));
+
+		for (int inicio = 0; inicio < pessoas.size();) {
+
+			boolean primeiroBloco = inicio == 0;
+
+			// O primeiro bloco tem o título, que ocupa parte da primeira página
+			int tamanho = linhasPagina <= 0 ? tamanhoBloco
+					: (primeiroBloco ? linhasPorPagina(relatorioCompilado, true) : linhasPagina) + linhasPagina * (paginasBloco - 1);
+
+			List<Pessoa> bloco = pessoas.subList(inicio, Math.min(inicio + tamanho, pessoas.size()));
+			inicio += bloco.size();
+
+			Map<String, Object> parametros = new HashMap<String, Object>();
+			parametros.put(PARAMETRO_EXIBIR_TITULO, primeiroBloco);
+
+			if (virtualizador != null) {
+				parametros.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+			}
+
+			tarefas.add(getPool().submit(() -> JasperFillManager.fillReport(relatorioCompilado, parametros,
+					new JRBeanCollectionDataSource(bloco))));
+		}
+
+		List<JasperPrint> impressoes = new ArrayList<JasperPrint>();
+
+		for (ForkJoinTask<JasperPrint> tarefa : tarefas) {
+			impressoes.add(tarefa.get());
+		}
+
+		return impressoes;
+	}
+
+	/**
+	 * Quantas linhas de detalhe cabem numa página: a altura útil (sem margens, cabeçalhos e rodapés, e sem o título quando ele é
+	 * impresso) dividida pela altura da banda de detalhe. Considera a banda de altura fixa, como em pessoa.jrxml; retorna 0 quando
+	 * não dá para calcular, e aí os blocos ficam com o tamanho configurado.
+	 * */
+	static int linhasPorPagina(JasperReport relatorio, boolean comTitulo) {
+
+		int detalhe = 0;
+
+		if (relatorio.getDetailSection() != null) {
+			for (JRBand banda : relatorio.getDetailSection().getBands()) {
+				detalhe += banda.getHeight();
+			}
+		}
+
+		int util = relatorio.getPageHeight() - relatorio.getTopMargin() - relatorio.getBottomMargin() - altura(relatorio.getPageHeader())
+				- altura(relatorio.getColumnHeader()) - altura(relatorio.getColumnFooter()) - altura(relatorio.getPageFooter())
+				- (comTitulo && !relatorio.isTitleNewPage() ? altura(relatorio.getTitle()) : 0);
+
+		return detalhe > 0 && util >= detalhe ? util / detalhe : 0;
+	}
+
+	private static int altura(JRBand banda) {
+		return banda == null ? 0 : banda.getHeight();
+	}
+
+	/**
+	 * Cria o virtualizador configurado, ou retorna null quando a lista é pequena ou o tipo é "nenhum". As subclasses anônimas só
+	 * contam as páginas gravadas em disco (pageOut) e lidas de volta (pageIn) para as métricas; o JasperReports declara esses métodos
+	 * com o JRVirtualizable sem tipo, então a sobrescrita também precisa dele (com JRVirtualizable<?> não compila).
+	 * */
+	JRAbstractLRUVirtualizer criarVirtualizador(int quantidadeRegistros, int maximoPaginas) {
+
+		if (quantidadeRegistros < minimoRegistrosVirtualizador || "nenhum".equalsIgnoreCase(tipoVirtualizador)) {
+			return null;
+		}
+
+		if ("arquivo".equalsIgnoreCase(tipoVirtualizador)) {
+			return new JRFileVirtualizer(maximoPaginas, diretorioVirtualizador) {
+				@Override
+				@SuppressWarnings("rawtypes")
+				protected void pageOut(JRVirtualizable o) throws IOException {
+					super.pageOut(o);
+					paginasGravadas.incrementAndGet();
+				}
+
+				@Override
+				@SuppressWarnings("rawtypes")
+				protected void pageIn(JRVirtualizable o) throws IOException {
+					super.pageIn(o);
+					paginasLidas.incrementAndGet();
+				}
+			};
+		}
+
+		// Arquivo de troca com blocos de 4 KB, crescendo de 100 em 100 blocos; apagado no cleanup().
+		JRSwapFile arquivoTroca = new JRSwapFile(diretorioVirtualizador, 4096, 100);
+
+		return new JRSwapFileVirtualizer(maximoPaginas, arquivoTroca, true) {
+			@Override
+			@SuppressWarnings("rawtypes")
+			protected void pageOut(JRVirtualizable o) throws IOException {
+				super.pageOut(o);
+				paginasGravadas.incrementAndGet();
+			}
+
+			@Override
+			@SuppressWarnings("rawtypes")
+			protected void pageIn(JRVirtualizable o) throws IOException {
+				super.pageIn(o);
+				paginasLidas.incrementAndGet();
+			}
+		};
+	}
+
+	public long getRelatoriosVirtualizados() {
+		return relatoriosVirtualizados.get();
+	}
+
+	public long getPaginasGravadas() {
+		return paginasGravadas.get();
+	}
+
+	public long getPaginasLidas() {
+		return paginasLidas.get();
+	}
+
+	private ForkJoinPool getPool() {
+
+		if (pool == null) {
+			synchronized (this) {
+				if (pool == null) {
+					pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+				}
+			}
+		}
+
+		return pool;
+	}
+
+	void configurarParalelo(int minimoRegistros, int tamanhoBloco, int threads) {
+		this.minimoRegistrosParalelo = minimoRegistros;
+		this.tamanhoBloco = tamanhoBloco;
+		this.threads = threads;
+	}
+
+	void configurarVirtualizador(String tipo, int minimoRegistros, int paginasMemoria, String diretorio) {
+		this.tipoVirtualizador = tipo;
+		this.minimoRegistrosVirtualizador = minimoRegistros;
+		this.paginasMemoria = paginasMemoria;
+		this.diretorioVirtualizador = diretorio;
+	}
+
+	@PreDestroy
+	public void encerrar() {
+		if (pool != null) {
+			pool.shutdown();
+		}
 	}
 
 }
@@ -0,0 +1,63 @@
+package projeto.springboot.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import projeto.springboot.model.AlteracaoTelefones;
+import projeto.springboot.model.AlteracaoTelefones.Item;
+import projeto.springboot.model.Telefone;
+import projeto.springboot.service.TelefoneService;
+
+@Controller
+public class TelefoneController {
+
+	@Autowired
+	private TelefoneService telefoneService;
+
+	/**
+	 * Edição de telefones em lote: recebe as inclusões, alterações e exclusões de uma vez (JSON no formato de AlteracaoTelefones),
+	 * aplica tudo em uma transação e devolve a lista atualizada de telefones da pessoa, sem recarregar a página.
+	 *
+	 * -> 200 com {"telefones": [...]};
+	 * -> 400 com {"msg": [...]} se algum item for inválido ou não pertencer à pessoa (nada é gravado);
+	 * -> 404 se a pessoa não existir.
+	 * */
+
+	@PostMapping("/telefones/{pessoaid}/lote")
+	@ResponseBody
+	public ResponseEntity<?> aplicarLote(@PathVariable("pessoaid") Long pessoaid, @RequestBody AlteracaoTelefones alteracao) {
+
+		List<String> msg = telefoneService.validar(alteracao);
+
+		if (!msg.isEmpty()) {
+			return ResponseEntity.badRequest().body(Collections.singletonMap("msg", msg));
+		}
+
+		Optional<List<Telefone>> telefones;
+
+		try {
+			telefones = telefoneService.aplicar(pessoaid, alteracao);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Collections.singletonMap("msg", Collections.singletonList(e.getMessage())));
+		}
+
+		if (!telefones.isPresent()) {
+			return ResponseEntity.notFound().build();
+		}
+
+		List<Item> itens = telefones.get().stream().map(Item::new).collect(Collectors.toList());
+
+		return ResponseEntity.ok(Collections.singletonMap("telefones", itens));
+	}
+
+}
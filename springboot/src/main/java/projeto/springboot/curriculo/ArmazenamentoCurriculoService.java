@@ -0,0 +1,351 @@
+package projeto.springboot.curriculo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StreamUtils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Guarda os currículos comprimidos quando compensa. DOC, TXT, RTF e PDFs sem compressão interna chegam a encolher bastante; o
+ * codec é o Deflater do próprio JDK no nível mais rápido (BEST_SPEED), que comprime na velocidade do upload sem dependência nova.
+ * O arquivo só é guardado comprimido se ficar pelo menos "app.curriculo.compressao.ganho-minimo" menor; formatos que já são
+ * comprimidos (DOCX, ZIP, imagens...) nem são tentados. O codec e os tamanhos original e armazenado ficam na própria pessoa
+ * (codec_curriculo, tamanho_curriculo, tamanho_armazenado_curriculo).
+ *
+ * O download lê o large object em fluxo e descomprime enquanto envia, sem montar o arquivo inteiro em memória. A conexão com o
+ * banco fica presa durante o envio; a quantidade de downloads simultâneos é limitada pelo controle de admissão (DOWNLOAD).
+ *
+ * Os currículos gravados antes (codec_curriculo nulo) são avaliados por uma recompressão periódica em lotes de
+ * "app.curriculo.compressao.tamanho-lote", com "app.curriculo.compressao.pausa-ms" entre um lote e outro. Ela troca o large
+ * object sem mexer em data_atualizacao nem publicar eventos (o conteúdo do arquivo não muda) e acompanha o oid no índice de texto
+ * (curriculo_indice) para o arquivo não ser extraído de novo. Cada currículo é tratado na sua própria transação: um que não
+ * possa ser lido ou gravado fica com o codec "erro" (guardado como estava, sem compressão) e o lote segue com os demais. Os
+ * fragmentos (MapaFragmentos) são percorridos um de cada vez.
+ * */
+@Service
+public class ArmazenamentoCurriculoService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ArmazenamentoCurriculoService.class);
+
+	public static final String CODEC_DEFLATE = "deflate";
+	public static final String CODEC_NENHUM = "nenhum";
+	public static final String CODEC_ERRO = "erro";
+
+	private static final Set<String> JA_COMPRIMIDOS = new HashSet<String>(Arrays.asList("docx", "xlsx", "pptx", "odt", "ods", "zip",
+			"gz", "7z", "rar", "jpg", "jpeg", "png", "gif", "webp"));
+
+	private static final String SQL_DOWNLOAD = "SELECT curriculo, codec_curriculo, tamanho_curriculo, tipo_file_curriculo, "
+			+ "nome_file_curriculo FROM pessoa WHERE id = ?";
+
+	private static final String SQL_PENDENTES = "SELECT id FROM pessoa WHERE curriculo IS NOT NULL AND codec_curriculo IS NULL "
+			+ "AND id > ? ORDER BY id LIMIT ?";
+
+	// Travada só durante a recompressão dela; SKIP LOCKED para outro nó (ou quem estiver editando a pessoa) não ser esperado
+	private static final String SQL_PENDENTE = "SELECT curriculo, nome_file_curriculo FROM pessoa WHERE id = ? AND curriculo IS NOT NULL "
+			+ "AND codec_curriculo IS NULL FOR UPDATE SKIP LOCKED";
+
+	private static final String SQL_TROCA = "UPDATE pessoa SET curriculo = lo_from_bytea(0, ?), codec_curriculo = ?, "
+			+ "tamanho_curriculo = ?, tamanho_armazenado_curriculo = ? WHERE id = ? AND curriculo = CAST(? AS oid) RETURNING curriculo";
+
+	private static final String SQL_ESTATISTICAS = "SELECT COALESCE(codec_curriculo, 'pendente'), count(*), sum(tamanho_curriculo), "
+			+ "sum(tamanho_armazenado_curriculo) FROM pessoa WHERE curriculo IS NOT NULL GROUP BY codec_curriculo";
+
+	@Value("${app.curriculo.compressao.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.curriculo.compressao.ganho-minimo:0.1}")
+	private double ganhoMinimo;
+
+	@Value("${app.curriculo.compressao.tamanho-lote:50}")
+	private int tamanhoLote;
+
+	@Value("${app.curriculo.compressao.pausa-ms:100}")
+	private long pausaMs;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private TransactionTemplate transacao;
+	private TransactionTemplate leitura;
+
+	private final AtomicLong bytesOriginais = new AtomicLong();
+	private final AtomicLong bytesArmazenados = new AtomicLong();
+	private final AtomicLong recomprimidos = new AtomicLong();
+
+	@PostConstruct
+	public void iniciar() {
+
+		transacao = new TransactionTemplate(transactionManager);
+		leitura = new TransactionTemplate(transactionManager);
+		leitura.setReadOnly(true);
+
+		if (meterRegistry != null) {
+			FunctionCounter.builder("curriculo.armazenamento.bytes.originais", bytesOriginais, AtomicLong::get)
+					.description("Bytes de currículos recebidos ou avaliados, antes da compressão").register(meterRegistry);
+			FunctionCounter.builder("curriculo.armazenamento.bytes.armazenados", bytesArmazenados, AtomicLong::get)
+					.description("Bytes efetivamente gravados para os mesmos currículos").register(meterRegistry);
+			Gauge.builder("curriculo.armazenamento.razao", this, s -> s.bytesOriginais.get() == 0 ? 1.0
+					: (double) s.bytesArmazenados.get() / s.bytesOriginais.get())
+					.description("Bytes armazenados / bytes originais dos currículos desde a subida").register(meterRegistry);
+			FunctionCounter.builder("curriculo.armazenamento.recomprimidos", recomprimidos, AtomicLong::get)
+					.description("Currículos antigos avaliados pela recompressão periódica").register(meterRegistry);
+		}
+	}
+
+	/** Coloca o arquivo enviado na pessoa, comprimido se compensar, com o codec e os tamanhos. */
+	public void armazenar(Pessoa pessoa, byte[] conteudo, String nomeArquivo) {
+
+		byte[] comprimido = habilitado ? comprimir(conteudo, nomeArquivo) : null;
+
+		pessoa.setCurriculo(comprimido != null ? comprimido : conteudo);
+		pessoa.setCodecCurriculo(comprimido != null ? CODEC_DEFLATE : CODEC_NENHUM);
+		pessoa.setTamanhoCurriculo((long) conteudo.length);
+		pessoa.setTamanhoArmazenadoCurriculo((long) pessoa.getCurriculo().length);
+
+		contabilizar(conteudo.length, pessoa.getCurriculo().length);
+	}
+
+	/** Mantém o currículo já gravado de "anterior" (edição sem novo upload), sem descomprimir nem recomprimir. */
+	public static void copiar(Pessoa anterior, Pessoa pessoa) {
+		pessoa.setCurriculo(anterior.getCurriculo());
+		pessoa.setTipoFileCurriculo(anterior.getTipoFileCurriculo());
+		pessoa.setNomeFileCurriculo(anterior.getNomeFileCurriculo());
+		pessoa.setCodecCurriculo(anterior.getCodecCurriculo());
+		pessoa.setTamanhoCurriculo(anterior.getTamanhoCurriculo());
+		pessoa.setTamanhoArmazenadoCurriculo(anterior.getTamanhoArmazenadoCurriculo());
+	}
+
+	/** null quando não compensa (ou o formato já é comprimido). */
+	byte[] comprimir(byte[] conteudo, String nomeArquivo) {
+
+		if (conteudo.length == 0 || JA_COMPRIMIDOS.contains(extensao(nomeArquivo))) {
+			return null;
+		}
+
+		ByteArrayOutputStream saida = new ByteArrayOutputStream(conteudo.length / 2);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try (DeflaterOutputStream compressor = new DeflaterOutputStream(saida, deflater)) {
+			compressor.write(conteudo);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			deflater.end();
+		}
+
+		return saida.size() <= conteudo.length * (1 - ganhoMinimo) ? saida.toByteArray() : null;
+	}
+
+	/** Conteúdo original a partir do que está gravado; codec nulo, "nenhum" ou "erro" é o próprio arquivo. */
+	public static InputStream descomprimir(InputStream armazenado, String codec) {
+		return CODEC_DEFLATE.equals(codec) ? new InflaterInputStream(armazenado) : armazenado;
+	}
+
+	/** Envia o currículo da pessoa na resposta; false se ela não existir ou não tiver currículo. */
+	public boolean transmitir(Long idPessoa, HttpServletResponse response) {
+
+		Boolean enviado = leitura.execute(status -> jdbcTemplate.query(SQL_DOWNLOAD, rs -> {
+
+			if (!rs.next() || rs.getObject(1) == null) {
+				return false;
+			}
+
+			Blob blob = rs.getBlob(1);
+			long tamanho = rs.getLong(3);
+
+			// Gravados antes da compressão não têm o tamanho original, mas estão sem compressão
+			response.setContentLengthLong(rs.wasNull() ? blob.length() : tamanho);
+			response.setContentType(rs.getString(4));
+			response.setHeader("Content-Disposition", String.format("attachment; filename=\"%s\"", rs.getString(5)));
+
+			try (InputStream entrada = descomprimir(blob.getBinaryStream(), rs.getString(2))) {
+				OutputStream saida = response.getOutputStream();
+				StreamUtils.copy(entrada, saida);
+				saida.flush();
+			} catch (IOException e) {
+				throw new SQLException("Falha ao enviar o currículo da pessoa " + idPessoa, e);
+			}
+
+			return true;
+		}, idPessoa));
+
+		return Boolean.TRUE.equals(enviado);
+	}
+
+	@Scheduled(fixedDelayString = "${app.curriculo.compressao.intervalo-ms:600000}", initialDelayString = "${app.curriculo.compressao.intervalo-ms:600000}")
+	public void recomprimirAntigos() {
+
+		if (!habilitado) {
+			return;
+		}
+
+		for (int fragmento = 0; fragmento < mapaFragmentos.quantidade() && !Thread.currentThread().isInterrupted(); fragmento++) {
+			ContextoFragmento.em(fragmento, () -> {
+				recomprimirFragmento();
+				return null;
+			});
+		}
+	}
+
+	// Fragmento da thread corrente; a transação de cada currículo pega a conexão dele
+	private void recomprimirFragmento() {
+
+		try {
+			long ultimo = 0;
+			List<Long> pendentes;
+
+			// O lote anda pelo id: uma pessoa que falhou (ou estava travada) não é pega de novo nesta execução
+			do {
+				pendentes = jdbcTemplate.queryForList(SQL_PENDENTES, Long.class, ultimo, tamanhoLote);
+
+				for (Long id : pendentes) {
+					recomprimir(id);
+					ultimo = id;
+				}
+
+				Thread.sleep(pausaMs);
+			} while (pendentes.size() == tamanhoLote);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.warn("Falha na recompressão dos currículos do fragmento " + ContextoFragmento.atual(), e);
+		}
+	}
+
+	// Uma transação por currículo: a falha de um não desfaz os já recomprimidos nem impede os seguintes. Se nem a marcação com
+	// "erro" puder ser gravada o problema é o banco, não o arquivo, e a exceção encerra esta execução.
+	private void recomprimir(Long id) {
+
+		try {
+			transacao.execute(status -> {
+				recomprimirPessoa(id);
+				return null;
+			});
+		} catch (RuntimeException e) {
+			logger.warn("Não foi possível recomprimir o currículo da pessoa " + id + "; marcado com o codec \"" + CODEC_ERRO + "\"", e);
+			jdbcTemplate.update("UPDATE pessoa SET codec_curriculo = ? WHERE id = ? AND codec_curriculo IS NULL", CODEC_ERRO, id);
+		}
+	}
+
+	private void recomprimirPessoa(Long id) {
+
+		List<Map<String, Object>> pendente = jdbcTemplate.queryForList(SQL_PENDENTE, id);
+
+		// Já avaliada, sem currículo ou travada por outro nó
+		if (pendente.isEmpty()) {
+			return;
+		}
+
+		long oid = ((Number) pendente.get(0).get("curriculo")).longValue();
+
+		byte[] conteudo = jdbcTemplate.query("SELECT curriculo FROM pessoa WHERE id = ?", rs -> {
+			rs.next();
+			try (InputStream entrada = rs.getBlob(1).getBinaryStream()) {
+				return StreamUtils.copyToByteArray(entrada);
+			} catch (IOException e) {
+				throw new SQLException("Falha ao ler o currículo da pessoa " + id, e);
+			}
+		}, id);
+
+		byte[] comprimido = comprimir(conteudo, (String) pendente.get(0).get("nome_file_curriculo"));
+
+		if (comprimido == null) {
+			jdbcTemplate.update("UPDATE pessoa SET codec_curriculo = ?, tamanho_curriculo = ?, tamanho_armazenado_curriculo = ? "
+					+ "WHERE id = ?", CODEC_NENHUM, conteudo.length, conteudo.length, id);
+			contabilizar(conteudo.length, conteudo.length);
+		} else {
+			Long novo = jdbcTemplate.queryForObject(SQL_TROCA, Long.class, comprimido, CODEC_DEFLATE, conteudo.length,
+					comprimido.length, id, oid);
+
+			jdbcTemplate.query("SELECT lo_unlink(CAST(? AS oid))", rs -> {
+			}, oid);
+			jdbcTemplate.update("UPDATE curriculo_indice SET curriculo_oid = CAST(? AS oid) WHERE pessoa_id = ? "
+					+ "AND curriculo_oid = CAST(? AS oid)", novo, id, oid);
+			contabilizar(conteudo.length, comprimido.length);
+		}
+
+		recomprimidos.incrementAndGet();
+	}
+
+	/** Por codec ("deflate", "nenhum", "erro" e "pendente" para os ainda não avaliados): quantidade, bytes originais e armazenados. */
+	public List<Map<String, Object>> estatisticas() {
+
+		List<Map<String, Object>> linhas = new ArrayList<Map<String, Object>>();
+
+		jdbcTemplate.query(SQL_ESTATISTICAS, rs -> {
+
+			Map<String, Object> linha = new LinkedHashMap<String, Object>();
+			long originais = rs.getLong(3);
+			long armazenados = rs.getLong(4);
+
+			linha.put("codec", rs.getString(1));
+			linha.put("quantidade", rs.getLong(2));
+			linha.put("bytesOriginais", originais);
+			linha.put("bytesArmazenados", armazenados);
+			linha.put("razao", originais == 0 ? null : (double) armazenados / originais);
+			linhas.add(linha);
+		});
+
+		return linhas;
+	}
+
+	private void contabilizar(long original, long armazenado) {
+		bytesOriginais.addAndGet(original);
+		bytesArmazenados.addAndGet(armazenado);
+	}
+
+	private static String extensao(String nomeArquivo) {
+
+		if (nomeArquivo == null || nomeArquivo.lastIndexOf('.') < 0) {
+			return "";
+		}
+
+		return nomeArquivo.substring(nomeArquivo.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,153 @@
+package projeto.springboot.curriculo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+/**
+ * Extrai o texto de um currículo para o índice de pesquisa. Formato reconhecido pelo tipo do upload ou, se ele vier genérico
+ * (application/octet-stream), pela extensão do nome:
+ *  -> PDF: PDFBox;
+ *  -> DOCX: o word/document.xml de dentro do zip, lido por StAX (só o texto dos parágrafos, sem estilos);
+ *  -> TXT: UTF-8 e, se não for UTF-8 válido, ISO-8859-1.
+ *
+ * Outros formatos (DOC, RTF, imagens...) devolvem null: o currículo fica registrado como não indexável e não é tentado de novo
+ * enquanto não mudar. O texto é cortado em "maximoCaracteres".
+ * */
+final class ExtratorTexto {
+
+	private static final XMLInputFactory XML = XMLInputFactory.newInstance();
+
+	static {
+		XML.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private ExtratorTexto() {
+	}
+
+	static String extrair(byte[] conteudo, String tipo, String nome, int maximoCaracteres) throws IOException {
+
+		String texto;
+
+		switch (formato(tipo, nome)) {
+		case "pdf":
+			texto = pdf(conteudo);
+			break;
+		case "docx":
+			texto = docx(conteudo);
+			break;
+		case "txt":
+			texto = txt(conteudo);
+			break;
+		default:
+			return null;
+		}
+
+		// O PostgreSQL não aceita o caractere nulo em text
+		texto = texto.replace('\u0000', ' ').trim();
+
+		return texto.length() > maximoCaracteres ? texto.substring(0, maximoCaracteres) : texto;
+	}
+
+	static String formato(String tipo, String nome) {
+
+		String t = tipo == null ? "" : tipo.toLowerCase(Locale.ROOT);
+		String n = nome == null ? "" : nome.toLowerCase(Locale.ROOT);
+
+		if (t.equals("application/pdf") || n.endsWith(".pdf")) {
+			return "pdf";
+		} else if (t.equals("application/vnd.openxmlformats-officedocument.wordprocessingml.document") || n.endsWith(".docx")) {
+			return "docx";
+		} else if (t.startsWith("text/plain") || n.endsWith(".txt")) {
+			return "txt";
+		}
+
+		return "";
+	}
+
+	private static String pdf(byte[] conteudo) throws IOException {
+
+		try (PDDocument documento = PDDocument.load(conteudo)) {
+			return new PDFTextStripper().getText(documento);
+		}
+	}
+
+	private static String docx(byte[] conteudo) throws IOException {
+
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(conteudo))) {
+
+			for (ZipEntry entrada = zip.getNextEntry(); entrada != null; entrada = zip.getNextEntry()) {
+				if (entrada.getName().equals("word/document.xml")) {
+					return textoWord(zip);
+				}
+			}
+		}
+
+		throw new IOException("DOCX sem word/document.xml");
+	}
+
+	// <w:t> tem o texto; <w:p> é parágrafo e <w:tab>/<w:br> separam palavras
+	private static String textoWord(InputStream xml) throws IOException {
+
+		StringBuilder texto = new StringBuilder();
+
+		try {
+			XMLStreamReader leitor = XML.createXMLStreamReader(xml, "UTF-8");
+			boolean emTexto = false;
+
+			while (leitor.hasNext()) {
+
+				int evento = leitor.next();
+
+				if (evento == XMLStreamConstants.START_ELEMENT) {
+					String elemento = leitor.getLocalName();
+					emTexto = elemento.equals("t");
+
+					if (elemento.equals("tab") || elemento.equals("br")) {
+						texto.append(' ');
+					}
+				} else if (evento == XMLStreamConstants.END_ELEMENT) {
+					emTexto = false;
+
+					if (leitor.getLocalName().equals("p")) {
+						texto.append('\n');
+					}
+				} else if (evento == XMLStreamConstants.CHARACTERS && emTexto) {
+					texto.append(leitor.getText());
+				}
+			}
+
+		} catch (XMLStreamException e) {
+			throw new IOException("DOCX inválido", e);
+		}
+
+		return texto.toString();
+	}
+
+	private static String txt(byte[] conteudo) {
+
+		try {
+			return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(conteudo)).toString();
+		} catch (CharacterCodingException e) {
+			return new String(conteudo, StandardCharsets.ISO_8859_1);
+		}
+	}
+
+}
@@ -0,0 +1,386 @@
+package projeto.springboot.curriculo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Índice de texto dos currículos (tabela curriculo_indice, tsvector com o dicionário "portuguese"), usado pelo filtro de
+ * pesquisa por currículo (FiltroPesquisaPessoa.curriculo).
+ *
+ * Depois do commit de uma inclusão ou alteração de pessoa o id entra na fila de um pool próprio de
+ * "app.curriculo.indice.threads" threads, limitada a "app.curriculo.indice.fila" ids: o upload nunca espera pela extração e,
+ * com a fila cheia, o id é apenas deixado para a reindexação periódica. Cada pessoa é processada só se o large object de
+ * pessoa.curriculo for diferente do registrado em curriculo_indice.curriculo_oid (o Hibernate cria outro large object quando o
+ * currículo muda), então editar só o nome ou o telefone não reprocessa o arquivo.
+ *
+ * A reindexação periódica ("app.curriculo.indice.reindexacao-ms") pega as pessoas com currículo ainda não indexado ou alterado
+ * — linhas anteriores a este índice, ids descartados com a fila cheia, alterações feitas em outro nó — em lotes de
+ * "app.curriculo.indice.tamanho-lote", com uma pausa de "app.curriculo.indice.pausa-ms" entre um currículo e outro para não
+ * disputar o banco com as telas. Pessoas excluídas ou arquivadas saem do índice pela FK com ON DELETE CASCADE.
+ *
+ * O índice fica no fragmento da pessoa (MapaFragmentos): cada id é lido e gravado no fragmento indicado por ele, e a reindexação
+ * periódica passa por todos os fragmentos, um de cada vez.
+ * */
+@Service
+public class IndiceCurriculoService {
+
+	private static final Logger logger = LoggerFactory.getLogger(IndiceCurriculoService.class);
+
+	private static final String SQL_SITUACAO = "SELECT p.curriculo, p.tipo_file_curriculo, p.nome_file_curriculo, i.curriculo_oid, "
+			+ "p.codec_curriculo "
+			+ "FROM pessoa p LEFT JOIN curriculo_indice i ON i.pessoa_id = p.id WHERE p.id = ?";
+
+	// Só grava se o currículo ainda for o que foi lido: uma troca no meio do processamento não é sobrescrita pelo texto antigo
+	private static final String SQL_GRAVACAO = "INSERT INTO curriculo_indice (pessoa_id, curriculo_oid, documento, caracteres, erro, "
+			+ "data_indexacao) SELECT p.id, p.curriculo, to_tsvector('portuguese', ?), ?, ?, now() FROM pessoa p "
+			+ "WHERE p.id = ? AND p.curriculo = CAST(? AS oid) ON CONFLICT (pessoa_id) DO UPDATE SET curriculo_oid = EXCLUDED.curriculo_oid, "
+			+ "documento = EXCLUDED.documento, caracteres = EXCLUDED.caracteres, erro = EXCLUDED.erro, data_indexacao = EXCLUDED.data_indexacao";
+
+	private static final String SQL_PENDENTES = "SELECT p.id FROM pessoa p LEFT JOIN curriculo_indice i ON i.pessoa_id = p.id "
+			+ "WHERE p.curriculo IS NOT NULL AND (i.pessoa_id IS NULL OR i.curriculo_oid <> p.curriculo) ORDER BY p.id LIMIT ?";
+
+	private static final String SQL_SEM_CURRICULO = "DELETE FROM curriculo_indice i USING pessoa p WHERE p.id = i.pessoa_id "
+			+ "AND p.curriculo IS NULL";
+
+	private static final String SQL_SEM_CURRICULO_PESSOA = SQL_SEM_CURRICULO + " AND p.id = ?";
+
+	private static final int TAMANHO_MAXIMO_ERRO = 255;
+
+	@Value("${app.curriculo.indice.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.curriculo.indice.threads:2}")
+	private int threads;
+
+	@Value("${app.curriculo.indice.fila:1000}")
+	private int capacidadeFila;
+
+	@Value("${app.curriculo.indice.tamanho-maximo-bytes:10485760}")
+	private long tamanhoMaximoBytes;
+
+	@Value("${app.curriculo.indice.maximo-caracteres:200000}")
+	private int maximoCaracteres;
+
+	@Value("${app.curriculo.indice.tamanho-lote:100}")
+	private int tamanhoLote;
+
+	@Value("${app.curriculo.indice.pausa-ms:200}")
+	private long pausaMs;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	private ThreadPoolExecutor executor;
+	private TransactionTemplate leitura;
+
+	// Ids já na fila: vários eventos da mesma pessoa antes do processamento viram uma única tarefa
+	private final Set<Long> enfileirados = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong indexados = new AtomicLong();
+	private final AtomicLong inalterados = new AtomicLong();
+	private final AtomicLong descartados = new AtomicLong();
+	private final AtomicLong falhas = new AtomicLong();
+
+	@PostConstruct
+	public void iniciar() {
+
+		leitura = new TransactionTemplate(transactionManager);
+		leitura.setReadOnly(true);
+
+		AtomicInteger numero = new AtomicInteger();
+
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacidadeFila),
+				r -> {
+					Thread thread = new Thread(r, "indice-curriculo-" + numero.incrementAndGet());
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+
+		if (meterRegistry != null) {
+			Gauge.builder("curriculo.indice.fila", executor, e -> e.getQueue().size())
+					.description("Currículos aguardando extração de texto").register(meterRegistry);
+			FunctionCounter.builder("curriculo.indice.indexados", indexados, AtomicLong::get)
+					.description("Currículos com texto extraído e gravado no índice").register(meterRegistry);
+			FunctionCounter.builder("curriculo.indice.inalterados", inalterados, AtomicLong::get)
+					.description("Alterações de pessoa sem troca de currículo (nada a reprocessar)").register(meterRegistry);
+			FunctionCounter.builder("curriculo.indice.descartados", descartados, AtomicLong::get)
+					.description("Currículos deixados para a reindexação periódica com a fila cheia").register(meterRegistry);
+			FunctionCounter.builder("curriculo.indice.falhas", falhas, AtomicLong::get)
+					.description("Currículos que não puderam ser lidos ou gravados no índice").register(meterRegistry);
+		}
+	}
+
+	@PreDestroy
+	public void encerrar() {
+		executor.shutdownNow();
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterar(EventoAlteracao evento) {
+
+		// Exclusões saem do índice pelo ON DELETE CASCADE
+		if (!habilitado || !evento.isEntidade(Pessoa.class) || evento.getOperacao() == Operacao.EXCLUSAO) {
+			return;
+		}
+
+		// Alterações em lote (cargo/profissão) não trazem o currículo na fotografia e não podem tê-lo trocado
+		if (evento.getOperacao() == Operacao.ATUALIZACAO && !evento.getAtual().containsKey("curriculo")) {
+			return;
+		}
+
+		enfileirar(evento.getId());
+	}
+
+	void enfileirar(Long id) {
+
+		if (id == null || !enfileirados.add(id)) {
+			return;
+		}
+
+		try {
+			executor.execute(() -> {
+				enfileirados.remove(id);
+				indexar(id);
+			});
+		} catch (RejectedExecutionException e) {
+			enfileirados.remove(id);
+			descartados.incrementAndGet();
+		}
+	}
+
+	@Scheduled(fixedDelayString = "${app.curriculo.indice.reindexacao-ms:300000}", initialDelayString = "${app.curriculo.indice.reindexacao-ms:300000}")
+	public void reindexarPendentes() {
+
+		if (!habilitado) {
+			return;
+		}
+
+		for (int fragmento = 0; fragmento < mapaFragmentos.quantidade() && !Thread.currentThread().isInterrupted(); fragmento++) {
+			ContextoFragmento.em(fragmento, () -> {
+				reindexarFragmento();
+				return null;
+			});
+		}
+	}
+
+	// Fragmento da thread corrente
+	private void reindexarFragmento() {
+
+		try {
+			jdbcTemplate.update(SQL_SEM_CURRICULO);
+
+			List<Long> pendentes = jdbcTemplate.queryForList(SQL_PENDENTES, Long.class, tamanhoLote);
+
+			for (Long id : pendentes) {
+				indexar(id);
+				Thread.sleep(pausaMs);
+			}
+
+			if (!pendentes.isEmpty()) {
+				logger.info("Reindexação de currículos do fragmento " + ContextoFragmento.atual() + ": " + pendentes.size() + " processados");
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger.warn("Falha na reindexação periódica dos currículos", e);
+		}
+	}
+
+	// A thread de indexação não tem fragmento definido: quem diz onde a pessoa está é o id
+	void indexar(Long id) {
+		ContextoFragmento.em(MapaFragmentos.fragmentoDoId(id), () -> {
+			indexarNoFragmento(id);
+			return null;
+		});
+	}
+
+	private void indexarNoFragmento(Long id) {
+
+		Leitura lida;
+
+		try {
+			lida = leitura.execute(status -> ler(id));
+		} catch (Exception e) {
+			falhas.incrementAndGet();
+			logger.warn("Não foi possível ler o currículo da pessoa " + id, e);
+			return;
+		}
+
+		if (lida == null) {
+			inalterados.incrementAndGet();
+			return;
+		}
+
+		// Currículo removido: o índice sai fora da transação de leitura (somente leitura); a condição é conferida de novo no DELETE
+		if (lida.removerIndice) {
+			try {
+				jdbcTemplate.update(SQL_SEM_CURRICULO_PESSOA, id);
+			} catch (Exception e) {
+				falhas.incrementAndGet();
+				logger.warn("Não foi possível remover do índice o currículo da pessoa " + id, e);
+			}
+			return;
+		}
+
+		String texto = null;
+		String erro = null;
+
+		if (lida.conteudo == null) {
+			erro = "Arquivo maior que " + tamanhoMaximoBytes + " bytes";
+		} else {
+			try {
+				texto = ExtratorTexto.extrair(lida.conteudo, lida.tipo, lida.nome, maximoCaracteres);
+
+				if (texto == null) {
+					erro = "Formato não indexado: " + (lida.tipo != null ? lida.tipo : lida.nome);
+				}
+			} catch (Exception e) {
+				erro = "Falha na extração: " + e;
+			}
+		}
+
+		if (erro != null && erro.length() > TAMANHO_MAXIMO_ERRO) {
+			erro = erro.substring(0, TAMANHO_MAXIMO_ERRO);
+		}
+
+		try {
+			// Sem texto a linha é gravada mesmo assim (vazia, com o erro): o mesmo arquivo não é tentado de novo
+			// 0 linhas: o currículo mudou (ou a pessoa foi excluída) durante a extração; a nova versão já tem o próprio evento
+			if (jdbcTemplate.update(SQL_GRAVACAO, texto != null ? texto : "", texto != null ? texto.length() : 0, erro, id, lida.oid) > 0) {
+				indexados.incrementAndGet();
+			}
+		} catch (DataIntegrityViolationException e) {
+			// Pessoa excluída entre o SELECT e o INSERT da própria gravação
+		} catch (Exception e) {
+			falhas.incrementAndGet();
+			logger.warn("Não foi possível gravar o índice do currículo da pessoa " + id, e);
+		}
+	}
+
+	// null quando não há nada a fazer: pessoa inexistente ou currículo igual ao já indexado. O large object só é lido dentro de
+	// uma transação, por isso o conteúdo é copiado aqui e a extração (ou a remoção do índice) acontece depois, fora dela.
+	private Leitura ler(Long id) {
+
+		return jdbcTemplate.query(SQL_SITUACAO, rs -> {
+
+			if (!rs.next()) {
+				return null;
+			}
+
+			long oid = rs.getLong(1);
+			boolean semCurriculo = rs.wasNull();
+			long indexado = rs.getLong(4);
+			boolean semIndice = rs.wasNull();
+
+			if (semCurriculo) {
+
+				if (semIndice) {
+					return null;
+				}
+
+				Leitura remover = new Leitura();
+				remover.removerIndice = true;
+				return remover;
+			}
+
+			if (!semIndice && indexado == oid) {
+				return null;
+			}
+
+			Leitura lida = new Leitura();
+			lida.oid = oid;
+			lida.tipo = rs.getString(2);
+			lida.nome = rs.getString(3);
+
+			Blob blob = rs.getBlob(1);
+
+			try (InputStream entrada = ArmazenamentoCurriculoService.descomprimir(blob.getBinaryStream(), rs.getString(5))) {
+				lida.conteudo = copiar(entrada, tamanhoMaximoBytes);
+			} catch (IOException e) {
+				throw new SQLException("Falha ao ler o large object " + oid, e);
+			}
+
+			return lida;
+		}, id);
+	}
+
+	// null se passar do limite (contado depois da descompressão)
+	static byte[] copiar(InputStream entrada, long limite) throws IOException {
+
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		long total = 0;
+
+		for (int lidos = entrada.read(buffer); lidos != -1; lidos = entrada.read(buffer)) {
+
+			total += lidos;
+
+			if (total > limite) {
+				return null;
+			}
+
+			saida.write(buffer, 0, lidos);
+		}
+
+		return saida.toByteArray();
+	}
+
+	private static final class Leitura {
+
+		long oid;
+		String tipo;
+		String nome;
+		byte[] conteudo;
+		boolean removerIndice;
+
+	}
+
+}
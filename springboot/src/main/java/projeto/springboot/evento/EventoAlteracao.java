@@ -0,0 +1,103 @@
+package projeto.springboot.evento;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Evento publicado no contexto do Spring sempre que uma entidade é inserida, atualizada ou excluída.
+ *
+ * Os valores de "anterior" e "atual" são fotografias das propriedades simples da entidade, indexadas pelo nome da propriedade
+ * ("nome", "cidade", "cargo"...). Para não carregar objetos pesados no evento:
+ *  -> associações (ex.: "profissaopessoa", "pessoa") aparecem apenas pelo id da entidade associada;
+ *  -> arrays de bytes (ex.: "curriculo") aparecem pelo tamanho;
+ *  -> coleções (ex.: "telefones") não aparecem.
+ *
+ * Na inserção só existe "atual", na exclusão só existe "anterior" e na atualização existem os dois.
+ *
+ * A pessoa movida para o arquivo frio ou de volta (ArquivamentoService) chega como EXCLUSAO ou INSERCAO com "arquivamento": some ou
+ * volta para as telas e estatísticas, mas não foi excluída nem cadastrada, e as fotografias são só o resumo dela.
+ * */
+public class EventoAlteracao {
+
+	private final Class<?> entidade;
+	private final Long id;
+	private final Operacao operacao;
+	private final Map<String, Object> anterior;
+	private final Map<String, Object> atual;
+	private final boolean arquivamento;
+
+	public EventoAlteracao(Class<?> entidade, Long id, Operacao operacao, Map<String, Object> anterior, Map<String, Object> atual) {
+		this(entidade, id, operacao, anterior, atual, false);
+	}
+
+	public EventoAlteracao(Class<?> entidade, Long id, Operacao operacao, Map<String, Object> anterior, Map<String, Object> atual,
+			boolean arquivamento) {
+		this.entidade = entidade;
+		this.id = id;
+		this.operacao = operacao;
+		this.anterior = anterior != null ? anterior : Collections.<String, Object>emptyMap();
+		this.atual = atual != null ? atual : Collections.<String, Object>emptyMap();
+		this.arquivamento = arquivamento;
+	}
+
+	public Class<?> getEntidade() {
+		return entidade;
+	}
+
+	public boolean isEntidade(Class<?> tipo) {
+		return entidade.equals(tipo);
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Operacao getOperacao() {
+		return operacao;
+	}
+
+	public boolean isArquivamento() {
+		return arquivamento;
+	}
+
+	/** O que de fato aconteceu com o registro: ARQUIVAMENTO e RESTAURACAO no lugar da EXCLUSAO e da INSERCAO do arquivo frio. */
+	public Operacao getOperacaoAuditada() {
+
+		if (!arquivamento) {
+			return operacao;
+		}
+
+		return operacao == Operacao.EXCLUSAO ? Operacao.ARQUIVAMENTO : Operacao.RESTAURACAO;
+	}
+
+	public Map<String, Object> getAnterior() {
+		return anterior;
+	}
+
+	public Map<String, Object> getAtual() {
+		return atual;
+	}
+
+	/** Nomes das propriedades cujo valor mudou entre "anterior" e "atual". */
+	public Set<String> getCamposAlterados() {
+
+		Set<String> campos = new LinkedHashSet<String>(anterior.keySet());
+		campos.addAll(atual.keySet());
+		campos.removeIf(campo -> Objects.equals(anterior.get(campo), atual.get(campo)));
+
+		return campos;
+	}
+
+	public boolean isAlterado(String campo) {
+		return !Objects.equals(anterior.get(campo), atual.get(campo));
+	}
+
+	@Override
+	public String toString() {
+		return entidade.getSimpleName() + "#" + id + " " + getOperacaoAuditada();
+	}
+
+}
@@ -0,0 +1,13 @@
+package projeto.springboot.evento;
+
+/**
+ * ARQUIVAMENTO e RESTAURACAO só aparecem na auditoria (EventoAlteracao.getOperacaoAuditada): para os demais a pessoa arquivada sai
+ * como EXCLUSAO e a restaurada volta como INSERCAO.
+ * */
+public enum Operacao {
+	INSERCAO,
+	ATUALIZACAO,
+	EXCLUSAO,
+	ARQUIVAMENTO,
+	RESTAURACAO;
+}
@@ -0,0 +1,138 @@
+package projeto.springboot.evento;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ponte entre os eventos do Hibernate e os eventos do Spring.
+ *
+ * Registra-se nos eventos de pós-inserção, pós-atualização e pós-exclusão do Hibernate e republica cada um como um EventoAlteracao.
+ * Esses eventos acontecem durante o flush, ainda dentro da transação. Quem precisa reagir somente depois do commit (contadores,
+ * caches, auditoria) deve usar @TransactionalEventListener; quem precisa agrupar por transação pode usar @EventListener.
+ *
+ * OBS. Atualizações e exclusões em lote (JPQL "update"/"delete") não passam pelos eventos do Hibernate. Esses caminhos publicam o
+ * EventoAlteracao diretamente com o ApplicationEventPublisher.
+ * */
+@Component
+public class PublicadorEventosHibernate implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+	private static final long serialVersionUID = 1L;
+
+	@Autowired
+	private transient EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private transient ApplicationEventPublisher publicador;
+
+	@PostConstruct
+	public void registrar() {
+
+		EventListenerRegistry registro = entityManagerFactory.unwrap(SessionFactoryImpl.class).getServiceRegistry()
+				.getService(EventListenerRegistry.class);
+
+		registro.appendListeners(EventType.POST_INSERT, this);
+		registro.appendListeners(EventType.POST_UPDATE, this);
+		registro.appendListeners(EventType.POST_DELETE, this);
+	}
+
+	@Override
+	public void onPostInsert(PostInsertEvent event) {
+		publicar(event.getEntity(), event.getId(), Operacao.INSERCAO, null,
+				fotografia(event.getPersister(), event.getState(), event.getSession()));
+	}
+
+	@Override
+	public void onPostUpdate(PostUpdateEvent event) {
+		publicar(event.getEntity(), event.getId(), Operacao.ATUALIZACAO,
+				fotografia(event.getPersister(), event.getOldState(), event.getSession()),
+				fotografia(event.getPersister(), event.getState(), event.getSession()));
+	}
+
+	@Override
+	public void onPostDelete(PostDeleteEvent event) {
+		publicar(event.getEntity(), event.getId(), Operacao.EXCLUSAO,
+				fotografia(event.getPersister(), event.getDeletedState(), event.getSession()), null);
+	}
+
+	// Obsoleto, mas ainda abstrato no Hibernate 5.3
+	@Override
+	@SuppressWarnings("deprecation")
+	public boolean requiresPostCommitHanding(EntityPersister persister) {
+		return false;
+	}
+
+	@Override
+	public boolean requiresPostCommitHandling(EntityPersister persister) {
+		return false;
+	}
+
+	private void publicar(Object entidade, Serializable id, Operacao operacao, Map<String, Object> anterior, Map<String, Object> atual) {
+
+		Long idEntidade = id instanceof Number ? ((Number) id).longValue() : null;
+
+		publicador.publishEvent(new EventoAlteracao(entidade.getClass(), idEntidade, operacao, anterior, atual));
+	}
+
+	/** Converte o array de estado do Hibernate no mapa "propriedade -> valor" descrito em EventoAlteracao. */
+	private Map<String, Object> fotografia(EntityPersister persister, Object[] estado, EventSource sessao) {
+
+		if (estado == null) {
+			return null;
+		}
+
+		String[] nomes = persister.getPropertyNames();
+		Type[] tipos = persister.getPropertyTypes();
+		Map<String, Object> valores = new LinkedHashMap<String, Object>();
+
+		for (int i = 0; i < nomes.length; i++) {
+
+			Object valor = estado[i];
+
+			if (tipos[i].isCollectionType()) {
+				continue;
+			}
+
+			if (valor instanceof byte[]) {
+				valor = ((byte[]) valor).length;
+			} else if (valor != null && tipos[i].isEntityType()) {
+				valor = identificador((EntityType) tipos[i], valor, sessao);
+			}
+
+			valores.put(nomes[i], valor);
+		}
+
+		return valores;
+	}
+
+	private Object identificador(EntityType tipo, Object valor, EventSource sessao) {
+
+		if (valor instanceof HibernateProxy) {
+			return ((HibernateProxy) valor).getHibernateLazyInitializer().getIdentifier();
+		}
+
+		return sessao.getFactory().getMetamodel().entityPersister(tipo.getAssociatedEntityName()).getIdentifier(valor, sessao);
+	}
+
+}
@@ -0,0 +1,491 @@
+package projeto.springboot.evento;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.invalidacao.CacheInvalidavel;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Telefone;
+
+/**
+ * Envia por server-sent events (GET /alteracoes) um resumo de cada alteração de Pessoa e Telefone, depois do commit, para as telas
+ * abertas aplicarem na própria tabela sem recarregar a lista.
+ *
+ * A mensagem leva entidade, id, operação e só os campos resumidos (os que as telas mostram) que mudaram; na inserção vão todos e
+ * na exclusão nenhum. Quem assina sem "pessoa" recebe as alterações de pessoas (lista do cadastro); com "pessoa" recebe as dessa
+ * pessoa e dos seus telefones (tela de telefones).
+ *
+ * Cada conexão tem uma fila de no máximo "app.alteracoes.buffer" mensagens, esvaziada pelas threads de envio; quem grava só
+ * coloca na fila e nunca espera o navegador. Conexão lenta que deixa a fila encher é encerrada: o EventSource do navegador
+ * reconecta sozinho mandando o Last-Event-ID e recebe o que perdeu das últimas "app.alteracoes.historico" mensagens, ou um
+ * evento "recarregar" se já não dá para recuperar.
+ *
+ * O SseEmitter.send bloqueia a thread de envio enquanto o navegador não lê. Envio que passa de "app.alteracoes.envio-timeout-ms"
+ * encerra a conexão do mesmo jeito que a fila cheia e, até o servidor desistir da escrita, o pool ganha uma thread no lugar da
+ * que ficou presa: uma conexão lenta não segura as mensagens das outras.
+ *
+ * Alterações confirmadas em outros nós chegam pelo BarramentoInvalidacao só com entidade e id, e vão para as telas como operação
+ * "REMOTA", sem campos: a tela avisa que está desatualizada se mostra o registro. O dono do telefone é lido do banco; se o telefone
+ * já não existe, a mensagem vai para todas as telas de telefones. Notificações perdidas pelo barramento viram "recarregar".
+ * */
+@Service
+public class TransmissaoAlteracoesService implements CacheInvalidavel {
+
+	// Campos resumidos enviados; "profissaopessoa" e "pessoa" vão pelo id e "curriculo" só como existe/não existe
+	static final List<String> CAMPOS_PESSOA = Arrays.asList("nome", "sobrenome", "idade", "profissaopessoa", "curriculo", "cargo",
+			"sexopessoa", "cidade", "uf");
+
+	static final List<String> CAMPOS_TELEFONE = Arrays.asList("numero", "tipo", "pessoa");
+
+	private static final Object PULSO = new Object();
+	private static final Object RECARREGAR = new Object();
+
+	@Value("${app.alteracoes.buffer:100}")
+	private int buffer;
+
+	@Value("${app.alteracoes.historico:500}")
+	private int historico;
+
+	@Value("${app.alteracoes.maximo-conexoes:500}")
+	private int maximoConexoes;
+
+	@Value("${app.alteracoes.timeout-ms:1800000}")
+	private long timeoutMs;
+
+	@Value("${app.alteracoes.threads:4}")
+	private int threads;
+
+	@Value("${app.alteracoes.envio-timeout-ms:5000}")
+	private long envioTimeoutMs;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final Set<Assinante> assinantes = ConcurrentHashMap.newKeySet();
+
+	// Últimas mensagens, para quem reconecta com Last-Event-ID; o lock também ordena a inclusão de assinantes e as entregas
+	private final Deque<Mensagem> recentes = new ArrayDeque<Mensagem>();
+
+	private final AtomicLong sequencia = new AtomicLong();
+	private final AtomicLong enviadas = new AtomicLong();
+	private final AtomicLong descartados = new AtomicLong();
+
+	// Threads presas em envios que passaram do tempo, repostas no pool
+	private int presas;
+
+	private ThreadPoolExecutor envio;
+
+	@PostConstruct
+	public void iniciar() {
+
+		AtomicInteger numero = new AtomicInteger();
+		envio = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), tarefa -> {
+			Thread thread = new Thread(tarefa, "alteracoes-sse-" + numero.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		if (meterRegistry != null) {
+			Gauge.builder("alteracoes.conexoes", assinantes, Set::size).description("Telas conectadas em /alteracoes")
+					.register(meterRegistry);
+			FunctionCounter.builder("alteracoes.enviadas", enviadas, AtomicLong::get).description("Mensagens enviadas")
+					.register(meterRegistry);
+			FunctionCounter.builder("alteracoes.descartadas", descartados, AtomicLong::get)
+					.description("Conexões encerradas por fila cheia ou envio lento").register(meterRegistry);
+		}
+	}
+
+	@PreDestroy
+	public void encerrar() {
+		envio.shutdownNow();
+	}
+
+	/**
+	 * Nova conexão. "pessoa" null assina as pessoas; informado, a pessoa e os telefones dela. "ultimoId" é o Last-Event-ID da
+	 * reconexão. Retorna null quando já há "app.alteracoes.maximo-conexoes" conexões.
+	 * */
+	public SseEmitter assinar(Long pessoa, String ultimoId) {
+
+		if (assinantes.size() >= maximoConexoes) {
+			return null;
+		}
+
+		Assinante assinante = new Assinante(novoEmissor(), pessoa, buffer);
+		assinante.emissor.onCompletion(() -> assinantes.remove(assinante));
+		assinante.emissor.onTimeout(() -> assinantes.remove(assinante));
+		assinante.emissor.onError(erro -> assinantes.remove(assinante));
+
+		synchronized (recentes) {
+			reenviar(assinante, ultimoId);
+			assinantes.add(assinante);
+		}
+
+		agendar(assinante);
+
+		return assinante.emissor;
+	}
+
+	SseEmitter novoEmissor() {
+		return new SseEmitter(timeoutMs);
+	}
+
+	// O que a conexão anterior perdeu, se ainda estiver no histórico
+	private void reenviar(Assinante assinante, String ultimoId) {
+
+		if (ultimoId == null || !ultimoId.matches("\\d+")) {
+			return;
+		}
+
+		long ultimo = Long.parseLong(ultimoId);
+		boolean perdeuMensagens = ultimo > sequencia.get() // servidor reiniciado
+				|| (ultimo < sequencia.get() && (recentes.isEmpty() || recentes.peekFirst().id > ultimo + 1));
+
+		if (perdeuMensagens) {
+			assinante.fila.offer(RECARREGAR);
+			return;
+		}
+
+		for (Mensagem mensagem : recentes) {
+			if (mensagem.id > ultimo && assinante.interessa(mensagem) && !assinante.fila.offer(mensagem)) {
+				assinante.fila.clear();
+				assinante.fila.offer(RECARREGAR);
+				return;
+			}
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterar(EventoAlteracao evento) {
+
+		boolean pessoa = evento.isEntidade(Pessoa.class);
+
+		if (!pessoa && !evento.isEntidade(Telefone.class)) {
+			return;
+		}
+
+		Map<String, Object> campos = campos(evento, pessoa ? CAMPOS_PESSOA : CAMPOS_TELEFONE);
+
+		if (evento.getOperacao() == Operacao.ATUALIZACAO && campos.isEmpty()) {
+			return;
+		}
+
+		transmitir(id -> new Mensagem(id, pessoa, dono(evento, pessoa), evento, campos));
+	}
+
+	/** Pessoa ou telefone alterado em outro nó: as telas interessadas recebem o id com a operação "REMOTA". */
+	@Override
+	public void invalidar(String tipo, String id) {
+
+		boolean pessoa = Pessoa.class.getSimpleName().equals(tipo);
+
+		if (!pessoa && !Telefone.class.getSimpleName().equals(tipo) || id == null || !id.matches("\\d+")) {
+			return;
+		}
+
+		long entidadeId = Long.parseLong(id);
+
+		if (pessoa) {
+			transmitir(numero -> new Mensagem(numero, tipo, entidadeId, entidadeId));
+		} else {
+			// A consulta do dono não segura a thread do barramento
+			envio.execute(() -> {
+				Long dono = donoTelefone(entidadeId);
+				transmitir(numero -> new Mensagem(numero, tipo, entidadeId, dono));
+			});
+		}
+	}
+
+	/** Notificações de outros nós podem ter sido perdidas: todas as telas recebem "recarregar". */
+	@Override
+	public void invalidarTudo() {
+		for (Assinante assinante : assinantes) {
+			entregar(assinante, RECARREGAR);
+		}
+	}
+
+	// Numera, guarda no histórico e entrega; o número é gerado dentro do lock para as telas receberem em ordem
+	private void transmitir(LongFunction<Mensagem> nova) {
+
+		synchronized (recentes) {
+
+			Mensagem mensagem = nova.apply(sequencia.incrementAndGet());
+
+			recentes.addLast(mensagem);
+
+			while (recentes.size() > historico) {
+				recentes.removeFirst();
+			}
+
+			for (Assinante assinante : assinantes) {
+				if (assinante.interessa(mensagem)) {
+					entregar(assinante, mensagem);
+				}
+			}
+		}
+	}
+
+	/** Comentário periódico: mantém a conexão viva em proxies e revela as que caíram sem avisar. */
+	@Scheduled(fixedDelayString = "${app.alteracoes.pulso-ms:25000}")
+	public void pulsar() {
+		for (Assinante assinante : assinantes) {
+			entregar(assinante, PULSO);
+		}
+	}
+
+	/**
+	 * Conexões com um envio em andamento há mais de "app.alteracoes.envio-timeout-ms": saem da lista, como as de fila cheia, e são
+	 * encerradas pela thread de envio assim que o send voltar (o SseEmitter não deixa encerrar durante o send).
+	 * */
+	@Scheduled(fixedDelayString = "${app.alteracoes.envio-timeout-ms:5000}")
+	public void verificarEnvios() {
+
+		long limite = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(envioTimeoutMs);
+
+		for (Assinante assinante : assinantes) {
+			if (assinante.inicioEnvio - limite < 0 && assinante.envio.compareAndSet(Assinante.ENVIANDO, Assinante.PRESO)) {
+				descartados.incrementAndGet();
+				assinantes.remove(assinante);
+				assinante.encerrado = true;
+				ajustarThreads(1);
+			}
+		}
+	}
+
+	// Core e máximo andam juntos; a ordem das chamadas mantém o máximo sempre >= core
+	private synchronized void ajustarThreads(int diferenca) {
+
+		presas += diferenca;
+
+		if (diferenca > 0) {
+			envio.setMaximumPoolSize(threads + presas);
+			envio.setCorePoolSize(threads + presas);
+		} else {
+			envio.setCorePoolSize(threads + presas);
+			envio.setMaximumPoolSize(threads + presas);
+		}
+	}
+
+	private void entregar(Assinante assinante, Object item) {
+
+		if (!assinante.fila.offer(item)) {
+			// Fila cheia: a conexão é encerrada pela thread de envio, quem grava não espera o navegador
+			descartados.incrementAndGet();
+			assinantes.remove(assinante);
+			assinante.encerrado = true;
+		}
+
+		agendar(assinante);
+	}
+
+	// Uma tarefa de envio por conexão de cada vez, para manter a ordem
+	private void agendar(Assinante assinante) {
+		if (assinante.agendado.compareAndSet(false, true)) {
+			envio.execute(() -> enviar(assinante));
+		}
+	}
+
+	private void enviar(Assinante assinante) {
+
+		try {
+			do {
+				if (assinante.encerrado) {
+					assinante.fila.clear();
+					assinante.emissor.complete();
+					return;
+				}
+
+				for (Object item = assinante.fila.poll(); item != null && !assinante.encerrado; item = assinante.fila.poll()) {
+					enviar(assinante, item);
+				}
+
+				assinante.agendado.set(false);
+
+			} while ((!assinante.fila.isEmpty() || assinante.encerrado) && assinante.agendado.compareAndSet(false, true));
+
+		} catch (IOException | IllegalStateException e) {
+			// Navegador fechou a conexão ou ela já foi encerrada (timeout)
+			assinantes.remove(assinante);
+			assinante.encerrado = true;
+			assinante.fila.clear();
+		}
+	}
+
+	private void enviar(Assinante assinante, Object item) throws IOException {
+
+		assinante.inicioEnvio = System.nanoTime();
+		assinante.envio.set(Assinante.ENVIANDO);
+
+		try {
+			enviar(assinante.emissor, item);
+		} finally {
+			// Dada como presa pelo verificarEnvios: a thread reposta sai do pool
+			if (assinante.envio.getAndSet(Assinante.LIVRE) == Assinante.PRESO) {
+				ajustarThreads(-1);
+			}
+		}
+	}
+
+	private void enviar(SseEmitter emissor, Object item) throws IOException {
+
+		if (item == PULSO) {
+			emissor.send(SseEmitter.event().comment("pulso"));
+		} else if (item == RECARREGAR) {
+			emissor.send(SseEmitter.event().name("recarregar").data(""));
+		} else {
+			Mensagem mensagem = (Mensagem) item;
+			emissor.send(SseEmitter.event().id(String.valueOf(mensagem.id)).name("alteracao").data(mensagem.dados, MediaType.APPLICATION_JSON));
+			enviadas.incrementAndGet();
+		}
+	}
+
+	// Campos resumidos que mudaram (todos na inserção, nenhum na exclusão)
+	private static Map<String, Object> campos(EventoAlteracao evento, List<String> resumidos) {
+
+		Map<String, Object> campos = new LinkedHashMap<String, Object>();
+
+		if (evento.getOperacao() == Operacao.EXCLUSAO) {
+			return campos;
+		}
+
+		for (String campo : resumidos) {
+
+			boolean enviar = evento.getOperacao() == Operacao.INSERCAO ? evento.getAtual().containsKey(campo)
+					: evento.getAtual().containsKey(campo) && evento.isAlterado(campo);
+
+			if (enviar) {
+				Object valor = evento.getAtual().get(campo);
+				campos.put(campo, campo.equals("curriculo") ? (Object) (valor != null) : valor);
+			}
+		}
+
+		return campos;
+	}
+
+	// Pessoa dona do telefone, no fragmento do id; null se ele já foi excluído
+	private Long donoTelefone(long id) {
+
+		try {
+			List<Long> donos = ContextoFragmento.em(MapaFragmentos.fragmentoDoId(id),
+					() -> jdbcTemplate.queryForList("SELECT pessoa_id FROM telefone WHERE id = ?", Long.class, id));
+
+			return donos.isEmpty() ? null : donos.get(0);
+		} catch (DataAccessException e) {
+			return null;
+		}
+	}
+
+	// Pessoa a que a alteração pertence: a própria ou a dona do telefone
+	private static Long dono(EventoAlteracao evento, boolean pessoa) {
+
+		if (pessoa) {
+			return evento.getId();
+		}
+
+		Object dono = evento.getAtual().containsKey("pessoa") ? evento.getAtual().get("pessoa") : evento.getAnterior().get("pessoa");
+
+		return dono instanceof Number ? ((Number) dono).longValue() : null;
+	}
+
+	private static class Mensagem {
+
+		private final long id;
+		private final boolean pessoa;
+		private final boolean remota;
+		private final Long dono;
+		private final Map<String, Object> dados = new LinkedHashMap<String, Object>();
+
+		Mensagem(long id, boolean pessoa, Long dono, EventoAlteracao evento, Map<String, Object> campos) {
+			this.id = id;
+			this.pessoa = pessoa;
+			this.remota = false;
+			this.dono = dono;
+			dados.put("entidade", evento.getEntidade().getSimpleName());
+			dados.put("id", evento.getId());
+			dados.put("operacao", evento.getOperacao().name());
+			dados.put("campos", campos);
+		}
+
+		// Alteração de outro nó: só entidade e id; "dono" vai junto quando é conhecido
+		Mensagem(long id, String entidade, long entidadeId, Long dono) {
+			this.id = id;
+			this.pessoa = entidade.equals(Pessoa.class.getSimpleName());
+			this.remota = true;
+			this.dono = dono;
+			dados.put("entidade", entidade);
+			dados.put("id", entidadeId);
+			dados.put("operacao", "REMOTA");
+			dados.put("campos", new LinkedHashMap<String, Object>());
+			dados.put("dono", dono);
+		}
+
+	}
+
+	private static class Assinante {
+
+		static final int LIVRE = 0;
+		static final int ENVIANDO = 1;
+		static final int PRESO = 2;
+
+		private final SseEmitter emissor;
+		private final Long pessoa;
+		private final BlockingQueue<Object> fila;
+		private final AtomicBoolean agendado = new AtomicBoolean();
+		private volatile boolean encerrado;
+
+		// Situação do send em andamento (LIVRE, ENVIANDO, PRESO) e quando ele começou (System.nanoTime)
+		private final AtomicInteger envio = new AtomicInteger();
+		private volatile long inicioEnvio;
+
+		Assinante(SseEmitter emissor, Long pessoa, int buffer) {
+			this.emissor = emissor;
+			this.pessoa = pessoa;
+			this.fila = new ArrayBlockingQueue<Object>(buffer);
+		}
+
+		// Telefone remoto sem dono conhecido vai para todas as telas de telefones
+		boolean interessa(Mensagem mensagem) {
+			return pessoa == null ? mensagem.pessoa : mensagem.dono == null ? mensagem.remota && !mensagem.pessoa : pessoa.equals(mensagem.dono);
+		}
+
+	}
+
+}
@@ -0,0 +1,25 @@
+package projeto.springboot.fragmentacao;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/** Todos os fragmentos têm o mesmo schema: as migrações do Flyway são aplicadas em cada um, do 0 em diante. */
+@Configuration
+public class ConfiguracaoFragmentos {
+
+	@Bean
+	public FlywayMigrationStrategy migracaoEmTodosFragmentos(Environment environment) {
+
+		// Lido do Environment porque a migração roda antes de os beans comuns (MapaFragmentos) estarem prontos
+		int quantidade = 1 + MapaFragmentos.urls(environment.getProperty("app.fragmentos.urls")).size();
+
+		return flyway -> {
+			for (int fragmento = 0; fragmento < quantidade; fragmento++) {
+				ContextoFragmento.em(fragmento, flyway::migrate);
+			}
+		};
+	}
+
+}
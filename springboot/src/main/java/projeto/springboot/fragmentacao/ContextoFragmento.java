@@ -0,0 +1,42 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.function.Supplier;
+
+/**
+ * Fragmento (banco) da thread corrente, lido pelo DataSourceFragmentado a cada conexão pedida e pelo GeradorIdFragmentado a cada
+ * id gerado. Sem nada definido é o fragmento 0, o spring.datasource.
+ *
+ * A conexão do JPA é obtida no início da transação e, com o open-in-view, fica presa até o fim da requisição: por isso o fragmento
+ * da requisição é definido antes de tudo pelo FragmentacaoFilter, e o que precisa de outro fragmento roda nas threads do
+ * FragmentosService.
+ * */
+public final class ContextoFragmento {
+
+	private static final ThreadLocal<Integer> ATUAL = new ThreadLocal<Integer>();
+
+	private ContextoFragmento() {
+	}
+
+	public static int atual() {
+		Integer fragmento = ATUAL.get();
+		return fragmento != null ? fragmento : 0;
+	}
+
+	/** Executa a ação com o fragmento informado e restaura o anterior no final. */
+	public static <T> T em(int fragmento, Supplier<T> acao) {
+
+		Integer anterior = ATUAL.get();
+		ATUAL.set(fragmento);
+
+		try {
+			return acao.get();
+		} finally {
+			if (anterior != null) {
+				ATUAL.set(anterior);
+			} else {
+				ATUAL.remove();
+			}
+		}
+	}
+
+}
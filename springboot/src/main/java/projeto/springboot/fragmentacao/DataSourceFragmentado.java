@@ -0,0 +1,13 @@
+package projeto.springboot.fragmentacao;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/** Entrega conexões do banco do fragmento corrente (ContextoFragmento); os bancos são montados pelo DataSourceFragmentadoPostProcessor. */
+public class DataSourceFragmentado extends AbstractRoutingDataSource {
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		return ContextoFragmento.atual();
+	}
+
+}
@@ -0,0 +1,65 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Com "app.fragmentos.urls" preenchido, troca o DataSource principal por um DataSourceFragmentado: o fragmento 0 é o próprio
+ * spring.datasource e cada URL da lista ganha um pool com o mesmo usuário, senha e driver. Roda antes do
+ * DataSourceMonitoradoPostProcessor, que então mede as instruções de todos os fragmentos.
+ * */
+@Component
+public class DataSourceFragmentadoPostProcessor implements BeanPostProcessor, EnvironmentAware, PriorityOrdered {
+
+	private Environment environment;
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		// BeanPostProcessor é criado antes do processamento de @Value, então as propriedades são lidas direto do Environment
+		this.environment = environment;
+	}
+
+	@Override
+	public int getOrder() {
+		return 0;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+
+		List<String> urls = MapaFragmentos.urls(environment.getProperty("app.fragmentos.urls"));
+
+		if (urls.isEmpty() || !"dataSource".equals(beanName) || !(bean instanceof DataSource) || bean instanceof DataSourceFragmentado) {
+			return bean;
+		}
+
+		Map<Object, Object> fragmentos = new HashMap<Object, Object>();
+		fragmentos.put(0, bean);
+
+		for (int i = 0; i < urls.size(); i++) {
+			fragmentos.put(i + 1, DataSourceBuilder.create().url(urls.get(i))
+					.username(environment.getProperty("spring.datasource.username"))
+					.password(environment.getProperty("spring.datasource.password"))
+					.driverClassName(environment.getProperty("spring.datasource.driver-class-name")).build());
+		}
+
+		DataSourceFragmentado fragmentado = new DataSourceFragmentado();
+		fragmentado.setTargetDataSources(fragmentos);
+		fragmentado.setLenientFallback(false);
+		fragmentado.afterPropertiesSet();
+
+		return fragmentado;
+	}
+
+}
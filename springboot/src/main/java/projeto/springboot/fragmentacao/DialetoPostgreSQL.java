@@ -0,0 +1,20 @@
+package projeto.springboot.fragmentacao;
+
+import org.hibernate.dialect.PostgreSQL82Dialect;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * O dialeto de sempre (o PostgreSQLDialect, hoje obsoleto, é este mesmo PostgreSQL82Dialect) com a função "ordem_binaria": o texto
+ * com COLLATE "C", ordenado pelos bytes UTF-8, que é a ordem dos code points. Com fragmentos, a pesquisa ordena o texto por ela: a
+ * collation de cada banco pode ser outra, e a JuncaoOrdenada só junta certo listas ordenadas pela mesma regra que ela usa.
+ * */
+public class DialetoPostgreSQL extends PostgreSQL82Dialect {
+
+	public static final String ORDEM_BINARIA = "ordem_binaria";
+
+	public DialetoPostgreSQL() {
+		registerFunction(ORDEM_BINARIA, new SQLFunctionTemplate(StandardBasicTypes.STRING, "(?1 collate \"C\")"));
+	}
+
+}
@@ -0,0 +1,87 @@
+package projeto.springboot.fragmentacao;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Define o fragmento da requisição antes de o JPA pegar a conexão (ver ContextoFragmento):
+ *  -> URL com o id de uma pessoa ou telefone (editar, excluir, telefones, currículo...): o fragmento do id;
+ *  -> formulário de cadastro: o fragmento do campo "id" ou, para pessoa nova, o da UF;
+ *  -> o resto fica no fragmento 0 (listagens e pesquisas espalham a consulta pelo FragmentosService).
+ *
+ * Fica depois da sessão e do Spring Security, que continuam sempre no fragmento 0.
+ * */
+public class FragmentacaoFilter extends OncePerRequestFilter {
+
+	private static final Pattern URL_COM_ID = Pattern.compile(
+			"/(editarpessoa|removerpessoa|restaurarpessoa|telefones|addfonepessoa|removertelefone|baixarcurriculo)/(\\d+)(/|$)");
+
+	private static final Pattern NUMERO = Pattern.compile("\\d+");
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !mapaFragmentos.ativo();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		try {
+			ContextoFragmento.em(fragmento(request), () -> {
+				try {
+					filterChain.doFilter(request, response);
+					return null;
+				} catch (IOException | ServletException e) {
+					throw new ExcecaoFiltro(e);
+				}
+			});
+		} catch (ExcecaoFiltro e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw (ServletException) e.getCause();
+		}
+	}
+
+	int fragmento(HttpServletRequest request) {
+
+		Matcher url = URL_COM_ID.matcher(request.getRequestURI());
+
+		if (url.find()) {
+			return MapaFragmentos.fragmentoDoId(Long.parseLong(url.group(2)));
+		}
+
+		String id = request.getParameter("id");
+
+		if (id != null && NUMERO.matcher(id.trim()).matches() && Long.parseLong(id.trim()) > 0) {
+			return MapaFragmentos.fragmentoDoId(Long.parseLong(id.trim()));
+		}
+
+		return mapaFragmentos.fragmentoDaUf(request.getParameter("uf"));
+	}
+
+	// Leva a exceção verificada do filtro para fora do Supplier do ContextoFragmento
+	private static class ExcecaoFiltro extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		ExcecaoFiltro(Exception causa) {
+			super(causa);
+		}
+
+	}
+
+}
@@ -0,0 +1,156 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Executa trabalho em outro fragmento, ou em todos ao mesmo tempo (scatter-gather da pesquisa).
+ *
+ * A requisição já está presa à conexão do seu fragmento (ver ContextoFragmento), então cada tarefa roda numa thread própria, com
+ * o fragmento definido e a sua própria transação. As entidades devolvidas chegam desanexadas: só o que foi carregado na tarefa
+ * (a profissão, que é EAGER) está disponível para a tela.
+ *
+ * O que é do próprio fragmento da requisição roda na thread atual, na transação dela; com um fragmento só (MapaFragmentos.ativo()
+ * falso) é sempre esse o caso e nenhuma thread é usada.
+ * */
+@Service
+public class FragmentosService {
+
+	@Value("${app.fragmentos.threads:8}")
+	private int threads;
+
+	@Value("${app.fragmentos.timeout-ms:10000}")
+	private long timeoutMs;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private ExecutorService executor;
+
+	private TransactionTemplate leitura;
+	private TransactionTemplate gravacao;
+
+	@PostConstruct
+	public void iniciar() {
+
+		AtomicInteger numero = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), tarefa -> {
+			Thread thread = new Thread(tarefa, "fragmento-" + numero.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		leitura = new TransactionTemplate(transactionManager);
+		leitura.setReadOnly(true);
+		gravacao = new TransactionTemplate(transactionManager);
+	}
+
+	@PreDestroy
+	public void encerrar() {
+		executor.shutdownNow();
+	}
+
+	/** Consulta somente leitura no fragmento informado. */
+	public <T> T consultar(int fragmento, Supplier<T> consulta) {
+		return no(fragmento, leitura, consulta);
+	}
+
+	/** Alteração no fragmento informado, numa transação do próprio fragmento. */
+	public <T> T executar(int fragmento, Supplier<T> acao) {
+		return no(fragmento, gravacao, acao);
+	}
+
+	/** A mesma consulta em todos os fragmentos, em paralelo; o resultado vem na ordem dos fragmentos (índice = fragmento). */
+	public <T> List<T> consultarTodos(IntFunction<T> consulta) {
+		return todos(leitura, consulta);
+	}
+
+	/** A mesma alteração em todos os fragmentos, em paralelo, cada um na sua transação (não é uma transação única). */
+	public <T> List<T> executarTodos(IntFunction<T> acao) {
+		return todos(gravacao, acao);
+	}
+
+	private <T> T no(int fragmento, TransactionTemplate transacao, Supplier<T> tarefa) {
+
+		if (fragmento == ContextoFragmento.atual()) {
+			return transacao.execute(status -> tarefa.get());
+		}
+
+		return aguardar(submeter(fragmento, transacao, tarefa));
+	}
+
+	private <T> List<T> todos(TransactionTemplate transacao, IntFunction<T> tarefa) {
+
+		if (!mapaFragmentos.ativo()) {
+			return Collections.singletonList(no(0, transacao, () -> tarefa.apply(0)));
+		}
+
+		List<Future<T>> futuros = new ArrayList<Future<T>>();
+
+		for (int fragmento = 0; fragmento < mapaFragmentos.quantidade(); fragmento++) {
+			int f = fragmento;
+			futuros.add(submeter(f, transacao, () -> tarefa.apply(f)));
+		}
+
+		List<T> resultados = new ArrayList<T>();
+
+		try {
+			for (Future<T> futuro : futuros) {
+				resultados.add(aguardar(futuro));
+			}
+		} finally {
+			futuros.forEach(futuro -> futuro.cancel(true));
+		}
+
+		return resultados;
+	}
+
+	private <T> Future<T> submeter(int fragmento, TransactionTemplate transacao, Supplier<T> tarefa) {
+		return executor.submit(() -> ContextoFragmento.em(fragmento, () -> transacao.execute(status -> tarefa.get())));
+	}
+
+	private <T> T aguardar(Future<T> futuro) {
+
+		try {
+			return futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+
+		} catch (TimeoutException e) {
+			futuro.cancel(true);
+			throw new IllegalStateException("Fragmento não respondeu em " + timeoutMs + " ms", e);
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
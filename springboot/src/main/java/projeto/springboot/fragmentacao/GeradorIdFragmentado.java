@@ -0,0 +1,79 @@
+package projeto.springboot.fragmentacao;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * Gerador de id de Pessoa e Telefone: a sequência do banco do fragmento corrente (ContextoFragmento) com o número do fragmento nos
+ * bits altos (MapaFragmentos.noFragmento).
+ *
+ * Funciona como o otimizador "pooled" do @SequenceGenerator que substitui: cada nextval reserva os "increment_size" valores até
+ * ele, que são distribuídos em memória. A reserva é separada por fragmento, porque cada banco tem a própria sequência e um valor
+ * lido de um deles não pode virar id em outro.
+ * */
+public class GeradorIdFragmentado implements IdentifierGenerator, Configurable {
+
+	private String sequencia;
+	private int incremento;
+
+	private final Map<Integer, Faixa> faixas = new ConcurrentHashMap<Integer, Faixa>();
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		sequencia = params.getProperty(SequenceStyleGenerator.SEQUENCE_PARAM);
+		incremento = Integer.parseInt(params.getProperty(SequenceStyleGenerator.INCREMENT_PARAM, "1"));
+	}
+
+	@Override
+	public Serializable generate(SharedSessionContractImplementor session, Object objeto) throws HibernateException {
+
+		int fragmento = ContextoFragmento.atual();
+		Faixa faixa = faixas.computeIfAbsent(fragmento, f -> new Faixa());
+
+		synchronized (faixa) {
+
+			if (faixa.proximo > faixa.limite) {
+				long limite = proximoValor(session);
+				// O primeiro nextval de uma sequência nova (1) reserva só ele mesmo
+				faixa.proximo = Math.max(limite - incremento + 1, faixa.limite + 1);
+				faixa.limite = limite;
+			}
+
+			return MapaFragmentos.noFragmento(faixa.proximo++, fragmento);
+		}
+	}
+
+	// Na conexão da sessão, que é a do fragmento corrente
+	private long proximoValor(SharedSessionContractImplementor session) {
+
+		try (PreparedStatement comando = session.connection().prepareStatement("select nextval('" + sequencia + "')");
+				ResultSet resultado = comando.executeQuery()) {
+
+			resultado.next();
+			return resultado.getLong(1);
+
+		} catch (SQLException e) {
+			throw new HibernateException("Não foi possível obter o próximo valor de " + sequencia, e);
+		}
+	}
+
+	private static class Faixa {
+		private long proximo = 1;
+		private long limite = 0;
+	}
+
+}
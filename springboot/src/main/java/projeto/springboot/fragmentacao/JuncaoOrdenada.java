@@ -0,0 +1,127 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Junta as listas já ordenadas que cada fragmento devolveu numa só, na mesma ordem, sem ordenar tudo de novo: a cada passo sai o
+ * menor entre os primeiros de cada lista (PriorityQueue com um cursor por lista).
+ * */
+public final class JuncaoOrdenada {
+
+	private JuncaoOrdenada() {
+	}
+
+	/** Os elementos da posição "pular" até "pular + limite" (exclusivo) da junção das listas. */
+	public static <T> List<T> juntar(List<List<T>> listas, Comparator<? super T> ordem, long pular, int limite) {
+
+		PriorityQueue<Cursor<T>> proximos = new PriorityQueue<Cursor<T>>((a, b) -> ordem.compare(a.atual(), b.atual()));
+
+		for (List<T> lista : listas) {
+			if (!lista.isEmpty()) {
+				proximos.add(new Cursor<T>(lista));
+			}
+		}
+
+		List<T> resultado = new ArrayList<T>(limite);
+
+		for (long posicao = 0; !proximos.isEmpty() && resultado.size() < limite; posicao++) {
+
+			Cursor<T> menor = proximos.poll();
+
+			if (posicao >= pular) {
+				resultado.add(menor.atual());
+			}
+
+			if (menor.avancar()) {
+				proximos.add(menor);
+			}
+		}
+
+		return resultado;
+	}
+
+	/**
+	 * Comparador equivalente ao ORDER BY da consulta para as propriedades do Sort, com nulos no fim. Texto e enum (pelo nome) são
+	 * comparados pelos code points, a ordem do COLLATE "C" (DialetoPostgreSQL.ORDEM_BINARIA), que a consulta de cada fragmento
+	 * precisa usar: com a collation do banco, que pode variar de um fragmento para outro, a junção sairia fora de ordem. O desempate
+	 * é feito pela propriedade "desempate", que a consulta de cada fragmento também precisa usar.
+	 * */
+	public static <T> Comparator<T> comparador(Sort sort, String desempate) {
+
+		Comparator<T> resultado = (a, b) -> 0;
+
+		for (Sort.Order ordem : sort.and(Sort.by(desempate))) {
+
+			Comparator<T> propriedade = (a, b) -> comparar(valor(a, ordem.getProperty()), valor(b, ordem.getProperty()));
+			resultado = resultado.thenComparing(ordem.isAscending() ? propriedade : propriedade.reversed());
+		}
+
+		return resultado;
+	}
+
+	private static Object valor(Object objeto, String propriedade) {
+		return new BeanWrapperImpl(objeto).getPropertyValue(propriedade);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int comparar(Object a, Object b) {
+
+		if (a == null || b == null) {
+			return a == null ? (b == null ? 0 : 1) : -1;
+		}
+
+		if (a instanceof String || a instanceof Enum) {
+			return compararCodePoints(a instanceof Enum ? ((Enum<?>) a).name() : (String) a, b instanceof Enum ? ((Enum<?>) b).name() : (String) b);
+		}
+
+		return ((Comparable) a).compareTo(b);
+	}
+
+	// Não é o String.compareTo, que compara unidades UTF-16 e põe os caracteres fora do BMP antes de U+E000..U+FFFF
+	static int compararCodePoints(String a, String b) {
+
+		int i = 0;
+		int j = 0;
+
+		while (i < a.length() && j < b.length()) {
+
+			int ca = a.codePointAt(i);
+			int cb = b.codePointAt(j);
+
+			if (ca != cb) {
+				return Integer.compare(ca, cb);
+			}
+
+			i += Character.charCount(ca);
+			j += Character.charCount(cb);
+		}
+
+		return Integer.compare(a.length() - i, b.length() - j);
+	}
+
+	private static class Cursor<T> {
+
+		private final List<T> lista;
+		private int posicao;
+
+		Cursor(List<T> lista) {
+			this.lista = lista;
+		}
+
+		T atual() {
+			return lista.get(posicao);
+		}
+
+		boolean avancar() {
+			return ++posicao < lista.size();
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Em qual fragmento (banco) fica cada pessoa, com seus telefones.
+ *
+ * A pessoa nova vai para o fragmento da sua UF: o mapa "app.fragmentos.ufs" (ex.: SP=1,RJ=2) ou, para UF fora do mapa, o hash da
+ * UF; sem UF, o fragmento 0. Depois de gravada, quem diz o fragmento é o id: o GeradorIdFragmentado guarda o número do fragmento
+ * nos bits altos do id (BITS_SEQUENCIA para baixo é a sequência do banco), então pessoa e telefone são achados pelo id sem
+ * consultar nada. O fragmento 0 não muda o valor da sequência, e os ids gravados antes da fragmentação continuam valendo.
+ *
+ * Trocar a UF de uma pessoa já gravada não a muda de fragmento; por isso a UF só decide onde a pessoa nova é gravada e as
+ * pesquisas, mesmo as filtradas por UF, consultam todos os fragmentos.
+ * */
+@Component
+public class MapaFragmentos {
+
+	/** Bits da sequência dentro do id; os 8 acima deles (sem o bit de sinal) são o fragmento. */
+	static final int BITS_SEQUENCIA = 55;
+
+	static final int MAXIMO_FRAGMENTOS = 1 << (63 - BITS_SEQUENCIA);
+
+	@Value("${app.fragmentos.urls:}")
+	private String urls;
+
+	@Value("${app.fragmentos.ufs:}")
+	private String ufs;
+
+	private int quantidade;
+
+	private final Map<String, Integer> fragmentoPorUf = new HashMap<String, Integer>();
+
+	@PostConstruct
+	public void iniciar() {
+
+		quantidade = 1 + urls(urls).size();
+
+		for (String par : ufs.split(",")) {
+
+			if (par.trim().isEmpty()) {
+				continue;
+			}
+
+			String[] ufFragmento = par.split("=");
+			int fragmento = Integer.parseInt(ufFragmento[1].trim());
+
+			if (fragmento < 0 || fragmento >= quantidade) {
+				throw new IllegalStateException("app.fragmentos.ufs: fragmento " + fragmento + " inexistente para " + ufFragmento[0]);
+			}
+
+			fragmentoPorUf.put(ufFragmento[0].trim().toUpperCase(), fragmento);
+		}
+	}
+
+	/** URLs JDBC dos fragmentos além do 0, na ordem (o primeiro da lista é o fragmento 1). */
+	static List<String> urls(String lista) {
+
+		List<String> resultado = new ArrayList<String>();
+
+		for (String url : lista == null ? new String[0] : lista.split(",")) {
+			if (!url.trim().isEmpty()) {
+				resultado.add(url.trim());
+			}
+		}
+
+		if (resultado.size() >= MAXIMO_FRAGMENTOS) {
+			throw new IllegalStateException("app.fragmentos.urls: no máximo " + (MAXIMO_FRAGMENTOS - 1) + " fragmentos além do principal");
+		}
+
+		return resultado;
+	}
+
+	public int quantidade() {
+		return quantidade;
+	}
+
+	/** Há mais de um banco; com um só, tudo funciona como antes, sem threads nem junção de resultados. */
+	public boolean ativo() {
+		return quantidade > 1;
+	}
+
+	public int fragmentoDaUf(String uf) {
+
+		if (uf == null || uf.trim().isEmpty()) {
+			return 0;
+		}
+
+		Integer mapeado = fragmentoPorUf.get(uf.trim().toUpperCase());
+
+		return mapeado != null ? mapeado : Math.floorMod(uf.trim().toUpperCase().hashCode(), quantidade);
+	}
+
+	/** Agrupa os ids pelo fragmento, mantendo a ordem de cada grupo. */
+	public Map<Integer, List<Long>> porFragmento(Collection<Long> ids) {
+
+		Map<Integer, List<Long>> grupos = new LinkedHashMap<Integer, List<Long>>();
+
+		for (Long id : ids) {
+			if (id != null) {
+				grupos.computeIfAbsent(fragmentoDoId(id), f -> new ArrayList<Long>()).add(id);
+			}
+		}
+
+		return grupos;
+	}
+
+	public static int fragmentoDoId(long id) {
+		return (int) (id >>> BITS_SEQUENCIA);
+	}
+
+	static long noFragmento(long sequencia, int fragmento) {
+
+		if (sequencia >>> BITS_SEQUENCIA != 0) {
+			throw new IllegalStateException("Sequência " + sequencia + " não cabe em " + BITS_SEQUENCIA + " bits");
+		}
+
+		return ((long) fragmento << BITS_SEQUENCIA) | sequencia;
+	}
+
+}
@@ -0,0 +1,78 @@
+package projeto.springboot.fragmentacao;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Copia a tabela profissao do fragmento 0 para os demais: a pessoa de qualquer fragmento aponta para a profissão pela FK
+ * fk_pessoa_profissao, e o formulário lista as profissões do fragmento da requisição.
+ *
+ * O fragmento 0 é a origem (as profissões são cadastradas nele). A cópia roda na subida, antes de o servidor aceitar requisições,
+ * e depois a cada "app.fragmentos.replicacao-profissoes-ms"; inclui as novas e atualiza os nomes, mas não apaga nos outros
+ * fragmentos a profissão removida do 0, que pode estar em uso por pessoas de lá.
+ * */
+@Component
+public class ReplicacaoProfissoes {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReplicacaoProfissoes.class);
+
+	private static final String SQL_GRAVACAO = "INSERT INTO profissao (id, nome) VALUES (?, ?) ON CONFLICT (id) DO UPDATE "
+			+ "SET nome = EXCLUDED.nome WHERE profissao.nome IS DISTINCT FROM EXCLUDED.nome";
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	// Depende do Flyway: só é criado depois das migrações de todos os fragmentos
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@PostConstruct
+	public void iniciar() {
+		replicar();
+	}
+
+	@Scheduled(initialDelayString = "${app.fragmentos.replicacao-profissoes-ms:300000}", fixedDelayString = "${app.fragmentos.replicacao-profissoes-ms:300000}")
+	public void replicar() {
+
+		if (!mapaFragmentos.ativo()) {
+			return;
+		}
+
+		List<Object[]> profissoes = ContextoFragmento.em(0, () -> jdbcTemplate.query("SELECT id, nome FROM profissao",
+				(rs, linha) -> new Object[] { rs.getLong(1), rs.getString(2) }));
+
+		for (int fragmento = 1; fragmento < mapaFragmentos.quantidade(); fragmento++) {
+
+			// Falha em um fragmento não impede os outros; a próxima execução tenta de novo
+			try {
+				int[] gravadas = ContextoFragmento.em(fragmento, () -> jdbcTemplate.batchUpdate(SQL_GRAVACAO, profissoes));
+
+				if (alteradas(gravadas) > 0) {
+					logger.info("Profissões replicadas para o fragmento " + fragmento + ": " + alteradas(gravadas));
+				}
+			} catch (RuntimeException e) {
+				logger.warn("Não foi possível replicar as profissões para o fragmento " + fragmento, e);
+			}
+		}
+	}
+
+	private static int alteradas(int[] gravadas) {
+
+		int total = 0;
+
+		for (int linhas : gravadas) {
+			total += Math.max(linhas, 0);
+		}
+
+		return total;
+	}
+
+}
@@ -0,0 +1,29 @@
+package projeto.springboot.fragmentacao;
+
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registra o FragmentacaoFilter depois do Spring Security (e portanto da sessão): login e sessão ficam sempre no fragmento 0 e só
+ * o que a requisição faz depois disso usa o fragmento dela.
+ * */
+@Configuration
+public class WebConfigFragmentacao {
+
+	@Bean
+	public FragmentacaoFilter fragmentacaoFilter() {
+		return new FragmentacaoFilter();
+	}
+
+	@Bean
+	public FilterRegistrationBean<FragmentacaoFilter> registroFragmentacao(FragmentacaoFilter filtro) {
+
+		FilterRegistrationBean<FragmentacaoFilter> registro = new FilterRegistrationBean<FragmentacaoFilter>(filtro);
+		registro.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 10);
+
+		return registro;
+	}
+
+}
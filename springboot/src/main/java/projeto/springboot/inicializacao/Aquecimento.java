@@ -0,0 +1,228 @@
+package projeto.springboot.inicializacao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
+
+import projeto.springboot.controller.ReportUtil;
+import projeto.springboot.model.Cargo;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+import projeto.springboot.model.Telefone;
+import projeto.springboot.repository.FiltroPesquisaPessoa;
+import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.ProfissaoRepository;
+import projeto.springboot.repository.TelefoneRepository;
+import projeto.springboot.repository.UsuarioRepository;
+
+/**
+ * Aquecimento depois da subida: exercita os caminhos das primeiras requisições (templates Thymeleaf, consultas dos repositórios
+ * e um relatório Jasper pequeno) para que parsing de templates, planos de consulta do Hibernate, carregamento das classes do
+ * Jasper e JIT aconteçam antes do primeiro usuário.
+ *
+ * Enquanto não termina, o health (/actuator/health) fica OUT_OF_SERVICE e o balanceador não envia tráfego para o nó. Roda
+ * "app.aquecimento.iteracoes" vezes ou até "app.aquecimento.duracao-maxima-ms", o que acontecer primeiro. Uma falha no
+ * aquecimento é só registrada no log: o nó fica UP do mesmo jeito, apenas sem estar aquecido.
+ *
+ * Só faz leituras; nada é gravado no banco.
+ * */
+@Component
+public class Aquecimento implements HealthIndicator {
+
+	private static final Logger logger = LoggerFactory.getLogger(Aquecimento.class);
+
+	@Value("${app.aquecimento.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.aquecimento.iteracoes:20}")
+	private int iteracoes;
+
+	@Value("${app.aquecimento.duracao-maxima-ms:30000}")
+	private long duracaoMaximaMs;
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private TelefoneRepository telefoneRepository;
+
+	@Autowired
+	private ProfissaoRepository profissaoRepository;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Lazy
+	@Autowired
+	private ReportUtil reportUtil;
+
+	@Autowired
+	private ThymeleafViewResolver viewResolver;
+
+	@Autowired
+	private WebApplicationContext contexto;
+
+	@Autowired
+	private ServletContext servletContext;
+
+	private volatile boolean concluido;
+	private volatile int iteracoesExecutadas;
+	private volatile long duracaoMs;
+	private volatile String falha;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void iniciar() {
+
+		if (!habilitado || iteracoes <= 0) {
+			concluido = true;
+			return;
+		}
+
+		Thread thread = new Thread(this::aquecer, "aquecimento");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void aquecer() {
+
+		long inicio = System.currentTimeMillis();
+
+		try {
+			List<Pessoa> pessoas = pessoasSinteticas();
+
+			for (int i = 0; i < iteracoes && System.currentTimeMillis() - inicio < duracaoMaximaMs; i++) {
+				consultas(i);
+				templates(pessoas);
+				relatorio(pessoas);
+				iteracoesExecutadas = i + 1;
+			}
+
+		} catch (Exception e) {
+			falha = e.toString();
+			logger.warn("Aquecimento interrompido; o nó fica disponível sem estar aquecido", e);
+		} finally {
+			duracaoMs = System.currentTimeMillis() - inicio;
+			concluido = true;
+			logger.info("Aquecimento concluído: " + iteracoesExecutadas + " iterações em " + duracaoMs + " ms");
+		}
+	}
+
+	// Mesmas consultas das telas, com parâmetros variados para cobrir cada combinação de filtro
+	private void consultas(int iteracao) {
+
+		pessoaRepository.findAll(PageRequest.of(0, 5, Sort.by("nome")));
+		pessoaRepository.findPessoaByNamePage(iteracao % 2 == 0 ? "a" : "ana", PageRequest.of(0, 5, Sort.by("nome")));
+		pessoaRepository.findPessoaBySexoPage("", iteracao % 2 == 0 ? "MASCULINO" : "FEMININO", PageRequest.of(0, 5, Sort.by("nome")));
+
+		FiltroPesquisaPessoa filtro = new FiltroPesquisaPessoa();
+		filtro.setUf("SP");
+		filtro.setCargo(Cargo.values()[iteracao % Cargo.values().length]);
+		pessoaRepository.pesquisar(filtro, PageRequest.of(0, 5));
+
+		profissaoRepository.findAll();
+		telefoneRepository.getTelefones(-1L);
+		usuarioRepository.findUserByLogin("");
+	}
+
+	private void templates(List<Pessoa> pessoas) throws Exception {
+
+		Map<String, Object> cadastro = new HashMap<String, Object>();
+		cadastro.put("pessoaobj", new Pessoa());
+		cadastro.put("pessoas", new PageImpl<Pessoa>(pessoas, PageRequest.of(0, 5), pessoas.size()));
+		cadastro.put("profissoes", Collections.singletonList(pessoas.get(0).getProfissaopessoa()));
+		cadastro.put("nomepesquisa", "");
+		renderizar("cadastro/cadastropessoa", "/cadastropessoa", cadastro);
+
+		Map<String, Object> telefones = new HashMap<String, Object>();
+		telefones.put("pessoaobj", pessoas.get(0));
+		telefones.put("telefones", pessoas.get(0).getTelefones());
+		renderizar("cadastro/telefones", "/telefones/0", telefones);
+	}
+
+	private void renderizar(String nomeView, String uri, Map<String, Object> modelo) throws Exception {
+
+		View view = viewResolver.resolveViewName(nomeView, Locale.getDefault());
+
+		if (view != null) {
+			view.render(modelo, RequisicaoSintetica.requisicao(uri, servletContext, contexto), RequisicaoSintetica.resposta());
+		}
+	}
+
+	private void relatorio(List<Pessoa> pessoas) throws Exception {
+		reportUtil.geraRelatorioPessoas(pessoas, "pessoa", servletContext);
+	}
+
+	private static List<Pessoa> pessoasSinteticas() {
+
+		Profissao profissao = new Profissao();
+		profissao.setId(0L);
+		profissao.setNome("Aquecimento");
+
+		List<Pessoa> pessoas = new ArrayList<Pessoa>();
+
+		for (long i = 1; i <= 5; i++) {
+
+			Pessoa pessoa = new Pessoa();
+			pessoa.setId(i);
+			pessoa.setNome("Pessoa " + i);
+			pessoa.setSobrenome("Aquecimento");
+			pessoa.setIdade(30);
+			pessoa.setCidade("São Paulo");
+			pessoa.setProfissaopessoa(profissao);
+
+			Telefone telefone = new Telefone();
+			telefone.setId(i);
+			telefone.setNumero("(11) 99999-000" + i);
+			telefone.setTipo("Celular");
+			telefone.setPessoa(pessoa);
+			pessoa.setTelefones(Collections.singletonList(telefone));
+
+			pessoas.add(pessoa);
+		}
+
+		return pessoas;
+	}
+
+	public boolean isConcluido() {
+		return concluido;
+	}
+
+	@Override
+	public Health health() {
+
+		if (!concluido) {
+			return Health.outOfService().withDetail("iteracoes", iteracoesExecutadas).build();
+		}
+
+		Health.Builder saude = Health.up().withDetail("iteracoes", iteracoesExecutadas).withDetail("duracaoMs", duracaoMs);
+
+		if (falha != null) {
+			saude.withDetail("falha", falha);
+		}
+
+		return saude.build();
+	}
+
+}
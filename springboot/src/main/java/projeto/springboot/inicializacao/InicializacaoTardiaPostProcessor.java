@@ -0,0 +1,48 @@
+package projeto.springboot.inicializacao;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Marca como lazy os beans listados em "app.inicializacao.beans-tardios" (relatórios e telas administrativas), que só são usados
+ * bem depois da subida. Eles passam a ser criados na primeira requisição que precisar deles, e não durante o refresh do contexto.
+ *
+ * OBS. Quem injeta um desses beans em um bean comum deve usar @Lazy no ponto de injeção; sem isso o bean é criado de qualquer
+ * forma para satisfazer a dependência. Controllers podem ser lazy sem isso, o mapeamento das URLs usa só o nome do bean.
+ * */
+@Component
+public class InicializacaoTardiaPostProcessor implements BeanFactoryPostProcessor, EnvironmentAware {
+
+	private static final String PADRAO = "reportUtil,relatorioCacheService,dashboardController";
+
+	private String[] beansTardios;
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		// BeanFactoryPostProcessor roda antes do processamento de @Value, então a propriedade é lida direto do Environment
+		beansTardios = StringUtils.commaDelimitedListToStringArray(
+				StringUtils.trimAllWhitespace(environment.getProperty("app.inicializacao.beans-tardios", PADRAO)));
+	}
+
+	@Override
+	public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+
+		for (String nome : beansTardios) {
+
+			try {
+				BeanDefinition definicao = beanFactory.getBeanDefinition(nome);
+				definicao.setLazyInit(true);
+			} catch (NoSuchBeanDefinitionException e) {
+				// Nome desatualizado na configuração: não impede a subida
+			}
+		}
+	}
+
+}
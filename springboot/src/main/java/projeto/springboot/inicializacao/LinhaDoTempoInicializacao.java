@@ -0,0 +1,153 @@
+package projeto.springboot.inicializacao;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mede quanto cada bean levou para ser criado (instanciação, injeção e métodos de inicialização) e, quando a aplicação termina
+ * de subir, registra no log os mais lentos.
+ *
+ * O tempo "próprio" desconta os beans criados como dependência dentro da criação de outro: um controller que obriga o
+ * EntityManagerFactory a subir não aparece com o tempo do Hibernate. O tempo "total" inclui as dependências.
+ *
+ * Quantidade de linhas no log: "app.inicializacao.linha-do-tempo.linhas" (0 desliga o relatório).
+ * */
+@Component
+public class LinhaDoTempoInicializacao implements InstantiationAwareBeanPostProcessor, PriorityOrdered,
+		ApplicationListener<ApplicationReadyEvent>, EnvironmentAware {
+
+	private static final Logger logger = LoggerFactory.getLogger(LinhaDoTempoInicializacao.class);
+
+	private final ThreadLocal<Deque<Medicao>> emAndamento = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private final List<Medicao> medicoes = Collections.synchronizedList(new ArrayList<Medicao>());
+
+	private final long inicio = System.nanoTime();
+
+	private int linhas = 20;
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		linhas = environment.getProperty("app.inicializacao.linha-do-tempo.linhas", Integer.class, 20);
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE;
+	}
+
+	@Override
+	public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+		emAndamento.get().push(new Medicao(beanName, beanClass.getName(), System.nanoTime()));
+		return null;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+
+		Deque<Medicao> pilha = emAndamento.get();
+
+		// Objetos produzidos por FactoryBean passam por aqui sem ter passado pela instanciação
+		if (pilha.stream().noneMatch(m -> m.bean.equals(beanName))) {
+			return bean;
+		}
+
+		// Criações interrompidas (referência circular, exceção tratada) ficam acima na pilha e são descartadas
+		Medicao medicao = pilha.pop();
+
+		while (!medicao.bean.equals(beanName)) {
+			medicao = pilha.pop();
+		}
+
+		medicao.totalNanos = System.nanoTime() - medicao.inicioNanos;
+
+		if (!pilha.isEmpty()) {
+			pilha.peek().dependenciasNanos += medicao.totalNanos;
+		}
+
+		medicoes.add(medicao);
+		return bean;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationReadyEvent event) {
+
+		if (linhas <= 0 || !logger.isInfoEnabled()) {
+			return;
+		}
+
+		List<Medicao> maisLentos = getMedicoes();
+		maisLentos.sort(Comparator.comparingLong(Medicao::getProprioNanos).reversed());
+
+		StringBuilder relatorio = new StringBuilder();
+		relatorio.append(String.format("Inicialização: %d beans medidos, %d ms desde o primeiro bean. Mais lentos (próprio / total):",
+				maisLentos.size(), (System.nanoTime() - inicio) / 1_000_000));
+
+		for (Medicao medicao : maisLentos.subList(0, Math.min(linhas, maisLentos.size()))) {
+			relatorio.append(String.format("%n  %6d ms / %6d ms  %s (%s)", medicao.getProprioMs(), medicao.getTotalMs(), medicao.bean,
+					medicao.classe));
+		}
+
+		logger.info(relatorio.toString());
+	}
+
+	/** Cópia das medições na ordem em que os beans terminaram de ser criados. */
+	public List<Medicao> getMedicoes() {
+		synchronized (medicoes) {
+			return new ArrayList<Medicao>(medicoes);
+		}
+	}
+
+	public static class Medicao {
+
+		private final String bean;
+		private final String classe;
+		private final long inicioNanos;
+		private long totalNanos;
+		private long dependenciasNanos;
+
+		Medicao(String bean, String classe, long inicioNanos) {
+			this.bean = bean;
+			this.classe = classe;
+			this.inicioNanos = inicioNanos;
+		}
+
+		public String getBean() {
+			return bean;
+		}
+
+		public String getClasse() {
+			return classe;
+		}
+
+		public long getProprioNanos() {
+			return totalNanos - dependenciasNanos;
+		}
+
+		public long getProprioMs() {
+			return getProprioNanos() / 1_000_000;
+		}
+
+		public long getTotalMs() {
+			return totalNanos / 1_000_000;
+		}
+
+	}
+
+}
@@ -0,0 +1,135 @@
+package projeto.springboot.inicializacao;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Requisição GET e resposta mínimas para renderizar uma view fora de uma requisição real (aquecimento dos templates).
+ *
+ * Só responde ao que a ThymeleafView e o RequestContext do Spring usam; o HTML gerado é descartado. Não há sessão nem usuário
+ * autenticado, então blocos sec:authorize ficam de fora.
+ * */
+final class RequisicaoSintetica {
+
+	private static final Locale LOCALE = new Locale("pt", "BR");
+
+	private RequisicaoSintetica() {
+	}
+
+	static HttpServletRequest requisicao(String uri, ServletContext servletContext, WebApplicationContext contexto) {
+
+		Map<String, Object> atributos = new HashMap<String, Object>();
+		atributos.put(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, contexto);
+
+		InvocationHandler tratador = (proxy, metodo, args) -> {
+
+			switch (metodo.getName()) {
+			case "getAttribute":
+				return atributos.get(args[0]);
+			case "setAttribute":
+				atributos.put((String) args[0], args[1]);
+				return null;
+			case "removeAttribute":
+				atributos.remove(args[0]);
+				return null;
+			case "getAttributeNames":
+				return Collections.enumeration(atributos.keySet());
+			case "getParameterMap":
+				return Collections.emptyMap();
+			case "getParameterNames":
+			case "getHeaderNames":
+			case "getHeaders":
+				return Collections.emptyEnumeration();
+			case "getLocales":
+				return Collections.enumeration(Collections.singletonList(LOCALE));
+			case "getLocale":
+				return LOCALE;
+			case "getCharacterEncoding":
+				return "UTF-8";
+			case "getMethod":
+				return "GET";
+			case "getScheme":
+				return "http";
+			case "getServerName":
+				return "localhost";
+			case "getContextPath":
+			case "getServletPath":
+				return "";
+			case "getRequestURI":
+				return uri;
+			case "getRequestURL":
+				return new StringBuffer("http://localhost").append(uri);
+			case "getDispatcherType":
+				return DispatcherType.REQUEST;
+			case "getServletContext":
+				return servletContext;
+			case "toString":
+				return "RequisicaoSintetica " + uri;
+			default:
+				return padrao(metodo.getReturnType());
+			}
+		};
+
+		return (HttpServletRequest) Proxy.newProxyInstance(RequisicaoSintetica.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class }, tratador);
+	}
+
+	static HttpServletResponse resposta() {
+
+		PrintWriter descarte = new PrintWriter(Writer.nullWriter());
+
+		InvocationHandler tratador = (proxy, metodo, args) -> {
+
+			switch (metodo.getName()) {
+			case "getWriter":
+				return descarte;
+			case "getCharacterEncoding":
+				return "UTF-8";
+			case "getLocale":
+				return LOCALE;
+			case "encodeURL":
+			case "encodeRedirectURL":
+				return args[0];
+			case "toString":
+				return "RespostaSintetica";
+			default:
+				return padrao(metodo.getReturnType());
+			}
+		};
+
+		return (HttpServletResponse) Proxy.newProxyInstance(RequisicaoSintetica.class.getClassLoader(),
+				new Class<?>[] { HttpServletResponse.class }, tratador);
+	}
+
+	private static Object padrao(Class<?> tipo) {
+
+		if (tipo == boolean.class) {
+			return false;
+		}
+
+		if (tipo == int.class) {
+			return 0;
+		}
+
+		if (tipo == long.class) {
+			return 0L;
+		}
+
+		return null;
+	}
+
+}
@@ -0,0 +1,303 @@
+package projeto.springboot.invalidacao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+import projeto.springboot.model.Telefone;
+import projeto.springboot.model.Usuario;
+
+/**
+ * Coerência dos caches locais entre os nós pelo LISTEN/NOTIFY do PostgreSQL (canal "invalidacao_cache").
+ *
+ * Envio: cada EventoAlteracao de Pessoa, Telefone, Profissao ou Usuario é anotado na transação corrente e, só depois do commit,
+ * sai um único NOTIFY com tudo o que a transação alterou ("no|Pessoa:1,Telefone:7"); sem transação o NOTIFY sai na hora. Outros
+ * componentes publicam suas próprias chaves com publicar() (ex.: a sessão encerrada no SessaoJdbcRepository). Mensagens maiores
+ * que o limite do NOTIFY viram "no|*" (limpar tudo).
+ *
+ * Recebimento: uma thread mantém uma conexão própria, fora do pool, com LISTEN no canal, e repassa as chaves recebidas aos beans
+ * CacheInvalidavel. Mensagens do próprio nó são ignoradas (os caches locais já foram atualizados pelos eventos). O driver
+ * PostgreSQL usado (9.2) só entrega notificações depois de uma ida ao servidor, por isso a conexão faz um "SELECT 1" a cada
+ * "app.invalidacao.intervalo-ms". Se a conexão cair, o que foi notificado enquanto ela esteve fora se perdeu: ao reconectar todos
+ * os caches são limpos.
+ * */
+@Component
+public class BarramentoInvalidacao {
+
+	private static final Logger logger = LoggerFactory.getLogger(BarramentoInvalidacao.class);
+
+	static final String CANAL = "invalidacao_cache";
+
+	static final String TUDO = "*";
+
+	// O payload do NOTIFY aceita até 8000 bytes
+	private static final int TAMANHO_MAXIMO_MENSAGEM = 7000;
+
+	private static final Set<Class<?>> ENTIDADES = new LinkedHashSet<Class<?>>(Arrays.asList(Pessoa.class, Telefone.class,
+			Profissao.class, Usuario.class));
+
+	private final String no = UUID.randomUUID().toString();
+
+	@Value("${app.invalidacao.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.invalidacao.intervalo-ms:500}")
+	private long intervaloMs;
+
+	@Value("${app.invalidacao.reconexao-ms:5000}")
+	private long reconexaoMs;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private DataSourceProperties propriedades;
+
+	@Autowired
+	private ApplicationContext contexto;
+
+	private volatile List<CacheInvalidavel> caches = Collections.emptyList();
+
+	private volatile boolean encerrando;
+	private volatile Thread ouvinte;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void iniciar() {
+
+		if (!habilitado) {
+			return;
+		}
+
+		// Procurados só agora para não criar dependência circular com os caches que também publicam aqui
+		iniciar(new ArrayList<CacheInvalidavel>(contexto.getBeansOfType(CacheInvalidavel.class).values()));
+	}
+
+	void iniciar(List<CacheInvalidavel> caches) {
+
+		this.caches = caches;
+
+		Thread thread = new Thread(this::ouvir, "invalidacao-ouvinte");
+		thread.setDaemon(true);
+		ouvinte = thread;
+		thread.start();
+	}
+
+	@EventListener
+	public void aoAlterar(EventoAlteracao evento) {
+
+		if (ENTIDADES.contains(evento.getEntidade())) {
+			publicar(evento.getEntidade().getSimpleName(), evento.getId() != null ? evento.getId().toString() : null);
+		}
+	}
+
+	/** Avisa os outros nós que a chave mudou; dentro de uma transação, só no commit e junto com as demais chaves dela. */
+	public void publicar(String tipo, String id) {
+
+		if (!habilitado) {
+			return;
+		}
+
+		String chave = id != null ? tipo + ":" + id : tipo;
+
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			enviar(Collections.singleton(chave));
+			return;
+		}
+
+		@SuppressWarnings("unchecked")
+		Set<String> pendentes = (Set<String>) TransactionSynchronizationManager.getResource(this);
+
+		if (pendentes == null) {
+
+			Set<String> novas = new LinkedHashSet<String>();
+			pendentes = novas;
+			TransactionSynchronizationManager.bindResource(this, novas);
+
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+
+					TransactionSynchronizationManager.unbindResourceIfPossible(BarramentoInvalidacao.this);
+
+					if (status == TransactionSynchronization.STATUS_COMMITTED) {
+						enviar(novas);
+					}
+				}
+			});
+		}
+
+		pendentes.add(chave);
+	}
+
+	// Conexão direta do DataSource, não a da transação (que já terminou) nem a gerenciada pelo Spring. Sempre no fragmento 0, o
+	// banco do spring.datasource em que todos os nós fazem LISTEN, qualquer que seja o fragmento da transação que alterou
+	private void enviar(Collection<String> chaves) {
+
+		String texto = no + "|" + String.join(",", chaves);
+		String mensagem = texto.getBytes(StandardCharsets.UTF_8).length > TAMANHO_MAXIMO_MENSAGEM ? no + "|" + TUDO : texto;
+
+		ContextoFragmento.em(0, () -> {
+			notificar(mensagem, chaves);
+			return null;
+		});
+	}
+
+	private void notificar(String mensagem, Collection<String> chaves) {
+
+		try (Connection conexao = dataSource.getConnection(); PreparedStatement ps = conexao.prepareStatement("SELECT pg_notify(?, ?)")) {
+			ps.setString(1, CANAL);
+			ps.setString(2, mensagem);
+			ps.execute();
+		} catch (SQLException e) {
+			logger.warn("Falha ao notificar invalidação de cache " + chaves + "; os outros nós podem ficar desatualizados", e);
+		}
+	}
+
+	private void ouvir() {
+
+		boolean limparAoConectar = false;
+
+		while (!encerrando) {
+
+			try (Connection conexao = DriverManager.getConnection(propriedades.determineUrl(), propriedades.determineUsername(),
+					propriedades.determinePassword())) {
+
+				try (Statement st = conexao.createStatement()) {
+					st.execute("LISTEN " + CANAL);
+				}
+
+				if (limparAoConectar) {
+					logger.info("Barramento de invalidação reconectado; caches locais limpos");
+					invalidarTudo();
+				}
+
+				limparAoConectar = true;
+				PGConnection pg = conexao.unwrap(PGConnection.class);
+
+				while (!encerrando) {
+
+					try (Statement st = conexao.createStatement()) {
+						st.execute("SELECT 1");
+					}
+
+					PGNotification[] notificacoes = pg.getNotifications();
+
+					if (notificacoes != null) {
+						for (PGNotification notificacao : notificacoes) {
+							receber(notificacao.getParameter());
+						}
+					}
+
+					Thread.sleep(intervaloMs);
+				}
+
+			} catch (SQLException e) {
+
+				limparAoConectar = true;
+				logger.warn("Barramento de invalidação sem conexão; nova tentativa em " + reconexaoMs + " ms", e);
+				dormir(reconexaoMs);
+
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	void receber(String mensagem) {
+
+		int separador = mensagem.indexOf('|');
+
+		if (separador < 0 || mensagem.substring(0, separador).equals(no)) {
+			return;
+		}
+
+		String corpo = mensagem.substring(separador + 1);
+
+		if (TUDO.equals(corpo)) {
+			invalidarTudo();
+			return;
+		}
+
+		for (String chave : corpo.split(",")) {
+
+			int doisPontos = chave.indexOf(':');
+			String tipo = doisPontos < 0 ? chave : chave.substring(0, doisPontos);
+			String id = doisPontos < 0 ? null : chave.substring(doisPontos + 1);
+
+			for (CacheInvalidavel cache : caches) {
+				try {
+					cache.invalidar(tipo, id);
+				} catch (RuntimeException e) {
+					logger.warn("Falha ao invalidar " + chave + " em " + cache.getClass().getSimpleName(), e);
+				}
+			}
+		}
+	}
+
+	private void invalidarTudo() {
+
+		for (CacheInvalidavel cache : caches) {
+			try {
+				cache.invalidarTudo();
+			} catch (RuntimeException e) {
+				logger.warn("Falha ao limpar " + cache.getClass().getSimpleName(), e);
+			}
+		}
+	}
+
+	private void dormir(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			encerrando = true;
+		}
+	}
+
+	@PreDestroy
+	public void encerrar() {
+
+		encerrando = true;
+		Thread thread = ouvinte;
+
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+}
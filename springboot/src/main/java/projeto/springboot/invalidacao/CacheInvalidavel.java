@@ -0,0 +1,15 @@
+package projeto.springboot.invalidacao;
+
+/**
+ * Cache local que precisa saber de alterações confirmadas em outros nós. As implementações são encontradas pelo
+ * BarramentoInvalidacao entre os beans do contexto e chamadas na thread dele, então devem ser rápidas e thread-safe.
+ * */
+public interface CacheInvalidavel {
+
+	/** Registro alterado em outro nó: tipo é o nome simples da entidade ("Pessoa", "Telefone"...) e id a chave dele. */
+	void invalidar(String tipo, String id);
+
+	/** Alguma notificação pode ter sido perdida (reconexão com o banco): nada do que está em cache é confiável. */
+	void invalidarTudo();
+
+}
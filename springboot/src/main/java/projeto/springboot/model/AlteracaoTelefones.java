@@ -0,0 +1,85 @@
+package projeto.springboot.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lote de alterações nos telefones de uma pessoa, enviado em JSON pela tela de telefones:
+ *
+ * {"adicionar": [{"numero": "...", "tipo": "..."}], "alterar": [{"id": 1, "numero": "...", "tipo": "..."}], "excluir": [2, 3]}
+ *
+ * Também é o formato da resposta (lista "telefones") depois que o lote é aplicado.
+ * */
+public class AlteracaoTelefones {
+
+	private List<Item> adicionar = new ArrayList<Item>();
+	private List<Item> alterar = new ArrayList<Item>();
+	private List<Long> excluir = new ArrayList<Long>();
+
+	public List<Item> getAdicionar() {
+		return adicionar;
+	}
+
+	public void setAdicionar(List<Item> adicionar) {
+		this.adicionar = adicionar == null ? new ArrayList<Item>() : adicionar;
+	}
+
+	public List<Item> getAlterar() {
+		return alterar;
+	}
+
+	public void setAlterar(List<Item> alterar) {
+		this.alterar = alterar == null ? new ArrayList<Item>() : alterar;
+	}
+
+	public List<Long> getExcluir() {
+		return excluir;
+	}
+
+	public void setExcluir(List<Long> excluir) {
+		this.excluir = excluir == null ? new ArrayList<Long>() : excluir;
+	}
+
+	/** Telefone sem a referência para a pessoa (evita serializar Pessoa -> telefones -> Pessoa...). */
+	public static class Item {
+
+		private Long id;
+		private String numero;
+		private String tipo;
+
+		public Item() {
+		}
+
+		public Item(Telefone telefone) {
+			this.id = telefone.getId();
+			this.numero = telefone.getNumero();
+			this.tipo = telefone.getTipo();
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+
+		public String getNumero() {
+			return numero;
+		}
+
+		public void setNumero(String numero) {
+			this.numero = numero;
+		}
+
+		public String getTipo() {
+			return tipo;
+		}
+
+		public void setTipo(String tipo) {
+			this.tipo = tipo;
+		}
+
+	}
+
+}
@@ -0,0 +1,30 @@
+package projeto.springboot.model;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Linha do índice de texto dos currículos (tabela curriculo_indice). Mapeada só para a subconsulta da pesquisa por currículo
+ * (PessoaSpecification); quem grava é o IndiceCurriculoService, por JDBC.
+ * */
+@Entity
+@Immutable
+@Table(name = "curriculo_indice")
+public class CurriculoIndice {
+
+	@Id
+	@Column(name = "pessoa_id")
+	private Long pessoaId;
+
+	@Column(columnDefinition = "tsvector", insertable = false, updatable = false)
+	private String documento;
+
+	public Long getPessoaId() {
+		return pessoaId;
+	}
+
+}
@@ -0,0 +1,80 @@
+package projeto.springboot.model;
+
+import java.io.Serializable;
+
+/**
+ * Endereço retornado pela consulta de CEP ("/cep/{cep}"). Não é uma entidade, apenas transporta os campos que o formulário de cadastro
+ * preenche automaticamente (rua, bairro, cidade, uf e ibge), com os mesmos nomes usados na classe Pessoa.
+ * */
+public class Endereco implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private String cep;
+	private String rua;
+	private String bairro;
+	private String cidade;
+	private String uf;
+	private String ibge;
+
+	public Endereco() {
+	}
+
+	public Endereco(String cep, String rua, String bairro, String cidade, String uf, String ibge) {
+		this.cep = cep;
+		this.rua = rua;
+		this.bairro = bairro;
+		this.cidade = cidade;
+		this.uf = uf;
+		this.ibge = ibge;
+	}
+
+	public String getCep() {
+		return cep;
+	}
+
+	public void setCep(String cep) {
+		this.cep = cep;
+	}
+
+	public String getRua() {
+		return rua;
+	}
+
+	public void setRua(String rua) {
+		this.rua = rua;
+	}
+
+	public String getBairro() {
+		return bairro;
+	}
+
+	public void setBairro(String bairro) {
+		this.bairro = bairro;
+	}
+
+	public String getCidade() {
+		return cidade;
+	}
+
+	public void setCidade(String cidade) {
+		this.cidade = cidade;
+	}
+
+	public String getUf() {
+		return uf;
+	}
+
+	public void setUf(String uf) {
+		this.uf = uf;
+	}
+
+	public String getIbge() {
+		return ibge;
+	}
+
+	public void setIbge(String ibge) {
+		this.ibge = ibge;
+	}
+
+}
@@ -10,7 +10,6 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
@@ -21,6 +20,9 @@ import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.format.annotation.DateTimeFormat;
 
 @Entity
@@ -29,7 +31,9 @@ public class Pessoa implements Serializable {
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(generator = "seq_pessoa")
+	@GenericGenerator(name = "seq_pessoa", strategy = "projeto.springboot.fragmentacao.GeradorIdFragmentado", parameters = {
+			@Parameter(name = "sequence_name", value = "seq_pessoa"), @Parameter(name = "increment_size", value = "50") }) // ver V2__indices_e_sequencias.sql
 	private Long id;
 
 	@NotNull(message = "Nome não pode ser nulo")
@@ -73,6 +77,16 @@ public class Pessoa implements Serializable {
 	private String nomeFileCurriculo;
 	private String tipoFileCurriculo;
 
+	// Como "curriculo" está guardado (ArmazenamentoCurriculoService): codec e tamanhos original e armazenado
+	private String codecCurriculo;
+	private Long tamanhoCurriculo;
+	private Long tamanhoArmazenadoCurriculo;
+
+	// Usada pelo arquivamento: pessoas sem alteração há muito tempo vão para pessoa_arquivo (ArquivamentoService)
+	@UpdateTimestamp
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date dataAtualizacao;
+
 	public Long getId() {
 		return id;
 	}
@@ -217,6 +231,38 @@ public class Pessoa implements Serializable {
 		this.tipoFileCurriculo = tipoFileCurriculo;
 	}
 
+	public String getCodecCurriculo() {
+		return codecCurriculo;
+	}
+
+	public void setCodecCurriculo(String codecCurriculo) {
+		this.codecCurriculo = codecCurriculo;
+	}
+
+	public Long getTamanhoCurriculo() {
+		return tamanhoCurriculo;
+	}
+
+	public void setTamanhoCurriculo(Long tamanhoCurriculo) {
+		this.tamanhoCurriculo = tamanhoCurriculo;
+	}
+
+	public Long getTamanhoArmazenadoCurriculo() {
+		return tamanhoArmazenadoCurriculo;
+	}
+
+	public void setTamanhoArmazenadoCurriculo(Long tamanhoArmazenadoCurriculo) {
+		this.tamanhoArmazenadoCurriculo = tamanhoArmazenadoCurriculo;
+	}
+	
+	public Date getDataAtualizacao() {
+		return dataAtualizacao;
+	}
+	
+	public void setDataAtualizacao(Date dataAtualizacao) {
+		this.dataAtualizacao = dataAtualizacao;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(id);
@@ -0,0 +1,72 @@
+package projeto.springboot.model;
+
+import java.util.Date;
+
+/** Linha de pessoa_arquivo mostrada na pesquisa com "incluir arquivadas"; só leitura, volta a ser Pessoa ao ser restaurada. */
+public class PessoaArquivada {
+
+	private Long id;
+	private String nome;
+	private String sobrenome;
+	private int idade;
+	private String cidade;
+	private String uf;
+	private Date dataArquivamento;
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public void setNome(String nome) {
+		this.nome = nome;
+	}
+
+	public String getSobrenome() {
+		return sobrenome;
+	}
+
+	public void setSobrenome(String sobrenome) {
+		this.sobrenome = sobrenome;
+	}
+
+	public int getIdade() {
+		return idade;
+	}
+
+	public void setIdade(int idade) {
+		this.idade = idade;
+	}
+
+	public String getCidade() {
+		return cidade;
+	}
+
+	public void setCidade(String cidade) {
+		this.cidade = cidade;
+	}
+
+	public String getUf() {
+		return uf;
+	}
+
+	public void setUf(String uf) {
+		this.uf = uf;
+	}
+
+	public Date getDataArquivamento() {
+		return dataArquivamento;
+	}
+
+	public void setDataArquivamento(Date dataArquivamento) {
+		this.dataArquivamento = dataArquivamento;
+	}
+
+}
@@ -6,19 +6,23 @@ import java.util.Objects;
 import javax.persistence.Entity;
 import javax.persistence.ForeignKey;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 @Entity
 public class Telefone implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.AUTO)
+	@GeneratedValue(generator = "seq_telefone")
+	@GenericGenerator(name = "seq_telefone", strategy = "projeto.springboot.fragmentacao.GeradorIdFragmentado", parameters = {
+			@Parameter(name = "sequence_name", value = "seq_telefone"), @Parameter(name = "increment_size", value = "50") })
 	private Long id;
 
 	private String numero;
@@ -0,0 +1,132 @@
+package projeto.springboot.repository;
+
+import java.io.Serializable;
+
+import projeto.springboot.model.Cargo;
+
+/**
+ * Critérios opcionais da pesquisa de pessoas. Campos nulos ou vazios são ignorados; os informados são combinados com AND
+ * pelo PessoaSpecification.
+ * */
+public class FiltroPesquisaPessoa implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Como o nome é comparado. Ambos ignoram maiúsculas/minúsculas e usam índice (ver db/migration/V2__indices_e_sequencias.sql). */
+	public enum TipoBuscaNome {
+		/** lower(nome) like 'valor%' - índice btree text_pattern_ops. */
+		PREFIXO,
+		/** lower(nome) like '%valor%' - índice GIN de trigramas (pg_trgm), só vale a partir de 3 caracteres. */
+		TRECHO
+	}
+
+	private String nome;
+	private TipoBuscaNome tipoBuscaNome = TipoBuscaNome.TRECHO;
+	private String sexo;
+	private String cidade;
+	private String uf;
+	private Cargo cargo;
+	private Long profissao;
+	private Integer idadeMinima;
+	private Integer idadeMaxima;
+	/** Palavras procuradas no texto do currículo (índice curriculo_indice, ver IndiceCurriculoService). */
+	private String curriculo;
+
+	public static FiltroPesquisaPessoa porNomeSexo(String nome, String sexo) {
+		FiltroPesquisaPessoa filtro = new FiltroPesquisaPessoa();
+		filtro.setNome(nome);
+		filtro.setSexo(sexo);
+		return filtro;
+	}
+
+	/** Nenhum critério informado: a pesquisa traz todas as pessoas. */
+	public boolean isVazio() {
+		return vazio(nome) && vazio(sexo) && vazio(cidade) && vazio(uf) && cargo == null && profissao == null && idadeMinima == null
+				&& idadeMaxima == null && vazio(curriculo);
+	}
+
+	private static boolean vazio(String valor) {
+		return valor == null || valor.trim().isEmpty();
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public void setNome(String nome) {
+		this.nome = nome;
+	}
+
+	public TipoBuscaNome getTipoBuscaNome() {
+		return tipoBuscaNome;
+	}
+
+	public void setTipoBuscaNome(TipoBuscaNome tipoBuscaNome) {
+		this.tipoBuscaNome = tipoBuscaNome;
+	}
+
+	public String getSexo() {
+		return sexo;
+	}
+
+	public void setSexo(String sexo) {
+		this.sexo = sexo;
+	}
+
+	public String getCidade() {
+		return cidade;
+	}
+
+	public void setCidade(String cidade) {
+		this.cidade = cidade;
+	}
+
+	public String getUf() {
+		return uf;
+	}
+
+	public void setUf(String uf) {
+		this.uf = uf;
+	}
+
+	public Cargo getCargo() {
+		return cargo;
+	}
+
+	public void setCargo(Cargo cargo) {
+		this.cargo = cargo;
+	}
+
+	public Long getProfissao() {
+		return profissao;
+	}
+
+	public void setProfissao(Long profissao) {
+		this.profissao = profissao;
+	}
+
+	public Integer getIdadeMinima() {
+		return idadeMinima;
+	}
+
+	public void setIdadeMinima(Integer idadeMinima) {
+		this.idadeMinima = idadeMinima;
+	}
+
+	public Integer getIdadeMaxima() {
+		return idadeMaxima;
+	}
+
+	public void setIdadeMaxima(Integer idadeMaxima) {
+		this.idadeMaxima = idadeMaxima;
+	}
+
+	public String getCurriculo() {
+		return curriculo;
+	}
+
+	public void setCurriculo(String curriculo) {
+		this.curriculo = curriculo;
+	}
+
+}
@@ -0,0 +1,41 @@
+package projeto.springboot.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Página da pesquisa de pessoas em que o total pode ser uma estimativa do planejador (ver PessoaRepositoryImpl). Existir uma
+ * próxima página é sempre exato: a consulta traz um registro a mais que o tamanho da página.
+ * */
+public class PaginaPessoas extends PageImpl<Pessoa> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final boolean totalAproximado;
+	private final boolean temProxima;
+
+	public PaginaPessoas(List<Pessoa> conteudo, Pageable pageable, long total, boolean totalAproximado, boolean temProxima) {
+		super(conteudo, pageable, total);
+		this.totalAproximado = totalAproximado;
+		this.temProxima = temProxima;
+	}
+
+	public boolean isTotalAproximado() {
+		return totalAproximado;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return temProxima;
+	}
+
+	@Override
+	public boolean isLast() {
+		return !temProxima;
+	}
+
+}
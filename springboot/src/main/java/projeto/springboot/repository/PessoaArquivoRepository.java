@@ -0,0 +1,101 @@
+package projeto.springboot.repository;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.PessoaArquivada;
+
+/**
+ * Acesso às tabelas frias pessoa_arquivo e telefone_arquivo (db/migration/V3__arquivo_pessoas.sql).
+ *
+ * As pessoas são movidas com INSERT ... SELECT e DELETE por conjunto de ids, sem passar pelas entidades: o currículo (oid) vai
+ * junto como referência e os telefones mantêm os ids. As listas de colunas precisam acompanhar as tabelas pessoa e telefone.
+ * Deve ser chamado dentro de uma transação (ArquivamentoService).
+ * */
+@Repository
+public class PessoaArquivoRepository {
+
+	private static final String COLUNAS_PESSOA = "id, bairro, cargo, cep, cidade, curriculo, data_nascimento, ibge, idade, nome, "
+			+ "nome_file_curriculo, rua, sexopessoa, sobrenome, tipo_file_curriculo, uf, profissaopessoa_id, codec_curriculo, tamanho_curriculo, "
+			+ "tamanho_armazenado_curriculo";
+
+	private static final String COLUNAS_TELEFONE = "id, numero, tipo, pessoa_id";
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbc;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	/** Pessoas sem alteração desde o limite, mais antigas primeiro; as travadas por outra transação ficam para a próxima vez. */
+	public List<Long> inativas(Date limite, int quantidade) {
+
+		return jdbc.queryForList("SELECT id FROM pessoa WHERE data_atualizacao < :limite ORDER BY data_atualizacao, id LIMIT :quantidade "
+				+ "FOR UPDATE SKIP LOCKED", new MapSqlParameterSource("limite", limite).addValue("quantidade", quantidade), Long.class);
+	}
+
+	/** Move as pessoas e seus telefones para as tabelas de arquivo; retorna quantas pessoas foram movidas. */
+	public int arquivar(Collection<Long> ids) {
+
+		MapSqlParameterSource parametros = new MapSqlParameterSource("ids", ids);
+
+		jdbc.update("INSERT INTO telefone_arquivo (" + COLUNAS_TELEFONE + ") SELECT " + COLUNAS_TELEFONE
+				+ " FROM telefone WHERE pessoa_id IN (:ids)", parametros);
+		jdbc.update("INSERT INTO pessoa_arquivo (" + COLUNAS_PESSOA + ", data_atualizacao, data_arquivamento) SELECT " + COLUNAS_PESSOA
+				+ ", data_atualizacao, now() FROM pessoa WHERE id IN (:ids)", parametros);
+		jdbc.update("DELETE FROM telefone WHERE pessoa_id IN (:ids)", parametros);
+
+		return jdbc.update("DELETE FROM pessoa WHERE id IN (:ids)", parametros);
+	}
+
+	/** Devolve a pessoa (e telefones) para as tabelas quentes como recém-alterada; false se ela não estiver arquivada. */
+	public boolean restaurar(Long id) {
+
+		MapSqlParameterSource parametros = new MapSqlParameterSource("id", id);
+
+		int restauradas = jdbc.update("INSERT INTO pessoa (" + COLUNAS_PESSOA + ", data_atualizacao) SELECT " + COLUNAS_PESSOA
+				+ ", now() FROM pessoa_arquivo WHERE id = :id", parametros);
+
+		if (restauradas == 0) {
+			return false;
+		}
+
+		jdbc.update("INSERT INTO telefone (" + COLUNAS_TELEFONE + ") SELECT " + COLUNAS_TELEFONE
+				+ " FROM telefone_arquivo WHERE pessoa_id = :id", parametros);
+		jdbc.update("DELETE FROM telefone_arquivo WHERE pessoa_id = :id", parametros);
+		jdbc.update("DELETE FROM pessoa_arquivo WHERE id = :id", parametros);
+
+		return true;
+	}
+
+	/** Pesquisa nas pessoas arquivadas com o mesmo critério de nome da tela (prefixo ou trecho) e sexo. */
+	public List<PessoaArquivada> pesquisar(FiltroPesquisaPessoa filtro, int limite) {
+
+		StringBuilder sql = new StringBuilder("SELECT id, nome, sobrenome, idade, cidade, uf, data_arquivamento FROM pessoa_arquivo WHERE 1 = 1");
+		MapSqlParameterSource parametros = new MapSqlParameterSource("limite", limite);
+
+		if (filtro.getNome() != null && !filtro.getNome().trim().isEmpty()) {
+			sql.append(" AND lower(nome) LIKE :nome ESCAPE '\\'");
+			parametros.addValue("nome", PessoaSpecification.padraoNome(filtro));
+		}
+
+		if (filtro.getSexo() != null && !filtro.getSexo().trim().isEmpty()) {
+			sql.append(" AND sexopessoa = :sexo");
+			parametros.addValue("sexo", filtro.getSexo());
+		}
+
+		// Com fragmentos, na ordem binária que a JuncaoOrdenada usa para juntar os resultados de todos
+		sql.append(mapaFragmentos.ativo() ? " ORDER BY nome COLLATE \"C\", id LIMIT :limite" : " ORDER BY nome, id LIMIT :limite");
+
+		return jdbc.query(sql.toString(), parametros, BeanPropertyRowMapper.newInstance(PessoaArquivada.class));
+	}
+
+}
@@ -1,12 +1,13 @@
 package projeto.springboot.repository;
 
+import java.util.Collection;
 import java.util.List;
 
-import org.springframework.data.domain.Example;
-import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
@@ -16,7 +17,7 @@ import projeto.springboot.model.Pessoa;
 
 @Repository
 @Transactional
-public interface PessoaRepository extends JpaRepository<Pessoa, Long>{
+public interface PessoaRepository extends JpaRepository<Pessoa, Long>, JpaSpecificationExecutor<Pessoa>, PessoaRepositoryCustom{
 	
 	/**
 	 * O código abaixo é uma declaração de método em uma interface de repositório no Spring Data JPA. Ele define uma consulta personalizada 
@@ -79,66 +80,76 @@ public interface PessoaRepository extends JpaRepository<Pessoa, Long>{
 	
 	
 	/**
-	 * O método abaixo faz parte de um repositório que estende a interface `JpaRepository` ou `PagingAndSortingRepository` do Spring Data JPA. O objetivo desse método é realizar uma 
-	 * consulta paginada de pessoas por parte do nome usando o recurso de `Example` do Spring Data JPA.
+	 * Pesquisa paginada de pessoas por parte do nome.
 	 * 
-	 * Vamos entender o que cada parte do script faz:
-	 * 
-	 * 1. `default Page<Pessoa> findPessoaByNamePage(String nome, Pageable pageable) {`: Essa é a assinatura do método. Ele recebe um parâmetro `nome` para buscar pessoas cujo 
-	 *    nome contenha uma determinada parte e um parâmetro `pageable`, que define a paginação dos resultados.
-	 *    
-	 * 2. `Pessoa pessoa = new Pessoa(); pessoa.setNome(nome);`: Aqui, é criada uma instância da classe `Pessoa` e definido o atributo `nome` com o valor passado como parâmetro.
-	 * 
-	 * 3. `ExampleMatcher exampleMatcher = ExampleMatcher.matchingAny().withMatcher(nome, ExampleMatcher.GenericPropertyMatchers.contains().ignoreCase());`: É criado um 
-	 *    `ExampleMatcher` para configurar a pesquisa por partes do nome, usando o operador SQL `LIKE`. O método `matchingAny()` indica que a pesquisa pode ser realizada em 
-	 *    qualquer uma das propriedades da entidade. `withMatcher(nome, ExampleMatcher.GenericPropertyMatchers.contains().ignoreCase())` especifica que a pesquisa deve ser feita 
-	 *    na propriedade `nome` e que ela deve conter a parte do nome ignorando maiúsculas e minúsculas.
-	 *    
-	 * 4. `Example<Pessoa> example = Example.of(pessoa, exampleMatcher);`: A partir do objeto `pessoa` e do `exampleMatcher`, é criada uma instância de `Example<Pessoa>`. O 
-	 *    `Example` representa um exemplo da entidade que será utilizado na consulta para definir as condições da busca.
-	 *    
-	 * 5. `Page<Pessoa> pessoas = findAll(example, pageable);`: É feita a consulta usando o método `findAll()` do repositório com base no `Example` criado e nas configurações 
-	 *    de paginação definidas pelo `pageable`.
-	 *    
-	 * 6. `return pessoas;`: O método retorna o resultado da consulta paginada de pessoas.
-	 * 
-	 * Com esse método, você pode buscar pessoas cujo nome contenha uma parte específica e obter os resultados paginados, o que é útil para apresentar grandes conjuntos de dados 
-	 * de forma mais organizada e eficiente em uma interface de usuário.
+	 * Antes era feita com `Example` + `ExampleMatcher.contains()`, que gera `nome like '%valor%'` sem índice possível. Agora a pesquisa 
+	 * é montada pelo `PessoaSpecification`, que compara `lower(nome)` usando o índice de trigramas (ou de prefixo, para textos curtos). 
+	 * O resultado continua sendo a página de pessoas cujo nome contém o valor informado, ignorando maiúsculas e minúsculas.
 	 * */
 	default Page<Pessoa> findPessoaByNamePage(String nome, Pageable pageable){
 		
-		Pessoa pessoa = new Pessoa();
-		pessoa.setNome(nome);
-		
-		// Configurando a pesquisa para a consulta por partes do nome no banco de dados, igual a LIKE do SQL.
-		ExampleMatcher exampleMatcher = ExampleMatcher.matchingAny().withMatcher("nome", ExampleMatcher.GenericPropertyMatchers.contains().ignoreCase());
-		
-		// Une o objeto com o valor e a configuração para a consulta 
-		Example<Pessoa> example = Example.of(pessoa, exampleMatcher);
-		
-		Page<Pessoa> pessoas = findAll(example, pageable);
-		
-		return pessoas;
+		return paginar(FiltroPesquisaPessoa.porNomeSexo(nome, null), pageable);
 	}
 	
 	
+	/**
+	 * Pesquisa paginada por nome E sexo. O `ExampleMatcher.matchingAny()` usado antes fazia um OR entre os dois campos, então 
+	 * trazia todas as pessoas do sexo escolhido independente do nome. O sexo agora é comparado por igualdade.
+	 * */
 	default Page<Pessoa> findPessoaBySexoPage(String nome, String sexo, Pageable pageable){
 		
-		Pessoa pessoa = new Pessoa();
-		pessoa.setNome(nome);
-		pessoa.setSexopessoa(sexo);
-		
-		// Configurando a pesquisa para a consulta por partes do nome no banco de dados, igual a LIKE do SQL.
-		ExampleMatcher exampleMatcher = ExampleMatcher.matchingAny()
-				.withMatcher("nome", ExampleMatcher.GenericPropertyMatchers.contains().ignoreCase())
-				.withMatcher("sexopessoa", ExampleMatcher.GenericPropertyMatchers.contains().ignoreCase());
-		
-		// Une o objeto com o valor e a configuração para a consulta 
-		Example<Pessoa> example = Example.of(pessoa, exampleMatcher);
-		
-		Page<Pessoa> pessoas = findAll(example, pageable);
+		return paginar(FiltroPesquisaPessoa.porNomeSexo(nome, sexo), pageable);
+	}
+	
+	
+	/**
+	 * Pesquisa com qualquer combinação dos filtros (nome, sexo, cidade, UF, cargo, profissão e faixa de idade), todos com AND.
+	 * 
+	 * As três pesquisas paginadas passam pelo `paginar` (PessoaRepositoryImpl): em resultados grandes o total da página é a 
+	 * estimativa do planejador em vez de um count(*), e a página (PaginaPessoas) vem marcada como aproximada.
+	 * */
+	default Page<Pessoa> pesquisar(FiltroPesquisaPessoa filtro, Pageable pageable){
 		
-		return pessoas;
+		return paginar(filtro, pageable);
 	}
 	
+	
+	/**
+	 * Consultas de agrupamento usadas apenas para (re)construir os contadores do EstatisticaPessoaService. Cada linha retornada é
+	 * um Object[] com o valor agrupado seguido da quantidade (Long). O dashboard não chama essas consultas, ele lê os contadores.
+	 * */
+
+	@Query("select p.sexopessoa, count(p) from Pessoa p group by p.sexopessoa")
+	List<Object[]> contarPorSexo();
+
+	@Query("select p.cargo, count(p) from Pessoa p group by p.cargo")
+	List<Object[]> contarPorCargo();
+
+	@Query("select pr.id, count(p) from Pessoa p left join p.profissaopessoa pr group by pr.id")
+	List<Object[]> contarPorProfissao();
+
+	@Query("select p.cidade, p.uf, count(p) from Pessoa p group by p.cidade, p.uf")
+	List<Object[]> contarPorCidadeUf();
+
+	@Query("select p.idade, count(p) from Pessoa p group by p.idade")
+	List<Object[]> contarPorIdade();	
+	
+	/**
+	 * Operações em lote do PessoaLoteService: trabalham direto no banco, sem carregar as entidades (nem o currículo).
+	 * 
+	 * `resumoParaEventos` traz só os campos que os consumidores de EventoAlteracao usam (id, sexopessoa, cargo, profissaopessoa, 
+	 * cidade, uf, idade), já que DELETE/UPDATE em JPQL não passam pelos eventos do Hibernate.
+	 * */
+
+	@Query("select p.id, p.sexopessoa, p.cargo, p.profissaopessoa.id, p.cidade, p.uf, p.idade from Pessoa p where p.id in ?1")
+	List<Object[]> resumoParaEventos(Collection<Long> ids);
+
+	// O currículo é um large object do PostgreSQL (coluna oid): apagar a linha não apaga o conteúdo, ele precisa de lo_unlink
+	@Query(value = "select lo_unlink(curriculo) from pessoa where id in ?1 and curriculo is not null", nativeQuery = true)
+	List<Integer> liberarCurriculos(Collection<Long> ids);
+
+	@Modifying
+	@Query("delete from Pessoa p where p.id in ?1")
+	int excluirPorIds(Collection<Long> ids);
+
 }
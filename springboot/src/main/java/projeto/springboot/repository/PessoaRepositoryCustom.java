@@ -0,0 +1,14 @@
+package projeto.springboot.repository;
+
+import org.springframework.data.domain.Pageable;
+
+/** Consultas de pessoa implementadas à mão (PessoaRepositoryImpl), incluídas no PessoaRepository pelo Spring Data. */
+public interface PessoaRepositoryCustom {
+
+	/**
+	 * Página da pesquisa (mesmos critérios do PessoaSpecification) sem o count(*) exato quando o resultado é grande: acima de
+	 * "app.paginacao.limite-contagem-exata" o total vem da estimativa de linhas do planejador e a página é marcada como aproximada.
+	 * */
+	PaginaPessoas paginar(FiltroPesquisaPessoa filtro, Pageable pageable);
+
+}
@@ -0,0 +1,205 @@
+package projeto.springboot.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Root;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import projeto.springboot.fragmentacao.DialetoPostgreSQL;
+import projeto.springboot.fragmentacao.FragmentosService;
+import projeto.springboot.fragmentacao.JuncaoOrdenada;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Paginação da pesquisa de pessoas sem count(*) em tabela grande.
+ *
+ * A página é lida com um registro a mais, então "tem próxima página" é sempre exato e, na última página, o total também sai
+ * dela mesma. Nas outras, o total vem primeiro de uma estimativa do banco: o reltuples da tabela sem filtros, o EXPLAIN do mesmo
+ * filtro em SQL nativo (PessoaSpecification.ondeNativo) com eles. Se o planejador estimar menos que "app.paginacao.limite-contagem-exata" linhas, o count(*) é barato e feito de verdade; acima
+ * disso a estimativa é usada como total e a página sai marcada como aproximada (a tela mostra "cerca de"). Sem estimativa (tabela
+ * nunca analisada, plano ilegível) o total é o count(*).
+ *
+ * Com a fragmentação ativa (MapaFragmentos), a mesma pesquisa roda em todos os fragmentos em paralelo, inclusive a filtrada por
+ * UF (a pessoa cuja UF foi alterada continua no fragmento da UF antiga), cada um devolvendo as primeiras "offset + tamanho"
+ * pessoas na ordem pedida (mais o id, para desempate; texto pela ordem binária, igual em todos os bancos), e as listas são
+ * juntadas mantendo a ordem (JuncaoOrdenada). O total é a soma dos totais dos fragmentos e é aproximado se algum deles for.
+ * Páginas distantes custam caro nesse modo, pois cada fragmento lê todas as linhas até a página.
+ * */
+public class PessoaRepositoryImpl implements PessoaRepositoryCustom {
+
+	private static final Logger logger = LoggerFactory.getLogger(PessoaRepositoryImpl.class);
+
+	// Primeira linha do EXPLAIN: "Seq Scan on pessoa p  (cost=0.00..1234.00 rows=1000000 width=4)"
+	private static final Pattern LINHAS_ESTIMADAS = Pattern.compile("rows=(\\d+)");
+
+	@Value("${app.paginacao.limite-contagem-exata:10000}")
+	private long limiteContagemExata;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private FragmentosService fragmentosService;
+
+	@Override
+	public PaginaPessoas paginar(FiltroPesquisaPessoa filtro, Pageable pageable) {
+
+		if (!mapaFragmentos.ativo()) {
+			return paginarNoFragmento(filtro, pageable);
+		}
+
+		Sort ordem = pageable.getSort().and(Sort.by("id"));
+		int ate = (int) pageable.getOffset() + pageable.getPageSize();
+
+		List<PaginaPessoas> paginas = fragmentosService.consultarTodos(f -> paginarNoFragmento(filtro, PageRequest.of(0, ate, ordem)));
+
+		List<List<Pessoa>> conteudos = new ArrayList<List<Pessoa>>();
+		long total = 0;
+		long lidas = 0;
+		boolean aproximado = false;
+		boolean temProxima = false;
+
+		for (PaginaPessoas pagina : paginas) {
+			conteudos.add(pagina.getContent());
+			total += pagina.getTotalElements();
+			lidas += pagina.getNumberOfElements();
+			aproximado |= pagina.isTotalAproximado();
+			temProxima |= pagina.hasNext();
+		}
+
+		List<Pessoa> conteudo = JuncaoOrdenada.juntar(conteudos, JuncaoOrdenada.comparador(pageable.getSort(), "id"), pageable.getOffset(),
+				pageable.getPageSize());
+		temProxima |= lidas > ate;
+
+		long minimo = pageable.getOffset() + conteudo.size() + (temProxima ? 1 : 0);
+
+		return new PaginaPessoas(conteudo, pageable, Math.max(total, minimo), aproximado, temProxima);
+	}
+
+	private PaginaPessoas paginarNoFragmento(FiltroPesquisaPessoa filtro, Pageable pageable) {
+
+		Specification<Pessoa> especificacao = PessoaSpecification.de(filtro);
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+		CriteriaQuery<Pessoa> consulta = cb.createQuery(Pessoa.class);
+		Root<Pessoa> pessoa = consulta.from(Pessoa.class);
+		consulta.select(pessoa).where(especificacao.toPredicate(pessoa, consulta, cb));
+		consulta.orderBy(ordem(pageable.getSort(), pessoa, cb));
+
+		List<Pessoa> conteudo = new ArrayList<Pessoa>(entityManager.createQuery(consulta)
+				.setFirstResult((int) pageable.getOffset()).setMaxResults(pageable.getPageSize() + 1).getResultList());
+
+		boolean temProxima = conteudo.size() > pageable.getPageSize();
+
+		if (temProxima) {
+			conteudo.remove(conteudo.size() - 1);
+		} else if (!conteudo.isEmpty() || pageable.getOffset() == 0) {
+			return new PaginaPessoas(conteudo, pageable, pageable.getOffset() + conteudo.size(), false, false);
+		}
+
+		long estimativa = estimar(filtro);
+
+		// -1 (plano ilegível) também cai aqui
+		if (estimativa < limiteContagemExata) {
+			return new PaginaPessoas(conteudo, pageable, contar(especificacao), false, temProxima);
+		}
+
+		// A estimativa pode errar para menos; nunca menor do que já se sabe que existe
+		long minimo = pageable.getOffset() + conteudo.size() + (temProxima ? 1 : 0);
+
+		return new PaginaPessoas(conteudo, pageable, Math.max(estimativa, minimo), true, temProxima);
+	}
+
+	// Com fragmentos, texto e enum vão pela ordem binária, a mesma da JuncaoOrdenada, e não pela collation de cada banco
+	private List<Order> ordem(Sort sort, Root<Pessoa> pessoa, CriteriaBuilder cb) {
+
+		List<Order> ordens = QueryUtils.toOrders(sort, pessoa, cb);
+
+		if (!mapaFragmentos.ativo()) {
+			return ordens;
+		}
+
+		List<Order> binarias = new ArrayList<Order>();
+
+		for (Order ordem : ordens) {
+
+			Class<?> tipo = ordem.getExpression().getJavaType();
+
+			if (tipo != null && (String.class.equals(tipo) || tipo.isEnum())) {
+				Expression<String> binaria = cb.function(DialetoPostgreSQL.ORDEM_BINARIA, String.class, ordem.getExpression());
+				binarias.add(ordem.isAscending() ? cb.asc(binaria) : cb.desc(binaria));
+			} else {
+				binarias.add(ordem);
+			}
+		}
+
+		return binarias;
+	}
+
+	private long contar(Specification<Pessoa> especificacao) {
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Long> consulta = cb.createQuery(Long.class);
+		Root<Pessoa> pessoa = consulta.from(Pessoa.class);
+		consulta.select(cb.count(pessoa)).where(especificacao.toPredicate(pessoa, consulta, cb));
+
+		return entityManager.createQuery(consulta).getSingleResult();
+	}
+
+	// Linhas estimadas para a pesquisa, ou -1 se não houver estimativa (o chamador faz o count(*)). Sem filtros é o reltuples da
+	// tabela, mantido pelo ANALYZE/autovacuum; com filtros, o EXPLAIN do WHERE nativo equivalente (PessoaSpecification.ondeNativo),
+	// que não executa a consulta.
+	long estimar(FiltroPesquisaPessoa filtro) {
+
+		try {
+			if (filtro.isVazio()) {
+				Number linhas = (Number) entityManager.createNativeQuery("SELECT c.reltuples FROM pg_class c WHERE c.relname = 'pessoa' "
+						+ "AND c.relkind = 'r' AND pg_table_is_visible(c.oid)").getSingleResult();
+
+				// Tabela nunca analisada: -1 a partir do PostgreSQL 14
+				return linhas.longValue() >= 0 ? linhas.longValue() : -1;
+			}
+
+			List<Object> parametros = new ArrayList<Object>();
+			Query explain = entityManager.createNativeQuery("EXPLAIN SELECT 1 FROM pessoa p " + PessoaSpecification.ondeNativo(filtro,
+					parametros));
+
+			for (int i = 0; i < parametros.size(); i++) {
+				explain.setParameter(i + 1, parametros.get(i));
+			}
+
+			List<?> plano = explain.getResultList();
+			Matcher linhas = plano.isEmpty() ? null : LINHAS_ESTIMADAS.matcher(plano.get(0).toString());
+
+			return linhas != null && linhas.find() ? Long.parseLong(linhas.group(1)) : -1;
+
+		} catch (RuntimeException e) {
+			logger.debug("Estimativa da pesquisa de pessoas indisponível; total pelo count(*)", e);
+			return -1;
+		}
+	}
+
+}
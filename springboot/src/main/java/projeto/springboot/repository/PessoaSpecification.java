@@ -0,0 +1,180 @@
+package projeto.springboot.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import projeto.springboot.model.CurriculoIndice;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Monta a consulta de pessoas a partir do FiltroPesquisaPessoa.
+ *
+ * Só são gerados predicados que o banco consegue resolver por índice: igualdade, intervalo e LIKE sobre lower(nome) com o padrão
+ * sempre iniciando por um valor fixo (prefixo) ou, no modo trecho, atendido pelo índice de trigramas. Os índices correspondentes
+ * estão na migração db/migration/V2__indices_e_sequencias.sql. O texto do currículo é procurado no tsvector de curriculo_indice
+ * (índice GIN de V6__indice_curriculo.sql) por uma subconsulta "id in (...)".
+ *
+ * A ordem dos predicados é fixa (sexo, nome, uf, cidade, cargo, profissão, idade, currículo) para que o SQL gerado seja sempre o
+ * mesmo para o mesmo conjunto de filtros.
+ * */
+public final class PessoaSpecification {
+
+	private static final char ESCAPE = '\\';
+
+	/** Abaixo disso o índice de trigramas não ajuda, então a busca por trecho vira busca por prefixo. */
+	static final int MINIMO_TRIGRAMA = 3;
+
+	private PessoaSpecification() {
+	}
+
+	public static Specification<Pessoa> de(FiltroPesquisaPessoa filtro) {
+
+		return (root, query, cb) -> {
+
+			List<Predicate> predicados = new ArrayList<Predicate>();
+
+			if (informado(filtro.getSexo())) {
+				predicados.add(cb.equal(root.get("sexopessoa"), filtro.getSexo()));
+			}
+
+			if (informado(filtro.getNome())) {
+				Expression<String> nome = cb.lower(root.get("nome"));
+				predicados.add(cb.like(nome, padraoNome(filtro), ESCAPE));
+			}
+
+			if (informado(filtro.getUf())) {
+				predicados.add(cb.equal(root.get("uf"), filtro.getUf().trim().toUpperCase()));
+			}
+
+			if (informado(filtro.getCidade())) {
+				predicados.add(cb.equal(root.get("cidade"), filtro.getCidade().trim()));
+			}
+
+			if (filtro.getCargo() != null) {
+				predicados.add(cb.equal(root.get("cargo"), filtro.getCargo()));
+			}
+
+			if (filtro.getProfissao() != null) {
+				// Compara a chave estrangeira direto, sem join com profissao
+				predicados.add(cb.equal(root.get("profissaopessoa").get("id"), filtro.getProfissao()));
+			}
+
+			if (filtro.getIdadeMinima() != null) {
+				predicados.add(cb.greaterThanOrEqualTo(root.get("idade"), filtro.getIdadeMinima()));
+			}
+
+			if (filtro.getIdadeMaxima() != null) {
+				predicados.add(cb.lessThanOrEqualTo(root.get("idade"), filtro.getIdadeMaxima()));
+			}
+
+			if (informado(filtro.getCurriculo())) {
+				// curriculo_corresponde(documento, texto) é expandida pelo PostgreSQL para documento @@ plainto_tsquery(...)
+				Subquery<Long> indexados = query.subquery(Long.class);
+				Root<CurriculoIndice> indice = indexados.from(CurriculoIndice.class);
+				indexados.select(indice.get("pessoaId")).where(cb.isTrue(cb.function("curriculo_corresponde", Boolean.class,
+						indice.get("documento"), cb.literal(filtro.getCurriculo().trim()))));
+				predicados.add(root.get("id").in(indexados));
+			}
+
+			return cb.and(predicados.toArray(new Predicate[predicados.size()]));
+		};
+	}
+
+	/**
+	 * A mesma pesquisa do "de" em SQL nativo sobre "pessoa p" (cláusula WHERE, ou vazio sem filtros), com os valores adicionados em
+	 * "parametros" na ordem dos "?". Usada no EXPLAIN da estimativa de total do PessoaRepositoryImpl; qualquer predicado novo no
+	 * "de" precisa entrar aqui também, na mesma posição.
+	 * */
+	static String ondeNativo(FiltroPesquisaPessoa filtro, List<Object> parametros) {
+
+		List<String> predicados = new ArrayList<String>();
+
+		if (informado(filtro.getSexo())) {
+			predicados.add("p.sexopessoa = " + parametro(parametros, filtro.getSexo()));
+		}
+
+		if (informado(filtro.getNome())) {
+			// A barra invertida do padrão já é o escape padrão do LIKE no PostgreSQL
+			predicados.add("lower(p.nome) like " + parametro(parametros, padraoNome(filtro)));
+		}
+
+		if (informado(filtro.getUf())) {
+			predicados.add("p.uf = " + parametro(parametros, filtro.getUf().trim().toUpperCase()));
+		}
+
+		if (informado(filtro.getCidade())) {
+			predicados.add("p.cidade = " + parametro(parametros, filtro.getCidade().trim()));
+		}
+
+		if (filtro.getCargo() != null) {
+			predicados.add("p.cargo = " + parametro(parametros, filtro.getCargo().name()));
+		}
+
+		if (filtro.getProfissao() != null) {
+			predicados.add("p.profissaopessoa_id = " + parametro(parametros, filtro.getProfissao()));
+		}
+
+		if (filtro.getIdadeMinima() != null) {
+			predicados.add("p.idade >= " + parametro(parametros, filtro.getIdadeMinima()));
+		}
+
+		if (filtro.getIdadeMaxima() != null) {
+			predicados.add("p.idade <= " + parametro(parametros, filtro.getIdadeMaxima()));
+		}
+
+		if (informado(filtro.getCurriculo())) {
+			predicados.add("p.id in (select i.pessoa_id from curriculo_indice i where curriculo_corresponde(i.documento, "
+					+ parametro(parametros, filtro.getCurriculo().trim()) + "))");
+		}
+
+		if (predicados.isEmpty()) {
+			return "";
+		}
+
+		return "where " + String.join(" and ", predicados);
+	}
+
+	// Parâmetro posicional (?1, ?2...) do valor adicionado
+	private static String parametro(List<Object> parametros, Object valor) {
+		parametros.add(valor);
+		return "?" + parametros.size();
+	}
+
+	static String padraoNome(FiltroPesquisaPessoa filtro) {
+
+		String valor = escapar(filtro.getNome().trim().toLowerCase());
+
+		if (filtro.getTipoBuscaNome() == FiltroPesquisaPessoa.TipoBuscaNome.TRECHO && filtro.getNome().trim().length() >= MINIMO_TRIGRAMA) {
+			return "%" + valor + "%";
+		}
+
+		return valor + "%";
+	}
+
+	// % e _ digitados pelo usuário são literais, não curingas
+	private static String escapar(String valor) {
+
+		StringBuilder resultado = new StringBuilder(valor.length());
+
+		for (char c : valor.toCharArray()) {
+			if (c == ESCAPE || c == '%' || c == '_') {
+				resultado.append(ESCAPE);
+			}
+			resultado.append(c);
+		}
+
+		return resultado.toString();
+	}
+
+	private static boolean informado(String valor) {
+		return valor != null && !valor.trim().isEmpty();
+	}
+
+}
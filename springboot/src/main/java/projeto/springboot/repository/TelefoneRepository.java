@@ -1,7 +1,9 @@
 package projeto.springboot.repository;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
@@ -38,5 +40,9 @@ public interface TelefoneRepository extends CrudRepository<Telefone, Long> {
 	
 	@Query("select t from Telefone t where t.pessoa.id = ?1")
 	public List<Telefone> getTelefones(Long pessoaid);
+	
+	@Modifying
+	@Query("delete from Telefone t where t.pessoa.id in ?1")
+	int excluirDasPessoas(Collection<Long> pessoaids);
 
 }
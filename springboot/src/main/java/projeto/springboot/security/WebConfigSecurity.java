@@ -27,8 +27,10 @@ public class WebConfigSecurity extends WebSecurityConfigurerAdapter{
 		.disable()  // Desativa as configurações padrão de memória.
 		.authorizeRequests() // Permitir restringir acessos.
 		.antMatchers(HttpMethod.GET, "/").permitAll()  // Qualquer usuário acessa a página principal.
+		.antMatchers(HttpMethod.GET, "/actuator/health").permitAll()  // Verificação do balanceador (só o status, sem detalhes)
 		//.antMatchers("/materialize/**").permitAll()  
 		.antMatchers(HttpMethod.GET, "/cadastropessoa").hasAnyRole("ADMIN")  // Permite somente que o usuário admin acesse a página '/cadastropesssoa'
+		.antMatchers("/admin/**").hasAnyRole("ADMIN")  // Telas administrativas (consultas lentas...) só para o admin
 		.anyRequest().authenticated()
 		.and().formLogin().permitAll()  // permite qualquer usuário
 		.loginPage("/login")  // página de login
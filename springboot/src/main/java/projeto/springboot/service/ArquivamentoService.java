@@ -0,0 +1,166 @@
+package projeto.springboot.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.FragmentosService;
+import projeto.springboot.fragmentacao.JuncaoOrdenada;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.PessoaArquivada;
+import projeto.springboot.repository.FiltroPesquisaPessoa;
+import projeto.springboot.repository.PessoaArquivoRepository;
+
+/**
+ * Arquivamento de pessoas inativas: quem está há "app.arquivamento.dias-inativo" dias sem alteração (coluna data_atualizacao)
+ * sai das tabelas pessoa/telefone e vai para pessoa_arquivo/telefone_arquivo. Assim as consultas das telas, que continuam usando
+ * só PessoaRepository, trabalham sobre uma tabela pequena; as arquivadas só aparecem na pesquisa com "incluir arquivadas" e
+ * voltam para a tabela quente ao serem restauradas.
+ *
+ * A movimentação roda em segundo plano a cada "app.arquivamento.intervalo-ms", em lotes de "app.arquivamento.tamanho-lote"
+ * pessoas, cada lote na sua própria transação curta (no máximo "app.arquivamento.lotes-por-execucao" lotes por vez em cada
+ * fragmento). A pessoa é arquivada no próprio fragmento (MapaFragmentos) e a pesquisa das arquivadas consulta todos.
+ *
+ * Para os demais consumidores de EventoAlteracao (dashboard, geração dos dados) arquivar equivale a excluir e restaurar equivale
+ * a incluir, então esses eventos são publicados aqui, como no PessoaLoteService.
+ * */
+@Service
+public class ArquivamentoService {
+
+	private static final Logger logger = LoggerFactory.getLogger(ArquivamentoService.class);
+
+	@Value("${app.arquivamento.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.arquivamento.dias-inativo:730}")
+	private int diasInativo;
+
+	@Value("${app.arquivamento.tamanho-lote:500}")
+	private int tamanhoLote;
+
+	@Value("${app.arquivamento.lotes-por-execucao:20}")
+	private int lotesPorExecucao;
+
+	@Autowired
+	private PessoaArquivoRepository pessoaArquivoRepository;
+
+	@Autowired
+	private PessoaLoteService pessoaLoteService;
+
+	@Autowired
+	private ApplicationEventPublisher publicador;
+
+	@Autowired
+	private TransactionTemplate transacao;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private FragmentosService fragmentosService;
+
+	@Scheduled(initialDelayString = "${app.arquivamento.intervalo-ms:3600000}", fixedDelayString = "${app.arquivamento.intervalo-ms:3600000}")
+	public void arquivarInativas() {
+
+		if (!habilitado) {
+			return;
+		}
+
+		long inicio = System.currentTimeMillis();
+		Date limite = new Date(inicio - TimeUnit.DAYS.toMillis(diasInativo));
+		int arquivadas = 0;
+
+		for (int fragmento = 0; fragmento < mapaFragmentos.quantidade(); fragmento++) {
+			arquivadas += ContextoFragmento.em(fragmento, () -> arquivarFragmento(limite));
+		}
+
+		if (arquivadas > 0) {
+			logger.info("Arquivamento: " + arquivadas + " pessoa(s) movida(s) para pessoa_arquivo em " + (System.currentTimeMillis() - inicio) + " ms");
+		}
+	}
+
+	// Fragmento da thread corrente; cada lote abre a transação (e pega a conexão) nele
+	private int arquivarFragmento(Date limite) {
+
+		int arquivadas = 0;
+
+		for (int lote = 0; lote < lotesPorExecucao; lote++) {
+
+			Integer movidas = transacao.execute(status -> arquivarLote(limite));
+
+			if (movidas == null || movidas == 0) {
+				break;
+			}
+
+			arquivadas += movidas;
+		}
+
+		return arquivadas;
+	}
+
+	private int arquivarLote(Date limite) {
+
+		List<Long> ids = pessoaArquivoRepository.inativas(limite, tamanhoLote);
+
+		if (ids.isEmpty()) {
+			return 0;
+		}
+
+		Map<Long, Map<String, Object>> resumos = pessoaLoteService.resumos(ids);
+		int movidas = pessoaArquivoRepository.arquivar(ids);
+
+		for (Map.Entry<Long, Map<String, Object>> resumo : resumos.entrySet()) {
+			publicador.publishEvent(new EventoAlteracao(Pessoa.class, resumo.getKey(), Operacao.EXCLUSAO, resumo.getValue(), null,
+					true));
+		}
+
+		return movidas;
+	}
+
+	/** Volta a pessoa arquivada para as tabelas quentes; false se ela não estiver no arquivo. */
+	@Transactional
+	public boolean restaurar(Long id) {
+
+		if (!pessoaArquivoRepository.restaurar(id)) {
+			return false;
+		}
+
+		for (Map.Entry<Long, Map<String, Object>> resumo : pessoaLoteService.resumos(Collections.singletonList(id)).entrySet()) {
+			publicador.publishEvent(new EventoAlteracao(Pessoa.class, resumo.getKey(), Operacao.INSERCAO, null, resumo.getValue(),
+					true));
+		}
+
+		return true;
+	}
+
+	/** Modo "incluir arquivadas" da pesquisa: as arquivadas que atendem ao filtro, até o limite, juntando todos os fragmentos. */
+	public List<PessoaArquivada> pesquisarArquivadas(FiltroPesquisaPessoa filtro, int limite) {
+
+		if (limite <= 0) {
+			return new ArrayList<PessoaArquivada>();
+		}
+
+		// Cada fragmento devolve as suas na ordem da consulta (nome, id)
+		return JuncaoOrdenada.juntar(fragmentosService.consultarTodos(fragmento -> pessoaArquivoRepository.pesquisar(filtro, limite)),
+				JuncaoOrdenada.<PessoaArquivada>comparador(Sort.by("nome"), "id"), 0, limite);
+	}
+
+}
@@ -0,0 +1,168 @@
+package projeto.springboot.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import projeto.springboot.model.Endereco;
+
+/**
+ * Consulta de CEP local, sem depender do viacep.com.br.
+ *
+ * A base de CEPs é compilada previamente pela classe CompiladorIndiceCep em um arquivo binário ordenado, que aqui é mapeado em memória
+ * (FileChannel.map) e pesquisado por busca binária. O conteúdo fica no cache de páginas do sistema operacional e não no heap da JVM,
+ * então cada consulta custa algumas leituras de inteiros no mapeamento mais a decodificação das strings do registro encontrado.
+ *
+ * Formato do arquivo (big-endian):
+ *  -> cabeçalho: MAGICO (int), VERSAO (int), quantidade de registros (int);
+ *  -> registros de tamanho fixo, ordenados pelo CEP: cep (int) + 5 deslocamentos (int) para rua, bairro, cidade, uf e ibge;
+ *  -> área de strings: cada string é gravada uma única vez como tamanho (short sem sinal) + bytes UTF-8.
+ *
+ * Se o arquivo configurado em "app.cep.indice" não existir, o serviço fica indisponível e a validação passa a conferir apenas o formato.
+ * */
+@Service
+public class CepService {
+
+	private static final Logger logger = LoggerFactory.getLogger(CepService.class);
+
+	public static final int MAGICO = 0x43455031; // "CEP1"
+	public static final int VERSAO = 1;
+	public static final int TAMANHO_CABECALHO = 12;
+	public static final int TAMANHO_REGISTRO = 24;
+
+	@Value("${app.cep.indice:cep/cep.idx}")
+	private String caminhoIndice;
+
+	private MappedByteBuffer indice;
+	private int quantidade;
+	private int inicioStrings;
+
+	@PostConstruct
+	public void carregar() {
+
+		File arquivo = new File(caminhoIndice);
+
+		if (!arquivo.isFile()) {
+			logger.warn("Índice de CEP não encontrado em {}. A consulta de CEP ficará indisponível.", arquivo.getAbsolutePath());
+			return;
+		}
+
+		// O mapeamento continua válido depois que o canal é fechado.
+		try (RandomAccessFile raf = new RandomAccessFile(arquivo, "r"); FileChannel canal = raf.getChannel()) {
+
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+
+			if (buffer.getInt(0) != MAGICO || buffer.getInt(4) != VERSAO) {
+				logger.warn("Arquivo {} não é um índice de CEP válido.", arquivo.getAbsolutePath());
+				return;
+			}
+
+			quantidade = buffer.getInt(8);
+			inicioStrings = TAMANHO_CABECALHO + quantidade * TAMANHO_REGISTRO;
+			indice = buffer;
+
+			logger.info("Índice de CEP carregado: {} registros ({} bytes).", quantidade, canal.size());
+
+		} catch (IOException e) {
+			logger.error("Falha ao mapear o índice de CEP " + arquivo.getAbsolutePath(), e);
+		}
+	}
+
+	public boolean isDisponivel() {
+		return indice != null;
+	}
+
+	/** Remove a máscara do CEP ("01001-000" -> "01001000"). Retorna null se não sobrar exatamente 8 dígitos. */
+	public static String normalizar(String cep) {
+
+		if (cep == null) {
+			return null;
+		}
+
+		String digitos = cep.replaceAll("\\D", "");
+
+		return digitos.length() == 8 ? digitos : null;
+	}
+
+	public Optional<Endereco> buscar(String cep) {
+
+		String digitos = normalizar(cep);
+
+		if (digitos == null || !isDisponivel()) {
+			return Optional.empty();
+		}
+
+		int chave = Integer.parseInt(digitos);
+
+		// Cada thread usa a sua própria "visão" do buffer, pois a posição de um ByteBuffer não é thread-safe.
+		ByteBuffer buffer = indice.duplicate();
+
+		int inicio = 0;
+		int fim = quantidade - 1;
+
+		while (inicio <= fim) {
+
+			int meio = (inicio + fim) >>> 1;
+			int posicao = TAMANHO_CABECALHO + meio * TAMANHO_REGISTRO;
+			int valor = buffer.getInt(posicao);
+
+			if (valor < chave) {
+				inicio = meio + 1;
+			} else if (valor > chave) {
+				fim = meio - 1;
+			} else {
+				return Optional.of(new Endereco(digitos,
+						lerString(buffer, buffer.getInt(posicao + 4)),
+						lerString(buffer, buffer.getInt(posicao + 8)),
+						lerString(buffer, buffer.getInt(posicao + 12)),
+						lerString(buffer, buffer.getInt(posicao + 16)),
+						lerString(buffer, buffer.getInt(posicao + 20))));
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * Regra usada no "salvar": CEP vazio é aceito (o campo não é obrigatório), CEP com formato errado é recusado e, se o índice
+	 * estiver carregado, o CEP precisa existir nele.
+	 * */
+	public boolean isValido(String cep) {
+
+		if (cep == null || cep.trim().isEmpty()) {
+			return true;
+		}
+
+		if (normalizar(cep) == null) {
+			return false;
+		}
+
+		return !isDisponivel() || buscar(cep).isPresent();
+	}
+
+	private String lerString(ByteBuffer buffer, int deslocamento) {
+
+		int posicao = inicioStrings + deslocamento;
+		int tamanho = buffer.getShort(posicao) & 0xFFFF;
+
+		byte[] bytes = new byte[tamanho];
+		ByteBuffer leitura = buffer.duplicate();
+		leitura.position(posicao + 2);
+		leitura.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
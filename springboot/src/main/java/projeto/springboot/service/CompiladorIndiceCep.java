@@ -0,0 +1,115 @@
+package projeto.springboot.service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gera o arquivo binário lido pelo CepService a partir de uma base de CEPs em texto.
+ *
+ * OBS. Rodar no java application, informando o arquivo de entrada e o de saída:
+ *   java projeto.springboot.service.CompiladorIndiceCep ceps.csv cep/cep.idx
+ *
+ * A entrada é um CSV em UTF-8 separado por ";" com as colunas: cep;rua;bairro;cidade;uf;ibge. Linhas com CEP inválido (como o
+ * cabeçalho) são ignoradas e, havendo CEP repetido, vale a última linha. As strings repetidas (cidade, uf, ibge, bairros) são
+ * gravadas uma única vez, o que deixa o arquivo bem menor que o CSV original.
+ * */
+public class CompiladorIndiceCep {
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length != 2) {
+			System.out.println("Uso: CompiladorIndiceCep <entrada.csv> <saida.idx>");
+			return;
+		}
+
+		Map<Integer, String[]> registros = new HashMap<Integer, String[]>();
+
+		try (BufferedReader leitor = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+
+			String linha;
+
+			while ((linha = leitor.readLine()) != null) {
+
+				String[] colunas = linha.split(";", -1);
+				String cep = colunas.length == 6 ? CepService.normalizar(colunas[0]) : null;
+
+				if (cep == null) {
+					continue;
+				}
+
+				registros.put(Integer.parseInt(cep), new String[] { colunas[1].trim(), colunas[2].trim(), colunas[3].trim(),
+						colunas[4].trim(), colunas[5].trim() });
+			}
+		}
+
+		List<Map.Entry<Integer, String[]>> ordenados = new ArrayList<Map.Entry<Integer, String[]>>(registros.entrySet());
+		ordenados.sort(Comparator.comparing(Map.Entry::getKey));
+
+		// Área de strings sem repetição: cada valor distinto é gravado uma vez e os registros guardam apenas o deslocamento.
+		ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		DataOutputStream saidaStrings = new DataOutputStream(strings);
+		Map<String, Integer> deslocamentos = new HashMap<String, Integer>();
+
+		try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1])))) {
+
+			saida.writeInt(CepService.MAGICO);
+			saida.writeInt(CepService.VERSAO);
+			saida.writeInt(ordenados.size());
+
+			for (Map.Entry<Integer, String[]> registro : ordenados) {
+
+				saida.writeInt(registro.getKey());
+
+				for (String valor : registro.getValue()) {
+
+					Integer deslocamento = deslocamentos.get(valor);
+
+					if (deslocamento == null) {
+						byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+						int tamanho = tamanhoLimitado(bytes);
+						deslocamento = saidaStrings.size();
+						saidaStrings.writeShort(tamanho);
+						saidaStrings.write(bytes, 0, tamanho);
+						deslocamentos.put(valor, deslocamento);
+					}
+
+					saida.writeInt(deslocamento);
+				}
+			}
+
+			strings.writeTo(saida);
+		}
+
+		System.out.println("Índice gerado com " + ordenados.size() + " CEPs e " + deslocamentos.size() + " strings distintas.");
+	}
+
+	// Quantos bytes gravar: o tamanho é um short sem sinal, então acima de 0xFFFF a string é cortada, mas antes do caractere que
+	// passaria do limite (byte de continuação do UTF-8 é 10xxxxxx) para não gravar um caractere pela metade
+	static int tamanhoLimitado(byte[] bytes) {
+
+		if (bytes.length <= 0xFFFF) {
+			return bytes.length;
+		}
+
+		int fim = 0xFFFF;
+
+		while ((bytes[fim] & 0xC0) == 0x80) {
+			fim--;
+		}
+
+		return fim;
+	}
+
+}
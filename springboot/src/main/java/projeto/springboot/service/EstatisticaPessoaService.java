@@ -0,0 +1,359 @@
+package projeto.springboot.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.fragmentacao.ContextoFragmento;
+import projeto.springboot.fragmentacao.MapaFragmentos;
+import projeto.springboot.invalidacao.CacheInvalidavel;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.ProfissaoRepository;
+
+/**
+ * Contadores de pessoas por sexo, cargo, profissão, cidade/UF, UF e faixa etária usados pelo dashboard.
+ *
+ * Os contadores são montados uma vez com consultas "group by" quando a aplicação sobe e, a partir daí, são mantidos de forma
+ * incremental pelos EventoAlteracao de Pessoa, somente depois do commit (uma inserção soma 1, uma exclusão subtrai 1 e uma
+ * atualização move a pessoa da chave antiga para a nova). Assim o dashboard nunca consulta a tabela pessoa.
+ *
+ * Como alterações feitas fora da aplicação (SQL direto, outro nó) não geram eventos aqui, uma reconciliação periódica refaz os
+ * contadores a partir do banco ("app.estatistica.reconciliacao-ms"). Alterações de outro nó avisadas pelo BarramentoInvalidacao
+ * antecipam essa reconciliação, feita em segundo plano no máximo uma vez a cada "app.estatistica.reconciliacao-remota-ms";
+ * enquanto ela não termina o dashboard continua recebendo o último resumo, sem esperar as consultas.
+ *
+ * Com vários fragmentos (MapaFragmentos) a reconciliação soma as contagens de todos, um de cada vez; os nomes das profissões vêm
+ * do fragmento 0, a origem da ReplicacaoProfissoes.
+ * */
+@Service
+public class EstatisticaPessoaService implements CacheInvalidavel {
+
+	private static final Logger logger = LoggerFactory.getLogger(EstatisticaPessoaService.class);
+
+	public static final String NAO_INFORMADO = "NÃO INFORMADO";
+
+	public static final String SEXO = "sexo";
+	public static final String CARGO = "cargo";
+	public static final String PROFISSAO = "profissao";
+	public static final String CIDADE = "cidade";
+	public static final String UF = "uf";
+	public static final String FAIXA_ETARIA = "faixaEtaria";
+
+	private static final String[] DIMENSOES = { SEXO, CARGO, PROFISSAO, CIDADE, UF, FAIXA_ETARIA };
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private ProfissaoRepository profissaoRepository;
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	// Contadores e total trocados juntos pela reconciliação, numa só atribuição
+	private volatile Contadores contadores = new Contadores();
+
+	// Nomes das profissões para os rótulos; null até a primeira leitura e depois de cada invalidação
+	private volatile Map<Long, String> nomesProfissoes;
+
+	// Incrementada depois de cada alteração dos contadores ou dos nomes; o resumo só vale para a geração em que foi montado
+	private final AtomicLong geracao = new AtomicLong();
+
+	// Resumo pronto para leitura, remontado na primeira leitura depois de uma alteração.
+	private volatile Resumo resumo;
+
+	// Pessoas alteradas em outro nó desde a última reconciliação
+	private volatile boolean reconciliacaoPendente;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void inicializar() {
+		reconciliar();
+	}
+
+	/** Refaz todos os contadores a partir do banco e troca o conjunto atual pelo novo de uma só vez. */
+	@Scheduled(initialDelayString = "${app.estatistica.reconciliacao-ms:600000}", fixedDelayString = "${app.estatistica.reconciliacao-ms:600000}")
+	public synchronized void reconciliar() {
+
+		long inicio = System.currentTimeMillis();
+		reconciliacaoPendente = false;
+
+		Contadores novosContadores = new Contadores();
+		long quantidade = 0;
+
+		for (int fragmento = 0; fragmento < mapaFragmentos.quantidade(); fragmento++) {
+			quantidade += ContextoFragmento.em(fragmento, () -> contar(novosContadores.porDimensao));
+		}
+
+		novosContadores.total.add(quantidade);
+
+		nomesProfissoes = carregarNomesProfissoes();
+		contadores = novosContadores;
+		geracao.incrementAndGet();
+
+		logger.info("Estatísticas de pessoas reconciliadas: {} pessoas em {} ms.", quantidade, System.currentTimeMillis() - inicio);
+	}
+
+	// Soma nos contadores as pessoas do fragmento da thread corrente e devolve quantas são
+	private long contar(Map<String, Map<String, LongAdder>> novos) {
+
+		long quantidade = 0;
+
+		for (Object[] linha : pessoaRepository.contarPorSexo()) {
+			somar(novos.get(SEXO), chave(linha[0]), (Long) linha[1]);
+		}
+
+		for (Object[] linha : pessoaRepository.contarPorCargo()) {
+			somar(novos.get(CARGO), chave(linha[0]), (Long) linha[1]);
+		}
+
+		for (Object[] linha : pessoaRepository.contarPorProfissao()) {
+			somar(novos.get(PROFISSAO), chave(linha[0]), (Long) linha[1]);
+		}
+
+		for (Object[] linha : pessoaRepository.contarPorCidadeUf()) {
+			somar(novos.get(CIDADE), chaveCidade(linha[0], linha[1]), (Long) linha[2]);
+			somar(novos.get(UF), chave(linha[1]), (Long) linha[2]);
+			quantidade += (Long) linha[2];
+		}
+
+		for (Object[] linha : pessoaRepository.contarPorIdade()) {
+			somar(novos.get(FAIXA_ETARIA), faixaEtaria(linha[0]), (Long) linha[1]);
+		}
+
+		return quantidade;
+	}
+
+	/** Reconciliação antecipada pelos avisos de outros nós; roda fora da leitura do resumo. */
+	@Scheduled(fixedDelayString = "${app.estatistica.reconciliacao-remota-ms:5000}")
+	public void reconciliarPendente() {
+
+		if (reconciliacaoPendente) {
+			reconciliar();
+		}
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterar(EventoAlteracao evento) {
+
+		if (!evento.isEntidade(Pessoa.class)) {
+			return;
+		}
+
+		if (evento.getOperacao() != Operacao.INSERCAO) {
+			aplicar(evento.getAnterior(), -1);
+		}
+
+		if (evento.getOperacao() != Operacao.EXCLUSAO) {
+			aplicar(evento.getAtual(), 1);
+		}
+
+		geracao.incrementAndGet();
+	}
+
+	/**
+	 * Retorna o total e a contagem por dimensão ("sexo", "cargo", "profissao", "cidade", "uf", "faixaEtaria"). A leitura não depende
+	 * da quantidade de pessoas cadastradas: o resumo é reaproveitado até a próxima alteração.
+	 * */
+	public Map<String, Object> getResumo() {
+
+		Resumo atual = resumo;
+		long versao = geracao.get();
+
+		if (atual == null || atual.geracao != versao) {
+			// Montado depois de ler a geração: se algo mudar no meio, fica marcado com a geração antiga e é refeito na próxima leitura
+			atual = new Resumo(versao, montarResumo());
+			resumo = atual;
+		}
+
+		return atual.dados;
+	}
+
+	@Override
+	public void invalidar(String tipo, String id) {
+
+		if (Pessoa.class.getSimpleName().equals(tipo)) {
+			reconciliacaoPendente = true;
+		} else if (Profissao.class.getSimpleName().equals(tipo)) {
+			nomesProfissoes = null;
+			geracao.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void invalidarTudo() {
+		nomesProfissoes = null;
+		reconciliacaoPendente = true;
+		geracao.incrementAndGet();
+	}
+
+	private Map<String, Object> montarResumo() {
+
+		Contadores fonte = contadores;
+		Map<Long, String> nomes = nomesProfissoes();
+		Map<String, Object> mapa = new LinkedHashMap<String, Object>();
+
+		mapa.put("total", fonte.total.sum());
+
+		for (String dimensao : DIMENSOES) {
+
+			Map<String, Long> valores = new TreeMap<String, Long>();
+
+			for (Map.Entry<String, LongAdder> contador : fonte.porDimensao.get(dimensao).entrySet()) {
+
+				long quantidade = contador.getValue().sum();
+
+				if (quantidade > 0) {
+					valores.put(rotulo(dimensao, contador.getKey(), nomes), quantidade);
+				}
+			}
+
+			mapa.put(dimensao, Collections.unmodifiableMap(valores));
+		}
+
+		return Collections.unmodifiableMap(mapa);
+	}
+
+	private void aplicar(Map<String, Object> estado, int sinal) {
+
+		if (estado.isEmpty()) {
+			return;
+		}
+
+		Contadores contadoresAtuais = contadores;
+		Map<String, Map<String, LongAdder>> atual = contadoresAtuais.porDimensao;
+
+		somar(atual.get(SEXO), chave(estado.get("sexopessoa")), sinal);
+		somar(atual.get(CARGO), chave(estado.get("cargo")), sinal);
+		somar(atual.get(PROFISSAO), chave(estado.get("profissaopessoa")), sinal);
+		somar(atual.get(CIDADE), chaveCidade(estado.get("cidade"), estado.get("uf")), sinal);
+		somar(atual.get(UF), chave(estado.get("uf")), sinal);
+		somar(atual.get(FAIXA_ETARIA), faixaEtaria(estado.get("idade")), sinal);
+		contadoresAtuais.total.add(sinal);
+	}
+
+	// Profissão que não está nos nomes carregados (criada por SQL direto) aparece pelo id até a próxima reconciliação
+	private static String rotulo(String dimensao, String chave, Map<Long, String> nomes) {
+
+		if (PROFISSAO.equals(dimensao) && !NAO_INFORMADO.equals(chave)) {
+
+			String nome = nomes.get(Long.valueOf(chave));
+
+			return nome != null ? nome : chave;
+		}
+
+		return chave;
+	}
+
+	private Map<Long, String> nomesProfissoes() {
+
+		Map<Long, String> nomes = nomesProfissoes;
+
+		if (nomes == null) {
+			nomes = carregarNomesProfissoes();
+			nomesProfissoes = nomes;
+		}
+
+		return nomes;
+	}
+
+	private Map<Long, String> carregarNomesProfissoes() {
+
+		Map<Long, String> nomes = new HashMap<Long, String>();
+
+		for (Profissao profissao : profissaoRepository.findAll()) {
+			nomes.put(profissao.getId(), profissao.getNome());
+		}
+
+		return Collections.unmodifiableMap(nomes);
+	}
+
+	private static void somar(Map<String, LongAdder> contador, String chave, long quantidade) {
+		contador.computeIfAbsent(chave, c -> new LongAdder()).add(quantidade);
+	}
+
+	private static String chave(Object valor) {
+
+		if (valor == null || valor.toString().trim().isEmpty()) {
+			return NAO_INFORMADO;
+		}
+
+		return valor instanceof Enum ? ((Enum<?>) valor).name() : valor.toString().trim();
+	}
+
+	private static String chaveCidade(Object cidade, Object uf) {
+
+		if (chave(cidade).equals(NAO_INFORMADO)) {
+			return NAO_INFORMADO;
+		}
+
+		return chave(cidade) + "/" + chave(uf);
+	}
+
+	static String faixaEtaria(Object idade) {
+
+		if (!(idade instanceof Number)) {
+			return NAO_INFORMADO;
+		}
+
+		int anos = ((Number) idade).intValue();
+
+		if (anos < 18) {
+			return "Menos de 18";
+		} else if (anos < 25) {
+			return "18 a 24";
+		} else if (anos < 35) {
+			return "25 a 34";
+		} else if (anos < 45) {
+			return "35 a 44";
+		} else if (anos < 60) {
+			return "45 a 59";
+		}
+
+		return "60 ou mais";
+	}
+
+	private static class Contadores {
+
+		private final Map<String, Map<String, LongAdder>> porDimensao = new LinkedHashMap<String, Map<String, LongAdder>>();
+		private final LongAdder total = new LongAdder();
+
+		Contadores() {
+			for (String dimensao : DIMENSOES) {
+				porDimensao.put(dimensao, new ConcurrentHashMap<String, LongAdder>());
+			}
+		}
+
+	}
+
+	private static class Resumo {
+
+		private final long geracao;
+		private final Map<String, Object> dados;
+
+		Resumo(long geracao, Map<String, Object> dados) {
+			this.geracao = geracao;
+			this.dados = dados;
+		}
+
+	}
+
+}
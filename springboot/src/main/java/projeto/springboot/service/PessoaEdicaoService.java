@@ -0,0 +1,217 @@
+package projeto.springboot.service;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import projeto.springboot.curriculo.ArmazenamentoCurriculoService;
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+
+/**
+ * Edição de pessoa que grava só o que mudou. O formulário traz a pessoa inteira, mas em vez de carregar a linha completa (com o
+ * currículo) e fazer o merge de todas as colunas, o serviço lê apenas os campos editáveis, compara com os enviados e faz um
+ * UPDATE (CriteriaUpdate) só das colunas alteradas. Sem alteração nenhuma, nada é gravado.
+ *
+ * O currículo só é lido ou gravado quando um arquivo novo é enviado; nesse caso o large object anterior é liberado
+ * (lo_unlink) na mesma transação. Como o UPDATE não passa pelos eventos do Hibernate, o EventoAlteracao é publicado aqui, com as
+ * mesmas propriedades da fotografia do PublicadorEventosHibernate (o currículo só aparece quando foi trocado).
+ * */
+@Service
+public class PessoaEdicaoService {
+
+	// Propriedades que o formulário de cadastro edita; "profissaopessoa" é comparada pelo id
+	static final List<String> CAMPOS = Arrays.asList("nome", "sobrenome", "idade", "cep", "rua", "bairro", "cidade", "uf", "ibge",
+			"sexopessoa", "profissaopessoa", "cargo", "dataNascimento");
+
+	@Autowired
+	private ArmazenamentoCurriculoService armazenamentoCurriculoService;
+
+	@Autowired
+	private ApplicationEventPublisher publicador;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Aplica na pessoa gravada os campos de "enviada" que mudaram e, se "curriculo" não for null, o arquivo novo. Retorna false se
+	 * a pessoa não existir (nada é gravado).
+	 * */
+	@Transactional
+	public boolean atualizarAlterados(Pessoa enviada, byte[] curriculo, String tipoArquivo, String nomeArquivo) {
+
+		Map<String, Object> anterior = gravados(enviada.getId());
+
+		if (anterior == null) {
+			return false;
+		}
+
+		Map<String, Object> atual = new LinkedHashMap<String, Object>(anterior);
+
+		for (String campo : CAMPOS) {
+			atual.put(campo, enviado(enviada, campo));
+		}
+
+		Pessoa arquivo = null;
+		Long oidAnterior = null;
+
+		if (curriculo != null) {
+			Object[] gravado = curriculoGravado(enviada.getId());
+			oidAnterior = gravado[0] != null ? ((Number) gravado[0]).longValue() : null;
+
+			arquivo = new Pessoa();
+			armazenamentoCurriculoService.armazenar(arquivo, curriculo, nomeArquivo);
+			anterior.put("curriculo", gravado[1] != null ? ((Number) gravado[1]).intValue() : null);
+			atual.put("curriculo", arquivo.getCurriculo().length);
+			atual.put("tipoFileCurriculo", tipoArquivo);
+			atual.put("nomeFileCurriculo", nomeArquivo);
+		}
+
+		// Arquivo novo sempre é gravado, mesmo com o mesmo nome e tamanho do anterior
+		if (arquivo == null && anterior.equals(atual)) {
+			return true;
+		}
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaUpdate<Pessoa> update = cb.createCriteriaUpdate(Pessoa.class);
+		Root<Pessoa> pessoa = update.from(Pessoa.class);
+
+		for (String campo : CAMPOS) {
+			if (!Objects.equals(anterior.get(campo), atual.get(campo))) {
+				definir(update, pessoa, campo, campo.equals("profissaopessoa") && atual.get(campo) != null
+						? entityManager.getReference(Profissao.class, atual.get(campo)) : atual.get(campo));
+			}
+		}
+
+		if (arquivo != null) {
+			definir(update, pessoa, "curriculo", arquivo.getCurriculo());
+			definir(update, pessoa, "tipoFileCurriculo", tipoArquivo);
+			definir(update, pessoa, "nomeFileCurriculo", nomeArquivo);
+			definir(update, pessoa, "codecCurriculo", arquivo.getCodecCurriculo());
+			definir(update, pessoa, "tamanhoCurriculo", arquivo.getTamanhoCurriculo());
+			definir(update, pessoa, "tamanhoArmazenadoCurriculo", arquivo.getTamanhoArmazenadoCurriculo());
+		}
+
+		// O @UpdateTimestamp não vale para o CriteriaUpdate (ver também PessoaLoteService)
+		update.set(pessoa.<Date>get("dataAtualizacao"), new Date());
+		update.where(cb.equal(pessoa.get("id"), enviada.getId()));
+		entityManager.createQuery(update).executeUpdate();
+
+		if (oidAnterior != null) {
+			entityManager.createNativeQuery("select lo_unlink(cast(?1 as oid))").setParameter(1, oidAnterior).getSingleResult();
+		}
+
+		publicador.publishEvent(new EventoAlteracao(Pessoa.class, enviada.getId(), Operacao.ATUALIZACAO, anterior, atual));
+
+		return true;
+	}
+
+	// Campos editáveis e os dados do arquivo atual (nome e tipo), sem o conteúdo do currículo
+	private Map<String, Object> gravados(Long id) {
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> consulta = cb.createQuery(Object[].class);
+		Root<Pessoa> pessoa = consulta.from(Pessoa.class);
+
+		Selection<?>[] colunas = new Selection<?>[CAMPOS.size() + 2];
+
+		for (int i = 0; i < CAMPOS.size(); i++) {
+			// Chave estrangeira direto, sem join com profissao
+			colunas[i] = CAMPOS.get(i).equals("profissaopessoa") ? pessoa.get("profissaopessoa").get("id") : pessoa.get(CAMPOS.get(i));
+		}
+
+		colunas[CAMPOS.size()] = pessoa.get("tipoFileCurriculo");
+		colunas[CAMPOS.size() + 1] = pessoa.get("nomeFileCurriculo");
+
+		consulta.multiselect(colunas).where(cb.equal(pessoa.get("id"), id));
+
+		List<Object[]> linhas = entityManager.createQuery(consulta).getResultList();
+
+		if (linhas.isEmpty()) {
+			return null;
+		}
+
+		Object[] linha = linhas.get(0);
+		Map<String, Object> valores = new LinkedHashMap<String, Object>();
+
+		for (int i = 0; i < CAMPOS.size(); i++) {
+			valores.put(CAMPOS.get(i), normalizar(linha[i]));
+		}
+
+		valores.put("tipoFileCurriculo", linha[CAMPOS.size()]);
+		valores.put("nomeFileCurriculo", linha[CAMPOS.size() + 1]);
+
+		return valores;
+	}
+
+	private static Object enviado(Pessoa pessoa, String campo) {
+
+		switch (campo) {
+		case "nome":
+			return pessoa.getNome();
+		case "sobrenome":
+			return pessoa.getSobrenome();
+		case "idade":
+			return pessoa.getIdade();
+		case "cep":
+			return pessoa.getCep();
+		case "rua":
+			return pessoa.getRua();
+		case "bairro":
+			return pessoa.getBairro();
+		case "cidade":
+			return pessoa.getCidade();
+		case "uf":
+			return pessoa.getUf();
+		case "ibge":
+			return pessoa.getIbge();
+		case "sexopessoa":
+			return pessoa.getSexopessoa();
+		case "profissaopessoa":
+			return pessoa.getProfissaopessoa() != null ? pessoa.getProfissaopessoa().getId() : null;
+		case "cargo":
+			return pessoa.getCargo();
+		case "dataNascimento":
+			return normalizar(pessoa.getDataNascimento());
+		default:
+			throw new IllegalArgumentException(campo);
+		}
+	}
+
+	// java.sql.Date (lido) e java.util.Date (formulário) do mesmo dia precisam ser iguais nas duas direções do equals
+	private static Object normalizar(Object valor) {
+		return valor instanceof Date ? new Date(((Date) valor).getTime()) : valor;
+	}
+
+	// null vira "set campo = null" (nullLiteral) no próprio CriteriaUpdate
+	private static void definir(CriteriaUpdate<Pessoa> update, Root<Pessoa> pessoa, String campo, Object valor) {
+		Path<Object> caminho = pessoa.get(campo);
+		update.set(caminho, valor);
+	}
+
+	// oid do large object atual e tamanho armazenado, sem ler o conteúdo
+	private Object[] curriculoGravado(Long id) {
+		return (Object[]) entityManager.createNativeQuery("select cast(curriculo as int8), tamanho_armazenado_curriculo from pessoa "
+				+ "where id = ?1").setParameter(1, id).getSingleResult();
+	}
+
+}
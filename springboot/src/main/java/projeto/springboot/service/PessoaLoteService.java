@@ -0,0 +1,289 @@
+package projeto.springboot.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.model.Cargo;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+import projeto.springboot.repository.FiltroPesquisaPessoa;
+import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.PessoaSpecification;
+import projeto.springboot.repository.ProfissaoRepository;
+import projeto.springboot.repository.TelefoneRepository;
+
+/**
+ * Operações sobre muitas pessoas de uma vez, feitas com DELETE/UPDATE por conjunto em vez de carregar e salvar entidade por
+ * entidade.
+ *
+ * Como essas instruções não passam pelos eventos do Hibernate, o serviço lê antes apenas os campos resumidos das pessoas
+ * afetadas e publica ele mesmo um EventoAlteracao por pessoa. Assim os contadores do dashboard, a geração dos dados (cache de
+ * relatórios) e os demais consumidores continuam consistentes depois do commit.
+ *
+ * Listas grandes de ids são processadas em blocos de TAMANHO_BLOCO para não montar um IN gigante: cada bloco é um DELETE ou
+ * UPDATE, todos na mesma transação.
+ * */
+@Service
+public class PessoaLoteService {
+
+	static final int TAMANHO_BLOCO = 1000;
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private TelefoneRepository telefoneRepository;
+
+	@Autowired
+	private ProfissaoRepository profissaoRepository;
+
+	@Autowired
+	private ApplicationEventPublisher publicador;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/** Exclui as pessoas e seus telefones; retorna quantas pessoas foram excluídas (ids inexistentes são ignorados). */
+	@Transactional
+	public int excluir(Collection<Long> ids) {
+
+		int excluidas = 0;
+
+		for (List<Long> bloco : blocos(ids)) {
+
+			Map<Long, Map<String, Object>> resumos = resumos(bloco);
+
+			if (resumos.isEmpty()) {
+				continue;
+			}
+
+			List<Long> existentes = new ArrayList<Long>(resumos.keySet());
+
+			telefoneRepository.excluirDasPessoas(existentes);
+			pessoaRepository.liberarCurriculos(existentes);
+			excluidas += pessoaRepository.excluirPorIds(existentes);
+
+			for (Map.Entry<Long, Map<String, Object>> resumo : resumos.entrySet()) {
+				publicador.publishEvent(new EventoAlteracao(Pessoa.class, resumo.getKey(), Operacao.EXCLUSAO, resumo.getValue(), null));
+			}
+		}
+
+		return excluidas;
+	}
+
+	/**
+	 * Troca o cargo e/ou a profissão (null = não altera) das pessoas dos ids informados. Só entram no UPDATE as pessoas em que
+	 * algum valor realmente muda; o resultado informa quantas foram selecionadas e quantas linhas foram alteradas.
+	 * */
+	@Transactional
+	public ResultadoLote alterarCargoProfissao(Collection<Long> ids, Cargo cargo, Long profissao) {
+
+		validarProfissao(profissao);
+
+		ResultadoLote resultado = new ResultadoLote();
+
+		for (List<Long> bloco : blocos(ids)) {
+			aplicarCargoProfissao(resumos(bloco), cargo, profissao, resultado);
+		}
+
+		return resultado;
+	}
+
+	/**
+	 * Mesma alteração para todas as pessoas encontradas pela pesquisa (mesmos critérios da tela, PessoaSpecification). As pessoas
+	 * são lidas em blocos de TAMANHO_BLOCO pela ordem do id (cada bloco começa depois do último id do anterior), sem carregar a
+	 * pesquisa inteira em memória. Filtro sem nenhum critério é recusado: alteraria todas as pessoas.
+	 * */
+	@Transactional
+	public ResultadoLote alterarCargoProfissao(FiltroPesquisaPessoa filtro, Cargo cargo, Long profissao) {
+
+		if (filtro.isVazio()) {
+			throw new IllegalArgumentException("Pesquisa sem filtro: informe algum critério antes de alterar todas as pessoas da pesquisa!");
+		}
+
+		validarProfissao(profissao);
+
+		ResultadoLote resultado = new ResultadoLote();
+		Long ultimoId = null;
+
+		while (true) {
+
+			Map<Long, Map<String, Object>> resumos = resumosDaPesquisa(filtro, ultimoId);
+
+			if (resumos.isEmpty()) {
+				return resultado;
+			}
+
+			aplicarCargoProfissao(resumos, cargo, profissao, resultado);
+
+			for (Long id : resumos.keySet()) {
+				ultimoId = id;
+			}
+		}
+	}
+
+	// Próximo bloco da pesquisa: até TAMANHO_BLOCO pessoas com id maior que "depoisDe" (null = do início)
+	private Map<Long, Map<String, Object>> resumosDaPesquisa(FiltroPesquisaPessoa filtro, Long depoisDe) {
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> consulta = cb.createQuery(Object[].class);
+		Root<Pessoa> pessoa = consulta.from(Pessoa.class);
+
+		Predicate criterios = PessoaSpecification.de(filtro).toPredicate(pessoa, consulta, cb);
+
+		if (depoisDe != null) {
+			criterios = criterios == null ? cb.gt(pessoa.get("id"), depoisDe) : cb.and(criterios, cb.gt(pessoa.get("id"), depoisDe));
+		}
+
+		consulta.multiselect(pessoa.get("id"), pessoa.get("sexopessoa"), pessoa.get("cargo"), pessoa.get("profissaopessoa").get("id"),
+				pessoa.get("cidade"), pessoa.get("uf"), pessoa.get("idade"));
+
+		if (criterios != null) {
+			consulta.where(criterios);
+		}
+
+		consulta.orderBy(cb.asc(pessoa.get("id")));
+
+		return paraResumos(entityManager.createQuery(consulta).setMaxResults(TAMANHO_BLOCO).getResultList());
+	}
+
+	private void aplicarCargoProfissao(Map<Long, Map<String, Object>> resumos, Cargo cargo, Long profissao, ResultadoLote resultado) {
+
+		resultado.selecionadas += resumos.size();
+
+		Map<Long, Map<String, Object>> novos = new LinkedHashMap<Long, Map<String, Object>>();
+
+		for (Map.Entry<Long, Map<String, Object>> resumo : resumos.entrySet()) {
+
+			Map<String, Object> novo = new LinkedHashMap<String, Object>(resumo.getValue());
+
+			if (cargo != null) {
+				novo.put("cargo", cargo);
+			}
+
+			if (profissao != null) {
+				novo.put("profissaopessoa", profissao);
+			}
+
+			if (!novo.equals(resumo.getValue())) {
+				novos.put(resumo.getKey(), novo);
+			}
+		}
+
+		if (novos.isEmpty()) {
+			return;
+		}
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaUpdate<Pessoa> update = cb.createCriteriaUpdate(Pessoa.class);
+		Root<Pessoa> pessoa = update.from(Pessoa.class);
+
+		if (cargo != null) {
+			update.set(pessoa.<Cargo>get("cargo"), cargo);
+		}
+
+		if (profissao != null) {
+			update.set(pessoa.<Profissao>get("profissaopessoa"), entityManager.getReference(Profissao.class, profissao));
+		}
+
+		// O @UpdateTimestamp não vale para UPDATE em lote; sem isto a pessoa poderia ser arquivada como inativa
+		update.set(pessoa.<Date>get("dataAtualizacao"), new Date());
+
+		update.where(pessoa.get("id").in(novos.keySet()));
+		resultado.alteradas += entityManager.createQuery(update).executeUpdate();
+
+		for (Map.Entry<Long, Map<String, Object>> novo : novos.entrySet()) {
+			publicador.publishEvent(new EventoAlteracao(Pessoa.class, novo.getKey(), Operacao.ATUALIZACAO, resumos.get(novo.getKey()),
+					novo.getValue()));
+		}
+	}
+
+	private void validarProfissao(Long profissao) {
+
+		if (profissao != null && !profissaoRepository.existsById(profissao)) {
+			throw new IllegalArgumentException("Profissão " + profissao + " não encontrada");
+		}
+	}
+
+	Map<Long, Map<String, Object>> resumos(Collection<Long> ids) {
+		return paraResumos(pessoaRepository.resumoParaEventos(ids));
+	}
+
+	// Mesmos nomes de propriedade da fotografia feita pelo PublicadorEventosHibernate
+	private static Map<Long, Map<String, Object>> paraResumos(List<Object[]> linhas) {
+
+		Map<Long, Map<String, Object>> resumos = new LinkedHashMap<Long, Map<String, Object>>();
+
+		for (Object[] linha : linhas) {
+
+			Map<String, Object> resumo = new LinkedHashMap<String, Object>();
+			resumo.put("sexopessoa", linha[1]);
+			resumo.put("cargo", linha[2]);
+			resumo.put("profissaopessoa", linha[3]);
+			resumo.put("cidade", linha[4]);
+			resumo.put("uf", linha[5]);
+			resumo.put("idade", linha[6]);
+
+			resumos.put((Long) linha[0], resumo);
+		}
+
+		return resumos;
+	}
+
+	static List<List<Long>> blocos(Collection<Long> ids) {
+
+		List<Long> distintos = new ArrayList<Long>(new LinkedHashSet<Long>(ids));
+		distintos.removeIf(Objects::isNull);
+		List<List<Long>> blocos = new ArrayList<List<Long>>();
+
+		for (int inicio = 0; inicio < distintos.size(); inicio += TAMANHO_BLOCO) {
+			blocos.add(distintos.subList(inicio, Math.min(inicio + TAMANHO_BLOCO, distintos.size())));
+		}
+
+		return blocos;
+	}
+
+	/** Contagem de uma operação em lote: pessoas que atenderam à seleção e linhas efetivamente alteradas. */
+	public static class ResultadoLote {
+
+		private int selecionadas;
+		private int alteradas;
+
+		/** Acumula o resultado de outra parte da mesma operação (ex.: de outro fragmento, ver FragmentosService). */
+		public void somar(ResultadoLote outro) {
+			selecionadas += outro.selecionadas;
+			alteradas += outro.alteradas;
+		}
+
+		public int getSelecionadas() {
+			return selecionadas;
+		}
+
+		public int getAlteradas() {
+			return alteradas;
+		}
+
+	}
+
+}
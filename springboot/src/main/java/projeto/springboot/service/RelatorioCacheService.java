@@ -0,0 +1,257 @@
+package projeto.springboot.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Cache em disco dos PDFs gerados, com o índice em memória.
+ *
+ * A chave é (nome do relatório, nomepesquisa, sexopesquisa, geração dos dados). Como a geração muda a cada escrita em Pessoa ou
+ * Telefone (VersaoDadosService), um PDF só é reaproveitado enquanto nada mudou desde que foi gerado; entradas de gerações antigas
+ * são descartadas na próxima gravação.
+ *
+ * O total de bytes em disco é limitado por "app.relatorio.cache.tamanho-maximo"; ao passar do limite, os PDFs usados há mais tempo
+ * são removidos primeiro (LRU). Uma entrada devolvida por buscar fica reservada até liberar: se for removida do índice nesse meio
+ * tempo, o arquivo só é apagado depois que a resposta terminar de enviá-lo.
+ *
+ * O índice não é persistido, então os arquivos do cache que sobraram no diretório são apagados quando a aplicação sobe; só os que
+ * têm o formato de nome do próprio cache (ARQUIVO_CACHE), nunca outros arquivos da pasta configurada.
+ * */
+@Service
+public class RelatorioCacheService {
+
+	private static final Logger logger = LoggerFactory.getLogger(RelatorioCacheService.class);
+
+	// PDFs guardados (chave + ".pdf") e temporários de gravação (chave + número + ".tmp")
+	private static final Pattern ARQUIVO_CACHE = Pattern.compile("[0-9a-f]{32}(\\.pdf|\\d+\\.tmp)");
+
+	@Value("${app.relatorio.cache.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.relatorio.cache.diretorio:${java.io.tmpdir}/relatorios-cache}")
+	private String diretorio;
+
+	@Value("${app.relatorio.cache.tamanho-maximo:209715200}")
+	private long tamanhoMaximo;
+
+	@Autowired
+	private VersaoDadosService versaoDadosService;
+
+	// accessOrder = true: a iteração começa pela entrada usada há mais tempo.
+	private final LinkedHashMap<String, Entrada> indice = new LinkedHashMap<String, Entrada>(16, 0.75f, true);
+
+	private long tamanhoTotal;
+
+	@PostConstruct
+	public void iniciar() throws IOException {
+
+		if (!habilitado) {
+			return;
+		}
+
+		File pasta = new File(diretorio);
+		Files.createDirectories(pasta.toPath());
+
+		File[] antigos = pasta.listFiles((dir, nome) -> ARQUIVO_CACHE.matcher(nome).matches());
+
+		if (antigos != null) {
+			for (File arquivo : antigos) {
+				Files.deleteIfExists(arquivo.toPath());
+			}
+		}
+	}
+
+	/** A geração deve ser lida antes de consultar os dados do relatório e repassada para buscar/armazenar. */
+	public long getGeracao() {
+		return versaoDadosService.getGeracao();
+	}
+
+	/** A entrada devolvida fica reservada (não é apagada do disco) até ser passada para liberar. */
+	public synchronized Entrada buscar(String relatorio, String nome, String sexo, long geracao) {
+
+		if (!habilitado) {
+			return null;
+		}
+
+		Entrada entrada = indice.get(chave(relatorio, nome, sexo, geracao));
+
+		if (entrada != null && !entrada.arquivo.isFile()) {
+			remover(entrada);
+			return null;
+		}
+
+		if (entrada != null) {
+			entrada.reservas++;
+		}
+
+		return entrada;
+	}
+
+	/** Devolve a reserva feita por buscar; se a entrada saiu do cache enquanto estava reservada, o arquivo é apagado agora. */
+	public synchronized void liberar(Entrada entrada) {
+
+		// Com a mesma chave de volta no índice, o arquivo (mesmo nome) já é o da entrada nova
+		if (--entrada.reservas == 0 && entrada.removida && !indice.containsKey(entrada.chave)) {
+			apagarArquivo(entrada);
+		}
+	}
+
+	public Entrada armazenar(String relatorio, String nome, String sexo, long geracao, byte[] pdf) throws IOException {
+
+		String chave = chave(relatorio, nome, sexo, geracao);
+		Entrada entrada = new Entrada(chave, new File(diretorio, chave + ".pdf"), pdf.length, geracao);
+
+		if (!habilitado || pdf.length > tamanhoMaximo) {
+			return entrada;
+		}
+
+		// Grava em um arquivo temporário e move, para que uma leitura concorrente nunca veja o PDF pela metade.
+		Path temporario = Files.createTempFile(new File(diretorio).toPath(), chave, ".tmp");
+		Files.write(temporario, pdf);
+		Files.move(temporario, entrada.arquivo.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		synchronized (this) {
+
+			Entrada anterior = indice.put(chave, entrada);
+
+			if (anterior != null) {
+				tamanhoTotal -= anterior.tamanho;
+			}
+
+			tamanhoTotal += entrada.tamanho;
+			liberarEspaco(versaoDadosService.getGeracao());
+		}
+
+		return entrada;
+	}
+
+	/** Envia o PDF guardado direto do disco para a resposta, sem carregá-lo em memória. A entrada deve estar reservada (buscar). */
+	public void transmitir(Entrada entrada, OutputStream saida) throws IOException {
+		Files.copy(entrada.arquivo.toPath(), saida);
+	}
+
+	public synchronized long getTamanhoTotal() {
+		return tamanhoTotal;
+	}
+
+	public synchronized int getQuantidade() {
+		return indice.size();
+	}
+
+	// Remove primeiro as gerações antigas e depois, se ainda necessário, as entradas menos usadas.
+	private void liberarEspaco(long geracaoAtual) {
+
+		Iterator<Entrada> iterador = indice.values().iterator();
+
+		while (iterador.hasNext()) {
+
+			Entrada entrada = iterador.next();
+
+			if (entrada.geracao < geracaoAtual) {
+				iterador.remove();
+				apagar(entrada);
+			}
+		}
+
+		iterador = indice.values().iterator();
+
+		while (tamanhoTotal > tamanhoMaximo && iterador.hasNext()) {
+			Entrada entrada = iterador.next();
+			iterador.remove();
+			apagar(entrada);
+		}
+	}
+
+	private void remover(Entrada entrada) {
+		indice.remove(entrada.chave);
+		apagar(entrada);
+	}
+
+	private void apagar(Entrada entrada) {
+
+		tamanhoTotal -= entrada.tamanho;
+
+		if (entrada.reservas > 0) {
+			// Ainda sendo enviada: liberar apaga quando terminar
+			entrada.removida = true;
+		} else {
+			apagarArquivo(entrada);
+		}
+	}
+
+	private void apagarArquivo(Entrada entrada) {
+
+		try {
+			Files.deleteIfExists(entrada.arquivo.toPath());
+		} catch (IOException e) {
+			logger.warn("Não foi possível apagar o relatório em cache " + entrada.arquivo, e);
+		}
+	}
+
+	private static String chave(String relatorio, String nome, String sexo, long geracao) {
+
+		String texto = relatorio + '\u0000' + (nome == null ? "" : nome) + '\u0000' + (sexo == null ? "" : sexo) + '\u0000' + geracao;
+
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+
+			for (int i = 0; i < 16; i++) {
+				hex.append(String.format("%02x", hash[i]));
+			}
+
+			return hex.toString();
+
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class Entrada {
+
+		private final String chave;
+		private final File arquivo;
+		private final long tamanho;
+		private final long geracao;
+
+		// Respostas usando o arquivo (guardadas sob o lock do serviço)
+		private int reservas;
+		private boolean removida;
+
+		Entrada(String chave, File arquivo, long tamanho, long geracao) {
+			this.chave = chave;
+			this.arquivo = arquivo;
+			this.tamanho = tamanho;
+			this.geracao = geracao;
+		}
+
+		public long getTamanho() {
+			return tamanho;
+		}
+
+		// A chave já identifica conteúdo + geração, então serve como ETag forte.
+		public String getEtag() {
+			return "\"" + chave + "\"";
+		}
+
+	}
+
+}
@@ -0,0 +1,131 @@
+package projeto.springboot.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import projeto.springboot.model.AlteracaoTelefones;
+import projeto.springboot.model.AlteracaoTelefones.Item;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Telefone;
+import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.TelefoneRepository;
+
+/**
+ * Aplica um lote de inclusões, alterações e exclusões de telefones de uma pessoa em uma única transação.
+ *
+ * São duas consultas (pessoa e telefones atuais) e, no flush, os INSERT/UPDATE/DELETE agrupados em lotes JDBC
+ * (hibernate.jdbc.batch_size no application.properties). A lista devolvida é montada em memória, sem consultar de novo.
+ * */
+@Service
+public class TelefoneService {
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private TelefoneRepository telefoneRepository;
+
+	/** Mensagens de validação do lote; vazia se puder ser aplicado. */
+	public List<String> validar(AlteracaoTelefones alteracao) {
+
+		List<String> msg = new ArrayList<String>();
+
+		List<Item> itens = new ArrayList<Item>(alteracao.getAdicionar());
+		itens.addAll(alteracao.getAlterar());
+
+		for (Item item : itens) {
+
+			if (item.getNumero() == null || item.getNumero().trim().isEmpty()) {
+				msg.add("Número de telefone deve ser informado!");
+			}
+
+			if (item.getTipo() == null || item.getTipo().trim().isEmpty()) {
+				msg.add("Tipo de telefone deve ser informado!");
+			}
+		}
+
+		for (Item item : alteracao.getAlterar()) {
+			if (item.getId() == null) {
+				msg.add("Telefone alterado sem id!");
+			}
+		}
+
+		return msg;
+	}
+
+	/**
+	 * Retorna vazio se a pessoa não existir. Lança IllegalArgumentException se algum id alterado/excluído não for desta pessoa
+	 * (nada é gravado nesse caso).
+	 * */
+	@Transactional
+	public Optional<List<Telefone>> aplicar(Long pessoaid, AlteracaoTelefones alteracao) {
+
+		Optional<Pessoa> pessoa = pessoaRepository.findById(pessoaid);
+
+		if (!pessoa.isPresent()) {
+			return Optional.empty();
+		}
+
+		Map<Long, Telefone> atuais = new LinkedHashMap<Long, Telefone>();
+
+		for (Telefone telefone : telefoneRepository.getTelefones(pessoaid)) {
+			atuais.put(telefone.getId(), telefone);
+		}
+
+		List<Telefone> excluidos = new ArrayList<Telefone>();
+
+		for (Long id : alteracao.getExcluir()) {
+			excluidos.add(daPessoa(atuais, id));
+		}
+
+		for (Item item : alteracao.getAlterar()) {
+			// Entidade gerenciada: o UPDATE sai no flush, só se o valor mudou
+			Telefone telefone = daPessoa(atuais, item.getId());
+			telefone.setNumero(item.getNumero().trim());
+			telefone.setTipo(item.getTipo().trim());
+		}
+
+		List<Telefone> novos = new ArrayList<Telefone>();
+
+		for (Item item : alteracao.getAdicionar()) {
+			Telefone telefone = new Telefone();
+			telefone.setNumero(item.getNumero().trim());
+			telefone.setTipo(item.getTipo().trim());
+			telefone.setPessoa(pessoa.get());
+			novos.add(telefone);
+		}
+
+		for (Telefone telefone : excluidos) {
+			atuais.remove(telefone.getId());
+		}
+
+		telefoneRepository.deleteAll(excluidos);
+		telefoneRepository.saveAll(novos);
+
+		List<Telefone> resultado = new ArrayList<Telefone>(atuais.values());
+		resultado.addAll(novos);
+		resultado.sort(Comparator.comparing(Telefone::getId));
+
+		return Optional.of(resultado);
+	}
+
+	private static Telefone daPessoa(Map<Long, Telefone> atuais, Long id) {
+
+		Telefone telefone = atuais.get(id);
+
+		if (telefone == null) {
+			throw new IllegalArgumentException("Telefone " + id + " não pertence a esta pessoa");
+		}
+
+		return telefone;
+	}
+
+}
@@ -0,0 +1,58 @@
+package projeto.springboot.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.invalidacao.CacheInvalidavel;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Telefone;
+
+/**
+ * "Geração" dos dados de pessoas: um número que muda a cada escrita confirmada em Pessoa ou Telefone.
+ *
+ * Caches de resultados derivados (como o RelatorioCacheService) guardam a geração junto da chave; quando ela muda, tudo o que foi
+ * gerado antes deixa de ser encontrado, sem precisar saber exatamente o que foi alterado.
+ *
+ * O valor inicial é o horário de início da aplicação para que gerações de execuções diferentes nunca coincidam. Escritas
+ * confirmadas em outros nós chegam pelo BarramentoInvalidacao e também mudam a geração.
+ * */
+@Service
+public class VersaoDadosService implements CacheInvalidavel {
+
+	private final AtomicLong geracao = new AtomicLong(System.currentTimeMillis());
+
+	public long getGeracao() {
+		return geracao.get();
+	}
+
+	/** Para escritas que não passam pelos eventos do Hibernate (SQL em lote, alterações de outro nó...). */
+	public long incrementar() {
+		return geracao.incrementAndGet();
+	}
+
+	@TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+	public void aoAlterar(EventoAlteracao evento) {
+
+		if (evento.isEntidade(Pessoa.class) || evento.isEntidade(Telefone.class)) {
+			incrementar();
+		}
+	}
+
+	@Override
+	public void invalidar(String tipo, String id) {
+
+		if (Pessoa.class.getSimpleName().equals(tipo) || Telefone.class.getSimpleName().equals(tipo)) {
+			incrementar();
+		}
+	}
+
+	@Override
+	public void invalidarTudo() {
+		incrementar();
+	}
+
+}
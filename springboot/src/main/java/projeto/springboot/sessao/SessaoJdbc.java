@@ -0,0 +1,132 @@
+package projeto.springboot.sessao;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+
+/**
+ * Sessão guardada pelo SessaoJdbcRepository. Os valores ficam em um MapSession; aqui só se anota o que precisa ir para o banco
+ * no save (feito uma vez, no fim da requisição, pelo SessionRepositoryFilter): atributos alterados, troca de id e tempos.
+ * */
+public final class SessaoJdbc implements Session {
+
+	private final MapSession sessao;
+
+	private boolean nova;
+
+	// Id com que a sessão está gravada; difere de getId() depois de changeSessionId() (proteção contra fixação de sessão no login)
+	private String idGravado;
+
+	private long acessoGravado;
+
+	private boolean inatividadeAlterada;
+
+	private final Set<String> atributosAlterados = new HashSet<String>();
+
+	SessaoJdbc(MapSession sessao, boolean nova, long acessoGravado) {
+		this.sessao = sessao;
+		this.nova = nova;
+		this.idGravado = sessao.getId();
+		this.acessoGravado = acessoGravado;
+	}
+
+	@Override
+	public String getId() {
+		return sessao.getId();
+	}
+
+	@Override
+	public String changeSessionId() {
+		return sessao.changeSessionId();
+	}
+
+	@Override
+	public <T> T getAttribute(String nome) {
+		return sessao.getAttribute(nome);
+	}
+
+	@Override
+	public Set<String> getAttributeNames() {
+		return sessao.getAttributeNames();
+	}
+
+	@Override
+	public void setAttribute(String nome, Object valor) {
+		sessao.setAttribute(nome, valor);
+		atributosAlterados.add(nome);
+	}
+
+	@Override
+	public void removeAttribute(String nome) {
+		sessao.removeAttribute(nome);
+		atributosAlterados.add(nome);
+	}
+
+	@Override
+	public Instant getCreationTime() {
+		return sessao.getCreationTime();
+	}
+
+	@Override
+	public void setLastAccessedTime(Instant ultimoAcesso) {
+		sessao.setLastAccessedTime(ultimoAcesso);
+	}
+
+	@Override
+	public Instant getLastAccessedTime() {
+		return sessao.getLastAccessedTime();
+	}
+
+	@Override
+	public void setMaxInactiveInterval(Duration intervalo) {
+		inatividadeAlterada |= !intervalo.equals(sessao.getMaxInactiveInterval());
+		sessao.setMaxInactiveInterval(intervalo);
+	}
+
+	@Override
+	public Duration getMaxInactiveInterval() {
+		return sessao.getMaxInactiveInterval();
+	}
+
+	@Override
+	public boolean isExpired() {
+		return sessao.isExpired();
+	}
+
+	MapSession getValores() {
+		return sessao;
+	}
+
+	boolean isNova() {
+		return nova;
+	}
+
+	String getIdGravado() {
+		return idGravado;
+	}
+
+	long getAcessoGravado() {
+		return acessoGravado;
+	}
+
+	boolean isInatividadeAlterada() {
+		return inatividadeAlterada;
+	}
+
+	Set<String> getAtributosAlterados() {
+		return atributosAlterados;
+	}
+
+	void gravada(long acessoGravado) {
+		this.nova = false;
+		this.idGravado = sessao.getId();
+		this.acessoGravado = acessoGravado;
+		this.inatividadeAlterada = false;
+		this.atributosAlterados.clear();
+	}
+
+}
@@ -0,0 +1,340 @@
+package projeto.springboot.sessao;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import projeto.springboot.invalidacao.BarramentoInvalidacao;
+import projeto.springboot.invalidacao.CacheInvalidavel;
+
+/**
+ * Sessões HTTP no PostgreSQL (tabelas sessao e sessao_atributo, db/migration/V5__sessao.sql), para que qualquer nó atenda
+ * qualquer usuário logado e um reinício não derrube os logins.
+ *
+ * Para não ir ao banco em toda requisição só para ler o SecurityContext, cada nó mantém um cache próximo das sessões lidas ou
+ * gravadas por ele, válido por "app.sessao.cache-ms". O cache guarda os atributos serializados, como estão no banco: cada
+ * requisição recebe objetos próprios e não vê o que outra alterou e ainda não gravou. Uma alteração feita em outro nó (inclusive logout) pode demorar até esse
+ * tempo para ser vista aqui, por isso o valor padrão é curto; sessões alteradas ou encerradas são avisadas aos outros nós pelo
+ * BarramentoInvalidacao, que normalmente entrega antes disso.
+ *
+ * O save acontece uma vez, no fim da requisição, e grava só o que mudou: os atributos alterados vão juntos em um lote JDBC e
+ * o último acesso só é regravado depois de "app.sessao.intervalo-acesso-ms" (a expiração vista por outros nós pode adiantar no
+ * máximo esse intervalo). Sessões expiradas são apagadas por uma tarefa agendada, com essa mesma folga.
+ *
+ * Sessão apagada no banco durante a requisição (logout em outro nó ou limpeza) é tratada como encerrada: o save não a recria
+ * e a próxima requisição começa uma sessão nova.
+ * */
+@Repository
+public class SessaoJdbcRepository implements SessionRepository<SessaoJdbc>, CacheInvalidavel {
+
+	private static final String TIPO = "Sessao";
+
+	private static final String SQL_UPSERT_ATRIBUTO = "INSERT INTO sessao_atributo (sessao_id, nome, valor) VALUES (?, ?, ?) "
+			+ "ON CONFLICT (sessao_id, nome) DO UPDATE SET valor = excluded.valor";
+
+	@Value("${app.sessao.inatividade-maxima-s:1800}")
+	private int inatividadeMaximaS;
+
+	@Value("${app.sessao.cache-ms:5000}")
+	private long cacheMs;
+
+	@Value("${app.sessao.intervalo-acesso-ms:60000}")
+	private long intervaloAcessoMs;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transacao;
+
+	@Autowired
+	private BarramentoInvalidacao barramento;
+
+	private final Map<String, EntradaCache> cache = new ConcurrentHashMap<String, EntradaCache>();
+
+	private final SerializingConverter serializador = new SerializingConverter();
+
+	// Carregador da própria aplicação: com o devtools as classes dos atributos vêm do carregador de reinício
+	private final DeserializingConverter desserializador = new DeserializingConverter(SessaoJdbcRepository.class.getClassLoader());
+
+	@Override
+	public SessaoJdbc createSession() {
+
+		MapSession sessao = new MapSession();
+		sessao.setMaxInactiveInterval(Duration.ofSeconds(inatividadeMaximaS));
+
+		return new SessaoJdbc(sessao, true, 0);
+	}
+
+	@Override
+	public void save(SessaoJdbc sessao) {
+
+		// Sessão nova ainda não está em cache nenhum; nas outras, só interessa aos outros nós se atributos ou id mudaram
+		boolean avisar = !sessao.isNova() && (!sessao.getAtributosAlterados().isEmpty() || !sessao.getIdGravado().equals(sessao.getId()));
+		String idAnterior = sessao.getIdGravado();
+
+		Map<String, byte[]> alterados = serializar(sessao.getValores(),
+				sessao.isNova() ? sessao.getAttributeNames() : sessao.getAtributosAlterados());
+
+		boolean gravada = transacao.execute(status -> gravar(sessao, alterados));
+
+		EntradaCache anterior = cache.remove(idAnterior);
+
+		if (!gravada) {
+			cache.remove(sessao.getId());
+			return;
+		}
+
+		long acessoGravado = deveGravarAcesso(sessao) ? sessao.getLastAccessedTime().toEpochMilli() : sessao.getAcessoGravado();
+		cache.put(sessao.getId(), new EntradaCache(semAtributos(sessao.getValores()), atributosGravados(sessao, anterior, alterados),
+				acessoGravado));
+		sessao.gravada(acessoGravado);
+
+		if (avisar) {
+			barramento.publicar(TIPO, idAnterior);
+		}
+	}
+
+	// false quando a sessão já não está no banco (apagada por logout em outro nó ou pela limpeza)
+	private boolean gravar(SessaoJdbc sessao, Map<String, byte[]> alterados) {
+
+		MapSession valores = sessao.getValores();
+
+		if (sessao.isNova()) {
+
+			jdbcTemplate.update("INSERT INTO sessao (id, criacao, ultimo_acesso, inatividade_maxima, expira_em) VALUES (?, ?, ?, ?, ?)",
+					valores.getId(), valores.getCreationTime().toEpochMilli(), valores.getLastAccessedTime().toEpochMilli(),
+					(int) valores.getMaxInactiveInterval().getSeconds(), expiraEm(valores));
+
+			gravarAtributos(valores.getId(), alterados);
+
+			return true;
+		}
+
+		// Cada UPDATE trava a linha até o commit; sem nenhum, os atributos só são gravados depois de travá-la aqui
+		boolean existe;
+
+		if (!sessao.getIdGravado().equals(valores.getId())) {
+			existe = jdbcTemplate.update("UPDATE sessao SET id = ? WHERE id = ?", valores.getId(), sessao.getIdGravado()) > 0;
+		} else if (!deveGravarAcesso(sessao) && !alterados.isEmpty()) {
+			existe = !jdbcTemplate.queryForList("SELECT 1 FROM sessao WHERE id = ? FOR SHARE", Integer.class, valores.getId()).isEmpty();
+		} else {
+			existe = true;
+		}
+
+		if (existe && deveGravarAcesso(sessao)) {
+			existe = jdbcTemplate.update("UPDATE sessao SET ultimo_acesso = ?, inatividade_maxima = ?, expira_em = ? WHERE id = ?",
+					valores.getLastAccessedTime().toEpochMilli(), (int) valores.getMaxInactiveInterval().getSeconds(), expiraEm(valores),
+					valores.getId()) > 0;
+		}
+
+		if (existe) {
+			gravarAtributos(valores.getId(), alterados);
+		}
+
+		return existe;
+	}
+
+	// Atributos serializados pelo nome; null para os removidos
+	private Map<String, byte[]> serializar(MapSession valores, Collection<String> nomes) {
+
+		Map<String, byte[]> serializados = new HashMap<String, byte[]>();
+
+		for (String nome : nomes) {
+			Object valor = valores.getAttribute(nome);
+			serializados.put(nome, valor == null ? null : serializador.convert(valor));
+		}
+
+		return serializados;
+	}
+
+	// Atributos como ficaram no banco: os do cache com os alterados aplicados, ou todos serializados se não estavam em cache
+	private Map<String, byte[]> atributosGravados(SessaoJdbc sessao, EntradaCache anterior, Map<String, byte[]> alterados) {
+
+		if (!sessao.isNova() && anterior == null) {
+			return serializar(sessao.getValores(), sessao.getAttributeNames());
+		}
+
+		Map<String, byte[]> atributos = new HashMap<String, byte[]>();
+
+		if (anterior != null) {
+			atributos.putAll(anterior.atributos);
+		}
+
+		for (Map.Entry<String, byte[]> alterado : alterados.entrySet()) {
+			if (alterado.getValue() == null) {
+				atributos.remove(alterado.getKey());
+			} else {
+				atributos.put(alterado.getKey(), alterado.getValue());
+			}
+		}
+
+		return atributos;
+	}
+
+	private void gravarAtributos(String id, Map<String, byte[]> alterados) {
+
+		List<Object[]> gravar = new ArrayList<Object[]>();
+		List<Object[]> remover = new ArrayList<Object[]>();
+
+		for (Map.Entry<String, byte[]> alterado : alterados.entrySet()) {
+			if (alterado.getValue() == null) {
+				remover.add(new Object[] { id, alterado.getKey() });
+			} else {
+				gravar.add(new Object[] { id, alterado.getKey(), alterado.getValue() });
+			}
+		}
+
+		if (!gravar.isEmpty()) {
+			jdbcTemplate.batchUpdate(SQL_UPSERT_ATRIBUTO, gravar);
+		}
+
+		if (!remover.isEmpty()) {
+			jdbcTemplate.batchUpdate("DELETE FROM sessao_atributo WHERE sessao_id = ? AND nome = ?", remover);
+		}
+	}
+
+	private boolean deveGravarAcesso(SessaoJdbc sessao) {
+		return sessao.isInatividadeAlterada()
+				|| sessao.getLastAccessedTime().toEpochMilli() - sessao.getAcessoGravado() >= intervaloAcessoMs;
+	}
+
+	@Override
+	public SessaoJdbc findById(String id) {
+
+		EntradaCache entrada = cache.get(id);
+
+		if (entrada == null || entrada.isVencida(cacheMs)) {
+
+			entrada = carregar(id);
+
+			if (entrada == null) {
+				cache.remove(id);
+				return null;
+			}
+
+			cache.put(id, entrada);
+		}
+
+		// Cada requisição altera a sua cópia, com atributos desserializados só para ela; a do cache só muda no save
+		MapSession copia = new MapSession(entrada.sessao);
+
+		for (Map.Entry<String, byte[]> atributo : entrada.atributos.entrySet()) {
+			copia.setAttribute(atributo.getKey(), desserializador.convert(atributo.getValue()));
+		}
+
+		SessaoJdbc sessao = new SessaoJdbc(copia, false, entrada.acessoGravado);
+
+		if (sessao.isExpired()) {
+			deleteById(id);
+			return null;
+		}
+
+		return sessao;
+	}
+
+	private EntradaCache carregar(String id) {
+
+		List<MapSession> sessoes = jdbcTemplate.query("SELECT criacao, ultimo_acesso, inatividade_maxima FROM sessao WHERE id = ?",
+				(rs, linha) -> {
+					MapSession sessao = new MapSession(id);
+					sessao.setCreationTime(Instant.ofEpochMilli(rs.getLong("criacao")));
+					sessao.setLastAccessedTime(Instant.ofEpochMilli(rs.getLong("ultimo_acesso")));
+					sessao.setMaxInactiveInterval(Duration.ofSeconds(rs.getInt("inatividade_maxima")));
+					return sessao;
+				}, id);
+
+		if (sessoes.isEmpty()) {
+			return null;
+		}
+
+		MapSession sessao = sessoes.get(0);
+		Map<String, byte[]> atributos = new HashMap<String, byte[]>();
+
+		jdbcTemplate.query("SELECT nome, valor FROM sessao_atributo WHERE sessao_id = ?", rs -> {
+			atributos.put(rs.getString("nome"), rs.getBytes("valor"));
+		}, id);
+
+		return new EntradaCache(sessao, atributos, sessao.getLastAccessedTime().toEpochMilli());
+	}
+
+	@Override
+	public void deleteById(String id) {
+		cache.remove(id);
+		jdbcTemplate.update("DELETE FROM sessao WHERE id = ?", id);
+		barramento.publicar(TIPO, id);
+	}
+
+	@Override
+	public void invalidar(String tipo, String id) {
+
+		if (TIPO.equals(tipo) && id != null) {
+			cache.remove(id);
+		}
+	}
+
+	@Override
+	public void invalidarTudo() {
+		cache.clear();
+	}
+
+	@Scheduled(fixedDelayString = "${app.sessao.limpeza-ms:60000}")
+	public void removerExpiradas() {
+		cache.values().removeIf(entrada -> entrada.isVencida(cacheMs));
+
+		// O último acesso gravado pode estar até "app.sessao.intervalo-acesso-ms" atrás do real
+		jdbcTemplate.update("DELETE FROM sessao WHERE expira_em < ?", System.currentTimeMillis() - intervaloAcessoMs);
+	}
+
+	private static long expiraEm(MapSession sessao) {
+		return sessao.getLastAccessedTime().plus(sessao.getMaxInactiveInterval()).toEpochMilli();
+	}
+
+	// Id e tempos da sessão, sem os atributos (esses ficam serializados na entrada do cache)
+	private static MapSession semAtributos(MapSession valores) {
+
+		MapSession sessao = new MapSession(valores.getId());
+		sessao.setCreationTime(valores.getCreationTime());
+		sessao.setLastAccessedTime(valores.getLastAccessedTime());
+		sessao.setMaxInactiveInterval(valores.getMaxInactiveInterval());
+
+		return sessao;
+	}
+
+	private static final class EntradaCache {
+
+		// Sem atributos; nunca alterada depois de entrar no cache
+		private final MapSession sessao;
+		private final Map<String, byte[]> atributos;
+		private final long acessoGravado;
+		private final long carregadaEm = System.currentTimeMillis();
+
+		EntradaCache(MapSession sessao, Map<String, byte[]> atributos, long acessoGravado) {
+			this.sessao = sessao;
+			this.atributos = atributos;
+			this.acessoGravado = acessoGravado;
+		}
+
+		boolean isVencida(long validadeMs) {
+			return System.currentTimeMillis() - carregadaEm > validadeMs;
+		}
+
+	}
+
+}
@@ -0,0 +1,14 @@
+package projeto.springboot.sessao;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+/**
+ * Liga o SessionRepositoryFilter do Spring Session com o SessaoJdbcRepository: a HttpSession (e o login do WebConfigSecurity)
+ * passa a ficar no banco em vez da memória do Tomcat. O filtro roda antes do Spring Security.
+ * */
+@Configuration
+@EnableSpringHttpSession
+public class WebConfigSessao {
+
+}
@@ -0,0 +1,378 @@
+package projeto.springboot.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import projeto.springboot.fragmentacao.ContextoFragmento;
+
+/**
+ * Amostragem de consultas lentas: toda instrução acima de "app.sql.lentas.limite-ms" é guardada em um anel de tamanho fixo
+ * ("app.sql.lentas.capacidade"; as mais antigas são sobrescritas) com o SQL, o tempo, a URI da requisição e os parâmetros
+ * redigidos — só o tipo e o tamanho, nunca o valor (nomes, CPFs, telefones não vão para a tela nem para a memória).
+ *
+ * Uma fração dos SELECTs lentos ("app.sql.lentas.amostra-explain") ganha também o plano: EXPLAIN (ANALYZE, BUFFERS) com os
+ * mesmos parâmetros, rodado em segundo plano por uma única thread, em transação somente leitura com statement_timeout e
+ * desfeita no final. Se a fila dessa thread estiver cheia a amostra é descartada; a requisição nunca espera pelo plano.
+ *
+ * O EXPLAIN usa o DataSource real (sem o DataSourceMonitorado), então não conta nas estatísticas da requisição nem volta para
+ * este amostrador. A tela /admin/consultaslentas agrupa as amostras pela forma normalizada do SQL (EstatisticaSql.normalizar).
+ * */
+@Service
+public class AmostradorConsultasLentas implements OuvinteSql {
+
+	private static final Logger logger = LoggerFactory.getLogger(AmostradorConsultasLentas.class);
+
+	@Value("${app.sql.lentas.habilitado:true}")
+	private boolean habilitado;
+
+	@Value("${app.sql.lentas.limite-ms:200}")
+	private long limiteMs;
+
+	@Value("${app.sql.lentas.capacidade:500}")
+	private int capacidade;
+
+	@Value("${app.sql.lentas.amostra-explain:0.1}")
+	private double amostraExplain;
+
+	@Value("${app.sql.lentas.explain-timeout-ms:10000}")
+	private long explainTimeoutMs;
+
+	@Value("${app.sql.lentas.fila-explain:16}")
+	private int filaExplain;
+
+	@Autowired
+	private DataSource dataSource;
+
+	private AtomicReferenceArray<ConsultaLenta> anel;
+	private final AtomicLong proxima = new AtomicLong();
+	private final AtomicLong explainsDescartados = new AtomicLong();
+
+	private DataSource alvoExplain;
+	private ThreadPoolExecutor executor;
+
+	@PostConstruct
+	public void registrar() throws Exception {
+
+		anel = new AtomicReferenceArray<ConsultaLenta>(Math.max(1, capacidade));
+
+		if (!habilitado || !dataSource.isWrapperFor(DataSourceMonitorado.class)) {
+			return;
+		}
+
+		DataSourceMonitorado monitorado = dataSource.unwrap(DataSourceMonitorado.class);
+		alvoExplain = monitorado.getTargetDataSource();
+
+		executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, filaExplain)),
+				r -> {
+					Thread thread = new Thread(r, "explain-consultas-lentas");
+					thread.setDaemon(true);
+					return thread;
+				}, (r, e) -> explainsDescartados.incrementAndGet());
+
+		monitorado.setOuvinte(this);
+	}
+
+	@PreDestroy
+	public void encerrar() {
+
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void aoExecutar(String sql, Map<Integer, Object> parametros, long nanos) {
+
+		long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+
+		if (ms < limiteMs || sql == null) {
+			return;
+		}
+
+		ConsultaLenta consulta = new ConsultaLenta(EstatisticaSql.normalizar(sql), sql, ms, uriAtual(), redigir(parametros));
+		anel.set((int) (proxima.getAndIncrement() % anel.length()), consulta);
+
+		if (explicavel(sql) && ThreadLocalRandom.current().nextDouble() < amostraExplain) {
+			// Os valores reais só vivem até o EXPLAIN rodar; na amostra ficam apenas os redigidos. O EXPLAIN roda no fragmento em que
+			// a consulta rodou: a thread do executor não tem fragmento definido e iria sempre para o 0
+			List<Object> valores = new ArrayList<Object>(parametros.values());
+			int fragmento = ContextoFragmento.atual();
+			executor.execute(() -> ContextoFragmento.em(fragmento, () -> {
+				explicar(consulta, sql, valores);
+				return null;
+			}));
+		}
+	}
+
+	// Só SELECT puro: ANALYZE executa de verdade a instrução, então nada que grave ou trave linhas
+	static boolean explicavel(String sql) {
+
+		String minusculo = sql.trim().toLowerCase(Locale.ROOT);
+
+		return minusculo.startsWith("select") && !minusculo.contains(" for update") && !minusculo.contains(" for share")
+				&& !minusculo.contains("nextval(") && !minusculo.contains("pg_notify(");
+	}
+
+	private void explicar(ConsultaLenta consulta, String sql, List<Object> valores) {
+
+		try (Connection conexao = alvoExplain.getConnection()) {
+
+			boolean autoCommit = conexao.getAutoCommit();
+			conexao.setAutoCommit(false);
+
+			try {
+				try (Statement configuracao = conexao.createStatement()) {
+					configuracao.execute("SET TRANSACTION READ ONLY");
+					configuracao.execute("SET LOCAL statement_timeout = " + explainTimeoutMs);
+				}
+
+				StringBuilder plano = new StringBuilder();
+
+				try (PreparedStatement explain = conexao.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+
+					for (int i = 0; i < valores.size(); i++) {
+						explain.setObject(i + 1, valores.get(i));
+					}
+
+					try (ResultSet linhas = explain.executeQuery()) {
+						while (linhas.next()) {
+							plano.append(linhas.getString(1)).append('\n');
+						}
+					}
+				}
+
+				consulta.plano = plano.toString();
+
+			} finally {
+				conexao.rollback();
+				conexao.setAutoCommit(autoCommit);
+			}
+
+		} catch (Exception e) {
+			consulta.plano = "EXPLAIN falhou: " + e.getMessage();
+			logger.debug("EXPLAIN da consulta lenta falhou", e);
+		}
+	}
+
+	static List<String> redigir(Map<Integer, Object> parametros) {
+
+		List<String> redigidos = new ArrayList<String>(parametros.size());
+
+		for (Object valor : parametros.values()) {
+			redigidos.add(redigir(valor));
+		}
+
+		return redigidos;
+	}
+
+	static String redigir(Object valor) {
+
+		if (valor == null) {
+			return "null";
+		} else if (valor instanceof CharSequence) {
+			return "texto(" + ((CharSequence) valor).length() + ")";
+		} else if (valor instanceof byte[]) {
+			return "bytes(" + ((byte[]) valor).length + ")";
+		} else if (valor instanceof Number) {
+			return "número";
+		} else if (valor instanceof Boolean) {
+			return "booleano";
+		} else if (valor instanceof Date || valor instanceof java.time.temporal.Temporal) {
+			return "data";
+		}
+
+		return valor.getClass().getSimpleName();
+	}
+
+	private static String uriAtual() {
+
+		RequestAttributes atributos = RequestContextHolder.getRequestAttributes();
+
+		if (atributos instanceof ServletRequestAttributes) {
+			HttpServletRequest requisicao = ((ServletRequestAttributes) atributos).getRequest();
+			return requisicao.getMethod() + " " + requisicao.getRequestURI();
+		}
+
+		return "(fora de requisição)";
+	}
+
+	/** Amostras do anel agrupadas pela forma do SQL, das formas com mais tempo total para as com menos. */
+	public List<ResumoForma> resumo() {
+
+		Map<String, List<ConsultaLenta>> porForma = new LinkedHashMap<String, List<ConsultaLenta>>();
+
+		for (int i = 0; i < anel.length(); i++) {
+
+			ConsultaLenta consulta = anel.get(i);
+
+			if (consulta != null) {
+				porForma.computeIfAbsent(consulta.forma, f -> new ArrayList<ConsultaLenta>()).add(consulta);
+			}
+		}
+
+		List<ResumoForma> resumo = new ArrayList<ResumoForma>();
+
+		for (Map.Entry<String, List<ConsultaLenta>> forma : porForma.entrySet()) {
+			resumo.add(new ResumoForma(forma.getKey(), forma.getValue()));
+		}
+
+		resumo.sort((a, b) -> Long.compare(b.totalMs, a.totalMs));
+
+		return resumo;
+	}
+
+	public long getLimiteMs() {
+		return limiteMs;
+	}
+
+	public long getExplainsDescartados() {
+		return explainsDescartados.get();
+	}
+
+	/** Uma execução acima do limite; o plano é preenchido depois, pela thread do EXPLAIN, quando a amostra é sorteada. */
+	static final class ConsultaLenta {
+
+		final Date dataHora = new Date();
+		final String forma;
+		final String sql;
+		final long ms;
+		final String uri;
+		final List<String> parametros;
+		volatile String plano;
+
+		ConsultaLenta(String forma, String sql, long ms, String uri, List<String> parametros) {
+			this.forma = forma;
+			this.sql = sql;
+			this.ms = ms;
+			this.uri = uri;
+			this.parametros = parametros;
+		}
+
+	}
+
+	/** Linha da tela: quantidade, percentis de tempo e a amostra mais recente (com o plano mais recente, se houver). */
+	public static final class ResumoForma {
+
+		private final String forma;
+		private final int quantidade;
+		private final long totalMs;
+		private final long p50Ms;
+		private final long p95Ms;
+		private final long p99Ms;
+		private final long maximoMs;
+		private final ConsultaLenta ultima;
+		private final String plano;
+
+		ResumoForma(String forma, List<ConsultaLenta> consultas) {
+
+			consultas.sort((a, b) -> a.dataHora.compareTo(b.dataHora));
+
+			List<Long> tempos = new ArrayList<Long>(consultas.size());
+			long total = 0;
+			String ultimoPlano = null;
+
+			for (ConsultaLenta consulta : consultas) {
+
+				tempos.add(consulta.ms);
+				total += consulta.ms;
+
+				if (consulta.plano != null) {
+					ultimoPlano = consulta.plano;
+				}
+			}
+
+			Collections.sort(tempos);
+
+			this.forma = forma;
+			this.quantidade = consultas.size();
+			this.totalMs = total;
+			this.p50Ms = percentil(tempos, 50);
+			this.p95Ms = percentil(tempos, 95);
+			this.p99Ms = percentil(tempos, 99);
+			this.maximoMs = tempos.get(tempos.size() - 1);
+			this.ultima = consultas.get(consultas.size() - 1);
+			this.plano = ultimoPlano;
+		}
+
+		// Posto mais próximo: o menor tempo com pelo menos p% das amostras abaixo ou iguais a ele
+		static long percentil(List<Long> ordenados, int p) {
+			int posicao = (int) Math.ceil(p / 100.0 * ordenados.size());
+			return ordenados.get(Math.max(0, posicao - 1));
+		}
+
+		public String getForma() {
+			return forma;
+		}
+
+		public int getQuantidade() {
+			return quantidade;
+		}
+
+		public long getTotalMs() {
+			return totalMs;
+		}
+
+		public long getP50Ms() {
+			return p50Ms;
+		}
+
+		public long getP95Ms() {
+			return p95Ms;
+		}
+
+		public long getP99Ms() {
+			return p99Ms;
+		}
+
+		public long getMaximoMs() {
+			return maximoMs;
+		}
+
+		public Date getUltimaDataHora() {
+			return ultima.dataHora;
+		}
+
+		public String getUltimaUri() {
+			return ultima.uri;
+		}
+
+		public List<String> getUltimosParametros() {
+			return ultima.parametros;
+		}
+
+		public String getPlano() {
+			return plano;
+		}
+
+	}
+
+}
@@ -0,0 +1,233 @@
+package projeto.springboot.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * DataSource que mede cada instrução executada pelas conexões que entrega (JPA, JdbcTemplate, Flyway...), repassando tudo ao
+ * DataSource real. Conexões, instruções e ResultSets são envolvidos por proxies que anotam na EstatisticaSql corrente o SQL, o
+ * tempo de cada execute* e as linhas lidas (next()) ou alteradas (contagem do update).
+ *
+ * Com um OuvinteSql registrado (AmostradorConsultasLentas), os parâmetros de cada PreparedStatement também são guardados até a
+ * execução e repassados a ele junto com o SQL e o tempo.
+ *
+ * unwrap()/isWrapperFor() chegam ao objeto real (HikariDataSource, PGConnection...).
+ * */
+public class DataSourceMonitorado extends DelegatingDataSource {
+
+	private static final Set<String> EXECUCOES = new HashSet<String>(Arrays.asList("execute", "executeQuery", "executeUpdate",
+			"executeLargeUpdate", "executeBatch", "executeLargeBatch"));
+
+	private volatile OuvinteSql ouvinte;
+
+	public DataSourceMonitorado(DataSource alvo) {
+		super(alvo);
+	}
+
+	public void setOuvinte(OuvinteSql ouvinte) {
+		this.ouvinte = ouvinte;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return conexao(super.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String usuario, String senha) throws SQLException {
+		return conexao(super.getConnection(usuario, senha));
+	}
+
+	private Connection conexao(Connection alvo) {
+		return proxy(Connection.class, alvo, new ConexaoMonitorada(alvo));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> tipo, T alvo, InvocationHandler tratador) {
+		return (T) Proxy.newProxyInstance(DataSourceMonitorado.class.getClassLoader(), new Class<?>[] { tipo }, tratador);
+	}
+
+	private static Object invocar(Object alvo, Method metodo, Object[] argumentos) throws Throwable {
+		try {
+			return metodo.invoke(alvo, argumentos);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	// unwrap(X) devolve o próprio proxy quando ele já é um X, senão o objeto real
+	private static Object unwrap(Object proxy, Object alvo, Method metodo, Object[] argumentos) throws Throwable {
+
+		Class<?> tipo = (Class<?>) argumentos[0];
+
+		if ("unwrap".equals(metodo.getName())) {
+			return tipo.isInstance(proxy) ? proxy : invocar(alvo, metodo, argumentos);
+		}
+
+		return tipo.isInstance(proxy) || (Boolean) invocar(alvo, metodo, argumentos);
+	}
+
+	private final class ConexaoMonitorada implements InvocationHandler {
+
+		private final Connection alvo;
+
+		ConexaoMonitorada(Connection alvo) {
+			this.alvo = alvo;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] argumentos) throws Throwable {
+
+			String nome = metodo.getName();
+
+			if ("unwrap".equals(nome) || "isWrapperFor".equals(nome)) {
+				return unwrap(proxy, alvo, metodo, argumentos);
+			}
+
+			Object resultado = invocar(alvo, metodo, argumentos);
+
+			if ("prepareStatement".equals(nome)) {
+				return proxy(PreparedStatement.class, (PreparedStatement) resultado,
+						new InstrucaoMonitorada((Statement) resultado, (String) argumentos[0]));
+			}
+
+			if ("prepareCall".equals(nome)) {
+				return proxy(CallableStatement.class, (CallableStatement) resultado,
+						new InstrucaoMonitorada((Statement) resultado, (String) argumentos[0]));
+			}
+
+			if ("createStatement".equals(nome)) {
+				return proxy(Statement.class, (Statement) resultado, new InstrucaoMonitorada((Statement) resultado, null));
+			}
+
+			return resultado;
+		}
+
+	}
+
+	private final class InstrucaoMonitorada implements InvocationHandler {
+
+		private final Statement alvo;
+		private final String sql;
+		private final Map<Integer, Object> parametros = new TreeMap<Integer, Object>();
+
+		InstrucaoMonitorada(Statement alvo, String sql) {
+			this.alvo = alvo;
+			this.sql = sql;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] argumentos) throws Throwable {
+
+			String nome = metodo.getName();
+
+			if ("unwrap".equals(nome) || "isWrapperFor".equals(nome)) {
+				return unwrap(proxy, alvo, metodo, argumentos);
+			}
+
+			OuvinteSql ouvinteAtual = ouvinte;
+
+			if (ouvinteAtual != null && sql != null) {
+				guardarParametro(nome, argumentos);
+			}
+
+			if (!EXECUCOES.contains(nome)) {
+
+				Object resultado = invocar(alvo, metodo, argumentos);
+
+				return "getResultSet".equals(nome) && resultado != null ? resultSet((ResultSet) resultado) : resultado;
+			}
+
+			// Statement simples recebe o SQL no execute
+			String executado = sql != null ? sql : argumentos != null && argumentos.length > 0 ? (String) argumentos[0] : null;
+			long inicio = System.nanoTime();
+
+			try {
+				Object resultado = invocar(alvo, metodo, argumentos);
+
+				long nanos = System.nanoTime() - inicio;
+
+				EstatisticaSql.registrarExecucao(executado, nanos);
+				EstatisticaSql.registrarLinhas(linhasAlteradas(resultado));
+
+				if (ouvinteAtual != null) {
+					ouvinteAtual.aoExecutar(executado, parametros, nanos);
+				}
+
+				return resultado instanceof ResultSet ? resultSet((ResultSet) resultado) : resultado;
+
+			} catch (Throwable e) {
+				EstatisticaSql.registrarExecucao(executado, System.nanoTime() - inicio);
+				throw e;
+			}
+		}
+
+		// setString(1, ...), setLong(2, ...), setObject(3, ..., tipo)...; clearParameters() limpa
+		private void guardarParametro(String nome, Object[] argumentos) {
+
+			if ("clearParameters".equals(nome)) {
+				parametros.clear();
+			} else if (nome.startsWith("set") && argumentos != null && argumentos.length >= 2 && argumentos[0] instanceof Integer) {
+				parametros.put((Integer) argumentos[0], nome.equals("setNull") ? null : argumentos[1]);
+			}
+		}
+
+		private long linhasAlteradas(Object resultado) {
+
+			if (resultado instanceof Number) {
+				return ((Number) resultado).longValue();
+			}
+
+			long total = 0;
+
+			if (resultado instanceof int[]) {
+				for (int quantidade : (int[]) resultado) {
+					total += Math.max(0, quantidade);
+				}
+			} else if (resultado instanceof long[]) {
+				for (long quantidade : (long[]) resultado) {
+					total += Math.max(0, quantidade);
+				}
+			}
+
+			return total;
+		}
+
+		private ResultSet resultSet(ResultSet alvo) {
+
+			return proxy(ResultSet.class, alvo, (proxy, metodo, argumentos) -> {
+
+				if ("unwrap".equals(metodo.getName()) || "isWrapperFor".equals(metodo.getName())) {
+					return unwrap(proxy, alvo, metodo, argumentos);
+				}
+
+				Object resultado = invocar(alvo, metodo, argumentos);
+
+				if ("next".equals(metodo.getName()) && Boolean.TRUE.equals(resultado)) {
+					EstatisticaSql.registrarLinhas(1);
+				}
+
+				return resultado;
+			});
+		}
+
+	}
+
+}
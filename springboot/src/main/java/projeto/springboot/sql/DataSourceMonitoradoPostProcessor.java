@@ -0,0 +1,36 @@
+package projeto.springboot.sql;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Troca todo DataSource do contexto por um DataSourceMonitorado, antes de ser injetado no JPA, no JdbcTemplate e no Flyway.
+ * Com "app.sql.monitoramento.habilitado=false" o DataSource original é usado sem nenhum proxy.
+ * */
+@Component
+public class DataSourceMonitoradoPostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+	private boolean habilitado = true;
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		// BeanPostProcessor é criado antes do processamento de @Value, então a propriedade é lida direto do Environment
+		habilitado = environment.getProperty("app.sql.monitoramento.habilitado", Boolean.class, true);
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+
+		if (habilitado && bean instanceof DataSource && !(bean instanceof DataSourceMonitorado)) {
+			return new DataSourceMonitorado((DataSource) bean);
+		}
+
+		return bean;
+	}
+
+}
@@ -0,0 +1,96 @@
+package projeto.springboot.sql;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Instruções SQL, linhas lidas/alteradas e tempo no banco de uma requisição HTTP. Fica em um ThreadLocal enquanto a requisição
+ * está no EstatisticaSqlFilter e é alimentada pelo DataSourceMonitorado; fora de requisição (tarefas agendadas, threads próprias)
+ * não há estatística corrente e nada é contado.
+ *
+ * Também conta quantas vezes cada "forma" de instrução apareceu (o SQL com valores e listas de parâmetros normalizados), para
+ * apontar o padrão N+1: a mesma consulta repetida uma vez por registro.
+ * */
+public class EstatisticaSql {
+
+	private static final ThreadLocal<EstatisticaSql> CORRENTE = new ThreadLocal<EstatisticaSql>();
+
+	private static final Pattern TEXTO = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMERO = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern LISTA = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+	private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+	private int instrucoes;
+	private long linhas;
+	private long nanos;
+	private final Map<String, Integer> formas = new LinkedHashMap<String, Integer>();
+
+	static EstatisticaSql iniciar() {
+		EstatisticaSql estatistica = new EstatisticaSql();
+		CORRENTE.set(estatistica);
+		return estatistica;
+	}
+
+	static void encerrar() {
+		CORRENTE.remove();
+	}
+
+	/** Estatística da requisição da thread atual, ou null. */
+	public static EstatisticaSql corrente() {
+		return CORRENTE.get();
+	}
+
+	static void registrarExecucao(String sql, long nanos) {
+
+		EstatisticaSql estatistica = CORRENTE.get();
+
+		if (estatistica != null) {
+			estatistica.instrucoes++;
+			estatistica.nanos += nanos;
+			estatistica.formas.merge(normalizar(sql), 1, Integer::sum);
+		}
+	}
+
+	static void registrarLinhas(long quantidade) {
+
+		EstatisticaSql estatistica = CORRENTE.get();
+
+		if (estatistica != null && quantidade > 0) {
+			estatistica.linhas += quantidade;
+		}
+	}
+
+	/** SQL sem literais e com "in (?, ?, ?)" reduzido a "in (?)", para agrupar execuções da mesma instrução. */
+	static String normalizar(String sql) {
+
+		if (sql == null) {
+			return "";
+		}
+
+		String forma = TEXTO.matcher(sql).replaceAll("?");
+		forma = NUMERO.matcher(forma).replaceAll("?");
+		forma = LISTA.matcher(forma).replaceAll("(?)");
+
+		return ESPACOS.matcher(forma).replaceAll(" ").trim();
+	}
+
+	public int getInstrucoes() {
+		return instrucoes;
+	}
+
+	public long getLinhas() {
+		return linhas;
+	}
+
+	public long getTempoMs() {
+		return nanos / 1_000_000;
+	}
+
+	/** Quantas vezes cada forma de instrução foi executada, na ordem da primeira execução. */
+	public Map<String, Integer> getFormas() {
+		return Collections.unmodifiableMap(formas);
+	}
+
+}
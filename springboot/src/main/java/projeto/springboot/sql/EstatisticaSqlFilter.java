@@ -0,0 +1,147 @@
+package projeto.springboot.sql;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+import java.util.Map;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Conta as instruções SQL de cada requisição HTTP (EstatisticaSql, alimentada pelo DataSourceMonitorado) e:
+ *  -> responde com os cabeçalhos X-Sql-Instrucoes, X-Sql-Linhas e X-Sql-Tempo-Ms, com o que foi executado até a resposta começar
+ *     a ser enviada (o que o template ainda carregar depois disso entra só nas métricas e no log);
+ *  -> registra as métricas sql.requisicao.instrucoes, sql.requisicao.linhas e sql.requisicao.tempo por padrão de URL;
+ *  -> avisa no log quando a mesma forma de instrução se repete "app.sql.repeticao-aviso" vezes ou mais (provável N+1);
+ *  -> deixa a estatística no atributo ATRIBUTO da requisição, para os testes conferirem o máximo de instruções por endpoint.
+ * */
+public class EstatisticaSqlFilter extends OncePerRequestFilter {
+
+	private static final Logger logger = LoggerFactory.getLogger(EstatisticaSqlFilter.class);
+
+	public static final String ATRIBUTO = EstatisticaSql.class.getName();
+
+	public static final String CABECALHO_INSTRUCOES = "X-Sql-Instrucoes";
+
+	@Value("${app.sql.repeticao-aviso:10}")
+	private int repeticaoAviso;
+
+	@Autowired(required = false)
+	private MeterRegistry meterRegistry;
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		EstatisticaSql estatistica = EstatisticaSql.iniciar();
+		RespostaComEstatistica resposta = new RespostaComEstatistica(response, estatistica);
+
+		try {
+			filterChain.doFilter(request, resposta);
+		} finally {
+			EstatisticaSql.encerrar();
+			resposta.escreverCabecalhos();
+			request.setAttribute(ATRIBUTO, estatistica);
+			registrar(request, estatistica);
+		}
+	}
+
+	private void registrar(HttpServletRequest request, EstatisticaSql estatistica) {
+
+		Object padrao = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		String uri = padrao != null ? padrao.toString() : "OUTRO";
+
+		if (meterRegistry != null && estatistica.getInstrucoes() > 0) {
+			DistributionSummary.builder("sql.requisicao.instrucoes").tag("uri", uri).description("Instruções SQL por requisição")
+					.register(meterRegistry).record(estatistica.getInstrucoes());
+			DistributionSummary.builder("sql.requisicao.linhas").tag("uri", uri).description("Linhas lidas ou alteradas por requisição")
+					.register(meterRegistry).record(estatistica.getLinhas());
+			Timer.builder("sql.requisicao.tempo").tag("uri", uri).description("Tempo no banco por requisição")
+					.register(meterRegistry).record(Duration.ofMillis(estatistica.getTempoMs()));
+		}
+
+		for (Map.Entry<String, Integer> forma : estatistica.getFormas().entrySet()) {
+			if (forma.getValue() >= repeticaoAviso) {
+				logger.warn("Possível N+1 em " + request.getMethod() + " " + uri + ": " + forma.getValue() + " execuções de: " + forma.getKey());
+			}
+		}
+	}
+
+	/** Põe os cabeçalhos na resposta no último momento possível: quando o corpo começa a ser escrito ou no fim do filtro. */
+	private static final class RespostaComEstatistica extends HttpServletResponseWrapper {
+
+		private final EstatisticaSql estatistica;
+		private boolean escritos;
+
+		RespostaComEstatistica(HttpServletResponse response, EstatisticaSql estatistica) {
+			super(response);
+			this.estatistica = estatistica;
+		}
+
+		void escreverCabecalhos() {
+
+			if (escritos || isCommitted()) {
+				return;
+			}
+
+			escritos = true;
+			setIntHeader(CABECALHO_INSTRUCOES, estatistica.getInstrucoes());
+			setHeader("X-Sql-Linhas", String.valueOf(estatistica.getLinhas()));
+			setHeader("X-Sql-Tempo-Ms", String.valueOf(estatistica.getTempoMs()));
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			escreverCabecalhos();
+			return super.getOutputStream();
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			escreverCabecalhos();
+			return super.getWriter();
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			escreverCabecalhos();
+			super.flushBuffer();
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			escreverCabecalhos();
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			escreverCabecalhos();
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendRedirect(String location) throws IOException {
+			escreverCabecalhos();
+			super.sendRedirect(location);
+		}
+
+	}
+
+}
@@ -0,0 +1,11 @@
+package projeto.springboot.sql;
+
+import java.util.Map;
+
+/** Recebe cada instrução executada pelo DataSourceMonitorado (ver DataSourceMonitorado.setOuvinte). Chamado na thread da execução. */
+public interface OuvinteSql {
+
+	/** parametros: valores passados por índice (setString, setLong...), só para uso imediato; o mapa é reaproveitado depois. */
+	void aoExecutar(String sql, Map<Integer, Object> parametros, long nanos);
+
+}
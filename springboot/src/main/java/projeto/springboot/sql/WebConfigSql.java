@@ -0,0 +1,29 @@
+package projeto.springboot.sql;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Registra o EstatisticaSqlFilter logo depois do controle de admissão, antes da sessão e do Spring Security, para que as
+ * consultas deles (sessão, usuário do login) também entrem na conta da requisição.
+ * */
+@Configuration
+public class WebConfigSql {
+
+	@Bean
+	public EstatisticaSqlFilter estatisticaSqlFilter() {
+		return new EstatisticaSqlFilter();
+	}
+
+	@Bean
+	public FilterRegistrationBean<EstatisticaSqlFilter> registroEstatisticaSql(EstatisticaSqlFilter filtro) {
+
+		FilterRegistrationBean<EstatisticaSqlFilter> registro = new FilterRegistrationBean<EstatisticaSqlFilter>(filtro);
+		registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+
+		return registro;
+	}
+
+}
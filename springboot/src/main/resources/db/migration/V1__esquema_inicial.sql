@@ -0,0 +1,62 @@
+-- Esquema inicial, equivalente ao que o Hibernate criava com ddl-auto=update.
+-- Bancos que já existiam antes das migrações são marcados nesta versão (spring.flyway.baseline-on-migrate) e seguem a partir da V2.
+
+CREATE SEQUENCE hibernate_sequence START 1 INCREMENT 1;
+
+CREATE TABLE profissao (
+	id int8 NOT NULL,
+	nome varchar(255),
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE pessoa (
+	id int8 NOT NULL,
+	bairro varchar(255),
+	cargo varchar(255),
+	cep varchar(255),
+	cidade varchar(255),
+	curriculo oid,
+	data_nascimento date,
+	ibge varchar(255),
+	idade int4 NOT NULL,
+	nome varchar(255),
+	nome_file_curriculo varchar(255),
+	rua varchar(255),
+	sexopessoa varchar(255),
+	sobrenome varchar(255),
+	tipo_file_curriculo varchar(255),
+	uf varchar(255),
+	profissaopessoa_id int8,
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE telefone (
+	id int8 NOT NULL,
+	numero varchar(255),
+	tipo varchar(255),
+	pessoa_id int8,
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE role (
+	id int8 NOT NULL,
+	nome_role varchar(255),
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE usuario (
+	id int8 NOT NULL,
+	login varchar(255),
+	senha varchar(255),
+	PRIMARY KEY (id)
+);
+
+CREATE TABLE usuarios_role (
+	usuario_id int8 NOT NULL,
+	role_id int8 NOT NULL
+);
+
+ALTER TABLE pessoa ADD CONSTRAINT fk_pessoa_profissao FOREIGN KEY (profissaopessoa_id) REFERENCES profissao;
+ALTER TABLE telefone ADD CONSTRAINT pessoa_id FOREIGN KEY (pessoa_id) REFERENCES pessoa;
+ALTER TABLE usuarios_role ADD CONSTRAINT fk_usuarios_role_role FOREIGN KEY (role_id) REFERENCES role;
+ALTER TABLE usuarios_role ADD CONSTRAINT fk_usuarios_role_usuario FOREIGN KEY (usuario_id) REFERENCES usuario;
@@ -0,0 +1,52 @@
+-- Índices das consultas mais frequentes e sequências próprias para pessoa/telefone.
+-- Tudo com IF NOT EXISTS porque bancos antigos podem já ter parte disso criada à mão.
+
+-- Login (UsuarioRepository.findUserByLogin). Falha se já houver logins repetidos: eles precisam ser corrigidos antes.
+CREATE UNIQUE INDEX IF NOT EXISTS uk_usuario_login ON usuario (login);
+
+-- Perfis do usuário, carregados junto com ele a cada autenticação.
+CREATE INDEX IF NOT EXISTS idx_usuarios_role_usuario ON usuarios_role (usuario_id, role_id);
+
+-- Telefones da pessoa (TelefoneRepository.getTelefones) e exclusão em cascata.
+CREATE INDEX IF NOT EXISTS idx_telefone_pessoa ON telefone (pessoa_id);
+
+-- Filtros da pesquisa de pessoas (PessoaSpecification).
+CREATE INDEX IF NOT EXISTS idx_pessoa_nome ON pessoa (nome);
+CREATE INDEX IF NOT EXISTS idx_pessoa_uf_cidade ON pessoa (uf, cidade);
+CREATE INDEX IF NOT EXISTS idx_pessoa_cargo_idade ON pessoa (cargo, idade);
+CREATE INDEX IF NOT EXISTS idx_pessoa_profissao ON pessoa (profissaopessoa_id);
+CREATE INDEX IF NOT EXISTS idx_pessoa_idade ON pessoa (idade);
+
+-- Busca por prefixo: lower(nome) like 'mar%'. text_pattern_ops permite o LIKE usar o btree em qualquer collation.
+CREATE INDEX IF NOT EXISTS idx_pessoa_nome_prefixo ON pessoa (lower(nome) text_pattern_ops);
+
+-- Sexo + prefixo do nome, a combinação mais comum da tela de pesquisa.
+CREATE INDEX IF NOT EXISTS idx_pessoa_sexo_nome ON pessoa (sexopessoa, lower(nome) text_pattern_ops);
+
+-- Busca por trecho: lower(nome) like '%ria%'. Precisa da extensão pg_trgm (contrib do PostgreSQL), que só superusuário (ou, a
+-- partir do PostgreSQL 13, o dono do banco) pode criar. Pré-requisito do DBA, uma vez por banco: CREATE EXTENSION pg_trgm;
+-- Sem a extensão a migração não falha: o índice não é criado e a busca por trecho funciona sem ele (leitura sequencial). Se a
+-- extensão for instalada depois, criar à mão este índice e o idx_pessoa_arquivo_nome_trgm (V3).
+DO $$
+BEGIN
+	IF NOT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+		BEGIN
+			CREATE EXTENSION pg_trgm;
+		EXCEPTION WHEN OTHERS THEN
+			RAISE NOTICE 'pg_trgm indisponível (%), índice de trigramas não criado', SQLERRM;
+		END;
+	END IF;
+
+	IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+		CREATE INDEX IF NOT EXISTS idx_pessoa_nome_trgm ON pessoa USING gin (lower(nome) gin_trgm_ops);
+	END IF;
+END
+$$;
+
+-- Sequências com incremento 50 (allocationSize das entidades): o Hibernate reserva 50 ids por ida ao banco.
+-- Começam acima do maior id existente, que veio da hibernate_sequence compartilhada.
+CREATE SEQUENCE IF NOT EXISTS seq_pessoa INCREMENT 50;
+SELECT setval('seq_pessoa', (SELECT COALESCE(max(id), 0) + 100 FROM pessoa));
+
+CREATE SEQUENCE IF NOT EXISTS seq_telefone INCREMENT 50;
+SELECT setval('seq_telefone', (SELECT COALESCE(max(id), 0) + 100 FROM telefone));
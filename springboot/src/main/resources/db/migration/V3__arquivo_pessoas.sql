@@ -0,0 +1,26 @@
+-- Arquivamento de pessoas inativas (ArquivamentoService): pessoas sem alteração há muito tempo saem de pessoa/telefone e vão para
+-- pessoa_arquivo/telefone_arquivo, deixando as tabelas usadas pelas telas pequenas.
+
+-- Pessoas já existentes contam como alteradas agora: só serão arquivadas depois de um período inteiro sem alteração.
+ALTER TABLE pessoa ADD COLUMN data_atualizacao timestamp NOT NULL DEFAULT now();
+CREATE INDEX idx_pessoa_data_atualizacao ON pessoa (data_atualizacao, id);
+
+-- Mesmas colunas das tabelas quentes. Ao incluir uma coluna em pessoa/telefone, incluir também aqui e em ArquivamentoService.
+-- O currículo (oid) vem junto como referência ao mesmo large object: o conteúdo não é copiado.
+CREATE TABLE pessoa_arquivo (LIKE pessoa INCLUDING DEFAULTS);
+ALTER TABLE pessoa_arquivo ADD COLUMN data_arquivamento timestamp NOT NULL DEFAULT now();
+ALTER TABLE pessoa_arquivo ADD PRIMARY KEY (id);
+-- Pesquisa com "incluir arquivadas" (PessoaArquivoRepository): mesmos índices de nome da tabela pessoa
+CREATE INDEX idx_pessoa_arquivo_nome_prefixo ON pessoa_arquivo (lower(nome) text_pattern_ops);
+-- O de trigramas só com a extensão pg_trgm (ver V2)
+DO $$
+BEGIN
+	IF EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'pg_trgm') THEN
+		CREATE INDEX idx_pessoa_arquivo_nome_trgm ON pessoa_arquivo USING gin (lower(nome) gin_trgm_ops);
+	END IF;
+END
+$$;
+
+CREATE TABLE telefone_arquivo (LIKE telefone INCLUDING DEFAULTS);
+ALTER TABLE telefone_arquivo ADD PRIMARY KEY (id);
+CREATE INDEX idx_telefone_arquivo_pessoa ON telefone_arquivo (pessoa_id);
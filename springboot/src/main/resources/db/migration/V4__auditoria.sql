@@ -0,0 +1,19 @@
+-- Auditoria de alterações em pessoas e telefones (AuditoriaService): uma linha por campo alterado.
+-- Gravada em lotes por uma thread própria, fora da transação de quem alterou; não tem FK para poder guardar pessoas já excluídas.
+CREATE SEQUENCE seq_auditoria START 1 INCREMENT 1;
+
+CREATE TABLE auditoria (
+	id int8 NOT NULL DEFAULT nextval('seq_auditoria'),
+	data_hora timestamp NOT NULL,
+	usuario varchar(255),
+	entidade varchar(100) NOT NULL,
+	entidade_id int8,
+	operacao varchar(20) NOT NULL,
+	campo varchar(100),
+	valor_anterior text,
+	valor_novo text,
+	PRIMARY KEY (id)
+);
+
+-- Histórico de um registro: WHERE entidade = ? AND entidade_id = ? ORDER BY data_hora
+CREATE INDEX idx_auditoria_entidade ON auditoria (entidade, entidade_id, data_hora);
@@ -0,0 +1,22 @@
+-- Sessões HTTP compartilhadas entre os nós (SessaoJdbcRepository): o login sobrevive ao reinício de um nó e dispensa sticky session.
+-- Tempos em milissegundos desde 1970, como em org.springframework.session.Session.
+CREATE TABLE sessao (
+	id varchar(64) NOT NULL,
+	criacao int8 NOT NULL,
+	ultimo_acesso int8 NOT NULL,
+	inatividade_maxima int4 NOT NULL,
+	expira_em int8 NOT NULL,
+	PRIMARY KEY (id)
+);
+
+-- Limpeza periódica das sessões expiradas
+CREATE INDEX idx_sessao_expira_em ON sessao (expira_em);
+
+-- Atributos serializados (SecurityContext do login etc.). Troca de id da sessão no login propaga para cá (ON UPDATE CASCADE).
+CREATE TABLE sessao_atributo (
+	sessao_id varchar(64) NOT NULL,
+	nome varchar(200) NOT NULL,
+	valor bytea NOT NULL,
+	PRIMARY KEY (sessao_id, nome),
+	CONSTRAINT fk_sessao_atributo_sessao FOREIGN KEY (sessao_id) REFERENCES sessao (id) ON UPDATE CASCADE ON DELETE CASCADE
+);
@@ -0,0 +1,20 @@
+-- Texto dos currículos para a pesquisa (IndiceCurriculoService): uma linha por pessoa com currículo, preenchida em segundo plano.
+-- curriculo_oid é o large object indexado; quando pessoa.curriculo aponta para outro, o currículo mudou e é reprocessado.
+CREATE TABLE curriculo_indice (
+	pessoa_id int8 NOT NULL,
+	curriculo_oid oid NOT NULL,
+	documento tsvector NOT NULL,
+	caracteres int4 NOT NULL,
+	erro varchar(255),
+	data_indexacao timestamp NOT NULL,
+	PRIMARY KEY (pessoa_id),
+	CONSTRAINT fk_curriculo_indice_pessoa FOREIGN KEY (pessoa_id) REFERENCES pessoa (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_curriculo_indice_documento ON curriculo_indice USING gin (documento);
+
+-- Usada pelo PessoaSpecification (o JPQL não conhece o operador @@). Função SQL simples e imutável: o planejador a expande para
+-- "documento @@ plainto_tsquery(...)" e usa o índice GIN acima.
+CREATE FUNCTION curriculo_corresponde(documento tsvector, consulta text) RETURNS boolean
+	LANGUAGE sql IMMUTABLE
+	AS $$ SELECT documento @@ plainto_tsquery('portuguese', consulta) $$;
@@ -0,0 +1,14 @@
+-- Compressão dos currículos (ArmazenamentoCurriculoService). codec_curriculo: 'deflate' (large object comprimido), 'nenhum'
+-- (avaliado e guardado como veio) ou NULL (gravado antes desta migração, ainda não avaliado pela recompressão periódica).
+-- tamanho_curriculo é o tamanho original do arquivo; tamanho_armazenado_curriculo, o do large object.
+ALTER TABLE pessoa ADD COLUMN codec_curriculo varchar(20);
+ALTER TABLE pessoa ADD COLUMN tamanho_curriculo int8;
+ALTER TABLE pessoa ADD COLUMN tamanho_armazenado_curriculo int8;
+
+-- Recompressão: WHERE curriculo IS NOT NULL AND codec_curriculo IS NULL
+CREATE INDEX idx_pessoa_curriculo_sem_codec ON pessoa (id) WHERE curriculo IS NOT NULL AND codec_curriculo IS NULL;
+
+-- Mesmas colunas em pessoa_arquivo (ver V3__arquivo_pessoas.sql)
+ALTER TABLE pessoa_arquivo ADD COLUMN codec_curriculo varchar(20);
+ALTER TABLE pessoa_arquivo ADD COLUMN tamanho_curriculo int8;
+ALTER TABLE pessoa_arquivo ADD COLUMN tamanho_armazenado_curriculo int8;
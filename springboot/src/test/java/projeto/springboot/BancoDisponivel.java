@@ -0,0 +1,85 @@
+package projeto.springboot;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.AssumptionViolatedException;
+import org.junit.rules.ExternalResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+/**
+ * Regra dos testes que precisam do banco configurado em application.properties: sem ele (conexão recusada ou sem resposta em
+ * alguns segundos) os testes da classe são ignorados em vez de falhar.
+ *
+ * @ClassRule
+ * public static final BancoDisponivel banco = new BancoDisponivel();
+ *
+ * A conexão é testada uma vez por execução; as demais classes reaproveitam o resultado.
+ * */
+public class BancoDisponivel extends ExternalResource {
+
+	private static final int TIMEOUT_SEGUNDOS = 3;
+
+	private static Properties propriedades;
+
+	private static SQLException indisponivel;
+
+	private static boolean verificado;
+
+	@Override
+	protected void before() {
+
+		SQLException erro = verificar();
+
+		if (erro != null) {
+			throw new AssumptionViolatedException("Banco indisponível", erro);
+		}
+	}
+
+	/** Propriedade de application.properties (ex.: "spring.datasource.url"). */
+	public String propriedade(String nome) {
+		return propriedades().getProperty(nome);
+	}
+
+	public Connection conectar() throws SQLException {
+		return DriverManager.getConnection(propriedade("spring.datasource.url"), propriedade("spring.datasource.username"),
+				propriedade("spring.datasource.password"));
+	}
+
+	private synchronized SQLException verificar() {
+
+		if (!verificado) {
+
+			DriverManager.setLoginTimeout(TIMEOUT_SEGUNDOS);
+
+			try (Connection conexao = conectar()) {
+				conexao.isValid(TIMEOUT_SEGUNDOS);
+			} catch (SQLException e) {
+				indisponivel = e;
+			}
+
+			verificado = true;
+		}
+
+		return indisponivel;
+	}
+
+	private static synchronized Properties propriedades() {
+
+		if (propriedades == null) {
+			try {
+				propriedades = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return propriedades;
+	}
+
+}
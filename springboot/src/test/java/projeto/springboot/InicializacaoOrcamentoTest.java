@@ -0,0 +1,58 @@
+package projeto.springboot;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import projeto.springboot.inicializacao.LinhaDoTempoInicializacao;
+import projeto.springboot.inicializacao.LinhaDoTempoInicializacao.Medicao;
+
+/**
+ * Falha se a aplicação passar a demorar mais que o orçamento para subir (padrão 20 s, ajustável com
+ * -Dinicializacao.orcamento-ms=...) ou se os beans de relatório voltarem a ser criados na subida.
+ *
+ * Precisa do banco configurado em application.properties; sem ele o teste é ignorado.
+ * */
+public class InicializacaoOrcamentoTest {
+
+	private static final long ORCAMENTO_MS = Long.getLong("inicializacao.orcamento-ms", 20000);
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	@Test
+	public void sobeDentroDoOrcamento() {
+
+		long inicio = System.nanoTime();
+
+		// Sem o aquecimento: ele gera um relatório (criando o reportUtil) numa thread que ainda estaria usando o banco quando o
+		// contexto fechasse
+		try (ConfigurableApplicationContext contexto = SpringApplication.run(ProjetospringbootApplication.class,
+				"--server.port=0", "--spring.devtools.restart.enabled=false", "--app.aquecimento.habilitado=false")) {
+
+			long tempoMs = (System.nanoTime() - inicio) / 1_000_000;
+
+			List<Medicao> medicoes = contexto.getBean(LinhaDoTempoInicializacao.class).getMedicoes();
+			medicoes.sort(Comparator.comparingLong(Medicao::getProprioNanos).reversed());
+
+			StringBuilder maisLentos = new StringBuilder();
+			for (Medicao medicao : medicoes.subList(0, Math.min(10, medicoes.size()))) {
+				maisLentos.append(String.format("%n  %d ms  %s", medicao.getProprioMs(), medicao.getBean()));
+			}
+
+			assertTrue("Subida levou " + tempoMs + " ms (orçamento " + ORCAMENTO_MS + " ms). Mais lentos:" + maisLentos,
+					tempoMs <= ORCAMENTO_MS);
+
+			assertFalse("reportUtil deveria ser criado só no primeiro relatório",
+					contexto.getBeanFactory().containsSingleton("reportUtil"));
+		}
+	}
+
+}
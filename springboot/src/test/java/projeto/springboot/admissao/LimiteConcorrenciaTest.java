@@ -0,0 +1,61 @@
+package projeto.springboot.admissao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LimiteConcorrenciaTest {
+
+	@Test
+	public void recusaAcimaDoLimiteComFilaCheia() throws Exception {
+
+		LimiteConcorrencia limite = new LimiteConcorrencia(2, 1, 0, 1000);
+
+		assertTrue(limite.entrar(0));
+		assertTrue(limite.entrar(0));
+		assertFalse(limite.entrar(10));
+		assertEquals(1, limite.getRejeitadas());
+
+		limite.sair(5);
+		assertTrue(limite.entrar(0));
+	}
+
+	@Test
+	public void reduzEVoltaAoLimiteConfigurado() throws Exception {
+
+		LimiteConcorrencia limite = new LimiteConcorrencia(8, 2, 0, 1000);
+
+		limite.reduzir();
+		assertEquals(6, limite.getLimite());
+
+		for (int i = 0; i < 6; i++) {
+			assertTrue(limite.entrar(0));
+		}
+		assertFalse(limite.entrar(0));
+
+		for (int i = 0; i < 10; i++) {
+			limite.aumentar();
+		}
+		assertEquals(8, limite.getLimite());
+		assertTrue(limite.entrar(0));
+		assertTrue(limite.entrar(0));
+		assertFalse(limite.entrar(0));
+	}
+
+	@Test
+	public void p99SoDasDuracoesNovas() throws Exception {
+
+		LimiteConcorrencia limite = new LimiteConcorrencia(4, 1, 0, 1000);
+
+		for (int i = 1; i <= 100; i++) {
+			assertTrue(limite.entrar(0));
+			limite.sair(i);
+		}
+
+		assertEquals(99, limite.p99DesdeUltimaLeitura());
+		assertEquals(-1, limite.p99DesdeUltimaLeitura());
+	}
+
+}
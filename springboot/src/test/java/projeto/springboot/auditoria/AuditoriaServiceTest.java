@@ -0,0 +1,94 @@
+package projeto.springboot.auditoria;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import projeto.springboot.evento.EventoAlteracao;
+import projeto.springboot.evento.Operacao;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Fila da auditoria sem banco: descarte com a fila cheia, gravação de tudo o que ficou pendente ao encerrar e a linha única do
+ * arquivamento.
+ * */
+public class AuditoriaServiceTest {
+
+	@Test
+	public void descartaComFilaCheiaEGravaPendentesAoEncerrar() {
+
+		AtomicInteger gravados = new AtomicInteger();
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+		when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).then(invocacao -> {
+			gravados.addAndGet(invocacao.<BatchPreparedStatementSetter>getArgument(1).getBatchSize());
+			return new int[0];
+		});
+
+		AuditoriaService auditoria = new AuditoriaService();
+		ReflectionTestUtils.setField(auditoria, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(auditoria, "habilitado", true);
+		ReflectionTestUtils.setField(auditoria, "capacidade", 3);
+		ReflectionTestUtils.setField(auditoria, "tamanhoLote", 10);
+		ReflectionTestUtils.setField(auditoria, "intervaloMs", 60000L);
+		ReflectionTestUtils.setField(auditoria, "esperaMaximaMs", 0L);
+		ReflectionTestUtils.setField(auditoria, "encerramentoMs", 5000L);
+
+		auditoria.iniciar();
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(auditoria.enfileirar(registro(i)));
+		}
+
+		// Lote e intervalo não foram atingidos: os 3 continuam na fila e o 4º não cabe
+		assertFalse(auditoria.enfileirar(registro(3)));
+		assertEquals(3, auditoria.getPendentes());
+
+		auditoria.encerrar();
+
+		verify(jdbcTemplate, atLeastOnce()).batchUpdate(anyString(), any(BatchPreparedStatementSetter.class));
+		assertEquals(3, gravados.get());
+		assertEquals(0, auditoria.getPendentes());
+	}
+
+	@Test
+	public void arquivamentoGravaUmaLinhaSemCampos() {
+
+		AuditoriaService auditoria = new AuditoriaService();
+		ReflectionTestUtils.setField(auditoria, "habilitado", true);
+		ReflectionTestUtils.setField(auditoria, "capacidade", 10);
+		ReflectionTestUtils.setField(auditoria, "tamanhoLote", 10);
+
+		auditoria.aoAlterar(new EventoAlteracao(Pessoa.class, 1L, Operacao.EXCLUSAO, Collections.<String, Object>singletonMap("nome",
+				"Ana"), null, true));
+
+		Queue<?> fila = (Queue<?>) ReflectionTestUtils.getField(auditoria, "fila");
+		RegistroAuditoria registro = (RegistroAuditoria) fila.poll();
+
+		assertEquals(Operacao.ARQUIVAMENTO, registro.getOperacao());
+		assertNull(registro.getCampo());
+		assertTrue(fila.isEmpty());
+	}
+
+	private static RegistroAuditoria registro(long id) {
+		return new RegistroAuditoria(new Timestamp(System.currentTimeMillis()), "admin", "Pessoa", id, Operacao.ATUALIZACAO, "nome", "A", "B");
+	}
+
+}
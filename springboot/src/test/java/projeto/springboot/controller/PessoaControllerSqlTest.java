@@ -0,0 +1,61 @@
+package projeto.springboot.controller;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import projeto.springboot.BancoDisponivel;
+import projeto.springboot.sql.ContagemSql;
+import projeto.springboot.sql.EstatisticaSqlFilter;
+
+/**
+ * Orçamento de SQL das telas de pessoas: uma consulta a mais por linha da página (N+1) ou por campo do template faz estes
+ * testes falharem, com a lista das instruções executadas na mensagem.
+ *
+ * Precisa do banco configurado em application.properties; sem ele os testes são ignorados.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "app.aquecimento.habilitado=false", "app.invalidacao.habilitado=false" })
+@AutoConfigureMockMvc
+public class PessoaControllerSqlTest {
+
+	// Página de 5 pessoas: página + contagem + profissões, e no máximo uma profissão por linha
+	private static final int MAXIMO_INSTRUCOES_PAGINA = 8;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	@Test
+	public void cadastroPessoa() throws Exception {
+
+		mockMvc.perform(get("/cadastropessoa").with(user("admin").roles("ADMIN")))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(EstatisticaSqlFilter.CABECALHO_INSTRUCOES))
+				.andExpect(ContagemSql.maximoInstrucoes(MAXIMO_INSTRUCOES_PAGINA))
+				.andExpect(ContagemSql.maximoRepeticoes(5));
+	}
+
+	@Test
+	public void pesquisaPorNome() throws Exception {
+
+		mockMvc.perform(post("/pesquisarpessoa").param("nomepesquisa", "a").param("sexopesquisa", "").with(user("admin").roles("ADMIN")))
+				.andExpect(status().isOk())
+				.andExpect(ContagemSql.maximoInstrucoes(MAXIMO_INSTRUCOES_PAGINA))
+				.andExpect(ContagemSql.maximoRepeticoes(5));
+	}
+
+}
@@ -0,0 +1,62 @@
+package projeto.springboot.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Compara o tempo do relatório de pessoas preenchido em uma thread (caminho atual) com o preenchimento em blocos paralelos.
+ *
+ * OBS. Rodar no java application (não é executado pelo "mvn test"). Argumentos opcionais: quantidade de pessoas, tamanho do bloco,
+ * quantidade de threads e tipo de virtualizador (swap, arquivo ou nenhum). Exemplo: ReportUtilBenchmark 50000 2000 8 swap
+ * */
+public class ReportUtilBenchmark {
+
+	private static final String CAMINHO_JASPER = "src/main/webapp/relatorios/pessoa.jasper";
+
+	public static void main(String[] args) throws Exception {
+
+		int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		int tamanhoBloco = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		String virtualizador = args.length > 3 ? args[3] : "nenhum";
+
+		List<Pessoa> pessoas = new ArrayList<Pessoa>();
+
+		for (long i = 1; i <= quantidade; i++) {
+			Pessoa pessoa = new Pessoa();
+			pessoa.setId(i);
+			pessoa.setNome("Pessoa " + i);
+			pessoa.setSobrenome("Sobrenome " + i);
+			pessoa.setCidade(i % 2 == 0 ? "São Paulo" : "Rio de Janeiro");
+			pessoa.setIdade(18 + (int) (i % 60));
+			pessoas.add(pessoa);
+		}
+
+		ReportUtil reportUtil = new ReportUtil();
+		reportUtil.configurarParalelo(0, tamanhoBloco, threads);
+		reportUtil.configurarVirtualizador(virtualizador, 0, 100, System.getProperty("java.io.tmpdir"));
+
+		// Aquecimento para não medir carregamento de classes e JIT frio.
+		reportUtil.geraRelatorio(pessoas.subList(0, Math.min(2000, quantidade)), CAMINHO_JASPER);
+		reportUtil.geraRelatorioParalelo(pessoas.subList(0, Math.min(2000, quantidade)), CAMINHO_JASPER);
+
+		long inicio = System.nanoTime();
+		byte[] pdfSequencial = reportUtil.geraRelatorio(pessoas, CAMINHO_JASPER);
+		long tempoSequencial = (System.nanoTime() - inicio) / 1_000_000;
+
+		inicio = System.nanoTime();
+		byte[] pdfParalelo = reportUtil.geraRelatorioParalelo(pessoas, CAMINHO_JASPER);
+		long tempoParalelo = (System.nanoTime() - inicio) / 1_000_000;
+
+		reportUtil.encerrar();
+
+		System.out.println("Pessoas: " + quantidade + " | bloco: " + tamanhoBloco + " | threads: " + threads + " | virtualizador: " + virtualizador);
+		System.out.println("Uma thread: " + tempoSequencial + " ms (" + pdfSequencial.length + " bytes)");
+		System.out.println("Paralelo:   " + tempoParalelo + " ms (" + pdfParalelo.length + " bytes)");
+		System.out.println(String.format("Ganho: %.2fx", (double) tempoSequencial / Math.max(1, tempoParalelo)));
+		System.out.println("Páginas gravadas em disco: " + reportUtil.getPaginasGravadas() + " | lidas: " + reportUtil.getPaginasLidas());
+	}
+
+}
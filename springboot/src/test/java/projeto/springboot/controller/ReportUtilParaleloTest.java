@@ -0,0 +1,122 @@
+package projeto.springboot.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.sf.jasperreports.engine.JRPrintElement;
+import net.sf.jasperreports.engine.JRPrintPage;
+import net.sf.jasperreports.engine.JRPrintText;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import net.sf.jasperreports.engine.util.JRLoader;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Preenchimento em blocos paralelos comparado com o de uma thread, página a página, pelos textos impressos: mesma quantidade de
+ * páginas, pessoas na mesma ordem e título só na primeira página. Compara os JasperPrint, antes da exportação para PDF.
+ * */
+public class ReportUtilParaleloTest {
+
+	private static final String CAMINHO_JASPER = "src/main/webapp/relatorios/pessoa.jasper";
+
+	private static final String TITULO = "RELATÓRIO DE PESSOAS";
+
+	private final ReportUtil reportUtil = new ReportUtil();
+
+	@After
+	public void encerrar() {
+		reportUtil.encerrar();
+	}
+
+	@Test
+	public void blocosParalelosImprimemAsMesmasPaginasDoPreenchimentoSerial() throws Exception {
+
+		JasperReport relatorio = (JasperReport) JRLoader.loadObjectFromFile(CAMINHO_JASPER);
+
+		// Blocos de 2 páginas e 10 threads: 250 pessoas dão vários blocos, preenchidos fora de ordem
+		int linhasPagina = ReportUtil.linhasPorPagina(relatorio, false);
+		reportUtil.configurarParalelo(0, linhasPagina * 2, 10);
+
+		List<Pessoa> pessoas = pessoas(250);
+
+		JasperPrint serial = JasperFillManager.fillReport(relatorio, new HashMap<String, Object>(), new JRBeanCollectionDataSource(pessoas));
+		List<JasperPrint> blocos = reportUtil.preencherBlocos(pessoas, relatorio, null);
+
+		assertTrue("a lista precisa passar por vários blocos", blocos.size() > 3);
+
+		List<JRPrintPage> paginas = new ArrayList<JRPrintPage>();
+
+		for (JasperPrint bloco : blocos) {
+			paginas.addAll(bloco.getPages());
+		}
+
+		assertEquals(serial.getPages().size(), paginas.size());
+
+		for (int i = 0; i < paginas.size(); i++) {
+			assertEquals("página " + (i + 1), textos(serial.getPages().get(i)), textos(paginas.get(i)));
+		}
+
+		assertTrue(textos(paginas.get(0)).contains(TITULO));
+
+		List<String> ids = new ArrayList<String>();
+
+		for (int i = 0; i < paginas.size(); i++) {
+
+			List<String> textos = textos(paginas.get(i));
+
+			if (i > 0) {
+				assertFalse("título na página " + (i + 1), textos.contains(TITULO));
+			}
+
+			// Cada linha imprime id, nome e cidade depois do cabeçalho das colunas
+			for (int j = textos.indexOf("CIDADE") + 1; j < textos.size(); j += 3) {
+				ids.add(textos.get(j));
+			}
+		}
+
+		assertEquals(pessoas.size(), ids.size());
+
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(String.valueOf(pessoas.get(i).getId()), ids.get(i));
+		}
+	}
+
+	private static List<String> textos(JRPrintPage pagina) {
+
+		List<String> textos = new ArrayList<String>();
+
+		for (JRPrintElement elemento : pagina.getElements()) {
+			if (elemento instanceof JRPrintText) {
+				textos.add(((JRPrintText) elemento).getFullText());
+			}
+		}
+
+		return textos;
+	}
+
+	private static List<Pessoa> pessoas(int quantidade) {
+
+		List<Pessoa> pessoas = new ArrayList<Pessoa>();
+
+		for (long i = 1; i <= quantidade; i++) {
+			Pessoa pessoa = new Pessoa();
+			pessoa.setId(i);
+			pessoa.setNome("Pessoa " + i);
+			pessoa.setCidade(i % 2 == 0 ? "São Paulo" : "Rio de Janeiro");
+			pessoas.add(pessoa);
+		}
+
+		return pessoas;
+	}
+
+}
@@ -0,0 +1,67 @@
+package projeto.springboot.curriculo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import projeto.springboot.model.Pessoa;
+
+public class ArmazenamentoCurriculoServiceTest {
+
+	private ArmazenamentoCurriculoService servico;
+
+	@Before
+	public void criar() {
+		servico = new ArmazenamentoCurriculoService();
+		ReflectionTestUtils.setField(servico, "habilitado", true);
+		ReflectionTestUtils.setField(servico, "ganhoMinimo", 0.1);
+	}
+
+	@Test
+	public void textoEComprimidoEVoltaIgual() throws Exception {
+
+		StringBuilder texto = new StringBuilder();
+		for (int i = 0; i < 500; i++) {
+			texto.append("Experiência em contabilidade e gestão de projetos. ");
+		}
+		byte[] original = texto.toString().getBytes(StandardCharsets.UTF_8);
+
+		Pessoa pessoa = new Pessoa();
+		servico.armazenar(pessoa, original, "cv.txt");
+
+		assertEquals(ArmazenamentoCurriculoService.CODEC_DEFLATE, pessoa.getCodecCurriculo());
+		assertEquals(Long.valueOf(original.length), pessoa.getTamanhoCurriculo());
+		assertTrue(pessoa.getTamanhoArmazenadoCurriculo() < original.length / 10);
+		assertArrayEquals(original, StreamUtils.copyToByteArray(ArmazenamentoCurriculoService.descomprimir(
+				new ByteArrayInputStream(pessoa.getCurriculo()), pessoa.getCodecCurriculo())));
+	}
+
+	@Test
+	public void semGanhoGuardaComoVeio() {
+
+		byte[] aleatorio = new byte[4096];
+		new Random(1).nextBytes(aleatorio);
+
+		Pessoa pessoa = new Pessoa();
+		servico.armazenar(pessoa, aleatorio, "cv.pdf");
+
+		assertEquals(ArmazenamentoCurriculoService.CODEC_NENHUM, pessoa.getCodecCurriculo());
+		assertArrayEquals(aleatorio, pessoa.getCurriculo());
+	}
+
+	@Test
+	public void formatoJaComprimidoNemETentado() {
+		assertNull(servico.comprimir(new byte[10000], "curriculo.DOCX"));
+	}
+
+}
@@ -0,0 +1,48 @@
+package projeto.springboot.curriculo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class ExtratorTextoTest {
+
+	@Test
+	public void docxTrazOTextoDosParagrafos() throws Exception {
+
+		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<w:document xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"><w:body>"
+				+ "<w:p><w:r><w:t>Analista</w:t></w:r><w:r><w:tab/><w:t>Java</w:t></w:r></w:p>"
+				+ "<w:p><w:r><w:t>Contabilidade</w:t></w:r></w:p></w:body></w:document>";
+
+		ByteArrayOutputStream docx = new ByteArrayOutputStream();
+
+		try (ZipOutputStream zip = new ZipOutputStream(docx)) {
+			zip.putNextEntry(new ZipEntry("word/document.xml"));
+			zip.write(xml.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+
+		assertEquals("Analista Java\nContabilidade", ExtratorTexto.extrair(docx.toByteArray(), "application/octet-stream", "cv.docx", 1000));
+	}
+
+	@Test
+	public void txtForaDeUtf8ELidoComoLatin1() throws Exception {
+
+		byte[] latin1 = "Gestão de projetos".getBytes(StandardCharsets.ISO_8859_1);
+
+		assertEquals("Gestão de projetos", ExtratorTexto.extrair(latin1, "text/plain", "cv.txt", 1000));
+		assertEquals("Gestão", ExtratorTexto.extrair(latin1, "text/plain", "cv.txt", 6));
+	}
+
+	@Test
+	public void formatoDesconhecidoNaoEIndexado() throws Exception {
+		assertNull(ExtratorTexto.extrair(new byte[] { 1, 2, 3 }, "application/msword", "cv.doc", 1000));
+	}
+
+}
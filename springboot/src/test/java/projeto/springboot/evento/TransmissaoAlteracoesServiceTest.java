@@ -0,0 +1,278 @@
+package projeto.springboot.evento;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Transmissão sem servidor: os emissores guardam o texto de cada evento enviado e podem segurar o send, como um navegador que
+ * não lê a conexão.
+ * */
+public class TransmissaoAlteracoesServiceTest {
+
+	private final Deque<EmissorTeste> emissores = new ArrayDeque<EmissorTeste>();
+
+	private TransmissaoAlteracoesService servico;
+
+	@After
+	public void encerrar() {
+		servico.encerrar();
+	}
+
+	@Test
+	public void conexoesAlemDoMaximoSaoRecusadas() {
+
+		iniciar(10, 10, 2, 1);
+
+		assertNotNull(servico.assinar(null, null));
+		assertNotNull(servico.assinar(null, null));
+		assertNull(servico.assinar(null, null));
+	}
+
+	@Test
+	public void filaCheiaEncerraAConexao() throws Exception {
+
+		iniciar(2, 10, 10, 1);
+		EmissorTeste emissor = emissor(true);
+		servico.assinar(null, null);
+
+		alterarPessoa(1);
+		assertTrue(emissor.enviando.await(5, TimeUnit.SECONDS));
+
+		// A primeira está presa no send; a 2ª e a 3ª enchem a fila e a 4ª não cabe
+		alterarPessoa(2);
+		alterarPessoa(3);
+		alterarPessoa(4);
+
+		assertEquals(1, descartados());
+		assertTrue(assinantes().isEmpty());
+
+		emissor.liberar.countDown();
+
+		assertTrue(emissor.encerrado.await(5, TimeUnit.SECONDS));
+		assertEquals(1, emissor.enviados.size());
+		assertTrue(emissor.enviados.peek().startsWith("id:1\n"));
+	}
+
+	@Test
+	public void reconexaoRecebeOQuePerdeu() throws Exception {
+
+		iniciar(10, 10, 10, 1);
+
+		alterarPessoa(1);
+		alterarPessoa(2);
+		alterarPessoa(3);
+
+		EmissorTeste emissor = emissor(false);
+		servico.assinar(null, "1");
+
+		assertTrue(emissor.proximo().startsWith("id:2\nevent:alteracao\n"));
+		assertTrue(emissor.proximo().startsWith("id:3\nevent:alteracao\n"));
+
+		alterarPessoa(4);
+
+		assertTrue(emissor.proximo().startsWith("id:4\nevent:alteracao\n"));
+	}
+
+	@Test
+	public void reconexaoForaDoHistoricoRecebeRecarregar() throws Exception {
+
+		iniciar(10, 2, 10, 1);
+
+		for (long id = 1; id <= 5; id++) {
+			alterarPessoa(id);
+		}
+
+		// Só 4 e 5 ainda estão no histórico
+		EmissorTeste perdeuMensagens = emissor(false);
+		servico.assinar(null, "1");
+
+		assertTrue(perdeuMensagens.proximo().startsWith("event:recarregar\n"));
+
+		// Id maior que o último enviado: o servidor foi reiniciado
+		EmissorTeste servidorReiniciado = emissor(false);
+		servico.assinar(null, "99");
+
+		assertTrue(servidorReiniciado.proximo().startsWith("event:recarregar\n"));
+	}
+
+	@Test
+	public void envioParadoEncerraAConexaoSemPrenderAsOutras() throws Exception {
+
+		iniciar(10, 10, 10, 1);
+		ReflectionTestUtils.setField(servico, "envioTimeoutMs", 50L);
+
+		EmissorTeste lento = emissor(true);
+		servico.assinar(null, null);
+
+		alterarPessoa(1);
+		assertTrue(lento.enviando.await(5, TimeUnit.SECONDS));
+
+		// A única thread de envio está presa no navegador lento
+		EmissorTeste rapido = emissor(false);
+		servico.assinar(null, null);
+
+		Thread.sleep(100);
+		servico.verificarEnvios();
+
+		assertEquals(1, descartados());
+		assertEquals(1, assinantes().size());
+
+		alterarPessoa(2);
+
+		assertTrue(rapido.proximo().startsWith("id:2\n"));
+
+		// O send volta: a conexão lenta é encerrada e a thread reposta sai do pool
+		lento.liberar.countDown();
+
+		assertTrue(lento.encerrado.await(5, TimeUnit.SECONDS));
+		assertEquals(1, ((ThreadPoolExecutor) ReflectionTestUtils.getField(servico, "envio")).getCorePoolSize());
+	}
+
+	@Test
+	public void alteracaoDeOutroNoChegaAsTelasInteressadas() throws Exception {
+
+		iniciar(10, 10, 10, 1);
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(7L))).thenReturn(Collections.singletonList(1L));
+		ReflectionTestUtils.setField(servico, "jdbcTemplate", jdbcTemplate);
+
+		EmissorTeste lista = emissor(false);
+		servico.assinar(null, null);
+		EmissorTeste telefonesDa1 = emissor(false);
+		servico.assinar(1L, null);
+		EmissorTeste telefonesDa2 = emissor(false);
+		servico.assinar(2L, null);
+
+		servico.invalidar("Pessoa", "1");
+		servico.invalidar("Telefone", "7");
+		// Telefone que já não existe: o dono não é conhecido
+		servico.invalidar("Telefone", "8");
+
+		// Os dados vão como o Map da mensagem; o JSON só é gerado pelo conversor do servidor
+		assertTrue(lista.proximo().contains("entidade=Pessoa, id=1, operacao=REMOTA"));
+		assertTrue(telefonesDa1.proximo().contains("entidade=Pessoa, id=1, operacao=REMOTA"));
+		assertTrue(telefonesDa1.proximo().contains("id=7, operacao=REMOTA, campos={}, dono=1"));
+		assertTrue(telefonesDa1.proximo().contains("id=8, operacao=REMOTA, campos={}, dono=null"));
+		assertTrue(telefonesDa2.proximo().contains("id=8,"));
+
+		assertTrue(lista.enviados.isEmpty());
+		assertTrue(telefonesDa2.enviados.isEmpty());
+
+		servico.invalidarTudo();
+
+		assertTrue(lista.proximo().startsWith("event:recarregar\n"));
+		assertTrue(telefonesDa2.proximo().startsWith("event:recarregar\n"));
+	}
+
+	private void iniciar(int buffer, int historico, int maximoConexoes, int threads) {
+
+		servico = new TransmissaoAlteracoesService() {
+			@Override
+			SseEmitter novoEmissor() {
+				return emissores.isEmpty() ? new EmissorTeste(false) : emissores.poll();
+			}
+		};
+
+		ReflectionTestUtils.setField(servico, "buffer", buffer);
+		ReflectionTestUtils.setField(servico, "historico", historico);
+		ReflectionTestUtils.setField(servico, "maximoConexoes", maximoConexoes);
+		ReflectionTestUtils.setField(servico, "timeoutMs", 60000L);
+		ReflectionTestUtils.setField(servico, "threads", threads);
+		ReflectionTestUtils.setField(servico, "envioTimeoutMs", 60000L);
+
+		servico.iniciar();
+	}
+
+	// Próximo emissor entregue pelo assinar
+	private EmissorTeste emissor(boolean bloqueado) {
+		EmissorTeste emissor = new EmissorTeste(bloqueado);
+		emissores.add(emissor);
+		return emissor;
+	}
+
+	private void alterarPessoa(long id) {
+		servico.aoAlterar(new EventoAlteracao(Pessoa.class, id, Operacao.INSERCAO, null, Collections.<String, Object>singletonMap("nome",
+				"Pessoa " + id)));
+	}
+
+	private long descartados() {
+		return ((AtomicLong) ReflectionTestUtils.getField(servico, "descartados")).get();
+	}
+
+	private Set<?> assinantes() {
+		return (Set<?>) ReflectionTestUtils.getField(servico, "assinantes");
+	}
+
+	private static class EmissorTeste extends SseEmitter {
+
+		private final BlockingQueue<String> enviados = new LinkedBlockingQueue<String>();
+		private final CountDownLatch enviando = new CountDownLatch(1);
+		private final CountDownLatch liberar;
+		private final CountDownLatch encerrado = new CountDownLatch(1);
+
+		EmissorTeste(boolean bloqueado) {
+			liberar = new CountDownLatch(bloqueado ? 1 : 0);
+		}
+
+		// O texto do evento como iria para o navegador ("id:...", "event:...", "data:..." e os dados)
+		@Override
+		public void send(SseEventBuilder evento) throws IOException {
+
+			StringBuilder texto = new StringBuilder();
+
+			for (DataWithMediaType parte : evento.build()) {
+				texto.append(parte.getData());
+			}
+
+			enviando.countDown();
+
+			try {
+				liberar.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+
+			enviados.add(texto.toString());
+		}
+
+		@Override
+		public synchronized void complete() {
+			super.complete();
+			encerrado.countDown();
+		}
+
+		String proximo() throws InterruptedException {
+			String texto = enviados.poll(5, TimeUnit.SECONDS);
+			assertNotNull("nenhum evento enviado", texto);
+			return texto;
+		}
+
+	}
+
+}
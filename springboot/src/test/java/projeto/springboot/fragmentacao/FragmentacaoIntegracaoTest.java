@@ -0,0 +1,135 @@
+package projeto.springboot.fragmentacao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.repository.FiltroPesquisaPessoa;
+import projeto.springboot.repository.PessoaRepository;
+
+/**
+ * Grava pessoas de várias UFs nos fragmentos e confere a pesquisa espalhada, a de uma UF só e a de uma UF alterada depois da
+ * gravação.
+ *
+ * Precisa de dois ou mais bancos locais com o mesmo usuário e senha do application.properties, por exemplo:
+ *   mvn test -Dtest=FragmentacaoIntegracaoTest -Dapp.fragmentos.urls=jdbc:postgresql://localhost:5433/fragmento1,jdbc:postgresql://localhost:5433/fragmento2
+ * Sem "app.fragmentos.urls" o teste é ignorado. As migrações são aplicadas em todos os bancos na subida.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class FragmentacaoIntegracaoTest {
+
+	private static final String PREFIXO = "Teste fragmento ";
+
+	private static final List<String> UFS = Arrays.asList("SP", "RJ", "MG", "BA", "RS", "PR", "PE", "CE");
+
+	@Autowired
+	private MapaFragmentos mapaFragmentos;
+
+	@Autowired
+	private FragmentosService fragmentosService;
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	private final List<Long> gravadas = new ArrayList<Long>();
+
+	@BeforeClass
+	public static void verificarFragmentos() {
+		Assume.assumeFalse("app.fragmentos.urls não informado", MapaFragmentos.urls(System.getProperty("app.fragmentos.urls")).isEmpty());
+	}
+
+	@After
+	public void excluirGravadas() {
+		mapaFragmentos.porFragmento(gravadas).forEach((fragmento, ids) -> fragmentosService.executar(fragmento, () -> {
+			pessoaRepository.deleteAll(pessoaRepository.findAllById(ids));
+			return null;
+		}));
+	}
+
+	@Test
+	public void pessoaFicaNoFragmentoDaUfEAPesquisaJuntaTodosEmOrdem() {
+
+		for (int i = 0; i < UFS.size(); i++) {
+
+			String uf = UFS.get(i);
+			Pessoa pessoa = pessoa(PREFIXO + (char) ('H' - i), uf);
+			int fragmento = mapaFragmentos.fragmentoDaUf(uf);
+			Pessoa gravada = fragmentosService.executar(fragmento, () -> pessoaRepository.save(pessoa));
+
+			assertEquals(uf, fragmento, MapaFragmentos.fragmentoDoId(gravada.getId()));
+			gravadas.add(gravada.getId());
+		}
+
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(PREFIXO, null);
+		filtro.setTipoBuscaNome(FiltroPesquisaPessoa.TipoBuscaNome.PREFIXO);
+
+		Page<Pessoa> primeira = pessoaRepository.pesquisar(filtro, PageRequest.of(0, 3, Sort.by("nome")));
+		Page<Pessoa> segunda = pessoaRepository.pesquisar(filtro, PageRequest.of(1, 3, Sort.by("nome")));
+
+		assertEquals(Arrays.asList(PREFIXO + "A", PREFIXO + "B", PREFIXO + "C"), nomes(primeira));
+		assertEquals(Arrays.asList(PREFIXO + "D", PREFIXO + "E", PREFIXO + "F"), nomes(segunda));
+		assertEquals(UFS.size(), primeira.getTotalElements());
+		assertTrue(segunda.hasNext());
+
+		filtro.setUf("SP");
+		Page<Pessoa> soSp = pessoaRepository.pesquisar(filtro, PageRequest.of(0, 10, Sort.by("nome")));
+
+		assertEquals(Arrays.asList(PREFIXO + "H"), nomes(soSp));
+	}
+
+	@Test
+	public void pessoaComUfAlteradaEAchadaPelaUfNova() {
+
+		Pessoa pessoa = pessoa(PREFIXO + "Mudou", "SP");
+		int fragmento = mapaFragmentos.fragmentoDaUf("SP");
+		Pessoa gravada = fragmentosService.executar(fragmento, () -> pessoaRepository.save(pessoa));
+		gravadas.add(gravada.getId());
+
+		// Continua no fragmento de SP
+		gravada.setUf("RJ");
+		fragmentosService.executar(fragmento, () -> pessoaRepository.save(gravada));
+
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(PREFIXO + "Mudou", null);
+		filtro.setUf("RJ");
+
+		assertEquals(Arrays.asList(PREFIXO + "Mudou"), nomes(pessoaRepository.pesquisar(filtro, PageRequest.of(0, 10, Sort.by("nome")))));
+	}
+
+	private static Pessoa pessoa(String nome, String uf) {
+		Pessoa pessoa = new Pessoa();
+		pessoa.setNome(nome);
+		pessoa.setSobrenome("Silva");
+		pessoa.setIdade(30);
+		pessoa.setUf(uf);
+		return pessoa;
+	}
+
+	private static List<String> nomes(Page<Pessoa> pagina) {
+
+		List<String> nomes = new ArrayList<String>();
+
+		for (Pessoa pessoa : pagina) {
+			nomes.add(pessoa.getNome());
+		}
+
+		return nomes;
+	}
+
+}
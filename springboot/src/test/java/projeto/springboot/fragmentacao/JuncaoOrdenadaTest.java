@@ -0,0 +1,82 @@
+package projeto.springboot.fragmentacao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+import projeto.springboot.model.Pessoa;
+
+public class JuncaoOrdenadaTest {
+
+	@Test
+	public void juntaAsListasNaOrdemEPulaOOffset() {
+
+		List<List<Integer>> listas = Arrays.asList(Arrays.asList(1, 4, 9), Collections.<Integer>emptyList(), Arrays.asList(2, 3, 10),
+				Arrays.asList(5));
+
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5, 9, 10), JuncaoOrdenada.juntar(listas, Comparator.<Integer>naturalOrder(), 0, 100));
+		assertEquals(Arrays.asList(4, 5, 9), JuncaoOrdenada.juntar(listas, Comparator.<Integer>naturalOrder(), 3, 3));
+		assertEquals(Collections.emptyList(), JuncaoOrdenada.juntar(listas, Comparator.<Integer>naturalOrder(), 7, 3));
+	}
+
+	@Test
+	public void comparadorSegueOSortNaOrdemBinariaComNulosNoFimEDesempataPeloId() {
+
+		List<Pessoa> pessoas = new ArrayList<Pessoa>(Arrays.asList(pessoa(1L, "Otávio"), pessoa(2L, null), pessoa(3L, "Álvaro"),
+				pessoa(4L, "Bruno"), pessoa(5L, "Álvaro")));
+
+		pessoas.sort(JuncaoOrdenada.comparador(Sort.by("nome"), "id"));
+
+		// Como o COLLATE "C" do banco: "Á" (U+00C1) vem depois de todas as letras sem acento
+		assertEquals(Arrays.asList(4L, 1L, 3L, 5L, 2L), ids(pessoas));
+
+		pessoas.sort(JuncaoOrdenada.comparador(Sort.by(Sort.Direction.DESC, "id"), "id"));
+
+		assertEquals(Arrays.asList(5L, 4L, 3L, 2L, 1L), ids(pessoas));
+	}
+
+	@Test
+	public void textoComparadoPelosCodePointsComoOsBytesUtf8() {
+
+		// U+FB01 vem antes de U+1F600, embora o par de surrogates (0xD83D...) seja menor em UTF-16
+		assertTrue(JuncaoOrdenada.compararCodePoints("\uFB01", "\uD83D\uDE00") < 0);
+		assertTrue(JuncaoOrdenada.compararCodePoints("Ana", "Ana Maria") < 0);
+		assertEquals(0, JuncaoOrdenada.compararCodePoints("Ana", "Ana"));
+	}
+
+	@Test
+	public void idGuardaOFragmentoSemMudarOsIdsDoFragmentoZero() {
+
+		assertEquals(12345L, MapaFragmentos.noFragmento(12345L, 0));
+		assertEquals(0, MapaFragmentos.fragmentoDoId(12345L));
+		assertEquals(3, MapaFragmentos.fragmentoDoId(MapaFragmentos.noFragmento(12345L, 3)));
+		assertEquals(255, MapaFragmentos.fragmentoDoId(MapaFragmentos.noFragmento(1L, 255)));
+	}
+
+	private static Pessoa pessoa(Long id, String nome) {
+		Pessoa pessoa = new Pessoa();
+		pessoa.setId(id);
+		pessoa.setNome(nome);
+		return pessoa;
+	}
+
+	private static List<Long> ids(List<Pessoa> pessoas) {
+
+		List<Long> ids = new ArrayList<Long>();
+
+		for (Pessoa pessoa : pessoas) {
+			ids.add(pessoa.getId());
+		}
+
+		return ids;
+	}
+
+}
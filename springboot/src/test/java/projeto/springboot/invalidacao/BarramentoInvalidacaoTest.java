@@ -0,0 +1,104 @@
+package projeto.springboot.invalidacao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import projeto.springboot.BancoDisponivel;
+
+/**
+ * Dois barramentos no mesmo PostgreSQL, como dois nós: o que um publica chega ao outro e não volta para ele mesmo.
+ *
+ * Precisa do banco configurado em application.properties; sem ele o teste é ignorado.
+ * */
+public class BarramentoInvalidacaoTest {
+
+	private BarramentoInvalidacao noA;
+	private BarramentoInvalidacao noB;
+
+	private final List<String> recebidasA = new CopyOnWriteArrayList<String>();
+	private final List<String> recebidasB = new CopyOnWriteArrayList<String>();
+	private final CountDownLatch chegouEmB = new CountDownLatch(2);
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	@Before
+	public void iniciar() throws Exception {
+
+		noA = novoNo(recebidasA, null);
+		noB = novoNo(recebidasB, chegouEmB);
+
+		// Dá tempo aos dois de executarem o LISTEN
+		Thread.sleep(1000);
+	}
+
+	@After
+	public void encerrar() {
+		noA.encerrar();
+		noB.encerrar();
+	}
+
+	@Test
+	public void entregaAosOutrosNosEIgnoraAsProprias() throws Exception {
+
+		noA.publicar("Pessoa", "10");
+		noA.publicar("Profissao", "3");
+
+		assertTrue("Notificações não chegaram ao outro nó", chegouEmB.await(10, TimeUnit.SECONDS));
+		assertEquals(2, recebidasB.size());
+		assertTrue(recebidasB.contains("Pessoa:10"));
+		assertTrue(recebidasB.contains("Profissao:3"));
+
+		Thread.sleep(1000);
+		assertTrue("O nó recebeu as próprias notificações: " + recebidasA, recebidasA.isEmpty());
+	}
+
+	private BarramentoInvalidacao novoNo(List<String> recebidas, CountDownLatch chegada) {
+
+		DataSourceProperties dataSourceProperties = new DataSourceProperties();
+		dataSourceProperties.setUrl(banco.propriedade("spring.datasource.url"));
+		dataSourceProperties.setUsername(banco.propriedade("spring.datasource.username"));
+		dataSourceProperties.setPassword(banco.propriedade("spring.datasource.password"));
+
+		BarramentoInvalidacao barramento = new BarramentoInvalidacao();
+		ReflectionTestUtils.setField(barramento, "habilitado", true);
+		ReflectionTestUtils.setField(barramento, "intervaloMs", 100L);
+		ReflectionTestUtils.setField(barramento, "reconexaoMs", 1000L);
+		ReflectionTestUtils.setField(barramento, "propriedades", dataSourceProperties);
+		ReflectionTestUtils.setField(barramento, "dataSource", new DriverManagerDataSource(dataSourceProperties.getUrl(),
+				dataSourceProperties.getUsername(), dataSourceProperties.getPassword()));
+
+		barramento.iniciar(Collections.<CacheInvalidavel>singletonList(new CacheInvalidavel() {
+
+			@Override
+			public void invalidar(String tipo, String id) {
+				recebidas.add(tipo + ":" + id);
+				if (chegada != null) {
+					chegada.countDown();
+				}
+			}
+
+			@Override
+			public void invalidarTudo() {
+				recebidas.add(BarramentoInvalidacao.TUDO);
+			}
+		}));
+
+		return barramento;
+	}
+
+}
@@ -0,0 +1,125 @@
+package projeto.springboot.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import projeto.springboot.BancoDisponivel;
+import projeto.springboot.model.Cargo;
+import projeto.springboot.model.Pessoa;
+
+/**
+ * Paginação sem count(*): página lida com um registro a mais, total exato abaixo do limite e estimativa do EXPLAIN acima dele.
+ *
+ * Cada teste cria as próprias pessoas (nome único) dentro de uma transação desfeita no fim. Precisa do banco configurado em
+ * application.properties; sem ele os testes são ignorados.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "app.aquecimento.habilitado=false", "app.invalidacao.habilitado=false" })
+@Transactional
+public class PessoaRepositoryImplTest {
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private PessoaRepositoryImpl pessoaRepositoryImpl;
+
+	private long limiteContagemExata;
+
+	private final String nome = "Janela" + UUID.randomUUID().toString().replace("-", "");
+
+	@Before
+	public void criarPessoas() {
+
+		limiteContagemExata = (Long) ReflectionTestUtils.getField(pessoaRepositoryImpl, "limiteContagemExata");
+
+		for (int i = 0; i < 7; i++) {
+			Pessoa pessoa = new Pessoa();
+			pessoa.setNome(nome + i);
+			pessoa.setSobrenome("Teste");
+			pessoa.setIdade(30);
+			pessoaRepository.save(pessoa);
+		}
+
+		pessoaRepository.flush();
+	}
+
+	@After
+	public void restaurarLimite() {
+		ReflectionTestUtils.setField(pessoaRepositoryImpl, "limiteContagemExata", limiteContagemExata);
+	}
+
+	@Test
+	public void janelaDePaginasComTotalExato() {
+
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(nome, null);
+
+		PaginaPessoas primeira = pessoaRepository.paginar(filtro, PageRequest.of(0, 3, Sort.by("nome")));
+		assertEquals(3, primeira.getNumberOfElements());
+		assertEquals(nome + 0, primeira.getContent().get(0).getNome());
+		assertTrue(primeira.hasNext());
+		assertEquals(7, primeira.getTotalElements());
+		assertFalse(primeira.isTotalAproximado());
+
+		PaginaPessoas meio = pessoaRepository.paginar(filtro, PageRequest.of(1, 3, Sort.by("nome")));
+		assertEquals(nome + 3, meio.getContent().get(0).getNome());
+		assertTrue(meio.hasNext());
+
+		PaginaPessoas ultima = pessoaRepository.paginar(filtro, PageRequest.of(2, 3, Sort.by("nome")));
+		assertEquals(1, ultima.getNumberOfElements());
+		assertFalse(ultima.hasNext());
+		assertEquals(7, ultima.getTotalElements());
+
+		PaginaPessoas alem = pessoaRepository.paginar(filtro, PageRequest.of(5, 3, Sort.by("nome")));
+		assertEquals(0, alem.getNumberOfElements());
+		assertEquals(7, alem.getTotalElements());
+	}
+
+	@Test
+	public void estimativaVemDoPlanoDoFiltroNativo() {
+
+		// Todos os filtros juntos, inclusive a subconsulta do currículo: o EXPLAIN precisa ser gerado e lido
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo(nome, "MASCULINO");
+		filtro.setUf("SP");
+		filtro.setCidade("São Paulo");
+		filtro.setCargo(Cargo.values()[0]);
+		filtro.setIdadeMinima(18);
+		filtro.setIdadeMaxima(60);
+		filtro.setCurriculo("java");
+
+		assertTrue(pessoaRepositoryImpl.estimar(filtro) >= 0);
+	}
+
+	@Test
+	public void acimaDoLimiteOTotalEAEstimativa() {
+
+		ReflectionTestUtils.setField(pessoaRepositoryImpl, "limiteContagemExata", 0L);
+
+		PaginaPessoas pagina = pessoaRepository.paginar(FiltroPesquisaPessoa.porNomeSexo(nome, null), PageRequest.of(0, 3, Sort.by("nome")));
+
+		assertTrue(pagina.isTotalAproximado());
+		assertTrue(pagina.hasNext());
+		// Nunca menos do que a página já mostrou existir
+		assertTrue(pagina.getTotalElements() >= 4);
+	}
+
+}
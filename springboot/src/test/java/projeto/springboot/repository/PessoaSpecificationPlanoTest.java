@@ -0,0 +1,152 @@
+package projeto.springboot.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Assume;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import projeto.springboot.BancoDisponivel;
+import projeto.springboot.model.Cargo;
+
+/**
+ * Garante que o SQL gerado pelo PessoaSpecification continua usando índice para cada filtro.
+ *
+ * O SQL é capturado do Hibernate e executado com EXPLAIN e enable_seqscan = off: se algum predicado deixar de ser indexável
+ * o PostgreSQL não tem alternativa e o plano volta a mostrar "Seq Scan on pessoa".
+ *
+ * Precisa do banco configurado em application.properties; sem ele os testes são ignorados.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+		+ "projeto.springboot.repository.PessoaSpecificationPlanoTest$CapturaSql")
+public class PessoaSpecificationPlanoTest {
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	@Test
+	public void sexoEPrefixoDoNomeUsamIndice() throws Exception {
+
+		FiltroPesquisaPessoa filtro = FiltroPesquisaPessoa.porNomeSexo("Ma", "FEMININO");
+		String plano = plano(filtro, "FEMININO", "ma%");
+
+		assertFalse(plano, plano.contains("Seq Scan on pessoa"));
+		assertTrue(plano, plano.contains("idx_pessoa_sexo_nome") || plano.contains("idx_pessoa_nome_prefixo"));
+	}
+
+	@Test
+	public void trechoDoNomeUsaIndiceDeTrigramas() throws Exception {
+
+		// O índice só existe onde o DBA instalou a extensão (V2)
+		try (Connection conexao = dataSource.getConnection(); Statement comando = conexao.createStatement();
+				ResultSet extensao = comando.executeQuery("select 1 from pg_extension where extname = 'pg_trgm'")) {
+			Assume.assumeTrue("Extensão pg_trgm não instalada", extensao.next());
+		}
+
+		String plano = plano(FiltroPesquisaPessoa.porNomeSexo("aria", null), "%aria%");
+
+		assertFalse(plano, plano.contains("Seq Scan on pessoa"));
+		assertTrue(plano, plano.contains("idx_pessoa_nome_trgm"));
+	}
+
+	@Test
+	public void ufECidadeUsamIndice() throws Exception {
+
+		FiltroPesquisaPessoa filtro = new FiltroPesquisaPessoa();
+		filtro.setUf("sp");
+		filtro.setCidade("São Paulo");
+		String plano = plano(filtro, "SP", "São Paulo");
+
+		assertFalse(plano, plano.contains("Seq Scan on pessoa"));
+		assertTrue(plano, plano.contains("idx_pessoa_uf_cidade"));
+	}
+
+	@Test
+	public void cargoUsaIndice() throws Exception {
+
+		FiltroPesquisaPessoa filtro = new FiltroPesquisaPessoa();
+		filtro.setCargo(Cargo.PLENO);
+		String plano = plano(filtro, "PLENO");
+
+		assertFalse(plano, plano.contains("Seq Scan on pessoa"));
+		assertTrue(plano, plano.contains("idx_pessoa_cargo_idade"));
+	}
+
+	private String plano(FiltroPesquisaPessoa filtro, Object... parametros) throws SQLException {
+
+		CapturaSql.sql.remove();
+		pessoaRepository.findAll(PessoaSpecification.de(filtro));
+		String sql = CapturaSql.sql.get();
+
+		assertEquals(sql, parametros.length, sql.chars().filter(c -> c == '?').count());
+
+		try (Connection conexao = dataSource.getConnection()) {
+
+			conexao.setAutoCommit(false);
+
+			try (Statement comando = conexao.createStatement()) {
+				comando.execute("set local enable_seqscan = off");
+			}
+
+			StringBuilder plano = new StringBuilder();
+
+			try (PreparedStatement explain = conexao.prepareStatement("explain " + sql)) {
+
+				for (int i = 0; i < parametros.length; i++) {
+					explain.setObject(i + 1, parametros[i]);
+				}
+
+				try (ResultSet linhas = explain.executeQuery()) {
+					while (linhas.next()) {
+						plano.append(linhas.getString(1)).append('\n');
+					}
+				}
+			}
+
+			conexao.rollback();
+			return plano.toString();
+		}
+	}
+
+	/** Guarda o primeiro select em pessoa da thread (os seguintes são das associações). */
+	public static class CapturaSql implements StatementInspector {
+
+		private static final long serialVersionUID = 1L;
+
+		static final ThreadLocal<String> sql = new ThreadLocal<String>();
+
+		@Override
+		public String inspect(String comando) {
+
+			if (sql.get() == null && comando.startsWith("select") && comando.contains(" from pessoa ")) {
+				sql.set(comando);
+			}
+
+			return comando;
+		}
+
+	}
+
+}
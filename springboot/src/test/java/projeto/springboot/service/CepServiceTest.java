@@ -0,0 +1,134 @@
+package projeto.springboot.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import projeto.springboot.model.Endereco;
+
+/**
+ * Índice de CEP gerado pelo CompiladorIndiceCep a partir de um CSV pequeno e lido pelo CepService: primeiro e último registros da
+ * busca binária, CEP ausente, entrada malformada e string longa cortada sem partir um caractere UTF-8.
+ * */
+public class CepServiceTest {
+
+	@Rule
+	public final TemporaryFolder pasta = new TemporaryFolder();
+
+	@Test
+	public void encontraOPrimeiroEOUltimoRegistro() throws IOException {
+
+		CepService cepService = carregar("cep;rua;bairro;cidade;uf;ibge",
+				"99990-000;Rua Z;Centro;Oiapoque;AP;1600501",
+				"01001-000;Praça da Sé;Sé;São Paulo;SP;3550308",
+				"20040-002;Rua da Assembleia;Centro;Rio de Janeiro;RJ;3304557");
+
+		Endereco primeiro = cepService.buscar("01001-000").get();
+		assertEquals("01001000", primeiro.getCep());
+		assertEquals("Praça da Sé", primeiro.getRua());
+		assertEquals("Sé", primeiro.getBairro());
+		assertEquals("São Paulo", primeiro.getCidade());
+		assertEquals("SP", primeiro.getUf());
+		assertEquals("3550308", primeiro.getIbge());
+
+		Endereco ultimo = cepService.buscar("99990000").get();
+		assertEquals("Oiapoque", ultimo.getCidade());
+		assertEquals("Centro", ultimo.getBairro());
+
+		assertEquals("Rio de Janeiro", cepService.buscar("20040002").get().getCidade());
+	}
+
+	@Test
+	public void cepForaDoIndiceNaoEEncontrado() throws IOException {
+
+		CepService cepService = carregar("01001-000;Praça da Sé;Sé;São Paulo;SP;3550308",
+				"20040-002;Rua da Assembleia;Centro;Rio de Janeiro;RJ;3304557");
+
+		// Antes do primeiro, entre dois e depois do último
+		assertFalse(cepService.buscar("00000-000").isPresent());
+		assertFalse(cepService.buscar("10000-000").isPresent());
+		assertFalse(cepService.buscar("99999-999").isPresent());
+
+		assertFalse(cepService.isValido("10000-000"));
+		assertTrue(cepService.isValido("01001-000"));
+	}
+
+	@Test
+	public void entradaMalformadaEIgnorada() throws IOException {
+
+		// Cabeçalho, colunas a menos e CEP com dígitos a menos não entram no índice
+		CepService cepService = carregar("cep;rua;bairro;cidade;uf;ibge", "01001-000;Praça da Sé;Sé;São Paulo;SP",
+				"0100-100;Rua;Bairro;Cidade;SP;1", "20040-002;Rua da Assembleia;Centro;Rio de Janeiro;RJ;3304557");
+
+		assertEquals(1, ReflectionTestUtils.getField(cepService, "quantidade"));
+		assertFalse(cepService.buscar("01001000").isPresent());
+
+		assertFalse(cepService.buscar(null).isPresent());
+		assertFalse(cepService.buscar("").isPresent());
+		assertFalse(cepService.buscar("2004000").isPresent());
+		assertFalse(cepService.buscar("abcde-fgh").isPresent());
+		assertFalse(cepService.isValido("2004-0002x1"));
+		assertTrue(cepService.isValido(" "));
+	}
+
+	@Test
+	public void arquivoQueNaoEIndiceDeixaOServicoIndisponivel() throws IOException {
+
+		File arquivo = pasta.newFile("invalido.idx");
+		Files.write(arquivo.toPath(), "não é um índice de CEP".getBytes(StandardCharsets.UTF_8));
+
+		CepService cepService = new CepService();
+		ReflectionTestUtils.setField(cepService, "caminhoIndice", arquivo.getPath());
+		cepService.carregar();
+
+		assertFalse(cepService.isDisponivel());
+		// Sem índice só o formato é conferido
+		assertTrue(cepService.isValido("01001-000"));
+		assertFalse(cepService.buscar("01001-000").isPresent());
+	}
+
+	@Test
+	public void stringLongaECortadaSemPartirCaractere() throws IOException {
+
+		// 2 bytes por "ç": o limite de 0xFFFF bytes cai no meio do 32768º caractere
+		String rua = String.join("", Collections.nCopies(40000, "ç"));
+
+		CepService cepService = carregar("01001-000;" + rua + ";Sé;São Paulo;SP;3550308");
+
+		String gravada = cepService.buscar("01001000").get().getRua();
+
+		assertEquals(0xFFFF / 2, gravada.length());
+		assertEquals(rua.substring(0, 0xFFFF / 2), gravada);
+		assertEquals("Sé", cepService.buscar("01001000").get().getBairro());
+	}
+
+	private CepService carregar(String... linhas) throws IOException {
+
+		File csv = pasta.newFile();
+		File indice = new File(pasta.getRoot(), csv.getName() + ".idx");
+		Files.write(csv.toPath(), Arrays.asList(linhas), StandardCharsets.UTF_8);
+
+		CompiladorIndiceCep.main(new String[] { csv.getPath(), indice.getPath() });
+
+		CepService cepService = new CepService();
+		ReflectionTestUtils.setField(cepService, "caminhoIndice", indice.getPath());
+		cepService.carregar();
+
+		assertTrue(cepService.isDisponivel());
+
+		return cepService;
+	}
+
+}
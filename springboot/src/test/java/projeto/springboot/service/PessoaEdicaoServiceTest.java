@@ -0,0 +1,180 @@
+package projeto.springboot.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import projeto.springboot.BancoDisponivel;
+import projeto.springboot.curriculo.ArmazenamentoCurriculoService;
+import projeto.springboot.model.Cargo;
+import projeto.springboot.model.Pessoa;
+import projeto.springboot.model.Profissao;
+import projeto.springboot.repository.PessoaRepository;
+import projeto.springboot.repository.ProfissaoRepository;
+
+/**
+ * Edição que grava só o que mudou: formulário igual ao gravado não faz UPDATE (data_atualizacao fica como estava), a data lida
+ * do banco (java.sql.Date) é igual à do formulário (java.util.Date), profissão removida vira null e o currículo trocado libera
+ * o large object anterior.
+ *
+ * Cada teste cria a própria pessoa dentro de uma transação desfeita no fim. Precisa do banco configurado em
+ * application.properties; sem ele os testes são ignorados.
+ * */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "app.aquecimento.habilitado=false", "app.invalidacao.habilitado=false" })
+@Transactional
+public class PessoaEdicaoServiceTest {
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	// Marca colocada em data_atualizacao antes de editar: se continuar lá, não houve UPDATE
+	private static final Timestamp NAO_ALTERADA = Timestamp.valueOf("2000-01-01 00:00:00");
+
+	@Autowired
+	private PessoaEdicaoService pessoaEdicaoService;
+
+	@Autowired
+	private PessoaRepository pessoaRepository;
+
+	@Autowired
+	private ProfissaoRepository profissaoRepository;
+
+	@Autowired
+	private ArmazenamentoCurriculoService armazenamentoCurriculoService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Profissao profissao;
+
+	private Long id;
+
+	@Before
+	public void criarPessoa() {
+
+		profissao = new Profissao();
+		profissao.setId(987654321L);
+		profissao.setNome("Profissão de teste");
+		profissaoRepository.save(profissao);
+
+		Pessoa pessoa = formulario();
+		armazenamentoCurriculoService.armazenar(pessoa, "currículo antigo".getBytes(), "antigo.txt");
+		pessoa.setTipoFileCurriculo("text/plain");
+		pessoa.setNomeFileCurriculo("antigo.txt");
+
+		id = pessoaRepository.saveAndFlush(pessoa).getId();
+
+		jdbcTemplate.update("UPDATE pessoa SET data_atualizacao = ? WHERE id = ?", NAO_ALTERADA, id);
+	}
+
+	@Test
+	public void semAlteracaoNadaEGravado() {
+
+		assertTrue(pessoaEdicaoService.atualizarAlterados(enviada(), null, null, null));
+
+		assertEquals(NAO_ALTERADA, dataAtualizacao());
+	}
+
+	@Test
+	public void dataLidaDoBancoIgualADoFormulario() {
+
+		Pessoa enviada = enviada();
+		// O formulário traz java.util.Date; o banco devolve java.sql.Date do mesmo dia
+		enviada.setDataNascimento(new Date(nascimento().getTime()));
+
+		assertTrue(pessoaEdicaoService.atualizarAlterados(enviada, null, null, null));
+
+		assertEquals(NAO_ALTERADA, dataAtualizacao());
+	}
+
+	@Test
+	public void profissaoRemovidaViraNull() {
+
+		Pessoa enviada = enviada();
+		enviada.setProfissaopessoa(null);
+
+		assertTrue(pessoaEdicaoService.atualizarAlterados(enviada, null, null, null));
+
+		assertNull(jdbcTemplate.queryForObject("SELECT profissaopessoa_id FROM pessoa WHERE id = ?", Long.class, id));
+		assertNotEquals(NAO_ALTERADA, dataAtualizacao());
+	}
+
+	@Test
+	public void curriculoNovoLiberaOAnterior() {
+
+		Long oidAnterior = oidCurriculo();
+
+		assertTrue(pessoaEdicaoService.atualizarAlterados(enviada(), "currículo novo".getBytes(), "text/plain", "novo.txt"));
+
+		assertNotEquals(oidAnterior, oidCurriculo());
+		assertEquals(0, (int) jdbcTemplate.queryForObject("SELECT count(*) FROM pg_largeobject_metadata WHERE oid = ?",
+				Integer.class, oidAnterior));
+		assertEquals("novo.txt", jdbcTemplate.queryForObject("SELECT nome_file_curriculo FROM pessoa WHERE id = ?", String.class, id));
+	}
+
+	@Test
+	public void pessoaInexistenteNaoEGravada() {
+
+		Pessoa enviada = enviada();
+		enviada.setId(-1L);
+
+		assertFalse(pessoaEdicaoService.atualizarAlterados(enviada, null, null, null));
+	}
+
+	// Os campos do formulário de cadastro, sem o currículo
+	private Pessoa formulario() {
+
+		Pessoa pessoa = new Pessoa();
+		pessoa.setNome("Edição");
+		pessoa.setSobrenome("Teste");
+		pessoa.setIdade(30);
+		pessoa.setCep("01001-000");
+		pessoa.setRua("Praça da Sé");
+		pessoa.setBairro("Sé");
+		pessoa.setCidade("São Paulo");
+		pessoa.setUf("SP");
+		pessoa.setIbge("3550308");
+		pessoa.setSexopessoa("MASCULINO");
+		pessoa.setProfissaopessoa(profissao);
+		pessoa.setCargo(Cargo.values()[0]);
+		pessoa.setDataNascimento(nascimento());
+		return pessoa;
+	}
+
+	private Pessoa enviada() {
+		Pessoa pessoa = formulario();
+		pessoa.setId(id);
+		return pessoa;
+	}
+
+	private static Date nascimento() {
+		return new GregorianCalendar(1990, Calendar.MAY, 17).getTime();
+	}
+
+	private Timestamp dataAtualizacao() {
+		return jdbcTemplate.queryForObject("SELECT data_atualizacao FROM pessoa WHERE id = ?", Timestamp.class, id);
+	}
+
+	private Long oidCurriculo() {
+		return jdbcTemplate.queryForObject("SELECT cast(curriculo as int8) FROM pessoa WHERE id = ?", Long.class, id);
+	}
+
+}
@@ -0,0 +1,165 @@
+package projeto.springboot.sessao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import projeto.springboot.BancoDisponivel;
+import projeto.springboot.invalidacao.BarramentoInvalidacao;
+
+/**
+ * Dois repositórios no mesmo PostgreSQL, como dois nós com caches próprios: o que um grava o outro lê do banco.
+ *
+ * Precisa do banco configurado em application.properties (com as migrações aplicadas); sem ele os testes são ignorados.
+ * */
+public class SessaoJdbcRepositoryTest {
+
+	@ClassRule
+	public static final BancoDisponivel banco = new BancoDisponivel();
+
+	private JdbcTemplate jdbcTemplate;
+
+	private SessaoJdbcRepository noA;
+	private SessaoJdbcRepository noB;
+
+	private final List<String> ids = new ArrayList<String>();
+
+	@Before
+	public void iniciar() {
+
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(banco.propriedade("spring.datasource.url"),
+				banco.propriedade("spring.datasource.username"), banco.propriedade("spring.datasource.password"));
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		noA = novoNo(dataSource);
+		noB = novoNo(dataSource);
+	}
+
+	@After
+	public void encerrar() {
+		for (String id : ids) {
+			jdbcTemplate.update("DELETE FROM sessao WHERE id = ?", id);
+		}
+	}
+
+	@Test
+	public void sessaoCriadaEmUmNoELidaNoOutro() {
+
+		SessaoJdbc sessao = noA.createSession();
+		sessao.setAttribute("usuario", "admin");
+		salvar(noA, sessao);
+
+		SessaoJdbc lida = noB.findById(sessao.getId());
+
+		assertNotNull(lida);
+		assertEquals("admin", lida.getAttribute("usuario"));
+	}
+
+	@Test
+	public void atualizacaoGravaAtributosETrocaDeId() {
+
+		SessaoJdbc sessao = noA.createSession();
+		sessao.setAttribute("usuario", "admin");
+		sessao.setAttribute("mensagem", "salvo");
+		salvar(noA, sessao);
+
+		String idAnterior = sessao.getId();
+
+		SessaoJdbc alterada = noA.findById(idAnterior);
+		alterada.setAttribute("usuario", "outro");
+		alterada.removeAttribute("mensagem");
+		alterada.changeSessionId();
+		salvar(noA, alterada);
+
+		assertNull(noB.findById(idAnterior));
+
+		SessaoJdbc lida = noB.findById(alterada.getId());
+		assertEquals("outro", lida.getAttribute("usuario"));
+		assertNull(lida.getAttribute("mensagem"));
+
+		// E o cache de quem gravou tem o mesmo que o banco
+		assertEquals("outro", noA.findById(alterada.getId()).getAttribute("usuario"));
+		assertNull(noA.findById(alterada.getId()).getAttribute("mensagem"));
+	}
+
+	@Test
+	public void sessaoExpiradaNaoEDevolvida() {
+
+		SessaoJdbc sessao = noA.createSession();
+		sessao.setMaxInactiveInterval(Duration.ofSeconds(1));
+		sessao.setLastAccessedTime(Instant.now().minusSeconds(60));
+		salvar(noA, sessao);
+
+		assertNull(noB.findById(sessao.getId()));
+		assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject("SELECT count(*) FROM sessao WHERE id = ?", Integer.class,
+				sessao.getId()));
+	}
+
+	@Test
+	public void sessaoApagadaDuranteARequisicaoNaoERecriada() {
+
+		SessaoJdbc sessao = noA.createSession();
+		salvar(noA, sessao);
+
+		SessaoJdbc emUso = noA.findById(sessao.getId());
+
+		// Logout em outro nó, ou limpeza, enquanto a requisição ainda estava em andamento
+		jdbcTemplate.update("DELETE FROM sessao WHERE id = ?", sessao.getId());
+
+		emUso.setAttribute("usuario", "admin");
+		noA.save(emUso);
+
+		assertNull(noA.findById(sessao.getId()));
+		assertNull(noB.findById(sessao.getId()));
+	}
+
+	@Test
+	public void requisicoesNaoCompartilhamAtributosDoCache() {
+
+		SessaoJdbc sessao = noA.createSession();
+		sessao.setAttribute("lista", new ArrayList<String>(Arrays.asList("a")));
+		salvar(noA, sessao);
+
+		List<String> primeira = noA.findById(sessao.getId()).getAttribute("lista");
+		primeira.add("alterado sem setAttribute");
+
+		List<String> segunda = noA.findById(sessao.getId()).getAttribute("lista");
+
+		assertEquals(Arrays.asList("a"), segunda);
+	}
+
+	private void salvar(SessaoJdbcRepository repositorio, SessaoJdbc sessao) {
+		repositorio.save(sessao);
+		ids.add(sessao.getId());
+	}
+
+	private static SessaoJdbcRepository novoNo(DriverManagerDataSource dataSource) {
+
+		SessaoJdbcRepository repositorio = new SessaoJdbcRepository();
+		ReflectionTestUtils.setField(repositorio, "inatividadeMaximaS", 1800);
+		ReflectionTestUtils.setField(repositorio, "cacheMs", 60000L);
+		ReflectionTestUtils.setField(repositorio, "intervaloAcessoMs", 60000L);
+		ReflectionTestUtils.setField(repositorio, "jdbcTemplate", new JdbcTemplate(dataSource));
+		ReflectionTestUtils.setField(repositorio, "transacao", new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+		ReflectionTestUtils.setField(repositorio, "barramento", new BarramentoInvalidacao());
+
+		return repositorio;
+	}
+
+}
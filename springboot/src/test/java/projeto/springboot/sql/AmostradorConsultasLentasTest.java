@@ -0,0 +1,49 @@
+package projeto.springboot.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import projeto.springboot.sql.AmostradorConsultasLentas.ResumoForma;
+
+public class AmostradorConsultasLentasTest {
+
+	@Test
+	public void parametrosNuncaGuardamOValor() {
+
+		Map<Integer, Object> parametros = new LinkedHashMap<Integer, Object>();
+		parametros.put(1, "Maria da Silva");
+		parametros.put(2, 42L);
+		parametros.put(3, null);
+		parametros.put(4, new Date());
+
+		assertEquals(Arrays.asList("texto(14)", "número", "null", "data"), AmostradorConsultasLentas.redigir(parametros));
+	}
+
+	@Test
+	public void explainSoEmSelectSemTrava() {
+
+		assertTrue(AmostradorConsultasLentas.explicavel(" select * from pessoa where id=?"));
+		assertFalse(AmostradorConsultasLentas.explicavel("select * from pessoa where id=? for update skip locked"));
+		assertFalse(AmostradorConsultasLentas.explicavel("update pessoa set nome=? where id=?"));
+	}
+
+	@Test
+	public void percentilPorPostoMaisProximo() {
+
+		List<Long> tempos = Arrays.asList(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L, 100L);
+
+		assertEquals(50L, ResumoForma.percentil(tempos, 50));
+		assertEquals(100L, ResumoForma.percentil(tempos, 95));
+		assertEquals(10L, ResumoForma.percentil(Arrays.asList(10L), 99));
+	}
+
+}
@@ -0,0 +1,62 @@
+package projeto.springboot.sql;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+/**
+ * Conferências de quantidade de SQL por endpoint para testes com MockMvc (precisa do EstatisticaSqlFilter, que entra com
+ * @AutoConfigureMockMvc):
+ *
+ * mockMvc.perform(get("/cadastropessoa")).andExpect(ContagemSql.maximoInstrucoes(4));
+ * */
+public final class ContagemSql {
+
+	private ContagemSql() {
+	}
+
+	/** Falha se a requisição executou mais que "maximo" instruções; a mensagem lista as instruções por forma. */
+	public static ResultMatcher maximoInstrucoes(int maximo) {
+
+		return resultado -> {
+
+			EstatisticaSql estatistica = estatistica(resultado.getRequest().getAttribute(EstatisticaSqlFilter.ATRIBUTO));
+
+			assertTrue("Executou " + estatistica.getInstrucoes() + " instruções SQL (máximo " + maximo + "):" + formas(estatistica),
+					estatistica.getInstrucoes() <= maximo);
+		};
+	}
+
+	/** Falha se alguma forma de instrução se repetiu mais que "maximo" vezes (N+1). */
+	public static ResultMatcher maximoRepeticoes(int maximo) {
+
+		return resultado -> {
+
+			EstatisticaSql estatistica = estatistica(resultado.getRequest().getAttribute(EstatisticaSqlFilter.ATRIBUTO));
+
+			for (Map.Entry<String, Integer> forma : estatistica.getFormas().entrySet()) {
+				assertTrue(forma.getValue() + " execuções de " + forma.getKey() + " (máximo " + maximo + ")", forma.getValue() <= maximo);
+			}
+		};
+	}
+
+	private static EstatisticaSql estatistica(Object atributo) {
+		assertNotNull("Requisição sem EstatisticaSql: o EstatisticaSqlFilter não está na cadeia do MockMvc", atributo);
+		return (EstatisticaSql) atributo;
+	}
+
+	private static String formas(EstatisticaSql estatistica) {
+
+		StringBuilder texto = new StringBuilder();
+
+		for (Map.Entry<String, Integer> forma : estatistica.getFormas().entrySet()) {
+			texto.append(String.format("%n  %dx %s", forma.getValue(), forma.getKey()));
+		}
+
+		return texto.toString();
+	}
+
+}